@@ -86,7 +86,11 @@ create table soulpatches
         constraint soulpatches_author_user_constraint references app_user,
     description text,
     name        varchar(255),
-    no_views    bigint default 0
+    no_views    bigint default 0,
+    rating_count bigint default 0 not null,
+    rating_sum   bigint default 0 not null,
+    trending_score double precision default 0 not null,
+    quality_score  double precision default 0 not null
 );
 
 create index soulpatches_author_index
@@ -98,6 +102,15 @@ create index soulpatches_no_views_index
 create index soulpatches_name_index
     on soulpatches (name);
 
+create index soulpatches_trending_score_index
+    on soulpatches (trending_score);
+
+create index soulpatches_quality_score_index
+    on soulpatches (quality_score);
+
+create index soulpatches_updated_at_index
+    on soulpatches (updated_at, id);
+
 alter table soulpatches
     owner to soulhub;
 
@@ -145,8 +158,57 @@ create index soulpatch_ratings_soulpatch_index
 alter table soulpatch_ratings
     owner to soulhub;
 
+-- append-only download history, no foreign keys so the history outlives deleted soulpatches.
+-- monthly partitions are created by the application (DownloadEventLog), rows outside of
+-- them end up in the default partition
+create table download_events
+(
+    occurred_at  timestamp not null,
+    soulpatch_id bigint    not null,
+    spfile_id    bigint,
+    app_user_id  bigint
+) partition by range (occurred_at);
+
+create table download_events_default
+    partition of download_events default;
+
+create index download_events_soulpatch_index
+    on download_events (soulpatch_id, occurred_at);
+
+alter table download_events
+    owner to soulhub;
+
+alter table download_events_default
+    owner to soulhub;
+
+create table download_daily_rollups
+(
+    day          date   not null,
+    soulpatch_id bigint not null,
+    downloads    bigint not null,
+    primary key (day, soulpatch_id)
+);
+
+alter table download_daily_rollups
+    owner to soulhub;
+
+-- deleted soulpatches for the change feed
+create table soulpatch_tombstones
+(
+    soulpatch_id bigint    not null
+        constraint soulpatch_tombstones_pkey
+            primary key,
+    deleted_at   timestamp not null
+);
+
+create index soulpatch_tombstones_deleted_at_index
+    on soulpatch_tombstones (deleted_at, soulpatch_id);
+
+alter table soulpatch_tombstones
+    owner to soulhub;
+
 insert into app_role (id, role_name)
 values (nextval('hibernate_sequence'), 'ADMIN');
 
 insert into app_role (id, role_name)
-values (nextval('hibernate_sequence'), 'USER');
\ No newline at end of file
+values (nextval('hibernate_sequence'), 'USER');
\ No newline at end of file
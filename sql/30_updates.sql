@@ -0,0 +1,65 @@
+-- updates for existing databases, every statement can be run repeatedly
+
+-- stored rating aggregate, maintained by the rating upsert
+alter table soulpatches
+    add column if not exists rating_count bigint default 0 not null;
+
+alter table soulpatches
+    add column if not exists rating_sum bigint default 0 not null;
+
+update soulpatches sp
+set rating_count = r.rating_count,
+    rating_sum   = r.rating_sum
+from (select soulpatch_id, count(*) as rating_count, sum(stars) as rating_sum
+      from soulpatch_ratings
+      group by soulpatch_id) r
+where r.soulpatch_id = sp.id;
+
+-- precomputed sort keys of the ranking service
+alter table soulpatches
+    add column if not exists trending_score double precision default 0 not null;
+
+alter table soulpatches
+    add column if not exists quality_score double precision default 0 not null;
+
+create index if not exists soulpatches_trending_score_index
+    on soulpatches (trending_score);
+
+create index if not exists soulpatches_quality_score_index
+    on soulpatches (quality_score);
+
+-- download history of the DownloadEventLog
+create table if not exists download_events
+(
+    occurred_at  timestamp not null,
+    soulpatch_id bigint    not null,
+    spfile_id    bigint,
+    app_user_id  bigint
+) partition by range (occurred_at);
+
+create table if not exists download_events_default
+    partition of download_events default;
+
+create index if not exists download_events_soulpatch_index
+    on download_events (soulpatch_id, occurred_at);
+
+create table if not exists download_daily_rollups
+(
+    day          date   not null,
+    soulpatch_id bigint not null,
+    downloads    bigint not null,
+    primary key (day, soulpatch_id)
+);
+
+-- change feed, updates by updated_at and deletes by tombstone
+create index if not exists soulpatches_updated_at_index
+    on soulpatches (updated_at, id);
+
+create table if not exists soulpatch_tombstones
+(
+    soulpatch_id bigint    not null primary key,
+    deleted_at   timestamp not null
+);
+
+create index if not exists soulpatch_tombstones_deleted_at_index
+    on soulpatch_tombstones (deleted_at, soulpatch_id);
@@ -13,8 +13,10 @@ import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactor
 import org.springframework.boot.web.servlet.server.ServletWebServerFactory;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication(exclude = ErrorMvcAutoConfiguration.class)
+@EnableScheduling
 public class SOULHubApplication {
 
     @Value("${soulhub.http-port:8080}")
@@ -0,0 +1,52 @@
+package io.horrorshow.soulhub.controller;
+
+import graphql.ExecutionInput;
+import graphql.GraphQL;
+import io.horrorshow.soulhub.graphql.GraphQLRequest;
+import io.horrorshow.soulhub.graphql.SOULHubDataLoaders;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Map;
+import java.util.Objects;
+
+@RestController
+@RequestMapping("/api")
+public class GraphQLController {
+
+    private final GraphQL graphQL;
+    private final SOULHubDataLoaders dataLoaders;
+
+    @Autowired
+    public GraphQLController(GraphQL graphQL, SOULHubDataLoaders dataLoaders) {
+        this.graphQL = graphQL;
+        this.dataLoaders = dataLoaders;
+    }
+
+    /**
+     * Executes a query of the schema in graphql/soulhub.graphqls. Query errors, including
+     * exceeded depth or complexity limits, are reported in the "errors" of the response.
+     */
+    @PostMapping(value = "/graphql",
+            consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public Map<String, Object> graphql(@RequestBody GraphQLRequest request) {
+        if (!StringUtils.hasText(request.getQuery())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "query must not be empty");
+        }
+        var input = ExecutionInput.newExecutionInput()
+                .query(request.getQuery())
+                .operationName(request.getOperationName())
+                .variables(Objects.requireNonNullElse(request.getVariables(), Map.of()))
+                .dataLoaderRegistry(dataLoaders.newRegistry())
+                .build();
+        return graphQL.execute(input).toSpecification();
+    }
+}
@@ -0,0 +1,94 @@
+package io.horrorshow.soulhub.controller;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+/**
+ * Conditional GET and single byte range responses for downloads.
+ * Multiple ranges in one request are answered with the full representation.
+ */
+class RangeResponses {
+
+    @FunctionalInterface
+    interface RangeSource {
+        void transferTo(long position, long count, WritableByteChannel target) throws IOException;
+    }
+
+    private RangeResponses() {
+    }
+
+    static long lastModified(LocalDateTime updatedAt) {
+        return (updatedAt != null) ? updatedAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : -1L;
+    }
+
+    /**
+     * Writes the representation, a range of it, 304 Not Modified or 416 Range Not Satisfiable.
+     *
+     * @return true if any content was written from the start of the representation
+     */
+    static boolean write(ServletWebRequest webRequest, long size, String eTag, long lastModified,
+                         RangeSource source) throws IOException {
+        HttpServletRequest request = webRequest.getRequest();
+        HttpServletResponse response = webRequest.getResponse();
+        if (webRequest.checkNotModified(eTag, lastModified)) {
+            return false;
+        }
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        long start = 0;
+        long end = size - 1;
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null && ifRangeMatches(request, eTag, lastModified)) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(rangeHeader);
+            } catch (IllegalArgumentException e) {
+                ranges = List.of();
+            }
+            if (ranges.size() == 1) {
+                start = ranges.get(0).getRangeStart(size);
+                end = ranges.get(0).getRangeEnd(size);
+                if (start >= size || start > end) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                    response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return false;
+                }
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, String.format("bytes %d-%d/%d", start, end, size));
+            }
+        }
+
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+        if (count > 0 && !"HEAD".equals(request.getMethod())) {
+            // the servlet api has no sendfile, a channel over the output stream copies through the heap
+            source.transferTo(start, count, Channels.newChannel(response.getOutputStream()));
+        }
+        return start == 0;
+    }
+
+    private static boolean ifRangeMatches(HttpServletRequest request, String eTag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(eTag);
+        }
+        try {
+            return lastModified >= 0 && request.getDateHeader(HttpHeaders.IF_RANGE) == lastModified / 1000 * 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
@@ -1,26 +1,61 @@
 package io.horrorshow.soulhub.controller;
 
 import io.horrorshow.soulhub.data.SOULPatch;
+import io.horrorshow.soulhub.data.records.SOULPatchChangesRecord;
+import io.horrorshow.soulhub.data.records.SOULPatchOperation;
+import io.horrorshow.soulhub.data.records.SOULPatchOperationResult;
 import io.horrorshow.soulhub.data.records.SOULPatchRecord;
+import io.horrorshow.soulhub.data.records.SOULPatchRecordField;
+import io.horrorshow.soulhub.data.util.SOULPatchChangeCursor;
+import io.horrorshow.soulhub.data.util.SOULPatchCursor;
+import io.horrorshow.soulhub.data.util.SOULPatchSort;
+import io.horrorshow.soulhub.data.util.SOULPatchesFetchFilter;
+import io.horrorshow.soulhub.exception.BatchFailed;
+import io.horrorshow.soulhub.exception.CursorExpired;
+import io.horrorshow.soulhub.exception.PreconditionFailed;
+import io.horrorshow.soulhub.exception.ResourceNotFound;
+import io.horrorshow.soulhub.service.SOULPatchChangeFeedService;
 import io.horrorshow.soulhub.service.SOULPatchService;
+import io.horrorshow.soulhub.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.Assert;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.UriComponentsBuilder;
 
 import javax.validation.Valid;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api")
 public class SOULPatchController {
 
+    static final int DEFAULT_PAGE_SIZE = 20;
+    static final int MAX_PAGE_SIZE = 100;
+    static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+    static final int MAX_BATCH_SIZE = 100;
+
     private final SOULPatchService service;
+    private final UserService userService;
+    private final SOULPatchChangeFeedService changeFeedService;
 
     @Autowired
-    public SOULPatchController(SOULPatchService service) {
+    public SOULPatchController(SOULPatchService service, UserService userService,
+                               SOULPatchChangeFeedService changeFeedService) {
         Assert.notNull(service, SOULPatchService.class.getName() + " must not be null.");
         this.service = service;
+        this.userService = userService;
+        this.changeFeedService = changeFeedService;
     }
 
     @RequestMapping("/")
@@ -28,14 +63,151 @@ public class SOULPatchController {
         return "This is SOULHub!";
     }
 
+    /**
+     * One page of soulpatches, selected by page number or by cursor. Both link the adjacent
+     * pages in the Link header, page number responses also carry the total in X-Total-Count.
+     *
+     * @param sort   optional, one of {@link SOULPatchSort}, e.g. "trending" or "top_rated"
+     * @param cursor keyset pagination instead of page numbers, empty for the first page.
+     *               The cursor of the following page is in the "next" link
+     * @param name   part of the soulpatch name
+     * @param user   author ids
+     * @param search full text search, results are ordered by relevance and can't be paged by cursor
+     * @param fields comma separated {@link SOULPatchRecordField}s, all but "files.content" by default.
+     *               File contents are also available from /api/spfiles/{id}/content
+     */
     @GetMapping(value = "/soulpatches")
-    public List<SOULPatchRecord> getSOULPatches() {
-        return service.getAllSOULPatchRecords();
+    public ResponseEntity<List<SOULPatchRecord>> getSOULPatches(
+            @RequestParam(required = false) String sort,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int size,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) List<Long> user,
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) String fields) {
+        if (page < 0 || size < 1 || size > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, String.format(
+                    "page must be >= 0 and size between 1 and %d", MAX_PAGE_SIZE));
+        }
+        try {
+            var soulPatchSort = (sort != null) ? SOULPatchSort.fromParameter(sort) : SOULPatchSort.NAME;
+            var filter = createFilter(name, user, search);
+            var recordFields = parseFields(fields, SOULPatchRecordField.METADATA);
+            var uri = ServletUriComponentsBuilder.fromCurrentRequest();
+            var headers = new HttpHeaders();
+            List<String> links = new ArrayList<>();
+            List<Long> ids;
+
+            if (cursor != null) {
+                var after = cursor.isEmpty() ? null : SOULPatchCursor.decode(cursor);
+                // one more to know whether there is a next page
+                var positions = service.findAnyMatchingAfter(filter, soulPatchSort, after, size + 1);
+                ids = positions.stream().limit(size).map(SOULPatchCursor::getId).collect(Collectors.toList());
+                links.add(link(uri.replaceQueryParam("cursor", ""), "first"));
+                if (positions.size() > size) {
+                    var next = positions.get(size - 1);
+                    links.add(link(uri.replaceQueryParam("cursor", next.encode()), "next"));
+                }
+            } else {
+                Page<Long> result = service.findAnyMatchingIds(filter, PageRequest.of(page, size, soulPatchSort.toSort()));
+                ids = result.getContent();
+                headers.set(TOTAL_COUNT_HEADER, String.valueOf(result.getTotalElements()));
+                links.add(link(uri.replaceQueryParam("page", 0), "first"));
+                if (result.hasPrevious()) {
+                    links.add(link(uri.replaceQueryParam("page", page - 1), "prev"));
+                }
+                if (result.hasNext()) {
+                    links.add(link(uri.replaceQueryParam("page", page + 1), "next"));
+                }
+                links.add(link(uri.replaceQueryParam("page", Math.max(0, result.getTotalPages() - 1)), "last"));
+            }
+            headers.set(HttpHeaders.LINK, String.join(", ", links));
+            return ResponseEntity.ok().headers(headers).body(service.getSOULPatchRecords(ids, recordFields));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        } catch (ResourceNotFound e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Creates, updates and deletes after the cursor, oldest first. Without cursor the feed starts
+     * with the whole catalog, sync clients continue with the returned cursor (also in the "next"
+     * link while more changes are available). 410 Gone if the cursor is older than the
+     * tombstone retention.
+     *
+     * @param fields of the upserted soulpatches, see {@link #getSOULPatches}
+     */
+    @GetMapping("/soulpatches/changes")
+    public ResponseEntity<SOULPatchChangesRecord> getSOULPatchChanges(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + MAX_PAGE_SIZE) int size,
+            @RequestParam(required = false) String fields) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, String.format(
+                    "size must be between 1 and %d", MAX_PAGE_SIZE));
+        }
+        try {
+            var after = (cursor == null || cursor.isEmpty())
+                    ? SOULPatchChangeCursor.START
+                    : SOULPatchChangeCursor.decode(cursor);
+            var changes = changeFeedService.findChangesAfter(after, size,
+                    parseFields(fields, SOULPatchRecordField.METADATA));
+            var headers = new HttpHeaders();
+            if (changes.isMore()) {
+                headers.set(HttpHeaders.LINK, link(ServletUriComponentsBuilder.fromCurrentRequest()
+                        .replaceQueryParam("cursor", changes.getCursor()), "next"));
+            }
+            return ResponseEntity.ok().headers(headers).body(changes);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        } catch (CursorExpired e) {
+            throw new ResponseStatusException(HttpStatus.GONE, e.getMessage(), e);
+        }
+    }
+
+    private static Set<SOULPatchRecordField> parseFields(String fields, Set<SOULPatchRecordField> defaultFields) {
+        return (fields != null) ? SOULPatchRecordField.parse(fields) : defaultFields;
+    }
+
+    private SOULPatchesFetchFilter createFilter(String name, List<Long> user, String search) {
+        var filter = new SOULPatchesFetchFilter();
+        filter.setNamesFilter(name);
+        filter.setFullTextSearch(search);
+        if (user != null) {
+            filter.getUsersFilter().addAll(userService.findAllByIdOrThrow(user));
+        }
+        return filter;
+    }
+
+    private static String link(UriComponentsBuilder uri, String rel) {
+        return String.format("<%s>; rel=\"%s\"", uri.build().toUriString(), rel);
     }
 
+    /**
+     * Conditional GET by ETag (see {@link VersionTags}) or Last-Modified, a 304 only reads
+     * the updatedAt of the soulpatch.
+     *
+     * @param fields comma separated {@link SOULPatchRecordField}s, all by default
+     */
     @GetMapping("/soulpatches/{soulpatchId}")
-    public SOULPatchRecord getSOULPatch(@PathVariable Long soulpatchId) {
-        return service.getSOULPatchRecord(soulpatchId);
+    public SOULPatchRecord getSOULPatch(@PathVariable Long soulpatchId,
+                                        @RequestParam(required = false) String fields,
+                                        WebRequest webRequest) {
+        try {
+            var recordFields = parseFields(fields, SOULPatchRecordField.ALL);
+            var updatedAt = service.findUpdatedAt(soulpatchId).orElseThrow(() -> notFound(soulpatchId));
+            if (webRequest.checkNotModified(VersionTags.eTag(updatedAt, recordFields),
+                    RangeResponses.lastModified(updatedAt))) {
+                return null;
+            }
+            return service.getSOULPatchRecord(soulpatchId, recordFields);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        } catch (ResourceNotFound e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage(), e);
+        }
     }
 
     @PostMapping("/soulpatches")
@@ -43,15 +215,63 @@ public class SOULPatchController {
         return service.save(soulPatch);
     }
 
+    /**
+     * Creates, updates and deletes soulpatches in one transaction, either all of them or none.
+     * The current user is the author of created soulpatches.
+     *
+     * @return the result of each operation, 400 with the results if any of them failed
+     */
+    @PostMapping("/soulpatches/batch")
+    public ResponseEntity<List<SOULPatchOperationResult>> applySOULPatchBatch(
+            @RequestBody List<SOULPatchOperation> operations) {
+        if (operations.isEmpty() || operations.size() > MAX_BATCH_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, String.format(
+                    "a batch must contain between 1 and %d operations", MAX_BATCH_SIZE));
+        }
+        var author = userService.getCurrentAppUser().orElseThrow(() ->
+                new ResponseStatusException(HttpStatus.UNAUTHORIZED, "no current user"));
+        try {
+            return ResponseEntity.ok(service.applyBatch(operations, author));
+        } catch (BatchFailed e) {
+            return ResponseEntity.badRequest().body(e.getResults());
+        }
+    }
+
+    /**
+     * @param ifMatch optional ETags of {@link #getSOULPatch}, 412 if the soulpatch has been changed since
+     */
     @PutMapping("/soulpatches/{soulpatchId}")
-    public SOULPatch updateSOULPatch(@PathVariable Long soulpatchId,
-                                     @Valid @RequestBody SOULPatch soulPatch) {
-        return service.update(soulpatchId, soulPatch);
+    public ResponseEntity<SOULPatch> updateSOULPatch(@PathVariable Long soulpatchId,
+                                                     @Valid @RequestBody SOULPatch soulPatch,
+                                                     @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        try {
+            var updated = service.update(soulpatchId, soulPatch,
+                    (ifMatch != null) ? VersionTags.versions(ifMatch) : null);
+            return ResponseEntity.ok().eTag(VersionTags.eTag(updated.getUpdatedAt())).body(updated);
+        } catch (ResourceNotFound e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage(), e);
+        } catch (PreconditionFailed e) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, e.getMessage(), e);
+        }
     }
 
+    /**
+     * @param ifMatch optional ETags of {@link #getSOULPatch}, 412 if the soulpatch has been changed since
+     */
     @DeleteMapping("/soulpatches/{soulpatchId}")
-    public ResponseEntity<?> deleteSOULPatch(@PathVariable Long soulpatchId) {
-        service.deleteById(soulpatchId);
+    public ResponseEntity<?> deleteSOULPatch(@PathVariable Long soulpatchId,
+                                             @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        try {
+            service.deleteById(soulpatchId, (ifMatch != null) ? VersionTags.versions(ifMatch) : null);
+        } catch (ResourceNotFound e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage(), e);
+        } catch (PreconditionFailed e) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, e.getMessage(), e);
+        }
         return ResponseEntity.ok().build();
     }
+
+    private static ResponseStatusException notFound(Long soulpatchId) {
+        return new ResponseStatusException(HttpStatus.NOT_FOUND, String.format("SOULPatch Id: %d", soulpatchId));
+    }
 }
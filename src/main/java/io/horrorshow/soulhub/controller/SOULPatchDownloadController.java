@@ -0,0 +1,163 @@
+package io.horrorshow.soulhub.controller;
+
+import io.horrorshow.soulhub.data.AuditModel;
+import io.horrorshow.soulhub.data.SOULPatch;
+import io.horrorshow.soulhub.data.SPFile;
+import io.horrorshow.soulhub.data.util.SOULPatchesFetchFilter;
+import io.horrorshow.soulhub.data.util.StringUtils;
+import io.horrorshow.soulhub.exception.ResourceNotFound;
+import io.horrorshow.soulhub.service.SOULPatchArchiveCache;
+import io.horrorshow.soulhub.service.SOULPatchBundleService;
+import io.horrorshow.soulhub.service.SOULPatchService;
+import io.horrorshow.soulhub.service.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Raw downloads of soul files and soulpatch archives, with conditional GET and byte ranges.
+ * Archives are sent from the files of the {@link SOULPatchArchiveCache}, not from memory, but
+ * through the servlet output stream, there is no zero-copy sendfile. Bundles of many
+ * soulpatches are zipped while they're streamed.
+ */
+@RestController
+@RequestMapping("/api")
+public class SOULPatchDownloadController {
+
+    private final SOULPatchService service;
+    private final SOULPatchArchiveCache archiveCache;
+    private final SOULPatchBundleService bundleService;
+    private final UserService userService;
+
+    @Autowired
+    public SOULPatchDownloadController(SOULPatchService service,
+                                       SOULPatchArchiveCache archiveCache,
+                                       SOULPatchBundleService bundleService,
+                                       UserService userService) {
+        this.service = service;
+        this.archiveCache = archiveCache;
+        this.bundleService = bundleService;
+        this.userService = userService;
+    }
+
+    /**
+     * The entity tag derives from the file's version, so conditional requests are answered
+     * without loading the content
+     */
+    @GetMapping("/spfiles/{spFileId}/content")
+    public void getSPFileContent(@PathVariable Long spFileId, ServletWebRequest webRequest) throws IOException {
+        var updatedAt = service.findSpFileUpdatedAt(spFileId).orElseThrow(() -> spFileNotFound(spFileId));
+        if (webRequest.checkNotModified(VersionTags.eTag(updatedAt),
+                RangeResponses.lastModified(updatedAt))) {
+            return;
+        }
+
+        SPFile spFile = service.findSpFile(spFileId).orElseThrow(() -> spFileNotFound(spFileId));
+        byte[] content = Objects.toString(spFile.getFileContent(), "").getBytes(StandardCharsets.UTF_8);
+
+        var response = webRequest.getResponse();
+        response.setContentType("text/plain;charset=UTF-8");
+        setAttachment(webRequest.getResponse(), StringUtils.toValidFilename(spFile.getName()));
+        boolean downloaded = RangeResponses.write(webRequest, content.length,
+                VersionTags.eTag(spFile.getUpdatedAt()),
+                RangeResponses.lastModified(spFile.getUpdatedAt()),
+                (position, count, target) -> {
+                    var buffer = ByteBuffer.wrap(content, (int) position, (int) count);
+                    while (buffer.hasRemaining()) {
+                        target.write(buffer);
+                    }
+                });
+        if (downloaded) {
+            service.spFileDownloaded(spFile, userService.getCurrentAppUser().orElse(null));
+        }
+    }
+
+    private static ResponseStatusException spFileNotFound(Long spFileId) {
+        return new ResponseStatusException(HttpStatus.NOT_FOUND, String.format("SPFile id: %d", spFileId));
+    }
+
+    @GetMapping("/soulpatches/{soulpatchId}/archive")
+    public void getSOULPatchArchive(@PathVariable Long soulpatchId, ServletWebRequest webRequest) throws IOException {
+        SOULPatch soulPatch;
+        try {
+            soulPatch = service.findById(soulpatchId);
+        } catch (ResourceNotFound e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage(), e);
+        }
+
+        try (var archive = archiveCache.open(soulPatch)) {
+            webRequest.getResponse().setContentType("application/zip");
+            setAttachment(webRequest.getResponse(), StringUtils.toValidFilename(soulPatch.getName()) + ".zip");
+            // file changes don't touch the soulpatch itself
+            var updatedAt = Stream.concat(Stream.of(soulPatch), soulPatch.getSpFiles().stream())
+                    .map(AuditModel::getUpdatedAt)
+                    .filter(Objects::nonNull)
+                    .max(Comparable::compareTo)
+                    .orElse(null);
+            boolean downloaded = RangeResponses.write(webRequest, archive.getSize(), archive.getETag(),
+                    RangeResponses.lastModified(updatedAt), archive::transferTo);
+            if (downloaded) {
+                service.soulPatchDownloaded(soulPatch, userService.getCurrentAppUser().orElse(null));
+            }
+        }
+    }
+
+    /**
+     * One zip with a folder per soulpatch, either of the given ids or of the soulpatches
+     * matching the filter parameters.
+     *
+     * @param ids    soulpatch ids, the filter parameters are ignored if given
+     * @param user   author ids
+     * @param name   part of the soulpatch name
+     * @param search full text search
+     */
+    @GetMapping("/soulpatches/bundle")
+    public void getSOULPatchBundle(@RequestParam(required = false) List<Long> ids,
+                                   @RequestParam(required = false) List<Long> user,
+                                   @RequestParam(required = false) String name,
+                                   @RequestParam(required = false) String search,
+                                   HttpServletResponse response) throws IOException {
+        List<Long> soulPatchIds;
+        if (ids != null && !ids.isEmpty()) {
+            if (ids.size() > bundleService.getMaxSOULPatches()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, String.format(
+                        "a bundle can contain at most %d soulpatches", bundleService.getMaxSOULPatches()));
+            }
+            soulPatchIds = ids;
+        } else {
+            var filter = new SOULPatchesFetchFilter();
+            filter.setNamesFilter(name);
+            filter.setFullTextSearch(search);
+            if (user != null) {
+                try {
+                    filter.getUsersFilter().addAll(userService.findAllByIdOrThrow(user));
+                } catch (ResourceNotFound e) {
+                    throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage(), e);
+                }
+            }
+            soulPatchIds = bundleService.findIds(filter);
+        }
+
+        response.setContentType("application/zip");
+        setAttachment(response, "soulpatches.zip");
+        bundleService.writeBundle(soulPatchIds, userService.getCurrentAppUser().orElse(null),
+                response.getOutputStream());
+    }
+
+    private static void setAttachment(HttpServletResponse response, String filename) {
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.builder("attachment").filename(filename).build().toString());
+    }
+}
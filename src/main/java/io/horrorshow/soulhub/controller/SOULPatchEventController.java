@@ -0,0 +1,43 @@
+package io.horrorshow.soulhub.controller;
+
+import io.horrorshow.soulhub.exception.ServiceUnavailable;
+import io.horrorshow.soulhub.service.SOULPatchEventBroadcaster;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Set;
+
+@RestController
+@RequestMapping("/api")
+public class SOULPatchEventController {
+
+    private final SOULPatchEventBroadcaster broadcaster;
+
+    @Autowired
+    public SOULPatchEventController(SOULPatchEventBroadcaster broadcaster) {
+        this.broadcaster = broadcaster;
+    }
+
+    /**
+     * Server-sent events: "soulpatches" with a JSON array of {@link io.horrorshow.soulhub.data.records.SOULPatchUpdateRecord}s
+     * about once a second while anything changes, "overflow" if there were too many updates to send,
+     * the client should refetch what it shows.
+     *
+     * @param soulpatch ids of the soulpatches to watch, all if not given
+     */
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter getEvents(@RequestParam(required = false) Set<Long> soulpatch) {
+        try {
+            return broadcaster.subscribe(soulpatch != null ? soulpatch : Set.of());
+        } catch (ServiceUnavailable e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package io.horrorshow.soulhub.controller;
+
+import io.horrorshow.soulhub.data.records.SOULPatchRecordField;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * ETags of soulpatch resources from their updatedAt, the microseconds since the epoch in hex.
+ * Representations with selected fields get the fields appended, If-Match only compares the
+ * version part.
+ */
+class VersionTags {
+
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private VersionTags() {
+    }
+
+    static String eTag(LocalDateTime updatedAt) {
+        return '"' + version(updatedAt) + '"';
+    }
+
+    static String eTag(LocalDateTime updatedAt, Set<SOULPatchRecordField> fields) {
+        if (fields.equals(SOULPatchRecordField.ALL)) {
+            return eTag(updatedAt);
+        }
+        int mask = fields.stream().mapToInt(field -> 1 << field.ordinal()).sum();
+        return '"' + version(updatedAt) + '-' + Integer.toHexString(mask) + '"';
+    }
+
+    private static String version(LocalDateTime updatedAt) {
+        return Long.toHexString(ChronoUnit.MICROS.between(EPOCH, updatedAt));
+    }
+
+    /**
+     * @param ifMatch value of the If-Match header
+     * @return the versions of the listed ETags, null for "*" which matches any version.
+     * Weak and malformed tags never match
+     */
+    static Set<LocalDateTime> versions(String ifMatch) {
+        if (ifMatch.trim().equals("*")) {
+            return null;
+        }
+        Set<LocalDateTime> versions = new HashSet<>();
+        for (String tag : ifMatch.split(",")) {
+            String trimmed = tag.trim();
+            if (trimmed.length() < 2 || !trimmed.startsWith("\"") || !trimmed.endsWith("\"")) {
+                continue;
+            }
+            String version = trimmed.substring(1, trimmed.length() - 1).split("-", 2)[0];
+            try {
+                versions.add(EPOCH.plus(Long.parseLong(version, 16), ChronoUnit.MICROS));
+            } catch (NumberFormatException e) {
+                // not one of ours
+            }
+        }
+        return versions;
+    }
+}
@@ -1,9 +1,11 @@
 package io.horrorshow.soulhub.data;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
 import org.apache.lucene.analysis.core.LowerCaseFilterFactory;
 import org.apache.lucene.analysis.snowball.SnowballPorterFilterFactory;
 import org.apache.lucene.analysis.standard.StandardTokenizerFactory;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.search.annotations.Index;
 import org.hibernate.search.annotations.Parameter;
 import org.hibernate.search.annotations.*;
@@ -34,7 +36,19 @@ import static io.horrorshow.soulhub.data.SOULPatch.*;
 
         @javax.persistence.Index(
                 name = "soulpatches_author_index",
-                columnList = DB_COL_AUTHOR)
+                columnList = DB_COL_AUTHOR),
+
+        @javax.persistence.Index(
+                name = "soulpatches_trending_score_index",
+                columnList = DB_COL_TRENDING_SCORE),
+
+        @javax.persistence.Index(
+                name = "soulpatches_quality_score_index",
+                columnList = DB_COL_QUALITY_SCORE),
+
+        @javax.persistence.Index(
+                name = "soulpatches_updated_at_index",
+                columnList = DB_COL_UPDATED_AT + ", " + DB_COL_ID)
 })
 @Data
 @EqualsAndHashCode(callSuper = false, onlyExplicitlyIncluded = true)
@@ -55,6 +69,12 @@ public class SOULPatch extends AuditModel {
     public static final String DB_COL_DESCRIPTION = "description";
     public static final String DB_COL_AUTHOR = "author";
     public static final String DB_COL_DOWNLOADS = "no_views";
+    public static final String DB_COL_RATING_COUNT = "rating_count";
+    public static final String DB_COL_RATING_SUM = "rating_sum";
+    public static final String DB_COL_TRENDING_SCORE = "trending_score";
+    public static final String DB_COL_QUALITY_SCORE = "quality_score";
+    /** column of {@link AuditModel#getUpdatedAt()} */
+    public static final String DB_COL_UPDATED_AT = "updated_at";
     public static final String SOULPATCH_ANALYZER = "soulpatch_analyzer";
     private static final long serialVersionUID = -6746949290547828924L;
     @Id
@@ -85,13 +105,40 @@ public class SOULPatch extends AuditModel {
     @JoinColumn(name = DB_COL_AUTHOR, nullable = false)
     private AppUser author;
 
-    @Column(name = DB_COL_DOWNLOADS)
+    /**
+     * maintained by {@link io.horrorshow.soulhub.service.DownloadEventLog}
+     */
+    @Column(name = DB_COL_DOWNLOADS, updatable = false)
     private Long noViews = 0L;
 
-    @OneToMany(mappedBy = SOULPatchRating_.SOUL_PATCH, cascade = CascadeType.ALL, fetch = FetchType.EAGER, orphanRemoval = true)
+    @OneToMany(mappedBy = SOULPatchRating_.SOUL_PATCH, cascade = CascadeType.ALL, fetch = FetchType.LAZY, orphanRemoval = true)
     @ToString.Exclude
+    @JsonIgnore
     private Set<SOULPatchRating> ratings = new HashSet<>();
 
+    /**
+     * number and sum of all ratings, maintained by the rating upsert in
+     * {@link io.horrorshow.soulhub.data.repository.SOULPatchRatingRepository}
+     */
+    @Column(name = DB_COL_RATING_COUNT, nullable = false, insertable = false, updatable = false)
+    @ColumnDefault("0")
+    private Long ratingCount = 0L;
+
+    @Column(name = DB_COL_RATING_SUM, nullable = false, insertable = false, updatable = false)
+    @ColumnDefault("0")
+    private Long ratingSum = 0L;
+
+    /**
+     * sort keys maintained by {@link io.horrorshow.soulhub.service.RankingService}
+     */
+    @Column(name = DB_COL_TRENDING_SCORE, nullable = false, insertable = false, updatable = false)
+    @ColumnDefault("0")
+    private Double trendingScore = 0d;
+
+    @Column(name = DB_COL_QUALITY_SCORE, nullable = false, insertable = false, updatable = false)
+    @ColumnDefault("0")
+    private Double qualityScore = 0d;
+
     public List<SPFile> getSpFiles(SPFile.FileType fileType) {
         return spFiles.stream().filter(
                 spFile -> spFile.getFileType()
@@ -99,7 +146,6 @@ public class SOULPatch extends AuditModel {
     }
 
     public double getAverageRating() {
-        return getRatings().stream().mapToDouble(SOULPatchRating::getStars)
-                .average().orElse(0.0d);
+        return (ratingCount == null || ratingCount == 0) ? 0.0d : (double) ratingSum / ratingCount;
     }
 }
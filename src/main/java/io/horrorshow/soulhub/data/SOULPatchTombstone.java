@@ -0,0 +1,43 @@
+package io.horrorshow.soulhub.data;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+import static io.horrorshow.soulhub.data.SOULPatchTombstone.*;
+
+/**
+ * Marks a deleted soulpatch for the change feed, purged after the tombstone retention.
+ */
+@Entity
+@Data
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = DB_TABLE_NAME,
+        indexes = {
+                @javax.persistence.Index(name = "soulpatch_tombstones_deleted_at_index",
+                        columnList = DB_COL_DELETED_AT + ", " + DB_COL_SOULPATCH)
+        })
+public class SOULPatchTombstone implements Serializable {
+
+    private static final long serialVersionUID = 2284690139021946873L;
+
+    public static final String DB_TABLE_NAME = "soulpatch_tombstones";
+
+    public static final String DB_COL_SOULPATCH = "soulpatch_id";
+    public static final String DB_COL_DELETED_AT = "deleted_at";
+
+    @Id
+    @Column(name = DB_COL_SOULPATCH, nullable = false, updatable = false)
+    @EqualsAndHashCode.Include
+    private Long soulPatchId;
+
+    @Column(name = DB_COL_DELETED_AT, nullable = false)
+    private LocalDateTime deletedAt;
+}
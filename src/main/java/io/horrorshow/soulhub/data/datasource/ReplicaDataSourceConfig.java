@@ -0,0 +1,93 @@
+package io.horrorshow.soulhub.data.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * Splits the datasource into a primary pool (spring.datasource) and a replica pool
+ * (soulhub.datasource.replica). Transactions marked read-only are served by the replica,
+ * see {@link ReplicaRoutingDataSource}.
+ * <p>
+ * Both pools can point at any two databases with the same schema, e.g. two local
+ * postgres instances or two H2 databases (with lag-query set to "SELECT 0").
+ */
+@Configuration
+@ConditionalOnProperty(value = "soulhub.datasource.replica.enabled", havingValue = "true")
+@Log4j2
+public class ReplicaDataSourceConfig {
+
+    public static final String REPLICA_PREFIX = "soulhub.datasource.replica";
+
+    private static final String DEFAULT_REPLICA_POOL_NAME = "HikariReplicaPool";
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties,
+                                              ObjectProvider<MeterRegistry> meterRegistry) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class).build();
+        meterRegistry.ifAvailable(registry ->
+                dataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry)));
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties(REPLICA_PREFIX + ".hikari")
+    public HikariDataSource replicaDataSource(Environment environment,
+                                              ObjectProvider<MeterRegistry> meterRegistry) {
+        DataSourceProperties properties = Binder.get(environment)
+                .bind(REPLICA_PREFIX, DataSourceProperties.class)
+                .orElseThrow(() -> new IllegalStateException(
+                        REPLICA_PREFIX + " is enabled but no replica datasource is configured"));
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class).build();
+        dataSource.setPoolName(DEFAULT_REPLICA_POOL_NAME);
+        meterRegistry.ifAvailable(registry ->
+                dataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry)));
+        log.info("read replica configured: {}", properties.getUrl());
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(
+            @Qualifier("primaryDataSource") DataSource primaryDataSource,
+            @Qualifier("replicaDataSource") DataSource replicaDataSource) {
+        return new ReplicaRoutingDataSource(primaryDataSource, replicaDataSource);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(
+            @Qualifier("replicaDataSource") DataSource replicaDataSource,
+            ReplicaRoutingDataSource replicaRoutingDataSource,
+            @Value("${" + REPLICA_PREFIX + ".lag-query:" + ReplicaLagMonitor.DEFAULT_LAG_QUERY + "}")
+                    String lagQuery,
+            @Value("${" + REPLICA_PREFIX + ".max-lag-ms:10000}") long maxLagMillis,
+            ObjectProvider<MeterRegistry> meterRegistry) {
+        ReplicaLagMonitor monitor = new ReplicaLagMonitor(
+                replicaDataSource, replicaRoutingDataSource, lagQuery, maxLagMillis);
+        meterRegistry.ifAvailable(monitor::bindTo);
+        return monitor;
+    }
+}
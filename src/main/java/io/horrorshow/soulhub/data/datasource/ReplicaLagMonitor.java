@@ -0,0 +1,86 @@
+package io.horrorshow.soulhub.data.datasource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Periodically measures the replication lag of the replica and takes the replica
+ * out of the routing while it lags behind more than the configured maximum or
+ * can't be reached at all.
+ */
+@Log4j2
+public class ReplicaLagMonitor {
+
+    /**
+     * Postgres standby lag in seconds. The age of the last replayed transaction grows while the
+     * primary has no writes, so a replica which replayed all it received has no lag.
+     */
+    public static final String DEFAULT_LAG_QUERY = "SELECT COALESCE("
+            + "CASE WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 "
+            + "ELSE EXTRACT(EPOCH FROM (now() - pg_last_xact_replay_timestamp())) END, 0)";
+
+    private static final int QUERY_TIMEOUT_SECONDS = 2;
+
+    private final JdbcTemplate replicaJdbcTemplate;
+    private final ReplicaRoutingDataSource routingDataSource;
+    private final String lagQuery;
+    private final long maxLagMillis;
+
+    private final AtomicLong lagMillis = new AtomicLong();
+
+    public ReplicaLagMonitor(DataSource replica,
+                             ReplicaRoutingDataSource routingDataSource,
+                             String lagQuery,
+                             long maxLagMillis) {
+        this.replicaJdbcTemplate = new JdbcTemplate(replica);
+        this.replicaJdbcTemplate.setQueryTimeout(QUERY_TIMEOUT_SECONDS);
+        this.routingDataSource = routingDataSource;
+        this.lagQuery = lagQuery;
+        this.maxLagMillis = maxLagMillis;
+    }
+
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("soulhub.datasource.replica.lag", lagMillis, AtomicLong::get)
+                .description("replication lag of the read replica in milliseconds")
+                .baseUnit("milliseconds")
+                .register(registry);
+        Gauge.builder("soulhub.datasource.replica.available", routingDataSource,
+                ds -> ds.isReplicaAvailable() ? 1d : 0d)
+                .description("1 if read-only transactions are routed to the replica, 0 if they fall back to the primary")
+                .register(registry);
+    }
+
+    @Scheduled(fixedDelayString = "${soulhub.datasource.replica.lag-check-interval-ms:5000}")
+    public void checkReplicaLag() {
+        boolean available;
+        try {
+            Double lagSeconds = replicaJdbcTemplate.queryForObject(lagQuery, Double.class);
+            long lag = Math.round(((lagSeconds != null) ? lagSeconds : 0d) * 1000d);
+            lagMillis.set(lag);
+            available = lag <= maxLagMillis;
+            if (!available) {
+                log.warn("replica lags {} ms behind primary (max {} ms)", lag, maxLagMillis);
+            }
+        } catch (DataAccessException e) {
+            log.warn("replica lag check failed: {}", e.getMessage());
+            available = false;
+        }
+
+        if (available != routingDataSource.isReplicaAvailable()) {
+            log.info("read-only transactions are now routed to {}",
+                    available ? ReplicaRoutingDataSource.Route.REPLICA : ReplicaRoutingDataSource.Route.PRIMARY);
+        }
+        routingDataSource.setReplicaAvailable(available);
+    }
+
+    public long getLagMillis() {
+        return lagMillis.get();
+    }
+}
@@ -5,7 +5,8 @@ import io.horrorshow.soulhub.data.SOULPatch;
 import io.horrorshow.soulhub.data.SPFile;
 
 import java.io.Serializable;
-import java.util.Base64;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 public class RecordsConverter implements Serializable {
@@ -31,10 +32,14 @@ public class RecordsConverter implements Serializable {
                 spFile.getName(),
                 spFile.getCreatedAt(),
                 spFile.getUpdatedAt(),
-                Base64.getEncoder().encodeToString(spFile.getFileContent().getBytes())
+                contentBytes(spFile.getFileContent())
         );
     }
 
+    public static byte[] contentBytes(String fileContent) {
+        return Objects.toString(fileContent, "").getBytes(StandardCharsets.UTF_8);
+    }
+
     public static UserRecord newUserRecord(AppUser user) {
         return new UserRecord(
                 user.getUserName(),
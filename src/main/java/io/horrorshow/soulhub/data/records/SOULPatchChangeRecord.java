@@ -0,0 +1,27 @@
+package io.horrorshow.soulhub.data.records;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@EqualsAndHashCode
+@Getter
+@AllArgsConstructor
+@ToString
+public class SOULPatchChangeRecord {
+
+    public static final String TYPE_UPSERT = "UPSERT";
+    public static final String TYPE_DELETE = "DELETE";
+
+    private final Long id;
+    private final String type;
+    private final LocalDateTime changedAt;
+    /** the current state for upserts, absent for deletes */
+    private final SOULPatchRecord soulPatch;
+
+}
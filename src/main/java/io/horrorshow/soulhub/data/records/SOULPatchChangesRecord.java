@@ -0,0 +1,22 @@
+package io.horrorshow.soulhub.data.records;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+@EqualsAndHashCode
+@Getter
+@AllArgsConstructor
+@ToString
+public class SOULPatchChangesRecord {
+
+    private final List<SOULPatchChangeRecord> changes;
+    /** where to continue, the position after the last change */
+    private final String cursor;
+    /** more changes are available right away */
+    private final boolean more;
+
+}
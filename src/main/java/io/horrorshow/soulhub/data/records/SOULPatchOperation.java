@@ -0,0 +1,26 @@
+package io.horrorshow.soulhub.data.records;
+
+import io.horrorshow.soulhub.data.SOULPatch;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One item of a batch request, see {@link io.horrorshow.soulhub.service.SOULPatchService#applyBatch}
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SOULPatchOperation {
+
+    public enum Op {
+        CREATE, UPDATE, DELETE
+    }
+
+    private Op op;
+    /** the soulpatch to update or delete */
+    private Long id;
+    /** name, description and (on create) files */
+    private SOULPatch soulPatch;
+
+}
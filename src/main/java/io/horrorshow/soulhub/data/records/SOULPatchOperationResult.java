@@ -0,0 +1,24 @@
+package io.horrorshow.soulhub.data.records;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@EqualsAndHashCode
+@Getter
+@AllArgsConstructor
+@ToString
+public class SOULPatchOperationResult {
+
+    /** position of the operation in the batch */
+    private final int index;
+    private final SOULPatchOperation.Op op;
+    private final Long id;
+    /** http status of the operation on its own, 424 if it was rolled back because of another one */
+    private final int status;
+    private final String error;
+
+}
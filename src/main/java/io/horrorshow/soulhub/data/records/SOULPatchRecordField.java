@@ -0,0 +1,61 @@
+package io.horrorshow.soulhub.data.records;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Optional fields of a {@link SOULPatchRecord}, selectable with the "fields" parameter of the
+ * REST api. The id is always included.
+ */
+public enum SOULPatchRecordField {
+
+    NAME("name"),
+    DESCRIPTION("description"),
+    FILES("files"),
+    /** Base64 encoded content of the files, implies {@link #FILES} */
+    FILE_CONTENT("files.content"),
+    CREATED_BY("createdBy"),
+    CREATED_AT("createdAt"),
+    UPDATED_AT("updatedAt");
+
+    public static final Set<SOULPatchRecordField> ALL =
+            Collections.unmodifiableSet(EnumSet.allOf(SOULPatchRecordField.class));
+    /** all but the file contents, the default of listings */
+    public static final Set<SOULPatchRecordField> METADATA =
+            Collections.unmodifiableSet(EnumSet.complementOf(EnumSet.of(FILE_CONTENT)));
+
+    private final String parameter;
+
+    SOULPatchRecordField(String parameter) {
+        this.parameter = parameter;
+    }
+
+    public String getParameter() {
+        return parameter;
+    }
+
+    /**
+     * @param fields comma separated field names, e.g. "name,files.content"
+     * @throws IllegalArgumentException on unknown field names
+     */
+    public static Set<SOULPatchRecordField> parse(String fields) {
+        var result = EnumSet.noneOf(SOULPatchRecordField.class);
+        for (String name : fields.split(",")) {
+            String trimmed = name.trim();
+            if (trimmed.isEmpty() || trimmed.equals("id")) {
+                continue;
+            }
+            var field = Arrays.stream(values())
+                    .filter(f -> f.parameter.equals(trimmed))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException(String.format("unknown field '%s'", trimmed)));
+            result.add(field);
+        }
+        if (result.contains(FILE_CONTENT)) {
+            result.add(FILES);
+        }
+        return result;
+    }
+}
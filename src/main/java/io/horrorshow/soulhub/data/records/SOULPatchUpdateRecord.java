@@ -0,0 +1,23 @@
+package io.horrorshow.soulhub.data.records;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Set;
+
+@EqualsAndHashCode
+@Getter
+@AllArgsConstructor
+@ToString
+public class SOULPatchUpdateRecord {
+
+    private final Long id;
+    /** CREATED, UPDATED, DELETED, RATED and/or DOWNLOADED */
+    private final Set<String> changes;
+    /** new downloads and ratings since the last update */
+    private final long downloads;
+    private final long ratings;
+
+}
@@ -1,5 +1,6 @@
 package io.horrorshow.soulhub.data.records;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
@@ -7,6 +8,7 @@ import lombok.ToString;
 
 import java.time.LocalDateTime;
 
+@JsonInclude(JsonInclude.Include.NON_NULL)
 @EqualsAndHashCode
 @Getter
 @AllArgsConstructor
@@ -18,6 +20,9 @@ public class SPFileRecord {
     private final String filename;
     private final LocalDateTime createdAt;
     private final LocalDateTime updatedAt;
-    private final String content;
+    /**
+     * file content as UTF-8 bytes; base64 in JSON, a raw byte string in CBOR and Smile
+     */
+    private final byte[] content;
 
 }
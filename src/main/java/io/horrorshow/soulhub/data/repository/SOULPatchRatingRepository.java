@@ -0,0 +1,63 @@
+package io.horrorshow.soulhub.data.repository;
+
+import io.horrorshow.soulhub.data.SOULPatchRating;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface SOULPatchRatingRepository extends JpaRepository<SOULPatchRating, Long> {
+
+    /**
+     * Inserts or updates the rating of the user and adjusts the stored rating aggregate of the
+     * soulpatch, in one statement and without loading either entity (postgres only). A row
+     * created by the insert has no xmax, that tells inserts from updates of the conflict.
+     * <p>
+     * Concurrent ratings of the same user for the same soulpatch may skew the rating sum,
+     * it is recomputed from soulpatch_ratings periodically.
+     *
+     * @return the new rating aggregate of the soulpatch and whether the rating was inserted
+     */
+    @Query(nativeQuery = true, value =
+            "WITH old AS (" +
+            "  SELECT stars FROM soulpatch_ratings" +
+            "  WHERE soulpatch_id = :soulPatchId AND app_user_id = :appUserId" +
+            "), upsert AS (" +
+            "  INSERT INTO soulpatch_ratings (id, soulpatch_id, app_user_id, stars, created_at, updated_at)" +
+            "  VALUES (nextval('hibernate_sequence'), :soulPatchId, :appUserId, :stars, now(), now())" +
+            "  ON CONFLICT (soulpatch_id, app_user_id)" +
+            "  DO UPDATE SET stars = EXCLUDED.stars, updated_at = EXCLUDED.updated_at" +
+            "  RETURNING stars, (xmax = 0) AS inserted" +
+            ") " +
+            "UPDATE soulpatches SET" +
+            "  rating_count = rating_count + CASE WHEN (SELECT inserted FROM upsert) THEN 1 ELSE 0 END," +
+            "  rating_sum = rating_sum + (SELECT stars FROM upsert) - COALESCE((SELECT stars FROM old), 0) " +
+            "WHERE id = :soulPatchId " +
+            "RETURNING rating_count AS \"ratingCount\", rating_sum AS \"ratingSum\"," +
+            "  (SELECT inserted FROM upsert) AS \"inserted\"")
+    RatingAggregate upsertRating(@Param("soulPatchId") Long soulPatchId,
+                                 @Param("appUserId") Long appUserId,
+                                 @Param("stars") Integer stars);
+
+    /**
+     * @return [day (java.sql.Date), count] pairs of ratings given since the given time
+     */
+    @Query("SELECT CAST(r.createdAt AS date), COUNT(r) FROM SOULPatchRating r " +
+            "WHERE r.createdAt >= :since GROUP BY CAST(r.createdAt AS date)")
+    List<Object[]> countCreatedPerDaySince(@Param("since") LocalDateTime since);
+
+    interface RatingAggregate {
+        Long getRatingCount();
+
+        Long getRatingSum();
+
+        /**
+         * @return true if the user hadn't rated the soulpatch before, false if the rating was updated
+         */
+        Boolean getInserted();
+    }
+}
@@ -0,0 +1,26 @@
+package io.horrorshow.soulhub.data.repository;
+
+import io.horrorshow.soulhub.data.records.SOULPatchRecord;
+import io.horrorshow.soulhub.data.records.SOULPatchRecordField;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * {@link SOULPatchRecord}s read straight from the columns of the requested fields, without
+ * loading the entities and their file contents.
+ */
+public interface SOULPatchRecordQueries {
+
+    /**
+     * @return records in the order of the ids, ids of missing soulpatches are skipped.
+     * Fields which weren't requested are null
+     */
+    List<SOULPatchRecord> findRecords(List<Long> ids, Set<SOULPatchRecordField> fields);
+
+    /**
+     * @param afterId only ids greater than this, null for all
+     * @return at most limit soulpatch ids in ascending order, skipping the first offset
+     */
+    List<Long> findIdsOrderedById(Long afterId, int offset, int limit);
+}
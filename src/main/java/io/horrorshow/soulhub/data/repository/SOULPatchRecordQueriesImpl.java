@@ -0,0 +1,130 @@
+package io.horrorshow.soulhub.data.repository;
+
+import io.horrorshow.soulhub.data.*;
+import io.horrorshow.soulhub.data.records.RecordsConverter;
+import io.horrorshow.soulhub.data.records.SOULPatchRecord;
+import io.horrorshow.soulhub.data.records.SOULPatchRecordField;
+import io.horrorshow.soulhub.data.records.SPFileRecord;
+import io.horrorshow.soulhub.data.records.UserRecord;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static io.horrorshow.soulhub.data.records.SOULPatchRecordField.*;
+
+public class SOULPatchRecordQueriesImpl implements SOULPatchRecordQueries {
+
+    private static final String AUTHOR_NAME = "authorName";
+    private static final String AUTHOR_EMAIL = "authorEmail";
+    private static final String SOULPATCH_ID = "soulPatchId";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<SOULPatchRecord> findRecords(List<Long> ids, Set<SOULPatchRecordField> fields) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Set<SPFileRecord>> files = fields.contains(FILES)
+                ? findFileRecords(ids, fields.contains(FILE_CONTENT))
+                : Map.of();
+
+        var cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> cq = cb.createTupleQuery();
+        Root<SOULPatch> root = cq.from(SOULPatch.class);
+        List<Selection<?>> selections = new ArrayList<>();
+        selections.add(root.get(SOULPatch_.ID).alias(SOULPatch_.ID));
+        if (fields.contains(NAME)) {
+            selections.add(root.get(SOULPatch_.NAME).alias(SOULPatch_.NAME));
+        }
+        if (fields.contains(DESCRIPTION)) {
+            selections.add(root.get(SOULPatch_.DESCRIPTION).alias(SOULPatch_.DESCRIPTION));
+        }
+        if (fields.contains(CREATED_BY)) {
+            Join<SOULPatch, AppUser> author = root.join(SOULPatch_.AUTHOR);
+            selections.add(author.get(AppUser_.USER_NAME).alias(AUTHOR_NAME));
+            selections.add(author.get(AppUser_.EMAIL).alias(AUTHOR_EMAIL));
+        }
+        if (fields.contains(CREATED_AT)) {
+            selections.add(root.get(AuditModel_.CREATED_AT).alias(AuditModel_.CREATED_AT));
+        }
+        if (fields.contains(UPDATED_AT)) {
+            selections.add(root.get(AuditModel_.UPDATED_AT).alias(AuditModel_.UPDATED_AT));
+        }
+        cq.multiselect(selections).where(root.get(SOULPatch_.ID).in(ids));
+
+        Map<Long, SOULPatchRecord> records = new HashMap<>();
+        for (Tuple tuple : entityManager.createQuery(cq).getResultList()) {
+            Long id = tuple.get(SOULPatch_.ID, Long.class);
+            records.put(id, new SOULPatchRecord(
+                    id,
+                    fields.contains(NAME) ? tuple.get(SOULPatch_.NAME, String.class) : null,
+                    fields.contains(DESCRIPTION) ? tuple.get(SOULPatch_.DESCRIPTION, String.class) : null,
+                    fields.contains(FILES) ? files.getOrDefault(id, new HashSet<>()) : null,
+                    fields.contains(CREATED_BY)
+                            ? new UserRecord(tuple.get(AUTHOR_NAME, String.class), tuple.get(AUTHOR_EMAIL, String.class))
+                            : null,
+                    fields.contains(CREATED_AT) ? tuple.get(AuditModel_.CREATED_AT, LocalDateTime.class) : null,
+                    fields.contains(UPDATED_AT) ? tuple.get(AuditModel_.UPDATED_AT, LocalDateTime.class) : null));
+        }
+        return ids.stream()
+                .map(records::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Long> findIdsOrderedById(Long afterId, int offset, int limit) {
+        var cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> cq = cb.createQuery(Long.class);
+        Root<SOULPatch> root = cq.from(SOULPatch.class);
+        cq.select(root.get(SOULPatch_.ID)).orderBy(cb.asc(root.get(SOULPatch_.ID)));
+        if (afterId != null) {
+            cq.where(cb.greaterThan(root.get(SOULPatch_.ID), afterId));
+        }
+        return entityManager.createQuery(cq)
+                .setFirstResult(offset)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    private Map<Long, Set<SPFileRecord>> findFileRecords(List<Long> soulPatchIds, boolean withContent) {
+        var cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> cq = cb.createTupleQuery();
+        Root<SPFile> root = cq.from(SPFile.class);
+        List<Selection<?>> selections = new ArrayList<>(List.of(
+                root.get(SPFile_.SOUL_PATCH).get(SOULPatch_.ID).alias(SOULPATCH_ID),
+                root.get(SPFile_.ID).alias(SPFile_.ID),
+                root.get(SPFile_.FILE_TYPE).alias(SPFile_.FILE_TYPE),
+                root.get(SPFile_.NAME).alias(SPFile_.NAME),
+                root.get(AuditModel_.CREATED_AT).alias(AuditModel_.CREATED_AT),
+                root.get(AuditModel_.UPDATED_AT).alias(AuditModel_.UPDATED_AT)));
+        if (withContent) {
+            selections.add(root.get(SPFile_.FILE_CONTENT).alias(SPFile_.FILE_CONTENT));
+        }
+        cq.multiselect(selections).where(root.get(SPFile_.SOUL_PATCH).get(SOULPatch_.ID).in(soulPatchIds));
+
+        Map<Long, Set<SPFileRecord>> files = new HashMap<>();
+        for (Tuple tuple : entityManager.createQuery(cq).getResultList()) {
+            var fileType = tuple.get(SPFile_.FILE_TYPE, SPFile.FileType.class);
+            var record = new SPFileRecord(
+                    tuple.get(SPFile_.ID, Long.class),
+                    (fileType != null) ? fileType.toString() : "",
+                    tuple.get(SPFile_.NAME, String.class),
+                    tuple.get(AuditModel_.CREATED_AT, LocalDateTime.class),
+                    tuple.get(AuditModel_.UPDATED_AT, LocalDateTime.class),
+                    withContent ? RecordsConverter.contentBytes(tuple.get(SPFile_.FILE_CONTENT, String.class)) : null);
+            files.computeIfAbsent(tuple.get(SOULPATCH_ID, Long.class), id -> new HashSet<>()).add(record);
+        }
+        return files;
+    }
+}
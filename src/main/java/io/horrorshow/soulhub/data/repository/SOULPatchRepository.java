@@ -4,13 +4,20 @@ import io.horrorshow.soulhub.data.SOULPatch;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.LockModeType;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 
 @Repository
-public interface SOULPatchRepository extends JpaRepository<SOULPatch, Long> {
+public interface SOULPatchRepository extends JpaRepository<SOULPatch, Long>, SOULPatchRecordQueries {
 
     Page<SOULPatch> findSOULPatchesByAuthorIdInAndNameContainingIgnoreCase
             (Set<Long> authorId, String nameFilter, Pageable pageable);
@@ -30,7 +37,41 @@ public interface SOULPatchRepository extends JpaRepository<SOULPatch, Long> {
     long countSOULPatchesByNameContainingIgnoreCase
             (String nameFilter);
 
-    @Query("SELECT SUM (sp.noViews) FROM SOULPatch sp")
+    @Query("SELECT sp.updatedAt FROM SOULPatch sp WHERE sp.id = :id")
+    Optional<LocalDateTime> findUpdatedAtById(@Param("id") Long id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT sp FROM SOULPatch sp WHERE sp.id = :id")
+    Optional<SOULPatch> findByIdForUpdate(@Param("id") Long id);
+
+    @Query("SELECT COALESCE(SUM (sp.noViews), 0) FROM SOULPatch sp")
     long totalNoSOULPatchDownloads();
 
+    /**
+     * @return [id, updatedAt] pairs of soulpatches updated after the position (updatedAt, id) and
+     * before until, in that order. The first condition alone bounds the range scan of the
+     * updated_at index
+     */
+    @Query("SELECT sp.id, sp.updatedAt FROM SOULPatch sp " +
+            "WHERE sp.updatedAt >= :at AND (sp.updatedAt > :at OR sp.id > :id) AND sp.updatedAt < :until " +
+            "ORDER BY sp.updatedAt, sp.id")
+    List<Object[]> findUpdatedAfter(@Param("at") LocalDateTime at,
+                                    @Param("id") Long id,
+                                    @Param("until") LocalDateTime until,
+                                    Pageable pageable);
+
+    /**
+     * Marks the soulpatch as updated when its files change
+     */
+    @Modifying
+    @Query("UPDATE SOULPatch sp SET sp.updatedAt = :at WHERE sp.id = :id AND sp.updatedAt < :at")
+    int touch(@Param("id") Long id, @Param("at") LocalDateTime at);
+
+    /**
+     * @return [day (java.sql.Date), count] pairs of soulpatches created since the given time
+     */
+    @Query("SELECT CAST(sp.createdAt AS date), COUNT(sp) FROM SOULPatch sp " +
+            "WHERE sp.createdAt >= :since GROUP BY CAST(sp.createdAt AS date)")
+    List<Object[]> countCreatedPerDaySince(@Param("since") LocalDateTime since);
+
 }
@@ -0,0 +1,32 @@
+package io.horrorshow.soulhub.data.repository;
+
+import io.horrorshow.soulhub.data.SOULPatchTombstone;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface SOULPatchTombstoneRepository extends JpaRepository<SOULPatchTombstone, Long> {
+
+    /**
+     * @return tombstones deleted after the position (deletedAt, soulPatchId) and before until,
+     * in that order
+     */
+    @Query("SELECT t FROM SOULPatchTombstone t " +
+            "WHERE t.deletedAt >= :at AND (t.deletedAt > :at OR t.soulPatchId > :id) AND t.deletedAt < :until " +
+            "ORDER BY t.deletedAt, t.soulPatchId")
+    List<SOULPatchTombstone> findDeletedAfter(@Param("at") LocalDateTime at,
+                                              @Param("id") Long id,
+                                              @Param("until") LocalDateTime until,
+                                              Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM SOULPatchTombstone t WHERE t.deletedAt < :before")
+    int deleteDeletedBefore(@Param("before") LocalDateTime before);
+}
@@ -2,8 +2,19 @@ package io.horrorshow.soulhub.data.repository;
 
 import io.horrorshow.soulhub.data.SPFile;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Optional;
+
 @Repository
 public interface SPFileRepository extends JpaRepository<SPFile, Long> {
+
+    /**
+     * The version of a file for conditional requests, without loading its content
+     */
+    @Query("SELECT f.updatedAt FROM SPFile f WHERE f.id = :id")
+    Optional<LocalDateTime> findUpdatedAtById(@Param("id") Long id);
 }
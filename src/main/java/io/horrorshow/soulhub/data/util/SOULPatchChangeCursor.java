@@ -0,0 +1,53 @@
+package io.horrorshow.soulhub.data.util;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Position in the change feed, the time of a change and the id of the changed soulpatch.
+ * Encoded as opaque url safe string for the REST api ("cursor" parameter).
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+public class SOULPatchChangeCursor {
+
+    /** before every change, a full sync */
+    public static final SOULPatchChangeCursor START =
+            new SOULPatchChangeCursor(LocalDateTime.of(1970, 1, 1, 0, 0), 0L);
+
+    private final LocalDateTime changedAt;
+    private final Long id;
+
+    private SOULPatchChangeCursor(LocalDateTime changedAt, Long id) {
+        this.changedAt = changedAt;
+        this.id = id;
+    }
+
+    public static SOULPatchChangeCursor of(LocalDateTime changedAt, Long id) {
+        return new SOULPatchChangeCursor(changedAt, id);
+    }
+
+    public String encode() {
+        String plain = id + ":" + changedAt;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(plain.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public static SOULPatchChangeCursor decode(String cursor) {
+        try {
+            String plain = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = plain.split(":", 2);
+            return new SOULPatchChangeCursor(LocalDateTime.parse(parts[1]), Long.valueOf(parts[0]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException(String.format("invalid cursor '%s'", cursor), e);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package io.horrorshow.soulhub.data.util;
+
+import io.horrorshow.soulhub.data.SOULPatch;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * Position after a soulpatch in a {@link SOULPatchSort} order, for keyset pagination.
+ * Encoded as opaque url safe string for the REST api ("cursor" parameter).
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+public class SOULPatchCursor {
+
+    private final SOULPatchSort sort;
+    /** the sort key of the soulpatch, type depends on the sort */
+    private final Comparable<?> value;
+    private final Long id;
+
+    private SOULPatchCursor(SOULPatchSort sort, Comparable<?> value, Long id) {
+        this.sort = sort;
+        this.value = value;
+        this.id = id;
+    }
+
+    public static SOULPatchCursor after(SOULPatch soulPatch, SOULPatchSort sort) {
+        return at(sort, sortKey(soulPatch, sort), soulPatch.getId());
+    }
+
+    /**
+     * @param value the sort key as selected from the database, see {@link #sortKey(SOULPatch, SOULPatchSort)}
+     */
+    public static SOULPatchCursor at(SOULPatchSort sort, Comparable<?> value, Long id) {
+        return new SOULPatchCursor(sort, value, id);
+    }
+
+    /**
+     * @return the sort key as the database sorts it, null names and download counters
+     * are sorted as "" and 0
+     */
+    public static Comparable<?> sortKey(SOULPatch soulPatch, SOULPatchSort sort) {
+        switch (sort) {
+            case NAME:
+                return Objects.toString(soulPatch.getName(), "");
+            case NEWEST:
+                return soulPatch.getCreatedAt();
+            case DOWNLOADS:
+                return Objects.requireNonNullElse(soulPatch.getNoViews(), 0L);
+            case TOP_RATED:
+                return soulPatch.getQualityScore();
+            case TRENDING:
+                return soulPatch.getTrendingScore();
+            default:
+                throw new IllegalArgumentException(sort.name());
+        }
+    }
+
+    public String encode() {
+        String plain = sort.name() + ":" + id + ":" + value;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(plain.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public static SOULPatchCursor decode(String cursor) {
+        try {
+            String plain = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = plain.split(":", 3);
+            SOULPatchSort sort = SOULPatchSort.valueOf(parts[0]);
+            Long id = Long.valueOf(parts[1]);
+            return new SOULPatchCursor(sort, parseValue(sort, parts[2]), id);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException(String.format("invalid cursor '%s'", cursor), e);
+        }
+    }
+
+    private static Comparable<?> parseValue(SOULPatchSort sort, String value) {
+        switch (sort) {
+            case NAME:
+                return value;
+            case NEWEST:
+                return LocalDateTime.parse(value);
+            case DOWNLOADS:
+                return Long.valueOf(value);
+            default:
+                return Double.valueOf(value);
+        }
+    }
+}
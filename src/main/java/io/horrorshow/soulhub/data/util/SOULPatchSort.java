@@ -0,0 +1,50 @@
+package io.horrorshow.soulhub.data.util;
+
+import io.horrorshow.soulhub.data.AuditModel_;
+import io.horrorshow.soulhub.data.SOULPatch_;
+import lombok.Getter;
+import org.springframework.data.domain.Sort;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Sort options offered by the soulpatches grid and the REST api ("sort" parameter).
+ */
+@Getter
+public enum SOULPatchSort {
+    NAME("name", Sort.Direction.ASC, SOULPatch_.NAME),
+    NEWEST("newest", Sort.Direction.DESC, AuditModel_.CREATED_AT),
+    DOWNLOADS("most downloaded", Sort.Direction.DESC, SOULPatch_.NO_VIEWS),
+    TOP_RATED("top rated", Sort.Direction.DESC, SOULPatch_.QUALITY_SCORE),
+    TRENDING("trending", Sort.Direction.DESC, SOULPatch_.TRENDING_SCORE);
+
+    private final String label;
+    private final Sort.Direction direction;
+    private final String property;
+
+    SOULPatchSort(String label, Sort.Direction direction, String property) {
+        this.label = label;
+        this.direction = direction;
+        this.property = property;
+    }
+
+    public Sort toSort() {
+        return Sort.by(direction, property).and(Sort.by(Sort.Direction.ASC, SOULPatch_.ID));
+    }
+
+    /**
+     * @param parameter
+     *         case insensitive name, e.g. "trending" or "top_rated"
+     *
+     * @throws IllegalArgumentException
+     *         if there is no such sort option
+     */
+    public static SOULPatchSort fromParameter(String parameter) {
+        return Arrays.stream(values())
+                .filter(sort -> sort.name().equals(parameter.toUpperCase(Locale.US).replace('-', '_')))
+                .findAny()
+                .orElseThrow(() -> new IllegalArgumentException(
+                        String.format("unknown sort '%s', use one of %s", parameter, Arrays.toString(values()))));
+    }
+}
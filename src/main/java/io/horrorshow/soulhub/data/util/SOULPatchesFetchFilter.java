@@ -8,8 +8,10 @@ import lombok.ToString;
 
 import java.io.Serializable;
 import java.util.HashSet;
+import java.util.Locale;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 @NoArgsConstructor
 @AllArgsConstructor
@@ -56,4 +58,15 @@ public class SOULPatchesFetchFilter implements Serializable {
     public Set<AppUser> getUsersFilter() {
         return usersFilter;
     }
+
+    /**
+     * @return a value describing the current filter criteria, unlike the filter itself
+     * safe to use as map key while the filter is being edited
+     */
+    public String getCacheKey() {
+        return "users=" + usersFilter.stream().map(AppUser::getId).sorted()
+                .map(String::valueOf).collect(Collectors.joining(",")) +
+                "|names=" + getNamesFilter().map(s -> s.toLowerCase(Locale.US)).orElse("") +
+                "|fulltext=" + getFullTextSearch().orElse("");
+    }
 }
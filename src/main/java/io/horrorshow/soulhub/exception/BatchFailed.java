@@ -0,0 +1,21 @@
+package io.horrorshow.soulhub.exception;
+
+import io.horrorshow.soulhub.data.records.SOULPatchOperationResult;
+
+import java.util.List;
+
+public class BatchFailed extends RuntimeException {
+
+    private static final long serialVersionUID = 6020532383517396342L;
+
+    private final transient List<SOULPatchOperationResult> results;
+
+    public BatchFailed(String message, List<SOULPatchOperationResult> results) {
+        super(message);
+        this.results = results;
+    }
+
+    public List<SOULPatchOperationResult> getResults() {
+        return results;
+    }
+}
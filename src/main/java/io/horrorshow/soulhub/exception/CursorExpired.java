@@ -0,0 +1,10 @@
+package io.horrorshow.soulhub.exception;
+
+public class CursorExpired extends RuntimeException {
+
+    private static final long serialVersionUID = -1950367113467330581L;
+
+    public CursorExpired(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,10 @@
+package io.horrorshow.soulhub.exception;
+
+public class PreconditionFailed extends RuntimeException {
+
+    private static final long serialVersionUID = -3306094286716624716L;
+
+    public PreconditionFailed(String message) {
+        super(message);
+    }
+}
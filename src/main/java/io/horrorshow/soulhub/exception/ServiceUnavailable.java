@@ -0,0 +1,14 @@
+package io.horrorshow.soulhub.exception;
+
+public class ServiceUnavailable extends RuntimeException {
+
+    private static final long serialVersionUID = 3140728745470924165L;
+
+    public ServiceUnavailable(String message) {
+        super(message);
+    }
+
+    public ServiceUnavailable(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
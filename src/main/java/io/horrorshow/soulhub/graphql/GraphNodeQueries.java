@@ -0,0 +1,140 @@
+package io.horrorshow.soulhub.graphql;
+
+import io.horrorshow.soulhub.data.AppUser_;
+import io.horrorshow.soulhub.data.AuditModel_;
+import io.horrorshow.soulhub.data.SOULPatch;
+import io.horrorshow.soulhub.data.SOULPatch_;
+import io.horrorshow.soulhub.data.util.SOULPatchSort;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Projections of the graph nodes straight from the columns, the entities aren't loaded since
+ * they fetch their authors and files (with contents) eagerly. The collection methods are the
+ * batch functions of {@link SOULHubDataLoaders}, one statement per call.
+ */
+@Repository
+@Transactional(readOnly = true)
+public class GraphNodeQueries {
+
+    private static final String SOULPATCH_NODE = "SELECT new io.horrorshow.soulhub.graphql.SOULPatchNode(" +
+            "sp.id, sp.name, sp.description, sp.author.id, sp.createdAt, sp.updatedAt, " +
+            "sp.noViews, sp.ratingCount, sp.ratingSum) FROM SOULPatch sp ";
+    private static final String SPFILE_NODE = "SELECT new io.horrorshow.soulhub.graphql.SPFileNode(" +
+            "f.id, f.soulPatch.id, f.name, f.fileType, f.createdAt, f.updatedAt) FROM SPFile f ";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public List<SOULPatchNode> findSOULPatches(Collection<Long> ids) {
+        return entityManager.createQuery(SOULPATCH_NODE + "WHERE sp.id IN :ids", SOULPatchNode.class)
+                .setParameter("ids", ids)
+                .getResultList();
+    }
+
+    /**
+     * @param name     part of the name, ignoring case, null for all
+     * @param authorId null for all
+     */
+    public List<SOULPatchNode> findSOULPatchPage(String name, Long authorId, SOULPatchSort sort, int page, int size) {
+        var cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<SOULPatchNode> cq = cb.createQuery(SOULPatchNode.class);
+        Root<SOULPatch> root = cq.from(SOULPatch.class);
+        cq.select(cb.construct(SOULPatchNode.class,
+                root.get(SOULPatch_.ID),
+                root.get(SOULPatch_.NAME),
+                root.get(SOULPatch_.DESCRIPTION),
+                root.get(SOULPatch_.AUTHOR).get(AppUser_.ID),
+                root.get(AuditModel_.CREATED_AT),
+                root.get(AuditModel_.UPDATED_AT),
+                root.get(SOULPatch_.NO_VIEWS),
+                root.get(SOULPatch_.RATING_COUNT),
+                root.get(SOULPatch_.RATING_SUM)))
+                .where(filter(cb, root, name, authorId))
+                .orderBy(sort.toSort().stream()
+                        .map(order -> order.isAscending()
+                                ? cb.asc(root.get(order.getProperty()))
+                                : cb.desc(root.get(order.getProperty())))
+                        .collect(Collectors.toList()));
+        return entityManager.createQuery(cq)
+                .setFirstResult(page * size)
+                .setMaxResults(size)
+                .getResultList();
+    }
+
+    public long countSOULPatches(String name, Long authorId) {
+        var cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> cq = cb.createQuery(Long.class);
+        Root<SOULPatch> root = cq.from(SOULPatch.class);
+        cq.select(cb.count(root)).where(filter(cb, root, name, authorId));
+        return entityManager.createQuery(cq).getSingleResult();
+    }
+
+    public List<SPFileNode> findSPFiles(Collection<Long> ids) {
+        return entityManager.createQuery(SPFILE_NODE + "WHERE f.id IN :ids", SPFileNode.class)
+                .setParameter("ids", ids)
+                .getResultList();
+    }
+
+    public List<SPFileNode> findSPFilesBySOULPatchIds(Collection<Long> soulPatchIds) {
+        return entityManager.createQuery(SPFILE_NODE + "WHERE f.soulPatch.id IN :ids ORDER BY f.id", SPFileNode.class)
+                .setParameter("ids", soulPatchIds)
+                .getResultList();
+    }
+
+    /**
+     * @return file id to content, files without content are missing
+     */
+    public Map<Long, String> findSPFileContents(Collection<Long> ids) {
+        Map<Long, String> contents = new HashMap<>();
+        entityManager.createQuery("SELECT f.id, f.fileContent FROM SPFile f WHERE f.id IN :ids", Object[].class)
+                .setParameter("ids", ids)
+                .getResultList()
+                .forEach(row -> contents.put((Long) row[0], (String) row[1]));
+        return contents;
+    }
+
+    public List<UserNode> findUsers(Collection<Long> ids) {
+        return entityManager.createQuery("SELECT new io.horrorshow.soulhub.graphql.UserNode(u.id, u.userName) " +
+                "FROM AppUser u WHERE u.id IN :ids", UserNode.class)
+                .setParameter("ids", ids)
+                .getResultList();
+    }
+
+    public List<RatingNode> findRatingsBySOULPatchIds(Collection<Long> soulPatchIds) {
+        return entityManager.createQuery("SELECT new io.horrorshow.soulhub.graphql.RatingNode(" +
+                "r.id, r.soulPatch.id, r.appUser.id, r.stars, r.createdAt) " +
+                "FROM SOULPatchRating r WHERE r.soulPatch.id IN :ids ORDER BY r.id", RatingNode.class)
+                .setParameter("ids", soulPatchIds)
+                .getResultList();
+    }
+
+    private static Predicate filter(CriteriaBuilder cb, Root<SOULPatch> root, String name, Long authorId) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (name != null && !name.isBlank()) {
+            String pattern = "%" + name.toLowerCase(Locale.ROOT)
+                    .replace("\\", "\\\\")
+                    .replace("%", "\\%")
+                    .replace("_", "\\_") + "%";
+            predicates.add(cb.like(cb.lower(root.get(SOULPatch_.NAME)), pattern, '\\'));
+        }
+        if (authorId != null) {
+            predicates.add(cb.equal(root.get(SOULPatch_.AUTHOR).get(AppUser_.ID), authorId));
+        }
+        return cb.and(predicates.toArray(new Predicate[0]));
+    }
+}
@@ -0,0 +1,72 @@
+package io.horrorshow.soulhub.graphql;
+
+import graphql.GraphQL;
+import graphql.analysis.FieldComplexityEnvironment;
+import graphql.analysis.MaxQueryComplexityInstrumentation;
+import graphql.analysis.MaxQueryDepthInstrumentation;
+import graphql.execution.instrumentation.ChainedInstrumentation;
+import graphql.execution.instrumentation.dataloader.DataLoaderDispatcherInstrumentation;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.GraphQLTypeUtil;
+import graphql.schema.idl.SchemaGenerator;
+import graphql.schema.idl.SchemaParser;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * GraphQL read API at POST /api/graphql. Queries deeper than max-depth or more complex than
+ * max-complexity are rejected before any data is fetched, see {@link #fieldComplexity}.
+ */
+@Configuration
+public class GraphQLConfig {
+
+    static final String SCHEMA = "graphql/soulhub.graphqls";
+    /** assumed number of files or ratings per soulpatch */
+    static final int LIST_FACTOR = 10;
+    /** file contents are read from a TEXT column */
+    static final int CONTENT_COMPLEXITY = 10;
+
+    @Bean
+    public GraphQL graphQL(SOULHubDataFetchers dataFetchers,
+                           @Value("${soulhub.graphql.max-depth:8}") int maxDepth,
+                           @Value("${soulhub.graphql.max-complexity:5000}") int maxComplexity) throws IOException {
+        GraphQLSchema schema;
+        try (Reader reader = new InputStreamReader(
+                new ClassPathResource(SCHEMA).getInputStream(), StandardCharsets.UTF_8)) {
+            schema = new SchemaGenerator().makeExecutableSchema(
+                    new SchemaParser().parse(reader), dataFetchers.runtimeWiring());
+        }
+        return GraphQL.newGraphQL(schema)
+                .instrumentation(new ChainedInstrumentation(List.of(
+                        new MaxQueryDepthInstrumentation(maxDepth),
+                        new MaxQueryComplexityInstrumentation(maxComplexity, GraphQLConfig::fieldComplexity),
+                        new DataLoaderDispatcherInstrumentation())))
+                .build();
+    }
+
+    /**
+     * Estimated rows read by a field and its selection: the soulpatches of a page count size
+     * times, other lists {@link #LIST_FACTOR} times.
+     */
+    static int fieldComplexity(FieldComplexityEnvironment env, int childComplexity) {
+        var type = GraphQLTypeUtil.unwrapNonNull(env.getFieldDefinition().getType());
+        if (env.getArguments().get("size") instanceof Integer) {
+            return 1 + (Integer) env.getArguments().get("size") * childComplexity;
+        }
+        if (GraphQLTypeUtil.isList(type) && !env.getParentType().getName().equals("SOULPatchPage")) {
+            return 1 + LIST_FACTOR * childComplexity;
+        }
+        if (env.getField().getName().equals("content") && GraphQLTypeUtil.isScalar(type)) {
+            return CONTENT_COMPLEXITY;
+        }
+        return 1 + childComplexity;
+    }
+}
@@ -0,0 +1,21 @@
+package io.horrorshow.soulhub.graphql;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Body of a GraphQL POST request
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GraphQLRequest {
+
+    private String query;
+    private String operationName;
+    private Map<String, Object> variables;
+
+}
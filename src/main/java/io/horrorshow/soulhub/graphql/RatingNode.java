@@ -0,0 +1,22 @@
+package io.horrorshow.soulhub.graphql;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+@EqualsAndHashCode
+@Getter
+@AllArgsConstructor
+@ToString
+public class RatingNode {
+
+    private final Long id;
+    private final Long soulPatchId;
+    private final Long userId;
+    private final Integer stars;
+    private final LocalDateTime createdAt;
+
+}
@@ -0,0 +1,90 @@
+package io.horrorshow.soulhub.graphql;
+
+import graphql.schema.DataFetcher;
+import graphql.schema.DataFetchingEnvironment;
+import graphql.schema.idl.RuntimeWiring;
+import io.horrorshow.soulhub.data.util.SOULPatchSort;
+import org.dataloader.DataLoader;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static io.horrorshow.soulhub.graphql.SOULHubDataLoaders.*;
+
+/**
+ * Resolvers of the schema in graphql/soulhub.graphqls. Scalar fields are read from the node
+ * getters, references go through the request's {@link SOULHubDataLoaders}.
+ */
+@Component
+public class SOULHubDataFetchers {
+
+    static final int MAX_PAGE_SIZE = 100;
+
+    private final GraphNodeQueries queries;
+
+    public SOULHubDataFetchers(@Autowired GraphNodeQueries queries) {
+        this.queries = queries;
+    }
+
+    public RuntimeWiring runtimeWiring() {
+        return RuntimeWiring.newRuntimeWiring()
+                .type("Query", type -> type
+                        .dataFetcher("soulPatch", byIdArgument(SOULPATCHES))
+                        .dataFetcher("soulPatches", this::soulPatches)
+                        .dataFetcher("spFile", byIdArgument(SPFILES))
+                        .dataFetcher("user", byIdArgument(USERS)))
+                .type("SOULPatch", type -> type
+                        .dataFetcher("author", load(USERS, SOULPatchNode::getAuthorId))
+                        .dataFetcher("files", load(SPFILES_BY_SOULPATCH, SOULPatchNode::getId))
+                        .dataFetcher("ratings", load(RATINGS_BY_SOULPATCH, SOULPatchNode::getId)))
+                .type("SPFile", type -> type
+                        .dataFetcher("content", load(SPFILE_CONTENTS, SPFileNode::getId))
+                        .dataFetcher("soulPatch", load(SOULPATCHES, SPFileNode::getSoulPatchId)))
+                .type("Rating", type -> type
+                        .dataFetcher("user", load(USERS, RatingNode::getUserId))
+                        .dataFetcher("soulPatch", load(SOULPATCHES, RatingNode::getSoulPatchId)))
+                .build();
+    }
+
+    /**
+     * The page is selected with one query, its soulpatches are primed into the loader so
+     * references to them from files or ratings further down aren't read again
+     */
+    private Map<String, Object> soulPatches(DataFetchingEnvironment env) {
+        int page = env.getArgument("page");
+        int size = env.getArgument("size");
+        if (page < 0 || size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException(String.format(
+                    "page must not be negative and size between 1 and %d", MAX_PAGE_SIZE));
+        }
+        String name = env.getArgument("name");
+        Long authorId = (env.getArgument("authorId") != null)
+                ? Long.valueOf(env.<String>getArgument("authorId"))
+                : null;
+        var sort = SOULPatchSort.valueOf(env.<String>getArgument("sort"));
+
+        Map<String, Object> result = new HashMap<>();
+        if (env.getSelectionSet().contains("content")) {
+            List<SOULPatchNode> content = queries.findSOULPatchPage(name, authorId, sort, page, size);
+            DataLoader<Long, SOULPatchNode> loader = env.getDataLoader(SOULPATCHES);
+            content.forEach(node -> loader.prime(node.getId(), node));
+            result.put("content", content);
+        }
+        if (env.getSelectionSet().contains("totalElements")) {
+            result.put("totalElements", queries.countSOULPatches(name, authorId));
+        }
+        return result;
+    }
+
+    private static DataFetcher<?> byIdArgument(String loader) {
+        return env -> env.getDataLoader(loader).load(Long.valueOf(env.<String>getArgument("id")));
+    }
+
+    private static <S> DataFetcher<?> load(String loader, Function<S, Long> key) {
+        return env -> env.getDataLoader(loader).load(key.apply(env.getSource()));
+    }
+}
@@ -0,0 +1,79 @@
+package io.horrorshow.soulhub.graphql;
+
+import org.dataloader.DataLoader;
+import org.dataloader.DataLoaderOptions;
+import org.dataloader.DataLoaderRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Data loaders of one GraphQL request. The loads of each level of the query are collected and
+ * dispatched as one query per loader, e.g. the authors of a page of soulpatches with one
+ * IN (...) select. Loaded keys are cached for the rest of the request, so a user who wrote
+ * several patches and rated others is read once.
+ */
+@Component
+public class SOULHubDataLoaders {
+
+    static final String SOULPATCHES = "soulPatches";
+    static final String SPFILES = "spFiles";
+    static final String SPFILES_BY_SOULPATCH = "spFilesBySOULPatch";
+    static final String SPFILE_CONTENTS = "spFileContents";
+    static final String USERS = "users";
+    static final String RATINGS_BY_SOULPATCH = "ratingsBySOULPatch";
+
+    private final GraphNodeQueries queries;
+    private final int maxBatchSize;
+
+    public SOULHubDataLoaders(@Autowired GraphNodeQueries queries,
+                              @Value("${soulhub.graphql.max-batch-size:500}") int maxBatchSize) {
+        this.queries = queries;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * @return fresh loaders with empty caches, not to be shared between requests
+     */
+    public DataLoaderRegistry newRegistry() {
+        return new DataLoaderRegistry()
+                .register(SOULPATCHES, byId(queries::findSOULPatches, SOULPatchNode::getId))
+                .register(SPFILES, byId(queries::findSPFiles, SPFileNode::getId))
+                .register(SPFILES_BY_SOULPATCH,
+                        groupedBy(queries::findSPFilesBySOULPatchIds, SPFileNode::getSoulPatchId))
+                .register(SPFILE_CONTENTS, DataLoader.<Long, String>newMappedDataLoader(
+                        keys -> CompletableFuture.completedFuture(queries.findSPFileContents(keys)), options()))
+                .register(USERS, byId(queries::findUsers, UserNode::getId))
+                .register(RATINGS_BY_SOULPATCH,
+                        groupedBy(queries::findRatingsBySOULPatchIds, RatingNode::getSoulPatchId));
+    }
+
+    private <V> DataLoader<Long, V> byId(Function<Collection<Long>, List<V>> batch, Function<V, Long> id) {
+        return DataLoader.newMappedDataLoader((Set<Long> keys) -> CompletableFuture.completedFuture(
+                batch.apply(keys).stream().collect(Collectors.toMap(id, Function.identity()))), options());
+    }
+
+    /**
+     * Loader of the children of each key, keys without children map to an empty list
+     */
+    private <V> DataLoader<Long, List<V>> groupedBy(Function<Collection<Long>, List<V>> batch,
+                                                    Function<V, Long> parentId) {
+        return DataLoader.newMappedDataLoader((Set<Long> keys) -> {
+            Map<Long, List<V>> children = batch.apply(keys).stream().collect(Collectors.groupingBy(parentId));
+            keys.forEach(key -> children.putIfAbsent(key, List.of()));
+            return CompletableFuture.completedFuture(children);
+        }, options());
+    }
+
+    private DataLoaderOptions options() {
+        return DataLoaderOptions.newOptions().setMaxBatchSize(maxBatchSize);
+    }
+}
@@ -0,0 +1,32 @@
+package io.horrorshow.soulhub.graphql;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * The columns of a soulpatch, related objects are resolved by id through the data loaders.
+ */
+@EqualsAndHashCode
+@Getter
+@AllArgsConstructor
+@ToString
+public class SOULPatchNode {
+
+    private final Long id;
+    private final String name;
+    private final String description;
+    private final Long authorId;
+    private final LocalDateTime createdAt;
+    private final LocalDateTime updatedAt;
+    private final Long downloads;
+    private final Long ratingCount;
+    private final Long ratingSum;
+
+    public Double getRatingAverage() {
+        return (ratingCount == null || ratingCount == 0) ? null : (double) ratingSum / ratingCount;
+    }
+}
@@ -0,0 +1,30 @@
+package io.horrorshow.soulhub.graphql;
+
+import io.horrorshow.soulhub.data.SPFile;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * An sp file without its content, which has a loader of its own
+ */
+@EqualsAndHashCode
+@Getter
+@AllArgsConstructor
+@ToString
+public class SPFileNode {
+
+    private final Long id;
+    private final Long soulPatchId;
+    private final String name;
+    private final SPFile.FileType fileType;
+    private final LocalDateTime createdAt;
+    private final LocalDateTime updatedAt;
+
+    public String getType() {
+        return (fileType != null) ? fileType.toString() : "";
+    }
+}
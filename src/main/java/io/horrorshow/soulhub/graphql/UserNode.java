@@ -0,0 +1,20 @@
+package io.horrorshow.soulhub.graphql;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Public part of an app user, the email address isn't exposed
+ */
+@EqualsAndHashCode
+@Getter
+@AllArgsConstructor
+@ToString
+public class UserNode {
+
+    private final Long id;
+    private final String userName;
+
+}
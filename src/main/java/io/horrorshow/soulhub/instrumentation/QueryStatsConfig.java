@@ -0,0 +1,64 @@
+package io.horrorshow.soulhub.instrumentation;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Per request query instrumentation, see {@link QueryStatsRegistry}.
+ * Disable with soulhub.instrumentation.query-stats.enabled=false.
+ */
+@Configuration
+@ConditionalOnProperty(value = "soulhub.instrumentation.query-stats.enabled", matchIfMissing = true)
+public class QueryStatsConfig {
+
+    private static final String PREFIX = "soulhub.instrumentation.query-stats";
+
+    @Bean
+    public QueryStatsRegistry queryStatsRegistry(
+            ObjectProvider<MeterRegistry> meterRegistry,
+            @Value("${" + PREFIX + ".n-plus-one-threshold:5}") int nPlusOneThreshold,
+            @Value("${" + PREFIX + ".slow-query-ms:200}") long slowQueryMillis) {
+        return new QueryStatsRegistry(meterRegistry.getIfAvailable(), nPlusOneThreshold, slowQueryMillis);
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer queryStatsHibernateCustomizer(
+            @Value("${" + PREFIX + ".slow-query-ms:200}") long slowQueryMillis) {
+        return properties -> {
+            properties.put(AvailableSettings.GENERATE_STATISTICS, true);
+            // hibernate's own slow query log also covers queries outside of requests (schedulers)
+            properties.put(AvailableSettings.LOG_SLOW_QUERY, slowQueryMillis);
+            // the per session metrics summary is far too chatty at INFO
+            properties.put(AvailableSettings.LOG_SESSION_METRICS, false);
+            var interceptor = new QueryStatsInterceptor();
+            properties.put(AvailableSettings.STATEMENT_INSPECTOR, interceptor);
+            properties.put(AvailableSettings.INTERCEPTOR, interceptor);
+            properties.put(AvailableSettings.AUTO_SESSION_EVENTS_LISTENER,
+                    QueryStatsSessionListener.class.getName());
+        };
+    }
+
+    @Bean
+    public FilterRegistrationBean<QueryStatsFilter> queryStatsFilter(QueryStatsRegistry registry) {
+        var registration = new FilterRegistrationBean<>(new QueryStatsFilter(registry));
+        // outermost, so that the queries of spring security (remember me, user lookup) are counted too
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+    @Bean
+    public QueryStatsEndpoint queryStatsEndpoint(QueryStatsRegistry registry,
+                                                 EntityManagerFactory entityManagerFactory) {
+        return new QueryStatsEndpoint(registry, entityManagerFactory);
+    }
+}
@@ -0,0 +1,59 @@
+package io.horrorshow.soulhub.instrumentation;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * /actuator/querystats: per action statement counts and N+1 suspects, recent slow queries
+ * and the session factory wide hibernate statistics.
+ */
+@Endpoint(id = "querystats")
+public class QueryStatsEndpoint {
+
+    private final QueryStatsRegistry registry;
+    private final EntityManagerFactory entityManagerFactory;
+
+    public QueryStatsEndpoint(QueryStatsRegistry registry, EntityManagerFactory entityManagerFactory) {
+        this.registry = registry;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @ReadOperation
+    public Map<String, Object> queryStats() {
+        var result = new LinkedHashMap<String, Object>();
+        result.put("actions", registry.getActions());
+        result.put("slowQueries", registry.getSlowQueries());
+        result.put("hibernate", hibernateStatistics());
+        return result;
+    }
+
+    @DeleteOperation
+    public void reset() {
+        registry.reset();
+        entityManagerFactory.unwrap(SessionFactory.class).getStatistics().clear();
+    }
+
+    private Map<String, Object> hibernateStatistics() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        var result = new LinkedHashMap<String, Object>();
+        result.put("enabled", statistics.isStatisticsEnabled());
+        result.put("prepareStatementCount", statistics.getPrepareStatementCount());
+        result.put("queryExecutionCount", statistics.getQueryExecutionCount());
+        result.put("queryExecutionMaxTime", statistics.getQueryExecutionMaxTime());
+        result.put("queryExecutionMaxTimeQueryString", statistics.getQueryExecutionMaxTimeQueryString());
+        result.put("entityLoadCount", statistics.getEntityLoadCount());
+        result.put("entityFetchCount", statistics.getEntityFetchCount());
+        result.put("collectionLoadCount", statistics.getCollectionLoadCount());
+        result.put("collectionFetchCount", statistics.getCollectionFetchCount());
+        result.put("transactionCount", statistics.getTransactionCount());
+        result.put("sessionOpenCount", statistics.getSessionOpenCount());
+        return result;
+    }
+}
@@ -0,0 +1,61 @@
+package io.horrorshow.soulhub.instrumentation;
+
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.shared.ApplicationConstants;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.regex.Pattern;
+
+/**
+ * Opens a {@link RequestQueryStats} for every request and hands it to the
+ * {@link QueryStatsRegistry} when the request is done.
+ * <p>
+ * REST and SOAP requests are labelled by method and mapped path, Vaadin UIDL requests
+ * by the view that was active when they were handled, e.g. "UIDL /soulpatch/{id}".
+ */
+public class QueryStatsFilter extends OncePerRequestFilter {
+
+    private static final Pattern ID_SEGMENT = Pattern.compile("/\\d+(?=/|$)");
+
+    private final QueryStatsRegistry registry;
+
+    public QueryStatsFilter(QueryStatsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        var stats = RequestQueryStats.begin(request.getMethod() + " " + normalize(request.getRequestURI()));
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            RequestQueryStats.end();
+            registry.record(label(request, stats), stats);
+        }
+    }
+
+    private String label(HttpServletRequest request, RequestQueryStats stats) {
+        String vaadinRequestType = request.getParameter(ApplicationConstants.REQUEST_TYPE_PARAMETER);
+        if (vaadinRequestType != null) {
+            return vaadinRequestType.toUpperCase() + " /" + stats.getUi()
+                    .map(UI::getInternals)
+                    .map(internals -> normalize(internals.getActiveViewLocation().getPath()))
+                    .orElse("");
+        }
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern != null
+                ? request.getMethod() + " " + pattern
+                : stats.getLabel();
+    }
+
+    static String normalize(String path) {
+        return ID_SEGMENT.matcher(path).replaceAll("/{id}");
+    }
+}
@@ -0,0 +1,28 @@
+package io.horrorshow.soulhub.instrumentation;
+
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.hibernate.type.Type;
+
+import java.io.Serializable;
+
+/**
+ * Session factory wide hook: remembers the SQL of the statement about to be executed
+ * and counts hydrated entities (one per row mapped to an entity) for the current request.
+ */
+public class QueryStatsInterceptor extends EmptyInterceptor implements StatementInspector {
+
+    @Override
+    public String inspect(String sql) {
+        RequestQueryStats.current().ifPresent(stats -> stats.statementPrepared(sql));
+        return sql;
+    }
+
+    @Override
+    public boolean onLoad(Object entity, Serializable id, Object[] state,
+                          String[] propertyNames, Type[] types) {
+        RequestQueryStats.current().ifPresent(stats ->
+                stats.entityLoaded(entity.getClass().getSimpleName()));
+        return false;
+    }
+}
@@ -0,0 +1,192 @@
+package io.horrorshow.soulhub.instrumentation;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Aggregates {@link RequestQueryStats} per request label ("action"): statement counts,
+ * JDBC time, hydrated entities and N+1 suspects. Backs the querystats actuator endpoint
+ * and publishes soulhub.db.request.* meters tagged with the action.
+ */
+@Log4j2
+public class QueryStatsRegistry {
+
+    static final String OTHER_ACTION = "other";
+    private static final int MAX_ACTIONS = 200;
+    private static final int MAX_SLOW_QUERIES = 50;
+    private static final int MAX_SUSPECTS_PER_ACTION = 20;
+
+    private final MeterRegistry meterRegistry;
+    private final int nPlusOneThreshold;
+    private final long slowQueryNanos;
+
+    private final Map<String, ActionStats> actions = new ConcurrentHashMap<>();
+    private final Deque<SlowQuery> slowQueries = new ConcurrentLinkedDeque<>();
+
+    public QueryStatsRegistry(MeterRegistry meterRegistry, int nPlusOneThreshold, long slowQueryMillis) {
+        this.meterRegistry = meterRegistry;
+        this.nPlusOneThreshold = nPlusOneThreshold;
+        this.slowQueryNanos = TimeUnit.MILLISECONDS.toNanos(slowQueryMillis);
+    }
+
+    public void record(String label, RequestQueryStats stats) {
+        long statements = stats.getStatementCount();
+        if (statements == 0) return;
+
+        String action = actions.containsKey(label) || actions.size() < MAX_ACTIONS ? label : OTHER_ACTION;
+        var actionStats = actions.computeIfAbsent(action, ActionStats::new);
+        long executionNanos = stats.getExecutionNanos();
+        long entityLoads = stats.getEntityLoadCount();
+        actionStats.add(statements, executionNanos, entityLoads);
+
+        var suspects = stats.getNPlusOneSuspects(nPlusOneThreshold);
+        if (!suspects.isEmpty()) {
+            actionStats.addSuspects(suspects);
+            log.warn("possible N+1 in {}: {}", action, suspects);
+        }
+
+        stats.getQueries().forEach((sql, timing) -> {
+            if (timing.getMaxNanos() >= slowQueryNanos) {
+                slowQueries.addFirst(new SlowQuery(action, sql,
+                        TimeUnit.NANOSECONDS.toMillis(timing.getMaxNanos()), timing.getCount()));
+                log.warn("slow query in {} ({} ms): {}",
+                        action, TimeUnit.NANOSECONDS.toMillis(timing.getMaxNanos()), sql);
+            }
+        });
+        while (slowQueries.size() > MAX_SLOW_QUERIES) slowQueries.pollLast();
+
+        if (meterRegistry != null) {
+            DistributionSummary.builder("soulhub.db.request.statements")
+                    .description("JDBC statements per request").tag("action", action)
+                    .register(meterRegistry).record(statements);
+            DistributionSummary.builder("soulhub.db.request.entities")
+                    .description("entities hydrated per request").tag("action", action)
+                    .register(meterRegistry).record(entityLoads);
+            Timer.builder("soulhub.db.request.time")
+                    .description("JDBC execution time per request").tag("action", action)
+                    .register(meterRegistry).record(executionNanos, TimeUnit.NANOSECONDS);
+            if (!suspects.isEmpty()) {
+                Counter.builder("soulhub.db.request.nplusone")
+                        .description("requests with repeated identical selects").tag("action", action)
+                        .register(meterRegistry).increment();
+            }
+        }
+    }
+
+    /**
+     * @return actions ordered by their total number of statements, most expensive first
+     */
+    public List<ActionStats> getActions() {
+        return actions.values().stream()
+                .sorted(Comparator.comparingLong(ActionStats::getStatements).reversed())
+                .collect(Collectors.toList());
+    }
+
+    public List<SlowQuery> getSlowQueries() {
+        return new ArrayList<>(slowQueries);
+    }
+
+    public void reset() {
+        actions.clear();
+        slowQueries.clear();
+    }
+
+    public static class ActionStats {
+        @Getter
+        private final String action;
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder statementsTotal = new LongAdder();
+        private final AtomicLong maxStatements = new AtomicLong();
+        private final LongAdder executionNanos = new LongAdder();
+        private final LongAdder entityLoads = new LongAdder();
+        private final LongAdder nPlusOneRequests = new LongAdder();
+        private final Map<String, Long> nPlusOneSuspects = new ConcurrentHashMap<>();
+
+        ActionStats(String action) {
+            this.action = action;
+        }
+
+        void add(long statements, long nanos, long entities) {
+            requests.increment();
+            statementsTotal.add(statements);
+            maxStatements.accumulateAndGet(statements, Math::max);
+            executionNanos.add(nanos);
+            entityLoads.add(entities);
+        }
+
+        void addSuspects(Map<String, Long> suspects) {
+            nPlusOneRequests.increment();
+            suspects.forEach((sql, count) -> {
+                if (nPlusOneSuspects.containsKey(sql) || nPlusOneSuspects.size() < MAX_SUSPECTS_PER_ACTION) {
+                    nPlusOneSuspects.merge(sql, count, Math::max);
+                }
+            });
+        }
+
+        public long getRequests() {
+            return requests.sum();
+        }
+
+        public long getStatements() {
+            return statementsTotal.sum();
+        }
+
+        public long getMaxStatements() {
+            return maxStatements.get();
+        }
+
+        public long getEntityLoads() {
+            return entityLoads.sum();
+        }
+
+        public long getNPlusOneRequests() {
+            return nPlusOneRequests.sum();
+        }
+
+        public Map<String, Long> getNPlusOneSuspects() {
+            return Map.copyOf(nPlusOneSuspects);
+        }
+
+        public double getAvgStatements() {
+            long count = requests.sum();
+            return count == 0 ? 0 : (double) statementsTotal.sum() / count;
+        }
+
+        public long getExecutionMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(executionNanos.sum());
+        }
+    }
+
+    @Getter
+    public static class SlowQuery {
+        private final LocalDateTime timestamp = LocalDateTime.now();
+        private final String action;
+        private final String sql;
+        private final long millis;
+        private final long executions;
+
+        SlowQuery(String action, String sql, long millis, long executions) {
+            this.action = action;
+            this.sql = sql;
+            this.millis = millis;
+            this.executions = executions;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package io.horrorshow.soulhub.instrumentation;
+
+import org.hibernate.BaseSessionEventListener;
+
+/**
+ * Registered via hibernate.session.events.auto, hibernate creates one instance per session.
+ * Times each JDBC statement execution and attributes it to the SQL last seen by
+ * {@link QueryStatsInterceptor}.
+ */
+public class QueryStatsSessionListener extends BaseSessionEventListener {
+
+    private long executionStart = -1;
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        executionStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        if (executionStart < 0) return;
+        long nanos = System.nanoTime() - executionStart;
+        executionStart = -1;
+        RequestQueryStats.current().ifPresent(stats -> stats.statementExecuted(nanos));
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        jdbcExecuteStatementStart();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        jdbcExecuteStatementEnd();
+    }
+}
@@ -0,0 +1,131 @@
+package io.horrorshow.soulhub.instrumentation;
+
+import com.vaadin.flow.component.UI;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Collects the JDBC statements, their execution time and the hydrated entities of one
+ * HTTP or Vaadin request. Bound to the request thread by {@link QueryStatsFilter} and fed
+ * by the Hibernate hooks {@link QueryStatsInterceptor} and {@link QueryStatsSessionListener}.
+ */
+public class RequestQueryStats {
+
+    private static final ThreadLocal<RequestQueryStats> CURRENT = new ThreadLocal<>();
+
+    @Getter
+    private final String label;
+    @Getter
+    private final long startedAt = System.nanoTime();
+
+    private final Map<String, QueryTiming> queries = new HashMap<>();
+    private final Map<String, Integer> entityLoads = new HashMap<>();
+
+    private String pendingSql;
+    private UI ui;
+
+    public RequestQueryStats(String label) {
+        this.label = label;
+    }
+
+    public static RequestQueryStats begin(String label) {
+        var stats = new RequestQueryStats(label);
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    public static Optional<RequestQueryStats> current() {
+        return Optional.ofNullable(CURRENT.get());
+    }
+
+    public static void end() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Binds stats of another thread to the current one, e.g. for queries that run on a
+     * worker on behalf of a request. Returns the previously bound stats, may be null.
+     */
+    public static RequestQueryStats attach(RequestQueryStats stats) {
+        var previous = CURRENT.get();
+        if (stats == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(stats);
+        }
+        return previous;
+    }
+
+    synchronized void statementPrepared(String sql) {
+        pendingSql = sql;
+        if (ui == null) {
+            // the vaadin UI is only bound while the request is being handled,
+            // keep a reference to resolve the active view once the request is done
+            ui = UI.getCurrent();
+        }
+    }
+
+    synchronized void statementExecuted(long nanos) {
+        String sql = pendingSql != null ? pendingSql : "<unknown>";
+        queries.computeIfAbsent(sql, s -> new QueryTiming()).add(nanos);
+    }
+
+    synchronized void entityLoaded(String entityName) {
+        entityLoads.merge(entityName, 1, Integer::sum);
+    }
+
+    public synchronized Map<String, QueryTiming> getQueries() {
+        return Collections.unmodifiableMap(new HashMap<>(queries));
+    }
+
+    public synchronized Map<String, Integer> getEntityLoads() {
+        return Collections.unmodifiableMap(new HashMap<>(entityLoads));
+    }
+
+    public synchronized long getStatementCount() {
+        return queries.values().stream().mapToLong(QueryTiming::getCount).sum();
+    }
+
+    public synchronized long getExecutionNanos() {
+        return queries.values().stream().mapToLong(QueryTiming::getTotalNanos).sum();
+    }
+
+    public synchronized long getEntityLoadCount() {
+        return entityLoads.values().stream().mapToLong(Integer::longValue).sum();
+    }
+
+    /**
+     * @return selects that were executed at least threshold times with the same SQL
+     * in this request, typically EAGER associations loaded once per grid row
+     */
+    public synchronized Map<String, Long> getNPlusOneSuspects(int threshold) {
+        var suspects = new HashMap<String, Long>();
+        queries.forEach((sql, timing) -> {
+            if (timing.getCount() >= threshold && sql.trim().toLowerCase().startsWith("select")) {
+                suspects.put(sql, timing.getCount());
+            }
+        });
+        return suspects;
+    }
+
+    public synchronized Optional<UI> getUi() {
+        return Optional.ofNullable(ui);
+    }
+
+    @Getter
+    public static class QueryTiming {
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+
+        void add(long nanos) {
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package io.horrorshow.soulhub.ratelimit;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Groups of endpoints that are limited separately, a client's REST calls don't use up its SOAP budget.
+ */
+public enum EndpointClass {
+    REST("/api/"),
+    SOAP("/ws/");
+
+    private final String pathPrefix;
+
+    EndpointClass(String pathPrefix) {
+        this.pathPrefix = pathPrefix;
+    }
+
+    public static Optional<EndpointClass> of(String path) {
+        return Arrays.stream(values())
+                .filter(endpointClass -> path.startsWith(endpointClass.pathPrefix))
+                .findFirst();
+    }
+
+    public String tag() {
+        return name().toLowerCase();
+    }
+}
@@ -0,0 +1,98 @@
+package io.horrorshow.soulhub.ratelimit;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sheds API requests while the database pools are saturated: too many threads waiting
+ * for a connection, or connections taking too long to acquire (hikaricp.connections.acquire).
+ * The state is sampled periodically, requests only read a volatile flag.
+ * <p>
+ * Acquire times are the mean of the acquires since the previous sample, not the timer's max,
+ * which decays only after minutes and would keep shedding long after the pool has recovered.
+ */
+@Log4j2
+public class LoadShedder {
+
+    static final String ACQUIRE_TIMER = "hikaricp.connections.acquire";
+
+    private final List<HikariDataSource> pools;
+    private final MeterRegistry meterRegistry;
+    private final int maxPendingConnections;
+    private final long maxAcquireMillis;
+
+    /** acquire count and total time per timer at the previous sample, only used by update */
+    private final Map<Meter.Id, AcquireSample> lastAcquires = new HashMap<>();
+    private volatile boolean overloaded = false;
+
+    public LoadShedder(List<HikariDataSource> pools, MeterRegistry meterRegistry,
+                       int maxPendingConnections, long maxAcquireMillis) {
+        this.pools = pools;
+        this.meterRegistry = meterRegistry;
+        this.maxPendingConnections = maxPendingConnections;
+        this.maxAcquireMillis = maxAcquireMillis;
+    }
+
+    public boolean isOverloaded() {
+        return overloaded;
+    }
+
+    @Scheduled(fixedDelayString = "${soulhub.rate-limit.shedding.check-interval-ms:250}")
+    public void update() {
+        int pending = pendingConnections();
+        double acquireMillis = recentAcquireMillis();
+        boolean overloaded = pending > maxPendingConnections || acquireMillis > maxAcquireMillis;
+        if (overloaded != this.overloaded) {
+            log.warn("load shedding {}: {} threads waiting for a connection, mean acquire time {} ms",
+                    overloaded ? "started" : "stopped", pending, acquireMillis);
+        }
+        this.overloaded = overloaded;
+    }
+
+    private int pendingConnections() {
+        return pools.stream()
+                .map(HikariDataSource::getHikariPoolMXBean)
+                // null until the pool has been started
+                .filter(Objects::nonNull)
+                .mapToInt(HikariPoolMXBean::getThreadsAwaitingConnection)
+                .max().orElse(0);
+    }
+
+    /**
+     * @return the highest mean acquire time of the pools since the previous sample, 0 for
+     * pools without acquires since
+     */
+    private double recentAcquireMillis() {
+        if (meterRegistry == null) return 0;
+        double max = 0;
+        for (Timer timer : meterRegistry.find(ACQUIRE_TIMER).timers()) {
+            var sample = new AcquireSample(timer.count(), timer.totalTime(TimeUnit.MILLISECONDS));
+            var last = lastAcquires.put(timer.getId(), sample);
+            if (last != null && sample.count > last.count) {
+                max = Math.max(max, (sample.totalMillis - last.totalMillis) / (sample.count - last.count));
+            }
+        }
+        return max;
+    }
+
+    private static final class AcquireSample {
+        private final long count;
+        private final double totalMillis;
+
+        private AcquireSample(long count, double totalMillis) {
+            this.count = count;
+            this.totalMillis = totalMillis;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package io.horrorshow.soulhub.ratelimit;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Rate limiting and load shedding of the REST and SOAP APIs, see {@link RateLimitFilter}.
+ * Disable with soulhub.rate-limit.enabled=false.
+ */
+@Configuration
+@ConditionalOnProperty(value = "soulhub.rate-limit.enabled", matchIfMissing = true)
+public class RateLimitConfig {
+
+    private static final String PREFIX = "soulhub.rate-limit";
+
+    @Bean
+    public RateLimiter rateLimiter(
+            @Value("${" + PREFIX + ".rest.requests-per-second:10}") double restRate,
+            @Value("${" + PREFIX + ".rest.burst:20}") int restBurst,
+            @Value("${" + PREFIX + ".soap.requests-per-second:5}") double soapRate,
+            @Value("${" + PREFIX + ".soap.burst:10}") int soapBurst) {
+        return new RateLimiter(Map.of(
+                EndpointClass.REST, new RateLimiter.Limit(restRate, restBurst),
+                EndpointClass.SOAP, new RateLimiter.Limit(soapRate, soapBurst)));
+    }
+
+    @Bean
+    public LoadShedder loadShedder(
+            ObjectProvider<HikariDataSource> pools,
+            ObjectProvider<MeterRegistry> meterRegistry,
+            @Value("${" + PREFIX + ".shedding.max-pending-connections:10}") int maxPendingConnections,
+            @Value("${" + PREFIX + ".shedding.max-acquire-ms:2000}") long maxAcquireMillis) {
+        return new LoadShedder(pools.orderedStream().collect(Collectors.toList()),
+                meterRegistry.getIfAvailable(), maxPendingConnections, maxAcquireMillis);
+    }
+
+    @Bean
+    public RateLimitFilter rateLimitFilter(
+            RateLimiter rateLimiter,
+            LoadShedder loadShedder,
+            ObjectProvider<MeterRegistry> meterRegistry,
+            @Value("${" + PREFIX + ".shedding.retry-after-seconds:5}") long sheddingRetryAfterSeconds) {
+        return new RateLimitFilter(rateLimiter, loadShedder, meterRegistry.getIfAvailable(),
+                sheddingRetryAfterSeconds);
+    }
+
+    /**
+     * The filter is part of the security filter chain, see SecurityConfiguration
+     */
+    @Bean
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilterRegistration(RateLimitFilter filter) {
+        var registration = new FilterRegistrationBean<>(filter);
+        registration.setEnabled(false);
+        return registration;
+    }
+}
@@ -0,0 +1,97 @@
+package io.horrorshow.soulhub.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admission control for /api and /ws: answers 429 with Retry-After when the database is
+ * overloaded ({@link LoadShedder}) or the client has used up its {@link RateLimiter} budget.
+ * Runs behind spring security, clients are told apart by their principal.
+ */
+@Log4j2
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    static final String REJECTED_COUNTER = "soulhub.ratelimit.rejected";
+    static final String REASON_RATE_LIMIT = "rate-limit";
+    static final String REASON_OVERLOAD = "overload";
+
+    private final RateLimiter rateLimiter;
+    private final LoadShedder loadShedder;
+    private final MeterRegistry meterRegistry;
+    private final long sheddingRetryAfterSeconds;
+
+    public RateLimitFilter(RateLimiter rateLimiter, LoadShedder loadShedder,
+                           MeterRegistry meterRegistry, long sheddingRetryAfterSeconds) {
+        this.rateLimiter = rateLimiter;
+        this.loadShedder = loadShedder;
+        this.meterRegistry = meterRegistry;
+        this.sheddingRetryAfterSeconds = sheddingRetryAfterSeconds;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        var endpointClass = EndpointClass.of(request.getRequestURI().substring(request.getContextPath().length()));
+        if (endpointClass.isEmpty()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        if (loadShedder.isOverloaded()) {
+            reject(response, endpointClass.get(), REASON_OVERLOAD, sheddingRetryAfterSeconds);
+            return;
+        }
+        String principal = principal(request);
+        long waitNanos = rateLimiter.tryAcquire(principal, endpointClass.get());
+        if (waitNanos > 0) {
+            log.debug("rate limit of {} for {} exceeded", principal, endpointClass.get());
+            reject(response, endpointClass.get(), REASON_RATE_LIMIT, divideRoundingUp(waitNanos));
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private static String principal(HttpServletRequest request) {
+        var authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.isAuthenticated()
+                && !(authentication instanceof AnonymousAuthenticationToken)) {
+            return "user:" + authentication.getName();
+        }
+        return "address:" + request.getRemoteAddr();
+    }
+
+    private static long divideRoundingUp(long nanos) {
+        long second = TimeUnit.SECONDS.toNanos(1);
+        return (nanos + second - 1) / second;
+    }
+
+    private void reject(HttpServletResponse response, EndpointClass endpointClass,
+                        String reason, long retryAfterSeconds) throws IOException {
+        if (meterRegistry != null) {
+            Counter.builder(REJECTED_COUNTER)
+                    .description("API requests rejected by rate limiting and load shedding")
+                    .tag("endpoint", endpointClass.tag())
+                    .tag("reason", reason)
+                    .register(meterRegistry).increment();
+        }
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, retryAfterSeconds)));
+        response.setContentType("text/plain");
+        response.getWriter().write(REASON_OVERLOAD.equals(reason)
+                ? "Server busy, retry later"
+                : "Too many requests");
+    }
+}
@@ -0,0 +1,68 @@
+package io.horrorshow.soulhub.ratelimit;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory token buckets per principal and {@link EndpointClass}. Buckets that have refilled
+ * completely are dropped periodically, a client that comes back starts with a full bucket anyway.
+ */
+@Log4j2
+public class RateLimiter {
+
+    private final Map<EndpointClass, Limit> limits;
+    private final Map<Key, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    public RateLimiter(Map<EndpointClass, Limit> limits) {
+        this.limits = new EnumMap<>(limits);
+    }
+
+    /**
+     * @return 0 if the request is admitted, otherwise the nanoseconds until the client may retry
+     */
+    public long tryAcquire(String principal, EndpointClass endpointClass) {
+        var limit = limits.get(endpointClass);
+        if (limit == null) return 0;
+
+        long now = System.nanoTime();
+        return buckets.computeIfAbsent(new Key(principal, endpointClass),
+                key -> new TokenBucket(limit.getTokensPerSecond(), limit.getBurst(), now))
+                .tryAcquire(now);
+    }
+
+    @Scheduled(fixedDelayString = "${soulhub.rate-limit.evict-interval-ms:60000}")
+    public void evictFullBuckets() {
+        long now = System.nanoTime();
+        int before = buckets.size();
+        // a request racing the removal may lose the token it took, the client then gets a fresh bucket
+        buckets.entrySet().removeIf(entry -> entry.getValue().isFull(now));
+        log.debug("rate limit buckets: {} evicted, {} active", before - buckets.size(), buckets.size());
+    }
+
+    int bucketCount() {
+        return buckets.size();
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Limit {
+
+        private final double tokensPerSecond;
+        private final int burst;
+    }
+
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static final class Key {
+
+        private final String principal;
+        private final EndpointClass endpointClass;
+    }
+}
@@ -0,0 +1,45 @@
+package io.horrorshow.soulhub.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket kept as the single point in time at which the bucket is full again
+ * (generic cell rate algorithm). Taking a token moves that point one refill interval
+ * into the future with one CAS, so concurrent requests never block each other.
+ * <p>
+ * Times are {@link System#nanoTime()} values.
+ */
+class TokenBucket {
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final AtomicLong fullAt;
+
+    TokenBucket(double tokensPerSecond, int capacity, long now) {
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / tokensPerSecond));
+        this.burstNanos = intervalNanos * (Math.max(1, capacity) - 1);
+        this.fullAt = new AtomicLong(now);
+    }
+
+    /**
+     * @return 0 if a token was taken, otherwise the nanoseconds until the next token is available
+     */
+    long tryAcquire(long now) {
+        while (true) {
+            long current = fullAt.get();
+            long start = (current - now > 0) ? current : now;
+            long wait = start - now - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(current, start + intervalNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    boolean isFull(long now) {
+        return fullAt.get() - now <= 0;
+    }
+}
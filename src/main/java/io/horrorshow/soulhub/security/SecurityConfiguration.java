@@ -1,5 +1,8 @@
 package io.horrorshow.soulhub.security;
 
+import io.horrorshow.soulhub.ratelimit.RateLimitFilter;
+import io.horrorshow.soulhub.service.UserService;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -10,6 +13,7 @@ import org.springframework.security.config.annotation.web.configuration.EnableWe
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.web.access.intercept.FilterSecurityInterceptor;
 import org.springframework.security.web.authentication.rememberme.JdbcTokenRepositoryImpl;
 import org.springframework.security.web.authentication.rememberme.PersistentTokenRepository;
 
@@ -37,10 +41,14 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
 
     private final DataSource dataSource;
 
+    private final ObjectProvider<RateLimitFilter> rateLimitFilter;
+
     public SecurityConfiguration(@Autowired UserDetailsService userDetailsService,
-                                 @Autowired DataSource dataSource) {
+                                 @Autowired DataSource dataSource,
+                                 @Autowired ObjectProvider<RateLimitFilter> rateLimitFilter) {
         this.userDetailsService = userDetailsService;
         this.dataSource = dataSource;
+        this.rateLimitFilter = rateLimitFilter;
     }
 
     @Bean
@@ -74,6 +82,7 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
 
                 .antMatchers("/api/**").hasAuthority("REST")
                 .antMatchers("/ws/**").hasAuthority("SOAP")
+                .antMatchers("/actuator/**").hasRole(UserService.ADMIN_ROLE)
 
                 .antMatchers(PERMIT_URLS).permitAll()
 
@@ -100,6 +109,9 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
                 .tokenValiditySeconds(24 * 60 * 60)
                 .and()
                 .exceptionHandling();
+
+        // throttle /api and /ws per principal once the request is authorized
+        rateLimitFilter.ifAvailable(filter -> http.addFilterAfter(filter, FilterSecurityInterceptor.class));
     }
 
     /**
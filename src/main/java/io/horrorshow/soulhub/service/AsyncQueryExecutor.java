@@ -0,0 +1,114 @@
+package io.horrorshow.soulhub.service;
+
+import io.horrorshow.soulhub.instrumentation.RequestQueryStats;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Runs read-only queries on a small bounded pool, each in its own read-only transaction
+ * and therefore on its own connection. Used to overlap independent queries of one
+ * request, e.g. the count and the page of a grid fetch.
+ * <p>
+ * A caller must not hold a connection while it waits for a worker, otherwise a few
+ * concurrent requests take all connections of the pool and their workers stall until the
+ * connection timeout. Callers therefore run their own queries with {@link #execute} instead
+ * of an enclosing transaction, and {@link #submit} within a transaction or an open-in-view
+ * entity manager runs the query right away on the caller's connection.
+ * <p>
+ * When the pool and its queue are full the query runs on the calling thread.
+ */
+@Component
+@Log4j2
+public class AsyncQueryExecutor {
+
+    private final ThreadPoolExecutor executor;
+    private final TransactionTemplate readOnlyTransaction;
+    private final TransactionTemplate callerTransaction;
+    private final EntityManagerFactory entityManagerFactory;
+    private final EntityManager entityManager;
+
+    public AsyncQueryExecutor(@Autowired PlatformTransactionManager transactionManager,
+                              @Autowired EntityManagerFactory entityManagerFactory,
+                              @Value("${soulhub.query-executor.threads:2}") int threads,
+                              @Value("${soulhub.query-executor.queue-size:64}") int queueSize) {
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.readOnlyTransaction.setPropagationBehavior(TransactionTemplate.PROPAGATION_REQUIRES_NEW);
+        this.callerTransaction = new TransactionTemplate(transactionManager);
+        this.callerTransaction.setReadOnly(true);
+        this.entityManagerFactory = entityManagerFactory;
+        this.entityManager = SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory);
+
+        var threadNo = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                runnable -> {
+                    var thread = new Thread(runnable, "soulhub-query-" + threadNo.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @param query
+     *         gets a transaction bound entity manager, must not leak managed entities
+     *         it wants to modify later - they belong to a transaction that is already closed
+     */
+    public <T> CompletableFuture<T> submit(Function<EntityManager, T> query) {
+        if (holdsConnection()) {
+            // a worker would need a second connection
+            try {
+                return CompletableFuture.completedFuture(execute(query));
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        var requestStats = RequestQueryStats.current().orElse(null);
+        return CompletableFuture.supplyAsync(() -> {
+            var previous = RequestQueryStats.attach(requestStats);
+            try {
+                return readOnlyTransaction.execute(status -> query.apply(entityManager));
+            } finally {
+                RequestQueryStats.attach(previous);
+            }
+        }, executor);
+    }
+
+    /**
+     * Runs the query on the calling thread, in a read-only transaction which is committed and
+     * gives back its connection before this returns. Joins the transaction of the caller if
+     * there is one.
+     */
+    public <T> T execute(Function<EntityManager, T> query) {
+        return callerTransaction.execute(status -> query.apply(entityManager));
+    }
+
+    /**
+     * Within a transaction or with an entity manager bound to the thread, e.g. by open-in-view
+     * for a web request, the caller keeps its connection until the transaction or request ends
+     */
+    private boolean holdsConnection() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                || TransactionSynchronizationManager.hasResource(entityManagerFactory);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
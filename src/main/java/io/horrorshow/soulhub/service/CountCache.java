@@ -0,0 +1,56 @@
+package io.horrorshow.soulhub.service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Short lived cache for totals of paged queries, so that a grid which asks for the size
+ * and then fetches its pages doesn't count the same filter again for every page.
+ * Entries expire after the ttl and are dropped on every write.
+ */
+public class CountCache {
+
+    private static final int MAX_ENTRIES = 1000;
+
+    private final long ttlNanos;
+    private final Map<String, Entry> counts = new ConcurrentHashMap<>();
+
+    public CountCache(Duration ttl) {
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    public Optional<Long> getFresh(String key) {
+        var entry = counts.get(key);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        if (System.nanoTime() - entry.createdAt > ttlNanos) {
+            counts.remove(key, entry);
+            return Optional.empty();
+        }
+        return Optional.of(entry.count);
+    }
+
+    public void put(String key, long count) {
+        if (counts.size() >= MAX_ENTRIES) {
+            counts.clear();
+        }
+        counts.put(key, new Entry(count, System.nanoTime()));
+    }
+
+    public void invalidateAll() {
+        counts.clear();
+    }
+
+    private static class Entry {
+        private final long count;
+        private final long createdAt;
+
+        private Entry(long count, long createdAt) {
+            this.count = count;
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package io.horrorshow.soulhub.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * One download of a soulpatch (zip) or of one of its files, see {@link DownloadEventLog}.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class DownloadEvent {
+
+    private final LocalDateTime occurredAt;
+    private final Long soulPatchId;
+    /** null for downloads of the whole soulpatch */
+    private final Long spFileId;
+    /** null for anonymous downloads */
+    private final Long appUserId;
+}
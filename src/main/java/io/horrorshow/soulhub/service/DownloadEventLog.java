@@ -0,0 +1,163 @@
+package io.horrorshow.soulhub.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Append-only log of soulpatch and file downloads.
+ * <p>
+ * {@link #record(DownloadEvent)} only puts the event into a bounded buffer and never blocks,
+ * events are dropped (and counted) if the buffer is full. A scheduled flush drains the buffer
+ * and writes each batch in one transaction: the raw events into the monthly partitions of
+ * download_events, the per day rollups into download_daily_rollups and the increments of
+ * soulpatches.no_views.
+ * <p>
+ * With soulhub.downloads.event-log.enabled=false (databases without the partitioned tables,
+ * e.g. H2) only the no_views counters are written.
+ */
+@Service
+@Log4j2
+public class DownloadEventLog implements MeterBinder {
+
+    static final int MONTHS_AHEAD = 2;
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    private static final String INSERT_EVENT =
+            "INSERT INTO download_events (occurred_at, soulpatch_id, spfile_id, app_user_id) VALUES (?, ?, ?, ?)";
+    private static final String UPSERT_DAILY_ROLLUP =
+            "INSERT INTO download_daily_rollups (day, soulpatch_id, downloads) VALUES (?, ?, ?) " +
+            "ON CONFLICT (day, soulpatch_id) " +
+            "DO UPDATE SET downloads = download_daily_rollups.downloads + EXCLUDED.downloads";
+    private static final String INCREMENT_NO_VIEWS =
+            "UPDATE soulpatches SET no_views = COALESCE(no_views, 0) + ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<DownloadEvent> buffer;
+    private final boolean eventLogEnabled;
+    private final int batchSize;
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+
+    public DownloadEventLog(@Autowired JdbcTemplate jdbcTemplate,
+                            @Autowired PlatformTransactionManager transactionManager,
+                            @Value("${soulhub.downloads.event-log.enabled:false}") boolean eventLogEnabled,
+                            @Value("${soulhub.downloads.buffer-size:10000}") int bufferSize,
+                            @Value("${soulhub.downloads.batch-size:1000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventLogEnabled = eventLogEnabled;
+        this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @return false if the event was dropped because the buffer is full
+     */
+    public boolean record(DownloadEvent event) {
+        if (buffer.offer(event)) {
+            return true;
+        }
+        if (dropped.incrementAndGet() % 1000 == 1) {
+            log.warn("download event buffer full, dropped {} events so far", dropped.get());
+        }
+        return false;
+    }
+
+    @Scheduled(fixedDelayString = "${soulhub.downloads.flush-interval-ms:2000}")
+    public void flush() {
+        List<DownloadEvent> batch = new ArrayList<>(batchSize);
+        while (buffer.drainTo(batch, batchSize) > 0) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> write(batch));
+                written.addAndGet(batch.size());
+            } catch (DataAccessException e) {
+                dropped.addAndGet(batch.size());
+                log.error("could not write {} download events", batch.size(), e);
+            }
+            batch.clear();
+        }
+    }
+
+    private void write(List<DownloadEvent> batch) {
+        if (eventLogEnabled) {
+            jdbcTemplate.batchUpdate(INSERT_EVENT, batch.stream()
+                    .map(event -> new Object[]{Timestamp.valueOf(event.getOccurredAt()),
+                            event.getSoulPatchId(), event.getSpFileId(), event.getAppUserId()})
+                    .collect(Collectors.toList()));
+
+            Map<List<Object>, Long> perDay = batch.stream().collect(Collectors.groupingBy(
+                    event -> List.of(event.getOccurredAt().toLocalDate(), event.getSoulPatchId()),
+                    Collectors.counting()));
+            jdbcTemplate.batchUpdate(UPSERT_DAILY_ROLLUP, perDay.entrySet().stream()
+                    .map(e -> new Object[]{java.sql.Date.valueOf((LocalDate) e.getKey().get(0)),
+                            e.getKey().get(1), e.getValue()})
+                    .collect(Collectors.toList()));
+        }
+
+        Map<Long, Long> perSOULPatch = batch.stream().collect(Collectors.groupingBy(
+                DownloadEvent::getSoulPatchId, TreeMap::new, Collectors.counting()));
+        // ordered by id, concurrent flushes of other instances lock rows in the same order
+        jdbcTemplate.batchUpdate(INCREMENT_NO_VIEWS, perSOULPatch.entrySet().stream()
+                .map(e -> new Object[]{e.getValue(), e.getKey()})
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Creates the monthly partitions of download_events for this and the next months.
+     * Old partitions can be detached or dropped as a whole once they're no longer needed.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${soulhub.downloads.partition-cron:0 0 3 * * *}")
+    public void createPartitions() {
+        if (!eventLogEnabled) return;
+        var month = LocalDate.now().withDayOfMonth(1);
+        for (int i = 0; i <= MONTHS_AHEAD; i++, month = month.plusMonths(1)) {
+            jdbcTemplate.execute(partitionDdl(month));
+        }
+    }
+
+    static String partitionDdl(LocalDate month) {
+        return String.format("CREATE TABLE IF NOT EXISTS download_events_%s PARTITION OF download_events " +
+                        "FOR VALUES FROM ('%s') TO ('%s')",
+                PARTITION_SUFFIX.format(month), month, month.plusMonths(1));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("soulhub.downloads.buffered", buffer, Collection::size)
+                .description("download events waiting to be written").register(registry);
+        FunctionCounter.builder("soulhub.downloads.written", written, AtomicLong::get)
+                .description("download events written").register(registry);
+        FunctionCounter.builder("soulhub.downloads.dropped", dropped, AtomicLong::get)
+                .description("download events dropped, buffer full or write failed").register(registry);
+    }
+}
@@ -0,0 +1,190 @@
+package io.horrorshow.soulhub.service;
+
+import io.horrorshow.soulhub.data.repository.SOULPatchRatingRepository;
+import io.horrorshow.soulhub.data.repository.SOULPatchRepository;
+import io.horrorshow.soulhub.data.repository.SPFileRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Platform wide numbers (soulpatches, files, downloads) and per day series of uploads,
+ * downloads and new ratings, served from memory.
+ * <p>
+ * The numbers follow the {@link SOULPatchChangedEvent}s and are periodically reloaded from
+ * the database to correct drift, e.g. files removed together with their soulpatch or
+ * writes that happened on another instance. Downloads are only recorded as a total in the
+ * database, so their per day series starts with the application.
+ */
+@Service
+@Log4j2
+public class PlatformStatisticsService implements MeterBinder {
+
+    public static final int SERIES_DAYS = 90;
+
+    private final SOULPatchRepository soulPatchRepository;
+    private final SPFileRepository spFileRepository;
+    private final SOULPatchRatingRepository ratingRepository;
+
+    private final AtomicLong soulPatches = new AtomicLong();
+    private final AtomicLong spFiles = new AtomicLong();
+    private final AtomicLong downloads = new AtomicLong();
+    private final ConcurrentSkipListMap<LocalDate, DailyStatistics> series = new ConcurrentSkipListMap<>();
+
+    public PlatformStatisticsService(@Autowired SOULPatchRepository soulPatchRepository,
+                                     @Autowired SPFileRepository spFileRepository,
+                                     @Autowired SOULPatchRatingRepository ratingRepository) {
+        this.soulPatchRepository = soulPatchRepository;
+        this.spFileRepository = spFileRepository;
+        this.ratingRepository = ratingRepository;
+    }
+
+    @Scheduled(fixedDelayString = "${soulhub.statistics.refresh-interval-ms:600000}")
+    @Transactional(readOnly = true)
+    public void refresh() {
+        soulPatches.set(soulPatchRepository.count());
+        spFiles.set(spFileRepository.count());
+        downloads.set(soulPatchRepository.totalNoSOULPatchDownloads());
+
+        var since = LocalDate.now().minusDays(SERIES_DAYS - 1L);
+        var uploadsPerDay = soulPatchRepository.countCreatedPerDaySince(since.atStartOfDay());
+        var ratingsPerDay = ratingRepository.countCreatedPerDaySince(since.atStartOfDay());
+        for (var day = since; !day.isAfter(LocalDate.now()); day = day.plusDays(1)) {
+            var statistics = day(day);
+            statistics.uploads.reset();
+            statistics.ratings.reset();
+        }
+        applyPerDay(uploadsPerDay, (statistics, count) -> statistics.uploads.add(count));
+        applyPerDay(ratingsPerDay, (statistics, count) -> statistics.ratings.add(count));
+        series.headMap(since).clear();
+
+        log.debug("platform statistics refreshed: {} soulpatches, {} files, {} downloads",
+                soulPatches.get(), spFiles.get(), downloads.get());
+    }
+
+    private void applyPerDay(List<Object[]> countsPerDay, BiConsumer<DailyStatistics, Long> apply) {
+        for (Object[] row : countsPerDay) {
+            var day = row[0] instanceof Date ? ((Date) row[0]).toLocalDate() : LocalDate.parse(row[0].toString());
+            apply.accept(day(day), ((Number) row[1]).longValue());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSOULPatchChanged(SOULPatchChangedEvent event) {
+        var today = day(event.getTimestamp().toLocalDate());
+        switch (event.getType()) {
+            case CREATED:
+                soulPatches.incrementAndGet();
+                today.uploads.increment();
+                break;
+            case DELETED:
+                soulPatches.decrementAndGet();
+                break;
+            case FILE_CREATED:
+                spFiles.incrementAndGet();
+                break;
+            case FILE_DELETED:
+                spFiles.decrementAndGet();
+                break;
+            case DOWNLOADED:
+                downloads.incrementAndGet();
+                today.downloads.increment();
+                break;
+            case RATED:
+                today.ratings.increment();
+                break;
+            default:
+                break;
+        }
+    }
+
+    private DailyStatistics day(LocalDate day) {
+        return series.computeIfAbsent(day, DailyStatistics::new);
+    }
+
+    public long getSOULPatchCount() {
+        return soulPatches.get();
+    }
+
+    public long getSPFileCount() {
+        return spFiles.get();
+    }
+
+    public long getTotalDownloads() {
+        return downloads.get();
+    }
+
+    /**
+     * @return one entry per day for the last days (at most {@link #SERIES_DAYS}), newest first
+     */
+    public List<DailyStatistics> getDailyStatistics(int days) {
+        var result = new ArrayList<DailyStatistics>();
+        var today = LocalDate.now();
+        for (int i = 0; i < Math.min(days, SERIES_DAYS); i++) {
+            var day = today.minusDays(i);
+            result.add(series.getOrDefault(day, new DailyStatistics(day)));
+        }
+        return result;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("soulhub.statistics.soulpatches", soulPatches, AtomicLong::get)
+                .description("stored soulpatches").register(registry);
+        Gauge.builder("soulhub.statistics.spfiles", spFiles, AtomicLong::get)
+                .description("stored soul and manifest files").register(registry);
+        Gauge.builder("soulhub.statistics.downloads", downloads, AtomicLong::get)
+                .description("total soulpatch downloads").register(registry);
+        Map.<String, ToLongFunction<DailyStatistics>>of(
+                "uploads", DailyStatistics::getUploads,
+                "downloads", DailyStatistics::getDownloads,
+                "ratings", DailyStatistics::getRatings)
+                .forEach((name, value) -> Gauge.builder("soulhub.statistics.today", this,
+                        service -> value.applyAsLong(service.day(LocalDate.now())))
+                        .tag("series", name)
+                        .description("uploads, downloads and new ratings today")
+                        .register(registry));
+    }
+
+    public static class DailyStatistics {
+        @Getter
+        private final LocalDate day;
+        private final LongAdder uploads = new LongAdder();
+        private final LongAdder downloads = new LongAdder();
+        private final LongAdder ratings = new LongAdder();
+
+        DailyStatistics(LocalDate day) {
+            this.day = day;
+        }
+
+        public long getUploads() {
+            return uploads.sum();
+        }
+
+        public long getDownloads() {
+            return downloads.sum();
+        }
+
+        public long getRatings() {
+            return ratings.sum();
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package io.horrorshow.soulhub.service;
+
+import com.helger.commons.annotation.VisibleForTesting;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maintains the precomputed sort keys of soulpatches.
+ * <p>
+ * trending_score: exponentially decayed sum of download, rating and upload weights, stored
+ * as log(sum(weight * e^(lambda * (t - epoch)))). Growing the exponent with time instead of
+ * shrinking old scores means stored scores never have to be rewritten to decay, an event
+ * only updates the score of its own soulpatch. Events are collected in memory and flushed
+ * as one bucket per patch.
+ * <p>
+ * quality_score: bayesian average of the ratings, (C * m + sum) / (C + count) with the
+ * global mean m, so that few votes stay close to the mean. Set to the prior on upload,
+ * updated for rated patches on every flush and recomputed for all patches (together with
+ * the rating aggregates) on a longer interval, writing only rows which drifted.
+ */
+@Service
+@Log4j2
+public class RankingService {
+
+    static final Duration TRENDING_HALF_LIFE = Duration.ofDays(3);
+    static final Instant TRENDING_EPOCH = LocalDateTime.of(2020, 1, 1, 0, 0).toInstant(ZoneOffset.UTC);
+    static final double DOWNLOAD_WEIGHT = 1.0d;
+    static final double UPLOAD_WEIGHT = 5.0d;
+    static final double MAX_RATING_WEIGHT = 3.0d;
+    static final double QUALITY_PRIOR_VOTES = 5.0d;
+    private static final double MAX_STARS = 5.0d;
+
+    /**
+     * log(e^score + e^increment), the exponent is clamped since EXP raises an underflow error
+     * in postgres below about -708, e.g. for patches still at the default score of 0 once the
+     * decay exponent has grown that far
+     */
+    static final String UPDATE_TRENDING_SCORE =
+            "UPDATE soulpatches SET trending_score = " +
+            "GREATEST(trending_score, ?) + LN(1 + EXP(GREATEST(-ABS(trending_score - ?), -700))) WHERE id = ?";
+    /** bayesian average, parameters are prior votes, mean rating, prior votes */
+    private static final String QUALITY_SCORE = "(? * ? + rating_sum) / (? + rating_count)";
+    /** only rows whose score drifted are written, parameters are those of the score twice */
+    static final String UPDATE_QUALITY_SCORE =
+            "UPDATE soulpatches SET quality_score = " + QUALITY_SCORE +
+            " WHERE quality_score IS DISTINCT FROM " + QUALITY_SCORE;
+    private static final String RATING_COUNT =
+            "(SELECT COUNT(*) FROM soulpatch_ratings r WHERE r.soulpatch_id = soulpatches.id)";
+    private static final String RATING_SUM =
+            "(SELECT COALESCE(SUM(r.stars), 0) FROM soulpatch_ratings r WHERE r.soulpatch_id = soulpatches.id)";
+    static final String UPDATE_RATING_AGGREGATES =
+            "UPDATE soulpatches SET rating_count = " + RATING_COUNT + ", rating_sum = " + RATING_SUM +
+            " WHERE rating_count IS DISTINCT FROM " + RATING_COUNT +
+            " OR rating_sum IS DISTINCT FROM " + RATING_SUM;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<Long, Double> pendingWeights = new ConcurrentHashMap<>();
+    private final Set<Long> pendingRated = ConcurrentHashMap.newKeySet();
+    private volatile double meanRating = MAX_STARS / 2;
+
+    public RankingService(@Autowired JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSOULPatchChanged(SOULPatchChangedEvent event) {
+        Long id = event.getSoulPatchId();
+        if (id == null) return;
+        switch (event.getType()) {
+            case CREATED:
+                pendingWeights.merge(id, UPLOAD_WEIGHT, Double::sum);
+                // the prior, an unrated patch must not rank below all rated ones until the recompute
+                jdbcTemplate.update(UPDATE_QUALITY_SCORE + " AND id = ?", qualityParameters(id));
+                break;
+            case DOWNLOADED:
+                pendingWeights.merge(id, DOWNLOAD_WEIGHT, Double::sum);
+                break;
+            case RATED:
+            case RERATED:
+                pendingWeights.merge(id, MAX_RATING_WEIGHT * event.getStars() / MAX_STARS, Double::sum);
+                pendingRated.add(id);
+                break;
+            case DELETED:
+                pendingWeights.remove(id);
+                pendingRated.remove(id);
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${soulhub.ranking.flush-interval-ms:60000}")
+    @Transactional
+    public void flush() {
+        double now = decayExponent(Instant.now());
+        List<Object[]> trending = new ArrayList<>();
+        for (Long id : pendingWeights.keySet()) {
+            Double weight = pendingWeights.remove(id);
+            if (weight != null && weight > 0) {
+                double increment = Math.log(weight) + now;
+                trending.add(new Object[]{increment, increment, id});
+            }
+        }
+        List<Object[]> quality = new ArrayList<>();
+        for (Long id : pendingRated) {
+            pendingRated.remove(id);
+            quality.add(qualityParameters(id));
+        }
+        if (!trending.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_TRENDING_SCORE, trending);
+        }
+        if (!quality.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_QUALITY_SCORE + " AND id = ?", quality);
+        }
+        if (!trending.isEmpty() || !quality.isEmpty()) {
+            log.debug("ranking flushed, trending updates: {}, quality updates: {}",
+                    trending.size(), quality.size());
+        }
+    }
+
+    /**
+     * Recomputes the rating aggregates from soulpatch_ratings, the global mean rating and
+     * the quality score of all soulpatches.
+     */
+    @Scheduled(fixedDelayString = "${soulhub.ranking.recompute-interval-ms:3600000}")
+    @Transactional
+    public void recompute() {
+        int drifted = jdbcTemplate.update(UPDATE_RATING_AGGREGATES);
+        Double mean = jdbcTemplate.queryForObject(
+                "SELECT AVG(CAST(stars AS double precision)) FROM soulpatch_ratings", Double.class);
+        meanRating = mean != null ? mean : MAX_STARS / 2;
+        int updated = jdbcTemplate.update(UPDATE_QUALITY_SCORE, qualityParameters());
+        log.debug("recomputed rating aggregates of {} and quality scores of {} soulpatches, mean rating {}",
+                drifted, updated, meanRating);
+    }
+
+    /**
+     * @return parameters of {@link #UPDATE_QUALITY_SCORE}
+     */
+    @VisibleForTesting
+    Object[] qualityParameters() {
+        double mean = meanRating;
+        return new Object[]{QUALITY_PRIOR_VOTES, mean, QUALITY_PRIOR_VOTES, QUALITY_PRIOR_VOTES, mean, QUALITY_PRIOR_VOTES};
+    }
+
+    /**
+     * @return parameters of {@link #UPDATE_QUALITY_SCORE} followed by the id
+     */
+    private Object[] qualityParameters(Long id) {
+        Object[] parameters = Arrays.copyOf(qualityParameters(), 7);
+        parameters[6] = id;
+        return parameters;
+    }
+
+    /**
+     * @return lambda * (t - epoch) with lambda = ln(2) / half life
+     */
+    @VisibleForTesting
+    static double decayExponent(Instant time) {
+        double seconds = Duration.between(TRENDING_EPOCH, time).toSeconds();
+        return Math.log(2) * seconds / TRENDING_HALF_LIFE.toSeconds();
+    }
+
+    /**
+     * @return log(e^a + e^b), the same function the trending update runs in sql
+     */
+    @VisibleForTesting
+    static double logAddExp(double a, double b) {
+        return Math.max(a, b) + Math.log1p(Math.exp(-Math.abs(a - b)));
+    }
+}
@@ -0,0 +1,107 @@
+package io.horrorshow.soulhub.service;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Identity cache of the current request, a REST call or one round trip of a Vaadin UI event.
+ * Entities are memoized per region (usually the entity class) and id, including ids which
+ * weren't found, so repeated lookups within one request read the database once. Lookups of
+ * several ids read only the missing ones with a single findAllById.
+ * <p>
+ * Entries live in a request attribute and are dropped with the request. Without a current
+ * request, e.g. on scheduler or push threads, every lookup goes to the loader.
+ */
+@Component
+public class RequestEntityCache {
+
+    static final String ATTRIBUTE = RequestEntityCache.class.getName();
+
+    /**
+     * @param findById loader of a single id, used on a cache miss
+     */
+    public <T> Optional<T> find(Object region, Long id, Function<Long, Optional<T>> findById) {
+        return memoize(region, id, () -> findById.apply(id));
+    }
+
+    /**
+     * @param findAllById called at most once with the ids which aren't cached yet
+     * @param idOf        id of a loaded entity
+     * @return the entities in the order of the ids, ids without entity are skipped
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> findAll(Object region, Collection<Long> ids,
+                               Function<Collection<Long>, ? extends Iterable<T>> findAllById,
+                               Function<T, Long> idOf) {
+        Map<Object, Optional<?>> entries = entries(region);
+        var missing = ids.stream()
+                .filter(id -> !entries.containsKey(id))
+                .distinct()
+                .collect(Collectors.toList());
+        if (!missing.isEmpty()) {
+            findAllById.apply(missing).forEach(entity -> entries.put(idOf.apply(entity), Optional.of(entity)));
+            missing.forEach(id -> entries.putIfAbsent(id, Optional.empty()));
+        }
+        return ids.stream()
+                .map(entries::get)
+                .flatMap(Optional::stream)
+                .map(entity -> (T) entity)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return the value memoized for the key, loaded by the supplier on the first call
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Optional<T> memoize(Object region, Object key, Supplier<Optional<T>> loader) {
+        Map<Object, Optional<?>> entries = entries(region);
+        var cached = entries.get(key);
+        if (cached != null) {
+            return (Optional<T>) cached;
+        }
+        Optional<T> loaded = loader.get();
+        entries.put(key, loaded);
+        return loaded;
+    }
+
+    /**
+     * Drops the entries of the region from the current request, after writes
+     */
+    public void evict(Object region) {
+        var regions = regions(false);
+        if (regions != null) {
+            regions.remove(region);
+        }
+    }
+
+    private Map<Object, Optional<?>> entries(Object region) {
+        var regions = regions(true);
+        return (regions != null) ? regions.computeIfAbsent(region, r -> new ConcurrentHashMap<>()) : new HashMap<>();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Object, Map<Object, Optional<?>>> regions(boolean create) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return null;
+        }
+        var regions = (Map<Object, Map<Object, Optional<?>>>)
+                attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (regions == null && create) {
+            regions = new ConcurrentHashMap<>();
+            attributes.setAttribute(ATTRIBUTE, regions, RequestAttributes.SCOPE_REQUEST);
+        }
+        return regions;
+    }
+}
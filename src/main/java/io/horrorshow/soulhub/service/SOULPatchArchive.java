@@ -0,0 +1,55 @@
+package io.horrorshow.soulhub.service;
+
+import lombok.Getter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * An opened zip archive of a soulpatch from the {@link SOULPatchArchiveCache}.
+ * The archive stays readable until closed, even if it is evicted from the cache meanwhile.
+ */
+@Getter
+public class SOULPatchArchive implements Closeable {
+
+    private final String contentHash;
+    private final long size;
+    private final FileChannel channel;
+
+    SOULPatchArchive(String contentHash, FileChannel channel) throws IOException {
+        this.contentHash = contentHash;
+        this.channel = channel;
+        this.size = channel.size();
+    }
+
+    /**
+     * @return the strong entity tag of the archive, derived from the content of the soulpatch's files
+     */
+    public String getETag() {
+        return '"' + contentHash + '"';
+    }
+
+    public void transferTo(OutputStream out) throws IOException {
+        transferTo(0, size, Channels.newChannel(out));
+    }
+
+    /**
+     * Copies the given range with {@link FileChannel#transferTo}. That is zero-copy only into
+     * file or socket channels, a channel over an output stream is written through a heap buffer.
+     */
+    public void transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        long end = position + count;
+        while (position < end) {
+            position += channel.transferTo(position, end - position, target);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
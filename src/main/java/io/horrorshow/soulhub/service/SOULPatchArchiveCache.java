@@ -0,0 +1,239 @@
+package io.horrorshow.soulhub.service;
+
+import io.horrorshow.soulhub.data.SOULPatch;
+import io.horrorshow.soulhub.data.SPFile;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Disk cache of soulpatch zip archives.
+ * <p>
+ * Archives are keyed by a SHA-256 hash over the names and contents of the soulpatch's files,
+ * so every revision of a soulpatch is zipped once, no matter how often it's downloaded.
+ * The least recently used archives are deleted once the cache grows beyond
+ * soulhub.archives.cache.max-size-mb. Archives of changed soulpatches are deleted right away.
+ */
+@Component
+@Log4j2
+public class SOULPatchArchiveCache implements MeterBinder {
+
+    private static final String SUFFIX = ".zip";
+    private static final Comparator<SPFile> FILE_ORDER = SOULPatchArchiveService.FILE_ORDER;
+
+    private final SOULPatchArchiveService archiveService;
+    private final Path directory;
+    private final long maxSizeBytes;
+
+    /** content hash -> archive size in bytes, in access order */
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<Long, String> hashBySOULPatchId = new ConcurrentHashMap<>();
+    private final Map<String, Object> buildLocks = new ConcurrentHashMap<>();
+    private final AtomicLong sizeBytes = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public SOULPatchArchiveCache(@Autowired SOULPatchArchiveService archiveService,
+                                 @Value("${soulhub.archives.cache.directory:}") String directory,
+                                 @Value("${soulhub.archives.cache.max-size-mb:256}") long maxSizeMb) throws IOException {
+        this.archiveService = archiveService;
+        this.directory = directory.isBlank()
+                ? Paths.get(System.getProperty("java.io.tmpdir"), "soulhub-archives")
+                : Paths.get(directory);
+        this.maxSizeBytes = maxSizeMb * 1024 * 1024;
+        Files.createDirectories(this.directory);
+        loadExistingArchives();
+    }
+
+    private void loadExistingArchives() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.sorted(Comparator.comparing(this::lastModified)).collect(Collectors.toList())) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(SUFFIX)) {
+                    add(name.substring(0, name.length() - SUFFIX.length()), Files.size(file));
+                } else {
+                    // leftovers of interrupted builds
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        evict();
+        log.info("archive cache {}: {} archives, {} bytes", directory, entries.size(), sizeBytes.get());
+    }
+
+    /**
+     * Opens the cached archive of the soulpatch, the archive is built if it's not cached.
+     * The caller has to close the returned archive.
+     */
+    public SOULPatchArchive open(SOULPatch soulPatch) throws IOException {
+        String hash = contentHash(soulPatch);
+        if (soulPatch.getId() != null) {
+            hashBySOULPatchId.put(soulPatch.getId(), hash);
+        }
+        try {
+            return new SOULPatchArchive(hash, FileChannel.open(archivePath(soulPatch, hash)));
+        } catch (NoSuchFileException e) {
+            // evicted between lookup and open
+            remove(hash);
+            return new SOULPatchArchive(hash, FileChannel.open(archivePath(soulPatch, hash)));
+        }
+    }
+
+    private Path archivePath(SOULPatch soulPatch, String hash) throws IOException {
+        Path path = directory.resolve(hash + SUFFIX);
+        synchronized (entries) {
+            if (entries.get(hash) != null) {
+                hits.incrementAndGet();
+                return path;
+            }
+        }
+        Object lock = buildLocks.computeIfAbsent(hash, h -> new Object());
+        synchronized (lock) {
+            try {
+                synchronized (entries) {
+                    if (entries.get(hash) != null) {
+                        hits.incrementAndGet();
+                        return path;
+                    }
+                }
+                misses.incrementAndGet();
+                Path tmp = Files.createTempFile(directory, hash, ".tmp");
+                try (OutputStream out = Files.newOutputStream(tmp)) {
+                    archiveService.writeZip(soulPatch, out);
+                } catch (IOException | RuntimeException e) {
+                    Files.deleteIfExists(tmp);
+                    throw e;
+                }
+                Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                add(hash, Files.size(path));
+                log.debug("archived soulpatch {} as {}", soulPatch.getId(), path);
+            } finally {
+                buildLocks.remove(hash);
+            }
+        }
+        evict();
+        return path;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSOULPatchChanged(SOULPatchChangedEvent event) {
+        switch (event.getType()) {
+            case DELETED:
+            case FILE_CREATED:
+            case FILE_UPDATED:
+            case FILE_DELETED:
+                String hash = hashBySOULPatchId.remove(event.getSoulPatchId());
+                if (hash != null) {
+                    remove(hash);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * SHA-256 over name and UTF-8 content of every file, in the order they're zipped.
+     */
+    static String contentHash(SOULPatch soulPatch) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        soulPatch.getSpFiles().stream().sorted(FILE_ORDER).forEach(spFile -> {
+            digest.update(String.valueOf(spFile.getName()).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            if (spFile.getFileContent() != null) {
+                digest.update(spFile.getFileContent().getBytes(StandardCharsets.UTF_8));
+            }
+            digest.update((byte) 0);
+        });
+        var hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private void add(String hash, long size) {
+        synchronized (entries) {
+            Long previous = entries.put(hash, size);
+            sizeBytes.addAndGet(size - (previous != null ? previous : 0L));
+        }
+    }
+
+    private void remove(String hash) {
+        synchronized (entries) {
+            Long size = entries.remove(hash);
+            if (size != null) {
+                sizeBytes.addAndGet(-size);
+            }
+        }
+        delete(hash);
+    }
+
+    private void evict() {
+        List<String> evicted = new ArrayList<>();
+        synchronized (entries) {
+            var it = entries.entrySet().iterator();
+            // the most recent archive is kept even if it alone exceeds the limit
+            while (sizeBytes.get() > maxSizeBytes && entries.size() > 1) {
+                var eldest = it.next();
+                it.remove();
+                sizeBytes.addAndGet(-eldest.getValue());
+                evicted.add(eldest.getKey());
+            }
+        }
+        // open archives stay readable, the file is only unlinked
+        evicted.forEach(this::delete);
+    }
+
+    private void delete(String hash) {
+        try {
+            Files.deleteIfExists(directory.resolve(hash + SUFFIX));
+        } catch (IOException e) {
+            log.warn("could not delete cached archive {}", hash, e);
+        }
+    }
+
+    private FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("soulhub.archives.cache.size", sizeBytes, AtomicLong::get)
+                .baseUnit("bytes").description("size of the cached soulpatch archives").register(registry);
+        FunctionCounter.builder("soulhub.archives.cache.requests", hits, AtomicLong::get)
+                .tag("result", "hit").register(registry);
+        FunctionCounter.builder("soulhub.archives.cache.requests", misses, AtomicLong::get)
+                .tag("result", "miss").register(registry);
+    }
+}
@@ -0,0 +1,143 @@
+package io.horrorshow.soulhub.service;
+
+import com.helger.commons.annotation.VisibleForTesting;
+import io.horrorshow.soulhub.data.SOULPatch;
+import io.horrorshow.soulhub.data.SPFile;
+import io.horrorshow.soulhub.data.util.StringUtils;
+import io.horrorshow.soulhub.exception.ServiceUnavailable;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes the files of a soulpatch as zip archive directly into the given stream,
+ * the archive is never held in memory as a whole.
+ * <p>
+ * Archives are written on the calling (servlet) thread, the number of archives written
+ * at the same time is bounded by soulhub.archives.max-concurrent.
+ */
+@Service
+@Log4j2
+public class SOULPatchArchiveService {
+
+    /** files are zipped in a stable order, see {@link SOULPatchArchiveCache#contentHash(SOULPatch)} */
+    static final Comparator<SPFile> FILE_ORDER = Comparator
+            .comparing(SPFile::getName, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+            .thenComparing(SPFile::getId, Comparator.nullsFirst(Comparator.<Long>naturalOrder()));
+
+    private final Semaphore permits;
+    private final long acquireTimeoutMs;
+
+    public SOULPatchArchiveService(@Value("${soulhub.archives.max-concurrent:8}") int maxConcurrent,
+                                   @Value("${soulhub.archives.acquire-timeout-ms:5000}") long acquireTimeoutMs) {
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.acquireTimeoutMs = acquireTimeoutMs;
+    }
+
+    /**
+     * @throws ServiceUnavailable if no archive slot became free in time
+     * @throws IOException        if writing to the stream failed, e.g. the client went away
+     */
+    public void writeZip(SOULPatch soulPatch, OutputStream out) throws IOException {
+        writeZip(out, String.format("soulpatch %d", soulPatch.getId()),
+                zos -> writeEntries(zos, "", soulPatch));
+        log.debug("zipped soulpatch files {}", soulPatch);
+    }
+
+    /**
+     * Writes one archive with a folder per soulpatch. Batches are requested one after
+     * another, so only the current batch has to be held in memory.
+     *
+     * @param batches may throw runtime exceptions while fetching, they're passed on
+     */
+    public void writeBundle(Iterator<List<SOULPatch>> batches, OutputStream out) throws IOException {
+        writeZip(out, "bundle", zos -> {
+            Map<String, Integer> folders = new HashMap<>();
+            while (batches.hasNext()) {
+                for (SOULPatch soulPatch : batches.next()) {
+                    String folder = appendNoIfDuplicateFilename(folders,
+                            StringUtils.toValidFilename(soulPatch.getName()));
+                    writeEntries(zos, folder + "/", soulPatch);
+                }
+            }
+        });
+    }
+
+    private void writeZip(OutputStream out, String description, ZipContent content) throws IOException {
+        acquire(description);
+        try {
+            var zos = new ZipOutputStream(out);
+            content.writeTo(zos);
+            // finish, not close: the stream belongs to the caller
+            zos.finish();
+            zos.flush();
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void writeEntries(ZipOutputStream zos, String folder, SOULPatch soulPatch) throws IOException {
+        Map<String, Integer> filenames = new HashMap<>();
+        List<SPFile> spFiles = soulPatch.getSpFiles().stream().sorted(FILE_ORDER).collect(Collectors.toList());
+        for (SPFile spFile : spFiles) {
+            byte[] content = (spFile.getFileContent() != null)
+                    ? spFile.getFileContent().getBytes(StandardCharsets.UTF_8)
+                    : new byte[0];
+            zos.putNextEntry(new ZipEntry(folder + appendNoIfDuplicateFilename(filenames, spFile.getName())));
+            zos.write(content);
+            zos.closeEntry();
+        }
+    }
+
+    public byte[] zip(SOULPatch soulPatch) throws IOException {
+        var baos = new ByteArrayOutputStream();
+        writeZip(soulPatch, baos);
+        return baos.toByteArray();
+    }
+
+    private void acquire(String description) {
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new ServiceUnavailable(String.format(
+                        "too many concurrent downloads, could not zip %s", description));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailable("interrupted while waiting for a download slot", e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ZipContent {
+        void writeTo(ZipOutputStream zos) throws IOException;
+    }
+
+    @VisibleForTesting
+    String appendNoIfDuplicateFilename(Map<String, Integer> filenames, String filename) {
+        if(filenames.containsKey(filename)) {
+            filenames.put(filename, filenames.get(filename) + 1);
+        } else {
+            filenames.put(filename, 0);
+        }
+
+        if(filenames.get(filename) > 0) {
+            filename += "_(" + filenames.get(filename) + ")";
+        }
+        return filename;
+    }
+}
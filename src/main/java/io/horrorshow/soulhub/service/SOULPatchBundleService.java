@@ -0,0 +1,133 @@
+package io.horrorshow.soulhub.service;
+
+import io.horrorshow.soulhub.data.AppUser;
+import io.horrorshow.soulhub.data.SOULPatch;
+import io.horrorshow.soulhub.data.util.SOULPatchesFetchFilter;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Downloads of many soulpatches as one zip archive with a folder per soulpatch.
+ * <p>
+ * The soulpatches are loaded in batches of soulhub.archives.bundle.batch-size on the
+ * {@link AsyncQueryExecutor}, the next batch is loaded while the current one is written.
+ */
+@Service
+@Log4j2
+public class SOULPatchBundleService {
+
+    private static final String FETCH_WITH_FILES =
+            "SELECT DISTINCT sp FROM SOULPatch sp LEFT JOIN FETCH sp.spFiles WHERE sp.id IN :ids";
+
+    private final SOULPatchService soulPatchService;
+    private final SOULPatchArchiveService archiveService;
+    private final AsyncQueryExecutor asyncQueryExecutor;
+    private final int batchSize;
+    private final int maxSOULPatches;
+
+    public SOULPatchBundleService(@Autowired SOULPatchService soulPatchService,
+                                  @Autowired SOULPatchArchiveService archiveService,
+                                  @Autowired AsyncQueryExecutor asyncQueryExecutor,
+                                  @Value("${soulhub.archives.bundle.batch-size:25}") int batchSize,
+                                  @Value("${soulhub.archives.bundle.max-soulpatches:500}") int maxSOULPatches) {
+        this.soulPatchService = soulPatchService;
+        this.archiveService = archiveService;
+        this.asyncQueryExecutor = asyncQueryExecutor;
+        this.batchSize = batchSize;
+        this.maxSOULPatches = maxSOULPatches;
+    }
+
+    public int getMaxSOULPatches() {
+        return maxSOULPatches;
+    }
+
+    public List<Long> findIds(SOULPatchesFetchFilter filter) {
+        return soulPatchService.findAnyMatchingIds(filter, maxSOULPatches);
+    }
+
+    /**
+     * Writes the bundle and counts one download per contained soulpatch.
+     *
+     * @param soulPatchIds unknown ids are skipped
+     * @throws IllegalArgumentException if there are more than soulhub.archives.bundle.max-soulpatches ids
+     */
+    public void writeBundle(List<Long> soulPatchIds, AppUser appUser, OutputStream out) throws IOException {
+        List<Long> ids = soulPatchIds.stream().distinct().collect(Collectors.toList());
+        if (ids.size() > maxSOULPatches) {
+            throw new IllegalArgumentException(String.format(
+                    "a bundle can contain at most %d soulpatches, got %d", maxSOULPatches, ids.size()));
+        }
+        List<Long> written = new ArrayList<>(ids.size());
+        archiveService.writeBundle(new PrefetchingIterator(ids, written), out);
+        soulPatchService.soulPatchesDownloaded(written, appUser);
+        log.debug("wrote bundle of {} soulpatches", written.size());
+    }
+
+    private CompletableFuture<List<SOULPatch>> fetch(List<Long> batch) {
+        return asyncQueryExecutor.submit(em -> {
+            Map<Long, SOULPatch> byId = em.createQuery(FETCH_WITH_FILES, SOULPatch.class)
+                    .setParameter("ids", batch)
+                    .getResultStream()
+                    .collect(Collectors.toMap(SOULPatch::getId, Function.identity()));
+            // keep the requested order
+            return batch.stream().map(byId::get).filter(Objects::nonNull).collect(Collectors.toList());
+        });
+    }
+
+    private class PrefetchingIterator implements Iterator<List<SOULPatch>> {
+
+        private final List<Long> ids;
+        private final List<Long> written;
+        private int nextOffset = 0;
+        private CompletableFuture<List<SOULPatch>> pending;
+
+        PrefetchingIterator(List<Long> ids, List<Long> written) {
+            this.ids = ids;
+            this.written = written;
+            this.pending = fetchNext();
+        }
+
+        private CompletableFuture<List<SOULPatch>> fetchNext() {
+            if (nextOffset >= ids.size()) {
+                return null;
+            }
+            var batch = ids.subList(nextOffset, Math.min(nextOffset + batchSize, ids.size()));
+            nextOffset += batch.size();
+            return fetch(new ArrayList<>(batch));
+        }
+
+        @Override
+        public boolean hasNext() {
+            return pending != null;
+        }
+
+        @Override
+        public List<SOULPatch> next() {
+            if (pending == null) {
+                throw new NoSuchElementException();
+            }
+            List<SOULPatch> batch;
+            try {
+                batch = pending.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted while loading soulpatches", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("could not load soulpatches", e.getCause());
+            }
+            pending = fetchNext();
+            batch.forEach(soulPatch -> written.add(soulPatch.getId()));
+            return batch;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package io.horrorshow.soulhub.service;
+
+import io.horrorshow.soulhub.data.SOULPatchTombstone;
+import io.horrorshow.soulhub.data.records.SOULPatchChangeRecord;
+import io.horrorshow.soulhub.data.records.SOULPatchChangesRecord;
+import io.horrorshow.soulhub.data.records.SOULPatchRecord;
+import io.horrorshow.soulhub.data.records.SOULPatchRecordField;
+import io.horrorshow.soulhub.data.repository.SOULPatchRepository;
+import io.horrorshow.soulhub.data.repository.SOULPatchTombstoneRepository;
+import io.horrorshow.soulhub.data.util.SOULPatchChangeCursor;
+import io.horrorshow.soulhub.exception.CursorExpired;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Incremental sync of the catalog: creates and updates by the indexed updated_at of the
+ * soulpatches, deletes by {@link SOULPatchTombstone}, merged into one feed ordered by
+ * (time of change, id).
+ * <p>
+ * Changes younger than the settle time are held back, a transaction which stamped its rows
+ * before but commits after a page was read would otherwise be skipped by the cursor.
+ * Tombstones are purged after the retention, cursors older than that have to start over.
+ * Pages without changes move the cursor up to the settled time, so only clients which
+ * haven't synced within the retention fall behind.
+ */
+@Service
+@Log4j2
+public class SOULPatchChangeFeedService {
+
+    private final SOULPatchRepository soulPatchRepository;
+    private final SOULPatchTombstoneRepository tombstoneRepository;
+    private final Duration settleTime;
+    private final Duration tombstoneRetention;
+
+    public SOULPatchChangeFeedService(@Autowired SOULPatchRepository soulPatchRepository,
+                                      @Autowired SOULPatchTombstoneRepository tombstoneRepository,
+                                      @Value("${soulhub.changes.settle-time-ms:5000}") long settleTimeMs,
+                                      @Value("${soulhub.changes.tombstone-retention-days:30}") long retentionDays) {
+        this.soulPatchRepository = soulPatchRepository;
+        this.tombstoneRepository = tombstoneRepository;
+        this.settleTime = Duration.ofMillis(settleTimeMs);
+        this.tombstoneRetention = Duration.ofDays(retentionDays);
+    }
+
+    /**
+     * @param limit  maximum number of changes
+     * @param fields of the soulpatch records of upserts
+     * @throws CursorExpired if tombstones after the cursor may have been purged
+     */
+    @Transactional(readOnly = true)
+    public SOULPatchChangesRecord findChangesAfter(SOULPatchChangeCursor cursor, int limit,
+                                                   Set<SOULPatchRecordField> fields) {
+        var now = LocalDateTime.now();
+        if (!cursor.equals(SOULPatchChangeCursor.START)
+                && cursor.getChangedAt().isBefore(now.minus(tombstoneRetention))) {
+            throw new CursorExpired(String.format(
+                    "cursor older than %d days, sync from the start", tombstoneRetention.toDays()));
+        }
+        var until = now.minus(settleTime);
+        var page = PageRequest.of(0, limit + 1);
+
+        List<Change> changes = new ArrayList<>();
+        for (Object[] row : soulPatchRepository.findUpdatedAfter(
+                cursor.getChangedAt(), cursor.getId(), until, page)) {
+            changes.add(new Change(SOULPatchChangeCursor.of((LocalDateTime) row[1], (Long) row[0]), false));
+        }
+        for (SOULPatchTombstone tombstone : tombstoneRepository.findDeletedAfter(
+                cursor.getChangedAt(), cursor.getId(), until, page)) {
+            changes.add(new Change(SOULPatchChangeCursor.of(tombstone.getDeletedAt(), tombstone.getSoulPatchId()), true));
+        }
+        changes.sort(Comparator.comparing((Change c) -> c.position.getChangedAt())
+                .thenComparing(c -> c.position.getId()));
+        boolean more = changes.size() > limit;
+        changes = changes.subList(0, Math.min(limit, changes.size()));
+
+        List<Long> upsertIds = changes.stream()
+                .filter(c -> !c.deleted)
+                .map(c -> c.position.getId())
+                .collect(Collectors.toList());
+        Map<Long, SOULPatchRecord> records = soulPatchRepository.findRecords(upsertIds, fields).stream()
+                .collect(Collectors.toMap(SOULPatchRecord::getId, Function.identity()));
+
+        List<SOULPatchChangeRecord> result = new ArrayList<>();
+        for (Change change : changes) {
+            Long id = change.position.getId();
+            if (change.deleted) {
+                result.add(new SOULPatchChangeRecord(id, SOULPatchChangeRecord.TYPE_DELETE,
+                        change.position.getChangedAt(), null));
+            } else if (records.containsKey(id)) {
+                result.add(new SOULPatchChangeRecord(id, SOULPatchChangeRecord.TYPE_UPSERT,
+                        change.position.getChangedAt(), records.get(id)));
+            }
+            // else deleted since, its tombstone follows
+        }
+        SOULPatchChangeCursor next;
+        if (!changes.isEmpty()) {
+            next = changes.get(changes.size() - 1).position;
+        } else if (until.isAfter(cursor.getChangedAt())) {
+            // nothing before until, an idle client's cursor keeps up and never expires
+            next = SOULPatchChangeCursor.of(until, 0L);
+        } else {
+            next = cursor;
+        }
+        return new SOULPatchChangesRecord(result, next.encode(), more);
+    }
+
+    /**
+     * Runs in the transaction of the write, so the tombstone or the new updated_at
+     * is committed together with the change. Downloads and ratings are published outside
+     * of transactions, the condition keeps them from opening one just to be ignored.
+     */
+    @EventListener(condition = "#event.type.name() == 'DELETED' or #event.type.name().startsWith('FILE_')")
+    @Transactional
+    public void onSOULPatchChanged(SOULPatchChangedEvent event) {
+        switch (event.getType()) {
+            case DELETED:
+                tombstoneRepository.save(new SOULPatchTombstone(event.getSoulPatchId(), event.getTimestamp()));
+                break;
+            case FILE_CREATED:
+            case FILE_UPDATED:
+            case FILE_DELETED:
+                soulPatchRepository.touch(event.getSoulPatchId(), event.getTimestamp());
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${soulhub.changes.purge-interval-ms:3600000}")
+    @Transactional
+    public void purgeTombstones() {
+        int purged = tombstoneRepository.deleteDeletedBefore(LocalDateTime.now().minus(tombstoneRetention));
+        if (purged > 0) {
+            log.info("purged {} soulpatch tombstones", purged);
+        }
+    }
+
+    private static final class Change {
+        private final SOULPatchChangeCursor position;
+        private final boolean deleted;
+
+        private Change(SOULPatchChangeCursor position, boolean deleted) {
+            this.position = position;
+            this.deleted = deleted;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package io.horrorshow.soulhub.service;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * Published by {@link SOULPatchService} for every write on a soulpatch, its files or
+ * its ratings. Listeners that only care about committed data should use
+ * {@code @TransactionalEventListener(fallbackExecution = true)}.
+ */
+@Getter
+@ToString
+public class SOULPatchChangedEvent {
+
+    private final Type type;
+    private final Long soulPatchId;
+    private final Long spFileId;
+    private final Long appUserId;
+    private final Integer stars;
+    private final LocalDateTime timestamp = LocalDateTime.now();
+
+    private SOULPatchChangedEvent(Type type, Long soulPatchId, Long spFileId, Long appUserId, Integer stars) {
+        this.type = type;
+        this.soulPatchId = soulPatchId;
+        this.spFileId = spFileId;
+        this.appUserId = appUserId;
+        this.stars = stars;
+    }
+
+    public static SOULPatchChangedEvent of(Type type, Long soulPatchId) {
+        return new SOULPatchChangedEvent(type, soulPatchId, null, null, null);
+    }
+
+    public static SOULPatchChangedEvent ofFile(Type type, Long soulPatchId, Long spFileId) {
+        return new SOULPatchChangedEvent(type, soulPatchId, spFileId, null, null);
+    }
+
+    public static SOULPatchChangedEvent rated(Long soulPatchId, Long appUserId, Integer stars, boolean newRating) {
+        return new SOULPatchChangedEvent(newRating ? Type.RATED : Type.RERATED,
+                soulPatchId, null, appUserId, stars);
+    }
+
+    public static SOULPatchChangedEvent downloaded(Long soulPatchId, Long spFileId, Long appUserId) {
+        return new SOULPatchChangedEvent(Type.DOWNLOADED, soulPatchId, spFileId, appUserId, null);
+    }
+
+    public enum Type {
+        CREATED, UPDATED, DELETED,
+        FILE_CREATED, FILE_UPDATED, FILE_DELETED,
+        RATED, RERATED,
+        DOWNLOADED
+    }
+}
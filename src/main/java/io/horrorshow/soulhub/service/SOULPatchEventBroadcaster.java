@@ -0,0 +1,351 @@
+package io.horrorshow.soulhub.service;
+
+import com.helger.commons.annotation.VisibleForTesting;
+import io.horrorshow.soulhub.data.records.SOULPatchUpdateRecord;
+import io.horrorshow.soulhub.exception.ServiceUnavailable;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Pushes committed soulpatch changes to server-sent event subscribers.
+ * <p>
+ * Changes are coalesced per soulpatch for one window, a burst of downloads is a single update
+ * with a download count. At the end of every window the window thread hands the updates to the
+ * buffers of all subscribers and starts a send for each subscriber which has none in flight.
+ * Sends run on a bounded pool of sender-threads, a slow or stalled client holds up one sender
+ * thread until the container's write times out, not the other subscribers.
+ * <p>
+ * While its send is in flight a subscriber's buffer keeps collecting the following windows.
+ * It holds at most buffer-size soulpatches: updates of buffered patches are merged, others are
+ * dropped and the subscriber gets an "overflow" event instead, telling it to refetch over REST.
+ * Idle subscribers get a heartbeat comment, which also finds connections closed by the client.
+ */
+@Service
+@Log4j2
+public class SOULPatchEventBroadcaster implements MeterBinder {
+
+    static final String EVENT_UPDATES = "soulpatches";
+    static final String EVENT_OVERFLOW = "overflow";
+
+    private final long windowMs;
+    private final long heartbeatMs;
+    private final long timeoutMs;
+    private final int bufferSize;
+    private final int maxSubscribers;
+    private final int senderThreads;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    // slots taken by subscribers, reserved before a subscriber is added and released on its removal
+    private final AtomicInteger subscriberSlots = new AtomicInteger();
+    private final Object pendingLock = new Object();
+    private Map<Long, Update> pending = new HashMap<>();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private ScheduledExecutorService windows;
+    private ThreadPoolExecutor sender;
+
+    public SOULPatchEventBroadcaster(@Value("${soulhub.events.window-ms:1000}") long windowMs,
+                                     @Value("${soulhub.events.heartbeat-ms:15000}") long heartbeatMs,
+                                     @Value("${soulhub.events.timeout-ms:1800000}") long timeoutMs,
+                                     @Value("${soulhub.events.buffer-size:256}") int bufferSize,
+                                     @Value("${soulhub.events.max-subscribers:1000}") int maxSubscribers,
+                                     @Value("${soulhub.events.sender-threads:4}") int senderThreads) {
+        this.windowMs = windowMs;
+        this.heartbeatMs = heartbeatMs;
+        this.timeoutMs = timeoutMs;
+        this.bufferSize = bufferSize;
+        this.maxSubscribers = maxSubscribers;
+        this.senderThreads = senderThreads;
+    }
+
+    @PostConstruct
+    void start() {
+        windows = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "soulpatch-events");
+            thread.setDaemon(true);
+            return thread;
+        });
+        var threadNo = new AtomicInteger();
+        // at most one send per subscriber is queued or running
+        sender = new ThreadPoolExecutor(senderThreads, senderThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(maxSubscribers),
+                runnable -> {
+                    var thread = new Thread(runnable, "soulpatch-events-send-" + threadNo.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        sender.allowCoreThreadTimeOut(true);
+        windows.scheduleWithFixedDelay(this::publish, windowMs, windowMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        windows.shutdownNow();
+        sender.shutdownNow();
+        subscribers.forEach(subscriber -> {
+            subscriber.emitter.complete();
+            remove(subscriber);
+        });
+    }
+
+    /**
+     * @param soulPatchIds only updates of these soulpatches, all if empty
+     * @throws ServiceUnavailable if there are max-subscribers already
+     */
+    public SseEmitter subscribe(Set<Long> soulPatchIds) {
+        var emitter = new SseEmitter(timeoutMs);
+        register(emitter, soulPatchIds);
+        return emitter;
+    }
+
+    /**
+     * @throws ServiceUnavailable if there are max-subscribers already
+     */
+    @VisibleForTesting
+    void register(SseEmitter emitter, Set<Long> soulPatchIds) {
+        if (subscriberSlots.incrementAndGet() > maxSubscribers) {
+            subscriberSlots.decrementAndGet();
+            throw new ServiceUnavailable(String.format("more than %d event subscribers", maxSubscribers));
+        }
+        var subscriber = new Subscriber(emitter, soulPatchIds, bufferSize);
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> remove(subscriber));
+        subscribers.add(subscriber);
+    }
+
+    /**
+     * Removes the subscriber and releases its slot, only the first of its removals does
+     */
+    private void remove(Subscriber subscriber) {
+        if (subscribers.remove(subscriber)) {
+            subscriberSlots.decrementAndGet();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSOULPatchChanged(SOULPatchChangedEvent event) {
+        if (event.getSoulPatchId() == null) return;
+        var update = Update.of(event);
+        synchronized (pendingLock) {
+            pending.merge(update.id, update, Update::merge);
+        }
+    }
+
+    @VisibleForTesting
+    Collection<Update> drainPending() {
+        Map<Long, Update> drained;
+        synchronized (pendingLock) {
+            drained = pending;
+            pending = new HashMap<>();
+        }
+        return drained.values();
+    }
+
+    @VisibleForTesting
+    void publish() {
+        try {
+            var updates = drainPending();
+            long now = System.currentTimeMillis();
+            for (Subscriber subscriber : subscribers) {
+                updates.forEach(update -> {
+                    if (!subscriber.offer(update)) dropped.incrementAndGet();
+                });
+                var event = subscriber.nextEvent(now, heartbeatMs);
+                if (event != null) {
+                    try {
+                        sender.execute(() -> send(subscriber, event));
+                    } catch (RejectedExecutionException e) {
+                        subscriber.rejected();
+                    }
+                }
+            }
+            sent.addAndGet(updates.size());
+        } catch (RuntimeException e) {
+            log.error("publishing soulpatch events failed", e);
+        }
+    }
+
+    private void send(Subscriber subscriber, SseEmitter.SseEventBuilder event) {
+        try {
+            subscriber.send(event);
+        } catch (IOException | IllegalStateException e) {
+            // the container reports the broken connection to the emitter as well
+            log.debug("event subscriber gone: {}", e.toString());
+            remove(subscriber);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("soulhub.events.subscribers", subscriberSlots, AtomicInteger::get)
+                .description("open server-sent event connections").register(registry);
+        FunctionCounter.builder("soulhub.events.published", sent, AtomicLong::get)
+                .description("coalesced soulpatch updates published").register(registry);
+        FunctionCounter.builder("soulhub.events.dropped", dropped, AtomicLong::get)
+                .description("soulpatch updates dropped, subscriber buffer full").register(registry);
+    }
+
+    /**
+     * Changes of one soulpatch within a window
+     */
+    static final class Update {
+        private final Long id;
+        private final Set<String> changes = new TreeSet<>();
+        private long downloads;
+        private long ratings;
+
+        private Update(Long id) {
+            this.id = id;
+        }
+
+        static Update of(SOULPatchChangedEvent event) {
+            var update = new Update(event.getSoulPatchId());
+            switch (event.getType()) {
+                case CREATED:
+                case DELETED:
+                    update.changes.add(event.getType().name());
+                    break;
+                case DOWNLOADED:
+                    update.changes.add(event.getType().name());
+                    update.downloads = 1;
+                    break;
+                case RATED:
+                case RERATED:
+                    update.changes.add(SOULPatchChangedEvent.Type.RATED.name());
+                    update.ratings = 1;
+                    break;
+                default:
+                    update.changes.add(SOULPatchChangedEvent.Type.UPDATED.name());
+            }
+            return update;
+        }
+
+        Update merge(Update other) {
+            var merged = new Update(id);
+            merged.changes.addAll(changes);
+            merged.changes.addAll(other.changes);
+            merged.downloads = downloads + other.downloads;
+            merged.ratings = ratings + other.ratings;
+            return merged;
+        }
+
+        SOULPatchUpdateRecord toRecord() {
+            return new SOULPatchUpdateRecord(id, Collections.unmodifiableSet(changes), downloads, ratings);
+        }
+    }
+
+    /**
+     * Buffered by the window thread, sent by a sender thread, at most one send at a time
+     */
+    static final class Subscriber {
+        private final SseEmitter emitter;
+        private final Set<Long> soulPatchIds;
+        private final int bufferSize;
+        private final Map<Long, Update> buffer = new LinkedHashMap<>();
+        private boolean overflow;
+        private boolean sending;
+        private long lastSent = System.currentTimeMillis();
+
+        Subscriber(SseEmitter emitter, Set<Long> soulPatchIds, int bufferSize) {
+            this.emitter = emitter;
+            this.soulPatchIds = soulPatchIds;
+            this.bufferSize = bufferSize;
+        }
+
+        /**
+         * @return false if the update was dropped
+         */
+        synchronized boolean offer(Update update) {
+            if (!soulPatchIds.isEmpty() && !soulPatchIds.contains(update.id)) {
+                return true;
+            }
+            if (buffer.containsKey(update.id)) {
+                buffer.merge(update.id, update, Update::merge);
+                return true;
+            }
+            if (buffer.size() < bufferSize) {
+                buffer.put(update.id, update);
+                return true;
+            }
+            overflow = true;
+            return false;
+        }
+
+        synchronized boolean isOverflow() {
+            return overflow;
+        }
+
+        synchronized List<SOULPatchUpdateRecord> drain() {
+            var records = buffer.values().stream().map(Update::toRecord).collect(Collectors.toList());
+            buffer.clear();
+            overflow = false;
+            return records;
+        }
+
+        /**
+         * Takes the buffered updates as the next event and marks the send as in flight
+         *
+         * @return null if there is nothing to send yet or the previous send is still in flight
+         */
+        synchronized SseEmitter.SseEventBuilder nextEvent(long now, long heartbeatMs) {
+            SseEmitter.SseEventBuilder event;
+            if (sending) {
+                return null;
+            } else if (overflow) {
+                drain();
+                event = SseEmitter.event().name(EVENT_OVERFLOW).data("");
+            } else if (!buffer.isEmpty()) {
+                event = SseEmitter.event().name(EVENT_UPDATES).data(drain(), MediaType.APPLICATION_JSON);
+            } else if (now - lastSent >= heartbeatMs) {
+                event = SseEmitter.event().comment("heartbeat");
+            } else {
+                return null;
+            }
+            sending = true;
+            lastSent = now;
+            return event;
+        }
+
+        /**
+         * The event couldn't be sent, the client has to refetch
+         */
+        synchronized void rejected() {
+            sending = false;
+            overflow = true;
+        }
+
+        void send(SseEmitter.SseEventBuilder event) throws IOException {
+            try {
+                emitter.send(event);
+            } finally {
+                synchronized (this) {
+                    sending = false;
+                }
+            }
+        }
+    }
+}
@@ -1,42 +1,60 @@
 package io.horrorshow.soulhub.service;
 
-import com.helger.commons.annotation.VisibleForTesting;
 import io.horrorshow.soulhub.data.*;
 import io.horrorshow.soulhub.data.api.SOULPatchParser;
-import io.horrorshow.soulhub.data.records.RecordsConverter;
+import io.horrorshow.soulhub.data.records.SOULPatchOperation;
+import io.horrorshow.soulhub.data.records.SOULPatchOperationResult;
 import io.horrorshow.soulhub.data.records.SOULPatchRecord;
+import io.horrorshow.soulhub.data.records.SOULPatchRecordField;
+import io.horrorshow.soulhub.data.records.SPFileRecord;
+import io.horrorshow.soulhub.data.repository.SOULPatchRatingRepository;
 import io.horrorshow.soulhub.data.repository.SOULPatchRepository;
 import io.horrorshow.soulhub.data.repository.SPFileRepository;
+import io.horrorshow.soulhub.data.util.SOULPatchCursor;
+import io.horrorshow.soulhub.data.util.SOULPatchSort;
 import io.horrorshow.soulhub.data.util.SOULPatchesFetchFilter;
+import io.horrorshow.soulhub.exception.BatchFailed;
+import io.horrorshow.soulhub.exception.PreconditionFailed;
 import io.horrorshow.soulhub.exception.ResourceNotFound;
 import io.horrorshow.soulhub.xml.SOULFileXMLType;
 import io.horrorshow.soulhub.xml.SOULPatchFileXMLType;
 import io.horrorshow.soulhub.xml.SOULPatchXMLType;
 import lombok.extern.log4j.Log4j2;
 import org.apache.commons.lang3.math.NumberUtils;
-import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.analysis.TokenStream;
-import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.hibernate.search.engine.ProjectionConstants;
+import org.hibernate.search.jpa.FullTextEntityManager;
+import org.hibernate.search.jpa.FullTextQuery;
 import org.hibernate.search.jpa.Search;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.activation.DataHandler;
+import javax.mail.util.ByteArrayDataSource;
+import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.PersistenceUnit;
 import javax.persistence.criteria.*;
-import javax.transaction.Transactional;
 import javax.validation.ValidationException;
 import javax.validation.constraints.NotNull;
-import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
 import java.util.stream.Collectors;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+
+import static io.horrorshow.soulhub.service.SOULPatchChangedEvent.Type.*;
 
 @Service
 @Transactional
@@ -46,35 +64,71 @@ public class SOULPatchService {
     private static final int MIN_RATING_STARS = 0;
     private static final int MAX_RATING_STARS = 5;
 
+    private static final Duration COUNT_CACHE_TTL = Duration.ofSeconds(10);
+
+    private static final String ATTACHMENT_CONTENT_TYPE = "application/octet-stream";
+
+    private static final Set<String> RANKED_PROPERTIES = Set.of(
+            SOULPatch_.NAME, SOULPatch_.DESCRIPTION, AuditModel_.CREATED_AT,
+            SOULPatch_.QUALITY_SCORE, SOULPatch_.TRENDING_SCORE);
+
     private final SOULPatchRepository soulPatchRepository;
     private final SPFileRepository spFileRepository;
+    private final SOULPatchRatingRepository ratingRepository;
 
     @PersistenceUnit
     private final EntityManagerFactory entityManagerFactory;
+    private final EntityManager entityManager;
+    private final AsyncQueryExecutor asyncQueryExecutor;
+    private final DownloadEventLog downloadEventLog;
+    private final ApplicationEventPublisher eventPublisher;
+    private final RequestEntityCache requestCache;
+    private final CountCache countCache = new CountCache(COUNT_CACHE_TTL);
 
     @Autowired
     public SOULPatchService(SOULPatchRepository soulPatchRepository,
                             SPFileRepository spFileRepository,
-                            EntityManagerFactory entityManagerFactory) {
+                            SOULPatchRatingRepository ratingRepository,
+                            EntityManagerFactory entityManagerFactory,
+                            AsyncQueryExecutor asyncQueryExecutor,
+                            DownloadEventLog downloadEventLog,
+                            ApplicationEventPublisher eventPublisher,
+                            RequestEntityCache requestCache) {
         this.soulPatchRepository = soulPatchRepository;
         this.spFileRepository = spFileRepository;
+        this.ratingRepository = ratingRepository;
         this.entityManagerFactory = entityManagerFactory;
+        this.entityManager = SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory);
+        this.asyncQueryExecutor = asyncQueryExecutor;
+        this.downloadEventLog = downloadEventLog;
+        this.eventPublisher = eventPublisher;
+        this.requestCache = requestCache;
     }
 
+    @Transactional(readOnly = true)
     public List<SOULPatch> findAll() {
         return soulPatchRepository.findAll();
     }
 
-    public List<SOULPatchRecord> getAllSOULPatchRecords() {
-        return findAll().stream()
-                .map(RecordsConverter::newSoulPatchRecord)
-                .collect(Collectors.toList());
+    /**
+     * @throws ResourceNotFound if there is no soulpatch with the id
+     */
+    @Transactional(readOnly = true)
+    public SOULPatchRecord getSOULPatchRecord(Long soulPatchId, Set<SOULPatchRecordField> fields) {
+        return getSOULPatchRecords(List.of(soulPatchId), fields).stream()
+                .findFirst()
+                .orElseThrow(() -> new ResourceNotFound(String.format("SOULPatch Id: %d", soulPatchId)));
     }
 
-    public SOULPatchRecord getSOULPatchRecord(Long soulPatchId) {
-        return RecordsConverter.newSoulPatchRecord(findById(soulPatchId));
+    /**
+     * @return records of the soulpatches in the order of the ids, selecting only the columns of the fields
+     */
+    @Transactional(readOnly = true)
+    public List<SOULPatchRecord> getSOULPatchRecords(List<Long> soulPatchIds, Set<SOULPatchRecordField> fields) {
+        return soulPatchRepository.findRecords(soulPatchIds, fields);
     }
 
+    @Transactional(readOnly = true)
     public List<SOULPatch> findAll(String searchTerm) {
         return soulPatchRepository.findAll().stream()
                 .filter(e -> {
@@ -88,17 +142,54 @@ public class SOULPatchService {
     }
 
     private Page<SOULPatch> findAnyMatchingFullTextSearch(String s, Pageable pageable) {
+        return findAnyMatchingFullTextSearch(s, pageable, fullTextQuery ->
+                ((List<?>) fullTextQuery.getResultList()).stream()
+                        .filter(o -> o instanceof SOULPatch)
+                        .map(o -> (SOULPatch) o)
+                        .collect(Collectors.toList()));
+    }
+
+    private Page<Long> findAnyMatchingFullTextSearchIds(String s, Pageable pageable) {
+        // the ids come from the index, no entities are loaded
+        return findAnyMatchingFullTextSearch(s, pageable, fullTextQuery ->
+                ((List<?>) fullTextQuery.setProjection(ProjectionConstants.ID).getResultList()).stream()
+                        .map(row -> (Long) ((Object[]) row)[0])
+                        .collect(Collectors.toList()));
+    }
+
+    private <T> Page<T> findAnyMatchingFullTextSearch(String s, Pageable pageable,
+                                                      Function<FullTextQuery, List<T>> results) {
         var em = entityManagerFactory.createEntityManager();
         var fullTextEM = Search.getFullTextEntityManager(em);
 
         em.getTransaction().begin();
 
+        var fullTextQuery = createFullTextQuery(fullTextEM, s)
+                .setFirstResult(Math.toIntExact(pageable.getPageNumber() * pageable.getPageSize()))
+                .setMaxResults(Math.toIntExact(pageable.getPageSize()));
+
+        var queryResults = results.apply(fullTextQuery);
+
+        // the number of hits in the index, not just on this page
+        Page<T> pageResult = new PageImpl<>(queryResults, pageable, fullTextQuery.getResultSize());
+
+        em.getTransaction().commit();
+        em.close();
+        return pageResult;
+    }
+
+    private int countFullTextMatches(String s) {
+        var em = entityManagerFactory.createEntityManager();
+        try {
+            return createFullTextQuery(Search.getFullTextEntityManager(em), s).getResultSize();
+        } finally {
+            em.close();
+        }
+    }
+
+    private FullTextQuery createFullTextQuery(FullTextEntityManager fullTextEM, String s) {
         var qb = fullTextEM.getSearchFactory()
                 .buildQueryBuilder().forEntity(SOULPatch.class).get();
-        var analyzer = fullTextEM.getSearchFactory()
-                .getAnalyzer(SOULPatch.class);
-
-        var tokens = tokenizeString(analyzer, s);
 
         var query = qb
                 .keyword()
@@ -107,64 +198,67 @@ public class SOULPatchService {
                 .andField(SOULPatch_.SP_FILES + "." + SPFile_.NAME)
                 .matching(s).createQuery();
 
-        var fullTextQuery = fullTextEM.createFullTextQuery(query, SOULPatch.class)
-                .setFirstResult(Math.toIntExact(pageable.getPageNumber() * pageable.getPageSize()))
-                .setMaxResults(Math.toIntExact(pageable.getPageSize()));
-
-        List<?> resultList = fullTextQuery.getResultList();
-        var queryResults = resultList.stream().filter(o -> o instanceof SOULPatch)
-                .map(o -> (SOULPatch) o)
-                .collect(Collectors.toList());
-
-        Page<SOULPatch> pageResult = new PageImpl<>(queryResults, pageable, queryResults.size());
+        return fullTextEM.createFullTextQuery(query, SOULPatch.class);
+    }
 
-        em.getTransaction().commit();
-        em.close();
-        return pageResult;
+    @Transactional(readOnly = true)
+    public Optional<SOULPatchXMLType> findXML(Long soulPatchId, XMLFileContent fileContent) {
+        return findXML(List.of(soulPatchId), fileContent).stream().findFirst();
     }
 
-    private List<String> tokenizeString(Analyzer analyzer, String string) {
-        List<String> result = new ArrayList<>();
-        try {
-            TokenStream stream = analyzer.tokenStream(null, new StringReader(string));
-            stream.reset();
-            while (stream.incrementToken()) {
-                result.add(stream.getAttribute(CharTermAttribute.class).toString());
-            }
-            stream.close();
-        } catch (IOException e) {
-            log.debug("Error tokenizing string {}", string, e);
-        }
-        return result;
+    /**
+     * One page of soulpatches ordered by id
+     *
+     * @param afterId keyset position, the last id of the previous page or null
+     */
+    @Transactional(readOnly = true)
+    public XMLPage findXMLPage(Long afterId, int offset, int limit, XMLFileContent fileContent) {
+        List<Long> ids = soulPatchRepository.findIdsOrderedById(afterId, offset, limit);
+        return new XMLPage(findXML(ids, fileContent),
+                ids.isEmpty() ? null : ids.get(ids.size() - 1),
+                ids.size() == limit);
     }
 
-    public List<SOULPatchXMLType> findAllXML() {
-        List<SOULPatchXMLType> xmlPatches = new ArrayList<>();
-        List<SOULPatch> soulPatches = soulPatchRepository.findAll();
-        soulPatches.forEach(
-                patch -> {
-                    SOULPatchXMLType soulPatchXML = new SOULPatchXMLType();
-                    soulPatchXML.setId(patch.getId().toString());
+    private List<SOULPatchXMLType> findXML(List<Long> soulPatchIds, XMLFileContent fileContent) {
+        var fields = (fileContent == XMLFileContent.NONE)
+                ? EnumSet.of(SOULPatchRecordField.NAME, SOULPatchRecordField.FILES)
+                : EnumSet.of(SOULPatchRecordField.NAME, SOULPatchRecordField.FILES, SOULPatchRecordField.FILE_CONTENT);
+        return soulPatchRepository.findRecords(soulPatchIds, fields).stream()
+                .map(record -> toXML(record, fileContent))
+                .collect(Collectors.toList());
+    }
 
-                    patch.getSpFiles(SPFile.FileType.SOUL).forEach(e -> {
+    private static SOULPatchXMLType toXML(SOULPatchRecord record, XMLFileContent fileContent) {
+        SOULPatchXMLType soulPatchXML = new SOULPatchXMLType();
+        soulPatchXML.setId(record.getId().toString());
+        soulPatchXML.setName(record.getName());
+        record.getFiles().stream()
+                .sorted(Comparator.comparing(SPFileRecord::getId))
+                .forEach(file -> {
+                    String content = (fileContent == XMLFileContent.INLINE)
+                            ? new String(file.getContent(), StandardCharsets.UTF_8)
+                            : null;
+                    // the marshaller writes the data handler as attachment, not into the xml tree
+                    DataHandler data = (fileContent == XMLFileContent.ATTACHMENT)
+                            ? new DataHandler(new ByteArrayDataSource(file.getContent(), ATTACHMENT_CONTENT_TYPE))
+                            : null;
+                    if (SPFile.FileType.SOUL.name().equals(file.getType())) {
                         SOULFileXMLType xml = new SOULFileXMLType();
-                        xml.setId(String.valueOf(e.getId()));
-                        xml.setFilename(e.getName());
-                        xml.setFilecontent(e.getFileContent());
+                        xml.setId(String.valueOf(file.getId()));
+                        xml.setFilename(file.getFilename());
+                        xml.setFilecontent(content);
+                        xml.setFiledata(data);
                         soulPatchXML.getSoulfile().add(xml);
-                    });
-
-                    patch.getSpFiles(SPFile.FileType.MANIFEST).forEach(e -> {
+                    } else if (SPFile.FileType.MANIFEST.name().equals(file.getType())) {
                         SOULPatchFileXMLType xml = new SOULPatchFileXMLType();
-                        xml.setId(String.valueOf(e.getId()));
-                        xml.setFilename(e.getName());
-                        xml.setFilecontent(e.getFileContent());
+                        xml.setId(String.valueOf(file.getId()));
+                        xml.setFilename(file.getFilename());
+                        xml.setFilecontent(content);
+                        xml.setFiledata(data);
                         soulPatchXML.getSoulpatchfile().add(xml);
-                    });
-
-                    xmlPatches.add(soulPatchXML);
+                    }
                 });
-        return xmlPatches;
+        return soulPatchXML;
     }
 
     public SOULPatch createSOULPatch(AppUser creator) {
@@ -175,35 +269,96 @@ public class SOULPatchService {
         return save(soulPatch);
     }
 
+    /**
+     * Read once per request, later calls with the same id return the same instance until
+     * a soulpatch is changed
+     */
     public SOULPatch findById(Long id) {
-        return soulPatchRepository.findById(id)
+        return requestCache.find(SOULPatch.class, id, soulPatchRepository::findById)
                 .orElseThrow(() ->
                         new ResourceNotFound(String.format("SOULPatch Id: %d", id)));
     }
 
+    /**
+     * @param parameter soulpatch id from an url
+     * @return the soulpatch, empty if the parameter isn't an id or there is no such soulpatch
+     */
+    public Optional<SOULPatch> findByParameter(String parameter) {
+        long id = NumberUtils.toLong(parameter, -1L);
+        return (id < 0) ? Optional.empty() : requestCache.find(SOULPatch.class, id, soulPatchRepository::findById);
+    }
+
+    @Transactional(readOnly = true)
     public long countSOULPatches() {
         return soulPatchRepository.count();
     }
 
+    /**
+     * The version of a soulpatch for conditional requests, without loading it
+     */
+    @Transactional(readOnly = true)
+    public Optional<LocalDateTime> findUpdatedAt(Long id) {
+        return soulPatchRepository.findUpdatedAtById(id);
+    }
+
     public SOULPatch update(Long id, SOULPatch soulPatch) {
-        return soulPatchRepository.findById(id).map(sp -> {
-            sp.setName(soulPatch.getName());
-            sp.setDescription(soulPatch.getDescription());
-            sp.setNoViews(soulPatch.getNoViews());
-            sp.setUpdatedAt(LocalDateTime.now());
-            return soulPatchRepository.saveAndFlush(soulPatch);
-        }).orElseThrow(() ->
-                new ResourceNotFound(String.format("%s id: %d", SOULPatch.class.getName(), id)));
+        return update(id, soulPatch, null);
+    }
+
+    /**
+     * @param expectedVersions updatedAt values the soulpatch may have, null to update it unconditionally
+     * @throws PreconditionFailed if the soulpatch has been changed in the meantime
+     */
+    public SOULPatch update(Long id, SOULPatch soulPatch, Collection<LocalDateTime> expectedVersions) {
+        var sp = findForWrite(id, expectedVersions);
+        sp.setName(soulPatch.getName());
+        sp.setDescription(soulPatch.getDescription());
+        sp.setUpdatedAt(LocalDateTime.now());
+        countCache.invalidateAll();
+        var saved = soulPatchRepository.saveAndFlush(sp);
+        publish(SOULPatchChangedEvent.of(UPDATED, id));
+        return saved;
+    }
+
+    private SOULPatch findForWrite(Long id, Collection<LocalDateTime> expectedVersions) {
+        if (expectedVersions == null) {
+            return soulPatchRepository.findById(id)
+                    .orElseThrow(() -> new ResourceNotFound(String.format("SOULPatch Id: %d", id)));
+        }
+        // locked until commit, nobody can change it between the check and the write
+        var sp = soulPatchRepository.findByIdForUpdate(id)
+                .orElseThrow(() -> new ResourceNotFound(String.format("SOULPatch Id: %d", id)));
+        if (!expectedVersions.contains(sp.getUpdatedAt())) {
+            throw new PreconditionFailed(String.format("SOULPatch Id: %d has been changed", id));
+        }
+        return sp;
     }
 
     public SOULPatch save(SOULPatch soulPatch) {
+        boolean isNew = soulPatch.getId() == null;
+        var saved = persist(soulPatch);
+        publish(SOULPatchChangedEvent.of(isNew ? CREATED : UPDATED, saved.getId()));
+        return saved;
+    }
+
+    private SOULPatch persist(SOULPatch soulPatch) {
         log.debug("soulpatch save: {}", soulPatch);
+        countCache.invalidateAll();
         return soulPatchRepository.saveAndFlush(soulPatch);
     }
 
+    private void publish(SOULPatchChangedEvent event) {
+        requestCache.evict(SOULPatch.class);
+        eventPublisher.publishEvent(event);
+    }
+
     public SPFile saveSPFile(SPFile spFile) {
+        boolean isNew = spFile.getId() == null || spFile.getId() < 0;
         spFile.setFileType(SOULPatchParser.guessFileType(spFile));
-        return spFileRepository.saveAndFlush(spFile);
+        var saved = spFileRepository.saveAndFlush(spFile);
+        publish(SOULPatchChangedEvent.ofFile(isNew ? FILE_CREATED : FILE_UPDATED,
+                saved.getSoulPatch().getId(), saved.getId()));
+        return saved;
     }
 
     public SPFile createSPFile(SOULPatch soulPatch) {
@@ -221,21 +376,142 @@ public class SOULPatchService {
         return spFileRepository.findById(id);
     }
 
+    /**
+     * @return the last modification of the file, empty if there is no such file
+     */
+    @Transactional(readOnly = true)
+    public Optional<LocalDateTime> findSpFileUpdatedAt(Long id) {
+        return spFileRepository.findUpdatedAtById(id);
+    }
+
     public void delete(SOULPatch soulPatch) {
+        countCache.invalidateAll();
         soulPatchRepository.delete(soulPatch);
+        publish(SOULPatchChangedEvent.of(DELETED, soulPatch.getId()));
     }
 
     public void deleteById(Long id) {
-        SOULPatch p = soulPatchRepository.findById(id)
-                .orElseThrow(() ->
-                        new ResourceNotFound(String.format("SOULPatch Id: %d", id)));
+        deleteById(id, null);
+    }
+
+    /**
+     * @param expectedVersions updatedAt values the soulpatch may have, null to delete it unconditionally
+     * @throws PreconditionFailed if the soulpatch has been changed in the meantime
+     */
+    public void deleteById(Long id, Collection<LocalDateTime> expectedVersions) {
+        SOULPatch p = findForWrite(id, expectedVersions);
+        countCache.invalidateAll();
         soulPatchRepository.delete(p);
+        publish(SOULPatchChangedEvent.of(DELETED, id));
+    }
+
+    /**
+     * Applies all operations in one transaction. Nothing is flushed until the end, so the
+     * inserts and updates go out as JDBC batches (hibernate.jdbc.batch_size) and the search
+     * index is updated once on commit.
+     *
+     * @param author of the created soulpatches
+     * @return the result of every operation, in order
+     * @throws BatchFailed with the results if any operation failed, none of them is applied then
+     */
+    public List<SOULPatchOperationResult> applyBatch(List<SOULPatchOperation> operations, AppUser author) {
+        Set<Long> ids = operations.stream()
+                .map(SOULPatchOperation::getId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<Long, SOULPatch> existing = soulPatchRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(SOULPatch::getId, sp -> sp));
+
+        List<SOULPatchOperationResult> results = new ArrayList<>();
+        List<SOULPatchChangedEvent> events = new ArrayList<>();
+        boolean failed = false;
+        for (int i = 0; i < operations.size(); i++) {
+            var operation = operations.get(i);
+            try {
+                results.add(applyOperation(i, operation, existing, author, events));
+            } catch (ValidationException e) {
+                failed = true;
+                results.add(new SOULPatchOperationResult(i, operation.getOp(), operation.getId(), 400, e.getMessage()));
+            } catch (ResourceNotFound e) {
+                failed = true;
+                results.add(new SOULPatchOperationResult(i, operation.getOp(), operation.getId(), 404, e.getMessage()));
+            }
+        }
+        if (failed) {
+            throw new BatchFailed("batch not applied", results.stream()
+                    .map(r -> r.getError() != null ? r : new SOULPatchOperationResult(
+                            r.getIndex(), r.getOp(), r.getId(), 424, "not applied"))
+                    .collect(Collectors.toList()));
+        }
+
+        soulPatchRepository.flush();
+        countCache.invalidateAll();
+        events.forEach(this::publish);
+        return results;
+    }
+
+    private SOULPatchOperationResult applyOperation(int index, SOULPatchOperation operation,
+                                                    Map<Long, SOULPatch> existing, AppUser author,
+                                                    List<SOULPatchChangedEvent> events) {
+        if (operation.getOp() == null) {
+            throw new ValidationException("op must be one of CREATE, UPDATE, DELETE");
+        }
+        if (operation.getOp() == SOULPatchOperation.Op.CREATE) {
+            var data = requireValidSOULPatch(operation);
+            var soulPatch = new SOULPatch();
+            soulPatch.setName(data.getName());
+            soulPatch.setDescription(Objects.toString(data.getDescription(), ""));
+            soulPatch.setAuthor(author);
+            var saved = soulPatchRepository.save(soulPatch);
+            for (SPFile file : data.getSpFiles()) {
+                var spFile = new SPFile();
+                // persisted before it's added, files without id are equal
+                spFile.setId(null);
+                spFile.setName(file.getName());
+                spFile.setFileContent(file.getFileContent());
+                spFile.setSoulPatch(saved);
+                spFile.setFileType(SOULPatchParser.guessFileType(spFile));
+                saved.getSpFiles().add(spFileRepository.save(spFile));
+            }
+            events.add(SOULPatchChangedEvent.of(CREATED, saved.getId()));
+            return new SOULPatchOperationResult(index, operation.getOp(), saved.getId(), 201, null);
+        }
+
+        if (operation.getId() == null) {
+            throw new ValidationException("id is required");
+        }
+        var soulPatch = existing.remove(operation.getId());
+        if (soulPatch == null) {
+            throw new ResourceNotFound(String.format("SOULPatch Id: %d", operation.getId()));
+        }
+        if (operation.getOp() == SOULPatchOperation.Op.UPDATE) {
+            var data = requireValidSOULPatch(operation);
+            soulPatch.setName(data.getName());
+            soulPatch.setDescription(Objects.toString(data.getDescription(), ""));
+            // still available for later operations on the same soulpatch
+            existing.put(soulPatch.getId(), soulPatch);
+            events.add(SOULPatchChangedEvent.of(UPDATED, soulPatch.getId()));
+            return new SOULPatchOperationResult(index, operation.getOp(), soulPatch.getId(), 200, null);
+        } else {
+            soulPatchRepository.delete(soulPatch);
+            events.add(SOULPatchChangedEvent.of(DELETED, soulPatch.getId()));
+            return new SOULPatchOperationResult(index, operation.getOp(), soulPatch.getId(), 200, null);
+        }
+    }
+
+    private static SOULPatch requireValidSOULPatch(SOULPatchOperation operation) {
+        var soulPatch = operation.getSoulPatch();
+        if (soulPatch == null || soulPatch.getName() == null || soulPatch.getName().isBlank()) {
+            throw new ValidationException("soulPatch with a name is required");
+        }
+        return soulPatch;
     }
 
     public void deleteSpFile(SPFile spFile) {
         SOULPatch soulPatch = spFile.getSoulPatch();
         soulPatch.getSpFiles().remove(spFile);
         soulPatchRepository.save(soulPatch);
+        publish(SOULPatchChangedEvent.ofFile(FILE_DELETED, soulPatch.getId(), spFile.getId()));
     }
 
     public boolean isSPXmlMatchSPData(SOULPatch patch, SOULPatchXMLType xmlType) {
@@ -246,6 +522,7 @@ public class SOULPatchService {
         }
     }
 
+    @Transactional(readOnly = true)
     public long countSPFiles() {
         return spFileRepository.count();
     }
@@ -268,91 +545,149 @@ public class SOULPatchService {
                 && spFileExistsById(Long.valueOf(parameter));
     }
 
-    public SOULPatch incrementNoDownloadsAndSave(SOULPatch soulPatch) {
-        soulPatch.setNoViews(soulPatch.getNoViews() + 1);
-        log.debug("SOULPatch download event, incremented counter: {}", soulPatch);
-        return save(soulPatch);
-    }
-
-    public InputStream getZipSOULPatchStreamProvider(SOULPatch soulPatch) {
-        return new ByteArrayInputStream(zipSOULPatchFiles(soulPatch));
+    /**
+     * The page is fetched on the calling thread while the total is counted concurrently on
+     * a separate connection, unless a fresh total for the filter is cached. The page's
+     * transaction ends before the count is awaited, so no connection is held while waiting.
+     * Requests with an open-in-view entity manager hold their connection until they end, they
+     * count on that connection before fetching the page.
+     */
+    private <T> Page<T> findAnyMatchingFiltered(SOULPatchesFetchFilter filter, Pageable pageable, Class<T> resultType,
+                                                Function<Root<SOULPatch>, Selection<? extends T>> selection) {
+        String countKey = filter.getCacheKey();
+        var cachedCount = countCache.getFresh(countKey);
+        CompletableFuture<Long> count = cachedCount
+                .map(CompletableFuture::completedFuture)
+                .orElseGet(() -> asyncQueryExecutor.submit(em -> countAnyMatching(em, filter)));
+
+        List<T> content = asyncQueryExecutor.execute(em -> {
+            var cb = em.getCriteriaBuilder();
+            var cq = cb.createQuery(resultType);
+            var root = cq.from(SOULPatch.class);
+            cq.select(selection.apply(root));
+            cq.where(getPredicate(filter, cb, root));
+            cq.orderBy(getOrderBy(pageable, cb, root));
+            return em.createQuery(cq)
+                    .setFirstResult(Math.toIntExact(pageable.getOffset()))
+                    .setMaxResults(pageable.getPageSize())
+                    .getResultList();
+        });
+
+        long total = awaitCount(count, filter);
+        if (cachedCount.isEmpty()) {
+            countCache.put(countKey, total);
+        }
+        return new PageImpl<>(content, pageable, total);
     }
 
-    public byte[] zipSOULPatchFiles(SOULPatch soulPatch) {
-        try (final var baos = new ByteArrayOutputStream();
-             final var zos = new ZipOutputStream(baos)) {
-
-            Map<String, Integer> filenames = new HashMap<>();
-            for (SPFile spFile : soulPatch.getSpFiles()) {
-
-                String filename = appendNoIfDuplicateFilename(filenames, spFile.getName());
-
-                ZipEntry entry = new ZipEntry(filename);
-                entry.setSize(spFile.getFileContent().getBytes().length);
-                zos.putNextEntry(entry);
-                zos.write(spFile.getFileContent().getBytes());
-                zos.closeEntry();
-            }
-            zos.finish();
-            zos.flush();
-            zos.close();
-            log.debug("zipped soulpatch files {}", soulPatch);
-            return baos.toByteArray();
-        } catch (IOException e) {
-            log.error("error zipping soulpatch {}", soulPatch, e);
-            return "ErrorZippingFiles".getBytes();
+    private long awaitCount(CompletableFuture<Long> count, SOULPatchesFetchFilter filter) {
+        try {
+            return count.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while counting soulpatches", e);
+        } catch (ExecutionException e) {
+            // e.g. no free connection for the worker, count on our own connection instead
+            log.warn("async count failed, counting on request thread", e.getCause());
+            return asyncQueryExecutor.execute(em -> countAnyMatching(em, filter));
         }
     }
 
-    @VisibleForTesting
-    String appendNoIfDuplicateFilename(Map<String, Integer> filenames, String filename) {
-        if(filenames.containsKey(filename)) {
-            filenames.put(filename, filenames.get(filename) + 1);
+    /**
+     * Not transactional itself, the queries run in their own transactions, see
+     * {@link #findAnyMatchingFiltered}
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Page<SOULPatch> findAnyMatching(SOULPatchesFetchFilter filter, Pageable pageable) {
+        if (filter.getFullTextSearch().isPresent()) {
+            return findAnyMatchingFullTextSearch(filter.getFullTextSearch().get(), pageable);
         } else {
-            filenames.put(filename, 0);
-        }
-
-        if(filenames.get(filename) > 0) {
-            filename += "_(" + filenames.get(filename) + ")";
+            return findAnyMatchingFiltered(filter, pageable, SOULPatch.class, root -> root);
         }
-        return filename;
     }
 
-    private Sort.Order getFirstSortOrder(Pageable pageable) {
-        if (pageable.getSort().get().findFirst().isPresent()) {
-            return pageable.getSort().get().findFirst().get();
+    /**
+     * Like {@link #findAnyMatching(SOULPatchesFetchFilter, Pageable)}, but only the ids are selected
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Page<Long> findAnyMatchingIds(SOULPatchesFetchFilter filter, Pageable pageable) {
+        if (filter.getFullTextSearch().isPresent()) {
+            return findAnyMatchingFullTextSearchIds(filter.getFullTextSearch().get(), pageable);
         } else {
-            return new Sort.Order(Sort.Direction.ASC, SOULPatch_.NAME);
+            return findAnyMatchingFiltered(filter, pageable, Long.class, root -> root.get(SOULPatch_.ID));
         }
     }
 
-    private Page<SOULPatch> findAnyMatchingFiltered(SOULPatchesFetchFilter filter, Pageable pageable) {
-        var em = entityManagerFactory.createEntityManager();
-        var cb = em.getCriteriaBuilder();
-        var cq = cb.createQuery(SOULPatch.class);
-        var root = cq.from(SOULPatch.class);
-
-        Predicate predicate = getPredicate(filter, cb, root);
+    /**
+     * @return ids of at most limit soulpatches matching the filter, full text matches by relevance,
+     * otherwise by name
+     */
+    @Transactional(readOnly = true)
+    public List<Long> findAnyMatchingIds(SOULPatchesFetchFilter filter, int limit) {
+        if (filter.getFullTextSearch().isPresent()) {
+            return findAnyMatchingFullTextSearchIds(filter.getFullTextSearch().get(), PageRequest.of(0, limit))
+                    .getContent();
+        }
+        var cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> cq = cb.createQuery(Long.class);
+        Root<SOULPatch> root = cq.from(SOULPatch.class);
+        cq.select(root.get(SOULPatch_.ID));
         cq.where(getPredicate(filter, cb, root));
-
-        Order order = getOrderBy(pageable, cb, cq, root);
-        cq.orderBy(order);
-
-        var query = em.createQuery(cq);
-        query.setFirstResult(Math.toIntExact(pageable.getOffset()));
-        query.setMaxResults(pageable.getPageSize());
-
-        long count = em.createQuery(countAnyMatching(cb, predicate)).getSingleResult();
-        Page<SOULPatch> pageResult = new PageImpl<>(query.getResultList(), pageable, count);
-        em.close();
-        return pageResult;
+        cq.orderBy(cb.asc(root.get(SOULPatch_.NAME)), cb.asc(root.get(SOULPatch_.ID)));
+        return entityManager.createQuery(cq).setMaxResults(limit).getResultList();
+    }
+
+    /**
+     * Keyset pagination, the positions of the soulpatches following the cursor in the given order.
+     * Unlike offsets the cost doesn't grow with the position and concurrent inserts don't shift pages.
+     * Not available for full text searches.
+     *
+     * @param cursor null for the first page
+     * @return id and sort key of each soulpatch, the last one is the cursor of the next page
+     */
+    @Transactional(readOnly = true)
+    public List<SOULPatchCursor> findAnyMatchingAfter(SOULPatchesFetchFilter filter, SOULPatchSort sort,
+                                                SOULPatchCursor cursor, int limit) {
+        if (filter.getFullTextSearch().isPresent()) {
+            throw new IllegalArgumentException("full text search results can't be paged by cursor");
+        }
+        if (cursor != null && cursor.getSort() != sort) {
+            throw new IllegalArgumentException(String.format(
+                    "cursor of sort %s used with sort %s", cursor.getSort(), sort));
+        }
+        var cb = entityManager.getCriteriaBuilder();
+        var cq = cb.createTupleQuery();
+        var root = cq.from(SOULPatch.class);
+        Expression<Comparable<Object>> key = sortKey(sort, cb, root);
+        Path<Long> id = root.get(SOULPatch_.ID);
+
+        var predicate = getPredicate(filter, cb, root);
+        if (cursor != null) {
+            @SuppressWarnings("unchecked")
+            var value = (Comparable<Object>) cursor.getValue();
+            var beyond = sort.getDirection().isAscending()
+                    ? cb.greaterThan(key, value)
+                    : cb.lessThan(key, value);
+            predicate = cb.and(predicate,
+                    cb.or(beyond, cb.and(cb.equal(key, value), cb.greaterThan(id, cursor.getId()))));
+        }
+        cq.multiselect(id, key).where(predicate);
+        cq.orderBy(sort.getDirection().isAscending() ? cb.asc(key) : cb.desc(key), cb.asc(id));
+        return entityManager.createQuery(cq).setMaxResults(limit).getResultStream()
+                .map(tuple -> SOULPatchCursor.at(sort, (Comparable<?>) tuple.get(1), tuple.get(0, Long.class)))
+                .collect(Collectors.toList());
     }
 
-    public Page<SOULPatch> findAnyMatching(SOULPatchesFetchFilter filter, Pageable pageable) {
-        if (filter.getFullTextSearch().isPresent()) {
-            return findAnyMatchingFullTextSearch(filter.getFullTextSearch().get(), pageable);
-        } else {
-            return findAnyMatchingFiltered(filter, pageable);
+    @SuppressWarnings("unchecked")
+    private Expression<Comparable<Object>> sortKey(SOULPatchSort sort, CriteriaBuilder cb, Root<SOULPatch> root) {
+        // same null handling as SOULPatchCursor.sortKey
+        switch (sort) {
+            case NAME:
+                return (Expression<Comparable<Object>>) (Expression<?>) cb.coalesce(root.<String>get(SOULPatch_.NAME), "");
+            case DOWNLOADS:
+                return (Expression<Comparable<Object>>) (Expression<?>) cb.coalesce(root.<Long>get(SOULPatch_.NO_VIEWS), 0L);
+            default:
+                return root.get(sort.getProperty());
         }
     }
 
@@ -375,36 +710,63 @@ public class SOULPatchService {
         return cb.and(predicates.toArray(new Predicate[0]));
     }
 
-    private CriteriaQuery<Long> countAnyMatching(CriteriaBuilder cb, Predicate predicate) {
+    private long countAnyMatching(EntityManager em, SOULPatchesFetchFilter filter) {
+        var cb = em.getCriteriaBuilder();
         CriteriaQuery<Long> cq = cb.createQuery(Long.class);
         Root<SOULPatch> root = cq.from(SOULPatch.class);
         cq.select(cb.count(root));
-        cq.where(predicate);
-        return cq;
-    }
-
-    private Order getOrderBy(Pageable pageable, CriteriaBuilder cb, CriteriaQuery<SOULPatch> cq, Root<SOULPatch> root) {
-        Sort.Order sortOrder = getFirstSortOrder(pageable);
-        Expression<?> orderBy;
-        if (sortOrder.getProperty().equals(SOULPatch_.RATINGS)) {
-            Join<SOULPatch, SOULPatchRating> join = root.join(SOULPatch_.RATINGS, JoinType.LEFT);
-            var avg = cb.avg(join.get(SOULPatchRating_.STARS));
-            cq.select(root).groupBy(root.get(SOULPatch_.ID));
-            orderBy = cb.coalesce(avg, 0);
-        } else if (sortOrder.getProperty().equals(SOULPatch_.NAME) ||
-                sortOrder.getProperty().equals(SOULPatch_.DESCRIPTION)) {
-            orderBy = root.get(sortOrder.getProperty());
-        } else if (sortOrder.getProperty().equals(SOULPatch_.NO_VIEWS)) {
-            orderBy = cb.toLong(root.get(SOULPatch_.NO_VIEWS));
+        cq.where(getPredicate(filter, cb, root));
+        return em.createQuery(cq).getSingleResult();
+    }
+
+    /**
+     * All orders of the pageable's sort, by name if it has none, and by id last, so pages of
+     * tied keys don't overlap
+     */
+    private List<Order> getOrderBy(Pageable pageable, CriteriaBuilder cb, Root<SOULPatch> root) {
+        Sort sort = pageable.getSort().isSorted() ? pageable.getSort() : Sort.by(SOULPatch_.NAME);
+        List<Order> orderBy = new ArrayList<>();
+        for (Sort.Order sortOrder : sort) {
+            Expression<?> expression = getOrderExpression(sortOrder.getProperty(), cb, root);
+            orderBy.add((sortOrder.isAscending()) ? cb.asc(expression) : cb.desc(expression));
+            if (sortOrder.getProperty().equals(SOULPatch_.ID)) {
+                return orderBy;
+            }
+        }
+        orderBy.add(cb.asc(root.get(SOULPatch_.ID)));
+        return orderBy;
+    }
+
+    private Expression<?> getOrderExpression(String property, CriteriaBuilder cb, Root<SOULPatch> root) {
+        if (property.equals(SOULPatch_.RATINGS)) {
+            // the ratings column sorts by the bayesian average, not the raw average
+            return root.get(SOULPatch_.QUALITY_SCORE);
+        } else if (RANKED_PROPERTIES.contains(property) || property.equals(SOULPatch_.ID)) {
+            return root.get(property);
+        } else if (property.equals(SOULPatch_.NO_VIEWS)) {
+            return cb.toLong(root.get(SOULPatch_.NO_VIEWS));
         } else {
-            orderBy = root.get(SOULPatch_.NAME);
+            return root.get(SOULPatch_.NAME);
         }
-        return (sortOrder.isAscending()) ? cb.asc(orderBy) : cb.desc(orderBy);
     }
 
+    @Transactional(readOnly = true)
     public int countAnyMatching(SOULPatchesFetchFilter filter) {
+        String countKey = filter.getCacheKey();
+        var cachedCount = countCache.getFresh(countKey);
+        if (cachedCount.isPresent()) {
+            return Math.toIntExact(cachedCount.get());
+        }
+        int count = countAnyMatchingUncached(filter);
+        countCache.put(countKey, count);
+        return count;
+    }
+
+    private int countAnyMatchingUncached(SOULPatchesFetchFilter filter) {
 
-        if (filter.getNamesFilter().isPresent() && !filter.getUsersFilter().isEmpty()) {
+        if (filter.getFullTextSearch().isPresent()) {
+            return countFullTextMatches(filter.getFullTextSearch().get());
+        } else if (filter.getNamesFilter().isPresent() && !filter.getUsersFilter().isEmpty()) {
             return Math.toIntExact(soulPatchRepository.countSOULPatchesByAuthorIdInAndNameContainingIgnoreCase(
                     filter.getUsersFilter().stream().map(AppUser::getId).collect(Collectors.toSet()),
                     filter.getNamesFilter().get()));
@@ -420,12 +782,53 @@ public class SOULPatchService {
     }
 
     public void soulPatchDownloaded(@NotNull SOULPatch soulPatch) {
-        incrementNoDownloadsAndSave(soulPatch);
+        soulPatchDownloaded(soulPatch, null);
+    }
+
+    /**
+     * Records the download in the {@link DownloadEventLog}, soulpatches.no_views is incremented
+     * when the log is flushed. Only the counter of the given instance is incremented right away.
+     *
+     * @param appUser the downloading user, null for anonymous downloads
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void soulPatchDownloaded(@NotNull SOULPatch soulPatch, AppUser appUser) {
+        recordDownload(soulPatch, null, appUser);
     }
 
     public void spFileDownloaded(@NotNull SPFile spFile) {
+        spFileDownloaded(spFile, null);
+    }
+
+    /**
+     * Same as {@link #soulPatchDownloaded(SOULPatch, AppUser)}, counts as a download of the file's soulpatch.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void spFileDownloaded(@NotNull SPFile spFile, AppUser appUser) {
         if (spFile.getSoulPatch() != null) {
-            incrementNoDownloadsAndSave(spFile.getSoulPatch());
+            recordDownload(spFile.getSoulPatch(), spFile.getId(), appUser);
+        }
+    }
+
+    private void recordDownload(SOULPatch soulPatch, Long spFileId, AppUser appUser) {
+        soulPatch.setNoViews(soulPatch.getNoViews() + 1);
+        log.debug("SOULPatch download event, incremented counter: {}", soulPatch);
+        Long appUserId = (appUser != null) ? appUser.getId() : null;
+        downloadEventLog.record(new DownloadEvent(LocalDateTime.now(), soulPatch.getId(), spFileId, appUserId));
+        publish(SOULPatchChangedEvent.downloaded(soulPatch.getId(), spFileId, appUserId));
+    }
+
+    /**
+     * Downloads of several soulpatches at once, e.g. as bundle. The counters are updated
+     * with the next flush of the {@link DownloadEventLog}.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void soulPatchesDownloaded(Collection<Long> soulPatchIds, AppUser appUser) {
+        Long appUserId = (appUser != null) ? appUser.getId() : null;
+        var now = LocalDateTime.now();
+        for (Long soulPatchId : soulPatchIds) {
+            downloadEventLog.record(new DownloadEvent(now, soulPatchId, null, appUserId));
+            publish(SOULPatchChangedEvent.downloaded(soulPatchId, null, appUserId));
         }
     }
 
@@ -437,29 +840,15 @@ public class SOULPatchService {
         if (sp == null) throw new ValidationException("sp must not be null");
         if (user == null) throw new ValidationException("user must not be null");
 
-        sp.getRatings().stream()
-                .filter(rating -> rating.getAppUser().equals(user)).distinct()
-                .findAny()
-                .ifPresentOrElse(
-                        rating -> updateRating(rating, v)
-                        , () -> createRating(sp, v, user));
-    }
-
-    @VisibleForTesting
-    void createRating(SOULPatch sp, Integer v, AppUser user) {
-        SOULPatchRating rating = new SOULPatchRating();
-        rating.setAppUser(user);
-        rating.setSoulPatch(sp);
-        rating.setStars(v);
-        sp.getRatings().add(rating);
-        save(sp);
-    }
-
-    private void updateRating(SOULPatchRating rating, Integer v) {
-        rating.setStars(v);
-        save(rating.getSoulPatch());
+        var aggregate = ratingRepository.upsertRating(sp.getId(), user.getId(), v);
+        boolean newRating = Boolean.TRUE.equals(aggregate.getInserted());
+        // keep the instance shown in the UI current, it is not reloaded
+        sp.setRatingCount(aggregate.getRatingCount());
+        sp.setRatingSum(aggregate.getRatingSum());
+        publish(SOULPatchChangedEvent.rated(sp.getId(), user.getId(), v, newRating));
     }
 
+    @Transactional(readOnly = true)
     public long countTotalDownloads() {
         return soulPatchRepository.totalNoSOULPatchDownloads();
     }
@@ -4,6 +4,7 @@ import io.horrorshow.soulhub.data.*;
 import io.horrorshow.soulhub.data.repository.AppRoleRepository;
 import io.horrorshow.soulhub.data.repository.AppUserRepository;
 import io.horrorshow.soulhub.data.repository.VerificationTokenRepository;
+import io.horrorshow.soulhub.exception.ResourceNotFound;
 import io.horrorshow.soulhub.security.SecurityUtils;
 import io.horrorshow.soulhub.ui.UIConst;
 import lombok.extern.log4j.Log4j2;
@@ -14,13 +15,16 @@ import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.management.relation.RoleNotFoundException;
-import javax.transaction.Transactional;
 import javax.validation.*;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional
@@ -29,11 +33,13 @@ public class UserService {
 
     public static final String USER_ROLE = "USER";
     public static final String ADMIN_ROLE = "ADMIN";
+    private static final String CURRENT_APP_USER = "currentAppUser";
 
     private final AppRoleRepository appRoleRepository;
     private final AppUserRepository appUserRepository;
     private final VerificationTokenRepository verificationTokenRepository;
     private final JavaMailSender mailSender;
+    private final RequestEntityCache requestCache;
     private final Validator validator;
     @Value("${soulhub.url}")
     private String url = "<protocol>://<soulhub-url>:<port>";
@@ -41,20 +47,50 @@ public class UserService {
     public UserService(@Autowired AppRoleRepository appRoleRepository,
                        @Autowired AppUserRepository appUserRepository,
                        @Autowired VerificationTokenRepository verificationTokenRepository,
-                       @Autowired JavaMailSender mailSender) {
+                       @Autowired JavaMailSender mailSender,
+                       @Autowired RequestEntityCache requestCache) {
         this.appRoleRepository = appRoleRepository;
         this.appUserRepository = appUserRepository;
         this.verificationTokenRepository = verificationTokenRepository;
         this.mailSender = mailSender;
+        this.requestCache = requestCache;
 
         ValidatorFactory validatorFactory = Validation.buildDefaultValidatorFactory();
         validator = validatorFactory.getValidator();
     }
 
+    @Transactional(readOnly = true)
     public Optional<AppUser> findById(Long id) {
-        return appUserRepository.findById(id);
+        return requestCache.find(AppUser.class, id, appUserRepository::findById);
+    }
+
+    /**
+     * @return the users in the order of the ids, unknown ids are skipped. Users already loaded
+     * in this request aren't read again, the others with one query
+     */
+    @Transactional(readOnly = true)
+    public List<AppUser> findAllById(Collection<Long> ids) {
+        return requestCache.findAll(AppUser.class, ids, appUserRepository::findAllById, AppUser::getId);
+    }
+
+    /**
+     * Like {@link #findAllById}, but all ids must exist
+     *
+     * @throws ResourceNotFound naming the first unknown id
+     */
+    @Transactional(readOnly = true)
+    public List<AppUser> findAllByIdOrThrow(Collection<Long> ids) {
+        var users = findAllById(ids);
+        if (users.size() < ids.size()) {
+            var found = users.stream().map(AppUser::getId).collect(Collectors.toSet());
+            ids.stream().filter(id -> !found.contains(id)).findFirst().ifPresent(id -> {
+                throw new ResourceNotFound(String.format("user id: %d", id));
+            });
+        }
+        return users;
     }
 
+    @Transactional(readOnly = true)
     public Optional<AppUser> loadAppUser(String username) {
         return appUserRepository.findByUserName(username);
     }
@@ -107,6 +143,7 @@ public class UserService {
         log.info("saving new user as: {}", user.toString());
 
         AppUser savedUser = appUserRepository.save(user);
+        evictRequestCache();
         log.info("user registered {}", savedUser);
 
         final SimpleMailMessage email = createTokenMailMessage(savedUser);
@@ -162,9 +199,16 @@ public class UserService {
         return isCurrentUserOwnerOf(spFile.getSoulPatch());
     }
 
+    /**
+     * Loaded once per request, event handlers may call this repeatedly
+     */
     public Optional<AppUser> getCurrentAppUser() {
-        if (SecurityUtils.isUserLoggedIn()) return loadAppUserByEmail(SecurityUtils.getUserEmail());
-        else return Optional.empty();
+        if (SecurityUtils.isUserLoggedIn()) {
+            var email = SecurityUtils.getUserEmail();
+            return requestCache.memoize(CURRENT_APP_USER, email, () -> loadAppUserByEmail(email));
+        } else {
+            return Optional.empty();
+        }
     }
 
     public Optional<VerificationToken> getVerificationToken(String token) {
@@ -172,6 +216,12 @@ public class UserService {
     }
 
     public AppUser updateUser(AppUser user) {
+        evictRequestCache();
         return appUserRepository.saveAndFlush(user);
     }
+
+    private void evictRequestCache() {
+        requestCache.evict(AppUser.class);
+        requestCache.evict(CURRENT_APP_USER);
+    }
 }
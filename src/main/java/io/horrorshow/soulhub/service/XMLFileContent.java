@@ -0,0 +1,13 @@
+package io.horrorshow.soulhub.service;
+
+/**
+ * How file contents are put into the SOAP types
+ */
+public enum XMLFileContent {
+    /** metadata only, contents aren't read from the database */
+    NONE,
+    /** as text in filecontent */
+    INLINE,
+    /** as binary filedata, sent as MTOM attachment */
+    ATTACHMENT
+}
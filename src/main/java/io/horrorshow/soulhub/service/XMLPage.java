@@ -0,0 +1,25 @@
+package io.horrorshow.soulhub.service;
+
+import io.horrorshow.soulhub.xml.SOULPatchXMLType;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * A page of soulpatches ordered by id. The position is taken from the ids the page was read for,
+ * soulpatches deleted in between are missing from the page but don't end the paging.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class XMLPage {
+
+    private final List<SOULPatchXMLType> soulPatches;
+    /** last id of the page, the position of the next page, null if no ids were left */
+    private final Long lastId;
+    /** the page has limit ids, more soulpatches may follow */
+    private final boolean full;
+
+}
@@ -0,0 +1,17 @@
+package io.horrorshow.soulhub.soap;
+
+import org.springframework.ws.soap.server.endpoint.annotation.FaultCode;
+import org.springframework.ws.soap.server.endpoint.annotation.SoapFault;
+
+/**
+ * Answered with a client fault instead of a server fault
+ */
+@SoapFault(faultCode = FaultCode.CLIENT)
+public class InvalidSoulhubRequest extends RuntimeException {
+
+    private static final long serialVersionUID = -2841633913530071874L;
+
+    public InvalidSoulhubRequest(String message) {
+        super(message);
+    }
+}
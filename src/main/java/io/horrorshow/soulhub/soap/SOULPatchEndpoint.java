@@ -1,39 +1,98 @@
 package io.horrorshow.soulhub.soap;
 
 import io.horrorshow.soulhub.service.SOULPatchService;
-import io.horrorshow.soulhub.xml.SOULPatchXMLType;
+import io.horrorshow.soulhub.service.XMLFileContent;
+import io.horrorshow.soulhub.service.XMLPage;
 import io.horrorshow.soulhub.xml.SoulhubRequest;
 import io.horrorshow.soulhub.xml.SoulhubResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.ws.context.MessageContext;
 import org.springframework.ws.server.endpoint.annotation.Endpoint;
 import org.springframework.ws.server.endpoint.annotation.PayloadRoot;
 import org.springframework.ws.server.endpoint.annotation.RequestPayload;
 import org.springframework.ws.server.endpoint.annotation.ResponsePayload;
 
-import java.util.List;
+import javax.xml.stream.XMLStreamException;
+import java.util.Objects;
 
 @Endpoint
 public class SOULPatchEndpoint {
 
-    private static final String NAMESPACE_URI = "http://soulhub.horrorshow.io/soulhub";
+    static final int DEFAULT_LIMIT = 20;
+    static final int MAX_LIMIT = 100;
+
+    static final String NAMESPACE_URI = "http://soulhub.horrorshow.io/soulhub";
 
     private final SOULPatchService soulPatchService;
+    private final SOULPatchXMLStreamer streamer;
 
     @Autowired
-    public SOULPatchEndpoint(SOULPatchService soulPatchService) {
+    public SOULPatchEndpoint(SOULPatchService soulPatchService, SOULPatchXMLStreamer streamer) {
 
         this.soulPatchService = soulPatchService;
+        this.streamer = streamer;
     }
 
+    /**
+     * A single soulpatch by soulpatchId (none if it doesn't exist), otherwise one page of soulpatches.
+     * The response of a full page carries the nextCursor, the last id the page was read for, also
+     * when soulpatches of the page were deleted meanwhile. With "all" every soulpatch after the
+     * cursor is streamed into the response message, see {@link SOULPatchXMLStreamer}.
+     */
     @PayloadRoot(namespace = NAMESPACE_URI, localPart = "soulhubRequest")
     @ResponsePayload
-    public SoulhubResponse getSoulhubResponse(@RequestPayload SoulhubRequest request) {
+    public SoulhubResponse getSoulhubResponse(@RequestPayload SoulhubRequest request,
+                                              MessageContext messageContext) throws XMLStreamException {
 
         SoulhubResponse response = new SoulhubResponse();
-        List<SOULPatchXMLType> xmlSoulPatches = soulPatchService.findAllXML();
+        XMLFileContent fileContent = Boolean.TRUE.equals(request.isMetadataOnly())
+                ? XMLFileContent.NONE
+                : Boolean.TRUE.equals(request.isFileContentAsAttachment())
+                ? XMLFileContent.ATTACHMENT
+                : XMLFileContent.INLINE;
+
+        if (request.getSoulpatchId() != null && !request.getSoulpatchId().isBlank()) {
+            soulPatchService.findXML(parseId("soulpatchId", request.getSoulpatchId()), fileContent)
+                    .ifPresent(sp -> response.getSoulpatch().add(sp));
+            return response;
+        }
+
+        if (request.getOffset() != null && request.getCursor() != null) {
+            throw new InvalidSoulhubRequest("offset and cursor can't be combined");
+        }
+        int offset = Objects.requireNonNullElse(request.getOffset(), 0);
+        int limit = Objects.requireNonNullElse(request.getLimit(), DEFAULT_LIMIT);
+        if (offset < 0 || limit < 1 || limit > MAX_LIMIT) {
+            throw new InvalidSoulhubRequest(String.format(
+                    "offset must be >= 0 and limit between 1 and %d", MAX_LIMIT));
+        }
+        Long afterId = (request.getCursor() != null) ? parseId("cursor", request.getCursor()) : null;
 
-        xmlSoulPatches.forEach(sp -> response.getSoulpatch().add(sp));
+        if (Boolean.TRUE.equals(request.isAll())) {
+            if (request.getOffset() != null || request.getLimit() != null) {
+                throw new InvalidSoulhubRequest("all can't be combined with offset or limit");
+            }
+            if (fileContent == XMLFileContent.ATTACHMENT) {
+                throw new InvalidSoulhubRequest("all can't be combined with fileContentAsAttachment");
+            }
+            streamer.write(afterId, fileContent, messageContext.getResponse());
+            return null;
+        }
+
+        XMLPage page = soulPatchService.findXMLPage(afterId, offset, limit, fileContent);
+        response.getSoulpatch().addAll(page.getSoulPatches());
+        if (page.isFull()) {
+            response.setNextCursor(page.getLastId().toString());
+        }
 
         return response;
     }
+
+    private static Long parseId(String name, String value) {
+        try {
+            return Long.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            throw new InvalidSoulhubRequest(name + " must be a number");
+        }
+    }
 }
@@ -0,0 +1,127 @@
+package io.horrorshow.soulhub.soap;
+
+import io.horrorshow.soulhub.service.SOULPatchService;
+import io.horrorshow.soulhub.service.XMLFileContent;
+import io.horrorshow.soulhub.service.XMLPage;
+import io.horrorshow.soulhub.xml.SOULPatchXMLType;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.ws.WebServiceMessage;
+import org.springframework.ws.stream.StreamingPayload;
+import org.springframework.ws.stream.StreamingWebServiceMessage;
+
+import javax.xml.XMLConstants;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Writes a soulhubResponse with all soulpatches after a cursor, loading batch-size soulpatches at a
+ * time. Each batch is read in its own short transaction, no connection is held while the client reads.
+ * <p>
+ * With a streaming message (Axiom, requests to /ws/stream) the payload is written when the response
+ * is sent, each batch goes to the client before the next one is loaded and memory per request doesn't
+ * grow with the catalog. Other messages (SAAJ, /ws) get the same payload written into their payload tree.
+ */
+@Component
+@Log4j2
+public class SOULPatchXMLStreamer {
+
+    static final QName RESPONSE_NAME = new QName(SOULPatchEndpoint.NAMESPACE_URI, "soulhubResponse");
+    private static final QName SOULPATCH_NAME = new QName(SOULPatchEndpoint.NAMESPACE_URI, "soulpatch");
+    private static final int MAX_POOLED_MARSHALLERS = 16;
+
+    private final SOULPatchService soulPatchService;
+    private final int batchSize;
+    private final JAXBContext jaxbContext;
+    private final Queue<Marshaller> marshallers = new ConcurrentLinkedQueue<>();
+
+    public SOULPatchXMLStreamer(@Autowired SOULPatchService soulPatchService,
+                                @Value("${soulhub.soap.stream-batch-size:50}") int batchSize) throws JAXBException {
+        this.soulPatchService = soulPatchService;
+        this.batchSize = batchSize;
+        this.jaxbContext = JAXBContext.newInstance(SOULPatchXMLType.class.getPackageName(),
+                SOULPatchXMLType.class.getClassLoader());
+    }
+
+    public void write(Long afterId, XMLFileContent fileContent, WebServiceMessage response) throws XMLStreamException {
+        StreamingPayload payload = payload(afterId, fileContent);
+        if (response instanceof StreamingWebServiceMessage) {
+            ((StreamingWebServiceMessage) response).setStreamingPayload(payload);
+        } else {
+            XMLStreamWriter writer = XMLOutputFactory.newFactory().createXMLStreamWriter(response.getPayloadResult());
+            payload.writeTo(writer);
+            writer.flush();
+        }
+    }
+
+    StreamingPayload payload(Long afterId, XMLFileContent fileContent) {
+        return new StreamingPayload() {
+            @Override
+            public QName getName() {
+                return RESPONSE_NAME;
+            }
+
+            @Override
+            public void writeTo(XMLStreamWriter writer) throws XMLStreamException {
+                writeResponse(writer, afterId, fileContent);
+            }
+        };
+    }
+
+    private void writeResponse(XMLStreamWriter writer, Long afterId, XMLFileContent fileContent)
+            throws XMLStreamException {
+        Marshaller marshaller = null;
+        try {
+            marshaller = borrowMarshaller();
+            writer.writeStartElement(XMLConstants.DEFAULT_NS_PREFIX, RESPONSE_NAME.getLocalPart(),
+                    RESPONSE_NAME.getNamespaceURI());
+            writer.writeDefaultNamespace(RESPONSE_NAME.getNamespaceURI());
+
+            // the ids decide where the next batch starts and whether there is one, soulpatches
+            // deleted since their ids were read are missing from a batch but don't end the stream
+            XMLPage batch = null;
+            do {
+                batch = soulPatchService.findXMLPage((batch != null) ? batch.getLastId() : afterId,
+                        0, batchSize, fileContent);
+                for (SOULPatchXMLType soulPatch : batch.getSoulPatches()) {
+                    marshaller.marshal(new JAXBElement<>(SOULPATCH_NAME, SOULPatchXMLType.class, soulPatch), writer);
+                }
+                writer.flush();
+            } while (batch.isFull());
+
+            writer.writeEndElement();
+        } catch (JAXBException e) {
+            log.error("streaming soulpatches after {} failed", afterId, e);
+            throw new XMLStreamException(e);
+        } finally {
+            if (marshaller != null) {
+                returnMarshaller(marshaller);
+            }
+        }
+    }
+
+    private Marshaller borrowMarshaller() throws JAXBException {
+        Marshaller marshaller = marshallers.poll();
+        if (marshaller == null) {
+            marshaller = jaxbContext.createMarshaller();
+            marshaller.setProperty(Marshaller.JAXB_FRAGMENT, true);
+        }
+        return marshaller;
+    }
+
+    private void returnMarshaller(Marshaller marshaller) {
+        if (marshallers.size() < MAX_POOLED_MARSHALLERS) {
+            marshallers.offer(marshaller);
+        }
+    }
+}
@@ -1,21 +1,34 @@
 package io.horrorshow.soulhub.soap;
 
+import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.boot.web.servlet.ServletRegistrationBean;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.oxm.jaxb.Jaxb2Marshaller;
 import org.springframework.ws.config.annotation.EnableWs;
 import org.springframework.ws.config.annotation.WsConfigurerAdapter;
+import org.springframework.ws.server.endpoint.adapter.DefaultMethodEndpointAdapter;
+import org.springframework.ws.server.endpoint.adapter.method.MarshallingPayloadMethodProcessor;
+import org.springframework.ws.server.endpoint.adapter.method.MethodArgumentResolver;
+import org.springframework.ws.server.endpoint.adapter.method.MethodReturnValueHandler;
+import org.springframework.ws.soap.axiom.AxiomSoapMessageFactory;
 import org.springframework.ws.transport.http.MessageDispatcherServlet;
 import org.springframework.ws.wsdl.wsdl11.DefaultWsdl11Definition;
 import org.springframework.xml.xsd.SimpleXsdSchema;
 import org.springframework.xml.xsd.XsdSchema;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @EnableWs
 @Configuration
 public class WebServiceConfig extends WsConfigurerAdapter {
 
+    private static final String XML_PACKAGE = "io.horrorshow.soulhub.xml";
+    private static final String STREAMING_MESSAGE_FACTORY = "streamingMessageFactory";
+
     @Bean
     public ServletRegistrationBean<?> messageDispatcherServlet(ApplicationContext context) {
         MessageDispatcherServlet servlet = new MessageDispatcherServlet();
@@ -24,6 +37,27 @@ public class WebServiceConfig extends WsConfigurerAdapter {
         return new ServletRegistrationBean<>(servlet, "/ws/*");
     }
 
+    /**
+     * The same endpoints with Axiom instead of SAAJ messages: responses to "all" requests are
+     * streamed to the client ({@link SOULPatchXMLStreamer}) instead of being built as a tree.
+     * Axiom only answers with MTOM to MTOM requests, so /ws stays on SAAJ
+     */
+    @Bean
+    public ServletRegistrationBean<?> streamingMessageDispatcherServlet(ApplicationContext context) {
+        MessageDispatcherServlet servlet = new MessageDispatcherServlet();
+        servlet.setApplicationContext(context);
+        servlet.setMessageFactoryBeanName(STREAMING_MESSAGE_FACTORY);
+        servlet.setTransformWsdlLocations(true);
+        var registration = new ServletRegistrationBean<>(servlet, "/ws/stream/*");
+        registration.setName("streamingMessageDispatcherServlet");
+        return registration;
+    }
+
+    @Bean(name = STREAMING_MESSAGE_FACTORY)
+    public AxiomSoapMessageFactory streamingMessageFactory() {
+        return new AxiomSoapMessageFactory();
+    }
+
     @Bean(name = "SOULHubWsdl")
     public DefaultWsdl11Definition defaultWsdl11Definition(XsdSchema soulhubSchema) {
         DefaultWsdl11Definition wsdl11Definition = new DefaultWsdl11Definition();
@@ -38,4 +72,45 @@ public class WebServiceConfig extends WsConfigurerAdapter {
     public XsdSchema soulhubSchema() {
         return new SimpleXsdSchema(new ClassPathResource("xsd/soulhub.xsd"));
     }
+
+    /**
+     * Marshals the payloads with MTOM enabled, binary elements (filedata) become XOP attachments.
+     * Spring-WS consults custom method processors only after its default JAXB processor, which
+     * would inline them as base64, so this one is put first.
+     */
+    @Bean
+    public static BeanPostProcessor mtomMethodProcessorPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DefaultMethodEndpointAdapter) {
+                    var adapter = (DefaultMethodEndpointAdapter) bean;
+                    var processor = new MarshallingPayloadMethodProcessor(mtomMarshaller());
+
+                    List<MethodArgumentResolver> argumentResolvers = new ArrayList<>();
+                    argumentResolvers.add(processor);
+                    argumentResolvers.addAll(adapter.getMethodArgumentResolvers());
+                    adapter.setMethodArgumentResolvers(argumentResolvers);
+
+                    List<MethodReturnValueHandler> returnValueHandlers = new ArrayList<>();
+                    returnValueHandlers.add(processor);
+                    returnValueHandlers.addAll(adapter.getMethodReturnValueHandlers());
+                    adapter.setMethodReturnValueHandlers(returnValueHandlers);
+                }
+                return bean;
+            }
+        };
+    }
+
+    static Jaxb2Marshaller mtomMarshaller() {
+        var marshaller = new Jaxb2Marshaller();
+        marshaller.setContextPath(XML_PACKAGE);
+        marshaller.setMtomEnabled(true);
+        try {
+            marshaller.afterPropertiesSet();
+        } catch (Exception e) {
+            throw new IllegalStateException("JAXB context for " + XML_PACKAGE + " can't be created", e);
+        }
+        return marshaller;
+    }
 }
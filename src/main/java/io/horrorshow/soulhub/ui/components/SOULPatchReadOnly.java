@@ -12,15 +12,18 @@ import com.vaadin.flow.component.internal.AbstractFieldSupport;
 import com.vaadin.flow.data.binder.Binder;
 import com.vaadin.flow.data.binder.ReadOnlyHasValue;
 import com.vaadin.flow.server.StreamResource;
+import com.vaadin.flow.server.VaadinResponse;
+import com.vaadin.flow.server.VaadinSession;
 import com.vaadin.flow.shared.Registration;
 import io.horrorshow.soulhub.data.AppUser;
 import io.horrorshow.soulhub.data.SOULPatch;
 import io.horrorshow.soulhub.data.util.StringUtils;
+import io.horrorshow.soulhub.service.SOULPatchArchive;
 import io.horrorshow.soulhub.ui.events.SOULPatchDownloadEvent;
 
-import java.io.InputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Objects;
-import java.util.function.Function;
 
 public class SOULPatchReadOnly extends Div
         implements HasValueAndElement<
@@ -39,7 +42,7 @@ public class SOULPatchReadOnly extends Div
     private final Label author = new Label("author");
     private final Label downloads = new Label("downloads");
     private final Anchor downloadLink = new Anchor();
-    private Function<SOULPatch, InputStream> soulPatchZipByteStreamSupplier;
+    private SOULPatchArchiveProvider soulPatchArchiveProvider;
 
     public SOULPatchReadOnly() {
 
@@ -80,8 +83,8 @@ public class SOULPatchReadOnly extends Div
         return addListener(SOULPatchDownloadEvent.class, listener);
     }
 
-    public void setSOULPatchZipInputStreamProvider(Function<SOULPatch, InputStream> streamProvider) {
-        this.soulPatchZipByteStreamSupplier = streamProvider;
+    public void setSOULPatchArchiveProvider(SOULPatchArchiveProvider archiveProvider) {
+        this.soulPatchArchiveProvider = archiveProvider;
     }
 
     private void init() {
@@ -119,7 +122,8 @@ public class SOULPatchReadOnly extends Div
                     String filename = String.format("%s.zip", StringUtils.toValidFilename(sp.getName()));
                     StreamResource sr = new StreamResource(
                             filename,
-                            () -> downloadSOULPatch(sp));
+                            (stream, session) -> downloadSOULPatch(sp, stream, session));
+                    sr.setContentType("application/zip");
                     downloadLink.setHref(sr);
                     downloadLink.setText(filename);
                 }, null);
@@ -138,9 +142,27 @@ public class SOULPatchReadOnly extends Div
                 .bind(soulPatch -> soulPatch, null);
     }
 
-    public InputStream downloadSOULPatch(SOULPatch soulPatch) {
-        fireEvent(new SOULPatchDownloadEvent(this, soulPatch));
-        return soulPatchZipByteStreamSupplier.apply(soulPatch);
+    /**
+     * Streams the zip into the response, runs without the session lock. The download event
+     * is only fired once the archive was written completely.
+     * <p>
+     * No conditional requests: the resource url changes with every registration, clients never
+     * revalidate against it. Cacheable downloads go through the REST archive endpoint.
+     */
+    private void downloadSOULPatch(SOULPatch soulPatch, OutputStream stream, VaadinSession session)
+            throws IOException {
+        try (SOULPatchArchive archive = soulPatchArchiveProvider.open(soulPatch)) {
+            if (archive.getSize() <= Integer.MAX_VALUE) {
+                VaadinResponse.getCurrent().setContentLength((int) archive.getSize());
+            }
+            archive.transferTo(stream);
+        }
+        session.access(() -> fireEvent(new SOULPatchDownloadEvent(this, soulPatch)));
+    }
+
+    @FunctionalInterface
+    public interface SOULPatchArchiveProvider {
+        SOULPatchArchive open(SOULPatch soulPatch) throws IOException;
     }
 
     @Override
@@ -1,30 +1,36 @@
 package io.horrorshow.soulhub.ui.components;
 
-import com.vaadin.flow.component.Component;
+import com.helger.commons.annotation.VisibleForTesting;
 import com.vaadin.flow.component.ComponentEventListener;
-import com.vaadin.flow.component.button.Button;
-import com.vaadin.flow.component.html.Paragraph;
-import com.vaadin.flow.component.html.Span;
-import com.vaadin.flow.component.icon.VaadinIcon;
 import com.vaadin.flow.component.notification.Notification;
-import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
-import com.vaadin.flow.component.orderedlayout.VerticalLayout;
-import com.vaadin.flow.data.renderer.ComponentRenderer;
+import com.vaadin.flow.data.renderer.TemplateRenderer;
+import com.vaadin.flow.dom.DomEvent;
 import com.vaadin.flow.shared.Registration;
+import elemental.json.Json;
+import elemental.json.JsonArray;
+import elemental.json.JsonObject;
+import elemental.json.JsonType;
 import io.horrorshow.soulhub.data.SOULPatch;
-import io.horrorshow.soulhub.data.SOULPatchRating;
 import io.horrorshow.soulhub.data.SOULPatch_;
 import io.horrorshow.soulhub.data.SPFile;
 import io.horrorshow.soulhub.security.SecurityUtils;
 import io.horrorshow.soulhub.ui.events.SOULPatchRatingEvent;
 import io.horrorshow.soulhub.ui.events.SPFileSelectEvent;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.vaadin.klaudeta.PaginatedGrid;
 
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
 
-import static java.lang.String.format;
 import static java.lang.String.valueOf;
 
+/**
+ * Cells are rendered client side from templates, a row holds no server side components. Clicks
+ * on file buttons and stars are handled by a single listener on the grid element, which finds
+ * the row by its data key and the file or rating by data attributes.
+ */
 public class SOULPatchesGrid extends PaginatedGrid<SOULPatch> {
 
     public static final String COL_NAME = "name";
@@ -39,8 +45,41 @@ public class SOULPatchesGrid extends PaginatedGrid<SOULPatch> {
     public static final int DEFAULT_PAGE_SIZE = 50;
     public static final int DEFAULT_PAGINATOR_SIZE = 10;
 
+    public static final int NUM_STARS = 5;
+
     private static final long serialVersionUID = 3319346975462092870L;
 
+    private static final String DESCRIPTION_TEMPLATE =
+            "<p class=\"sp-grid-col-description\" style=\"width: 100%\">[[item.description]]</p>";
+    private static final String FILES_TEMPLATE =
+            "<vaadin-vertical-layout theme=\"padding spacing\">" +
+            "<template is=\"dom-repeat\" items=\"[[item.files]]\" as=\"file\">" +
+            "<vaadin-button data-soulpatch$=\"[[item.key]]\" data-spfile$=\"[[file.id]]\">" +
+            "<iron-icon icon=\"vaadin:file-code\" slot=\"prefix\"></iron-icon>[[file.name]]" +
+            "</vaadin-button>" +
+            "</template>" +
+            "<span hidden=\"[[!item.noFiles]]\">no files attached</span>" +
+            "</vaadin-vertical-layout>";
+    /** %s are the attributes of a star, data-stars makes it clickable */
+    private static final String RATING_TEMPLATE =
+            "<vaadin-horizontal-layout theme=\"spacing\" style=\"align-items: center\">" +
+            "<span>[[item.rating]]</span>" +
+            "<span class=\"sp-grid-stars\" data-soulpatch$=\"[[item.key]]\">" +
+            "<template is=\"dom-repeat\" items=\"[[item.stars]]\" as=\"star\">" +
+            "<iron-icon icon=\"[[star]]\" %s></iron-icon>" +
+            "</template>" +
+            "</span>" +
+            "</vaadin-horizontal-layout>";
+
+    @VisibleForTesting
+    static final String SOULPATCH_KEY = closestData("soulpatch");
+    @VisibleForTesting
+    static final String SPFILE_ID = closestData("spfile");
+    @VisibleForTesting
+    static final String STAR_INDEX = closestData("stars");
+    @VisibleForTesting
+    static final String CLICK_FILTER = String.format("(%s) || (%s)", SPFILE_ID, STAR_INDEX);
+
     public SOULPatchesGrid() {
         setClassName("soulpatches-grid");
 
@@ -48,6 +87,7 @@ public class SOULPatchesGrid extends PaginatedGrid<SOULPatch> {
         setPaginatorSize(DEFAULT_PAGINATOR_SIZE);
 
         initColumns();
+        initClickListener();
     }
 
     private void initColumns() {
@@ -58,30 +98,36 @@ public class SOULPatchesGrid extends PaginatedGrid<SOULPatch> {
                 .setAutoWidth(true)
                 .setFrozen(true)
                 .setSortable(true)
-                .setComparator(Comparator.comparing(SOULPatch::getName));
+                .setComparator(SOULPatch::getName);
 
-        addColumn(new ComponentRenderer<>(this::getDescriptionCellLayout))
+        addColumn(TemplateRenderer.<SOULPatch>of(DESCRIPTION_TEMPLATE)
+                .withProperty("description", SOULPatch::getDescription))
                 .setHeader(COL_DESCRIPTION)
                 .setKey(SOULPatch_.DESCRIPTION)
                 .setResizable(true)
                 .setFlexGrow(10)
                 .setSortable(true)
-                .setComparator(Comparator.comparing(SOULPatch::getDescription));
+                .setComparator(SOULPatch::getDescription);
 
-        addColumn(new ComponentRenderer<>(this::getSpFilesCellLayout))
+        addColumn(TemplateRenderer.<SOULPatch>of(FILES_TEMPLATE)
+                .withProperty("files", SOULPatchesGrid::files)
+                .withProperty("noFiles", sp -> sp.getSpFiles().isEmpty()))
                 .setHeader(COL_FILES)
                 .setKey(SOULPatch_.SP_FILES)
                 .setResizable(true)
                 .setWidth("18em")
                 .setSortable(false);
 
-        addColumn(new ComponentRenderer<>(this::getRatingCellLayout))
+        addColumn(TemplateRenderer.<SOULPatch>of(String.format(RATING_TEMPLATE,
+                SecurityUtils.isUserLoggedIn() ? "data-stars$=\"[[index]]\"" : ""))
+                .withProperty("rating", sp -> String.format("%.2f", sp.getAverageRating()))
+                .withProperty("stars", SOULPatchesGrid::stars))
                 .setHeader(COL_RATINGS)
                 .setKey(SOULPatch_.RATINGS)
                 .setResizable(true)
                 .setWidth("14em")
                 .setSortable(true)
-                .setComparator(Comparator.comparing(SOULPatch::getAverageRating));
+                .setComparator(SOULPatch::getAverageRating);
 
         addColumn(soulPatch -> valueOf(soulPatch.getNoViews()))
                 .setHeader(COL_NO_DOWNLOADS)
@@ -89,7 +135,7 @@ public class SOULPatchesGrid extends PaginatedGrid<SOULPatch> {
                 .setResizable(true)
                 .setWidth("4em")
                 .setSortable(true)
-                .setComparator(Comparator.comparingLong(SOULPatch::getNoViews));
+                .setComparator(SOULPatch::getNoViews);
 
         addColumn(soulPatch -> soulPatch.getAuthor().getUserName())
                 .setHeader(COL_AUTHOR)
@@ -99,46 +145,80 @@ public class SOULPatchesGrid extends PaginatedGrid<SOULPatch> {
                 .setSortable(false);
     }
 
-    private Component getSpFilesCellLayout(SOULPatch sp) {
-        VerticalLayout spFilesLayout = new VerticalLayout();
-        if (!sp.getSpFiles().isEmpty()) {
-            sp.getSpFiles().forEach(spFile ->
-                    spFilesLayout.add(
-                            new Button(format("%s", spFile.getName()),
-                                    VaadinIcon.FILE_CODE.create(),
-                                    event -> spFileButtonClicked(spFile))));
-        } else {
-            spFilesLayout.add(new Span("no files attached"));
+    private void initClickListener() {
+        getElement().addEventListener("click", this::onClick)
+                .setFilter(CLICK_FILTER)
+                .addEventData(SOULPATCH_KEY)
+                .addEventData(SPFILE_ID)
+                .addEventData(STAR_INDEX);
+    }
+
+    private void onClick(DomEvent event) {
+        var soulPatchKey = stringData(event.getEventData(), SOULPATCH_KEY);
+        SOULPatch sp = (soulPatchKey != null) ? getDataCommunicator().getKeyMapper().get(soulPatchKey) : null;
+        if (sp == null) {
+            return;
+        }
+        var spFileId = stringData(event.getEventData(), SPFILE_ID);
+        var starIndex = stringData(event.getEventData(), STAR_INDEX);
+        if (spFileId != null) {
+            sp.getSpFiles().stream()
+                    .filter(spFile -> valueOf(spFile.getId()).equals(spFileId))
+                    .findAny()
+                    .ifPresent(this::spFileButtonClicked);
+        } else if (starIndex != null) {
+            int stars = NumberUtils.toInt(starIndex, -1) + 1;
+            if (stars >= 1 && stars <= NUM_STARS) {
+                rate(sp, stars);
+            }
         }
-        return spFilesLayout;
     }
 
-    private Component getRatingCellLayout(SOULPatch sp) {
-        Span rating = new Span(String.format("%.2f", sp.getAverageRating()));
-        StarsRating starsRating = new StarsRating();
-        starsRating.setValue((int) Math.round(sp.getRatings().stream()
-                .mapToDouble(SOULPatchRating::getStars)
-                .average().orElse(0d)));
-        starsRating.setNumstars(5);
-        starsRating.setManual(true);
-        starsRating.setReadOnly(!SecurityUtils.isUserLoggedIn());
-        starsRating.addValueChangeListener(
-                event -> {
-                    fireEvent(new SOULPatchRatingEvent(this, sp, event.getValue(), event.getOldValue()));
-                    new Notification(String.format("%dStar%s!",
-                            event.getValue(), (event.getValue() > 1) ? "s" : ""),
-                            3000, Notification.Position.MIDDLE)
-                            .open();
+    private void rate(SOULPatch sp, int stars) {
+        fireEvent(new SOULPatchRatingEvent(this, sp, stars, (int) Math.round(sp.getAverageRating())));
+        new Notification(String.format("%dStar%s!", stars, (stars > 1) ? "s" : ""),
+                3000, Notification.Position.MIDDLE)
+                .open();
+    }
+
+    private static JsonArray files(SOULPatch sp) {
+        JsonArray files = Json.createArray();
+        sp.getSpFiles().stream()
+                .sorted(Comparator.comparing(SPFile::getName, Comparator.nullsFirst(Comparator.naturalOrder())))
+                .forEach(spFile -> {
+                    JsonObject file = Json.createObject();
+                    file.put("id", valueOf(spFile.getId()));
+                    file.put("name", Objects.toString(spFile.getName(), ""));
+                    files.set(files.length(), file);
                 });
-        return new HorizontalLayout(rating, starsRating);
+        return files;
+    }
+
+    /**
+     * @return icon names of the stars, filled up to the rounded average rating
+     */
+    private static List<String> stars(SOULPatch sp) {
+        long filled = Math.round(sp.getAverageRating());
+        List<String> stars = new ArrayList<>(NUM_STARS);
+        for (int i = 0; i < NUM_STARS; i++) {
+            stars.add((i < filled) ? "vaadin:star" : "vaadin:star-o");
+        }
+        return stars;
+    }
+
+    /**
+     * @return client side expression of the data attribute of the clicked element or its
+     * closest ancestor having it, null if there is none
+     */
+    private static String closestData(String name) {
+        return String.format("event.target.closest('[data-%1$s]') && event.target.closest('[data-%1$s]').dataset.%1$s",
+                name);
     }
 
-    private Component getDescriptionCellLayout(SOULPatch sp) {
-        Paragraph p = new Paragraph();
-        p.setText(sp.getDescription());
-        p.addClassName("sp-grid-col-description");
-        p.setWidthFull();
-        return p;
+    private static String stringData(JsonObject eventData, String key) {
+        return (eventData.hasKey(key) && eventData.get(key).getType() == JsonType.STRING)
+                ? eventData.getString(key)
+                : null;
     }
 
     private void spFileButtonClicked(SPFile spFile) {
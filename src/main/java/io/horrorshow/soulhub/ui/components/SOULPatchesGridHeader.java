@@ -1,21 +1,27 @@
 package io.horrorshow.soulhub.ui.components;
 
 import com.vaadin.flow.component.AbstractField;
+import com.vaadin.flow.component.AttachEvent;
 import com.vaadin.flow.component.ClickEvent;
 import com.vaadin.flow.component.ComponentEventListener;
 import com.vaadin.flow.component.HasValueAndElement;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.checkbox.Checkbox;
+import com.vaadin.flow.component.html.Anchor;
 import com.vaadin.flow.component.html.Div;
 import com.vaadin.flow.component.internal.AbstractFieldSupport;
 import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.component.select.Select;
 import com.vaadin.flow.component.textfield.TextField;
 import com.vaadin.flow.data.value.ValueChangeMode;
+import com.vaadin.flow.server.AbstractStreamResource;
 import com.vaadin.flow.shared.Registration;
+import io.horrorshow.soulhub.data.util.SOULPatchSort;
 import io.horrorshow.soulhub.security.SecurityUtils;
 import io.horrorshow.soulhub.ui.events.SOULPatchFullTextSearchEvent;
 import io.horrorshow.soulhub.ui.events.SOULPatchesFilterEvent;
+import io.horrorshow.soulhub.ui.events.SOULPatchesSortEvent;
 import io.horrorshow.soulhub.ui.filters.SOULPatchFilter;
 
 import java.util.Objects;
@@ -37,6 +43,11 @@ public class SOULPatchesGridHeader extends Div
 
     private final Button resetFilter = new Button("reset filter");
 
+    private final Select<SOULPatchSort> sort = new Select<>(SOULPatchSort.values());
+
+    private final Anchor downloadAll = new Anchor();
+    private AbstractStreamResource downloadAllResource;
+
     private final AbstractFieldSupport<SOULPatchesGridHeader, SOULPatchFilter> fieldSupport;
 
     public SOULPatchesGridHeader() {
@@ -54,8 +65,14 @@ public class SOULPatchesGridHeader extends Div
 
         setupFullTextSearch();
 
+        setupSort();
+
         resetFilter.addClickListener(event -> setValue(SOULPatchFilter.getEmptyFilter()));
 
+        downloadAll.setText("download all as zip");
+        downloadAll.setTitle("download the soulpatches matching the filter as one zip");
+        downloadAll.setVisible(false);
+
         arrangeComponents();
     }
 
@@ -67,6 +84,17 @@ public class SOULPatchesGridHeader extends Div
         fireEvent(new SOULPatchFullTextSearchEvent(this, fullTextSearch.getValue()));
     }
 
+    private void setupSort() {
+        sort.setLabel("sort by");
+        sort.setItemLabelGenerator(SOULPatchSort::getLabel);
+        sort.setValue(SOULPatchSort.NAME);
+        sort.addValueChangeListener(event -> {
+            if (event.getValue() != null) {
+                fireEvent(new SOULPatchesSortEvent(this, event.getValue()));
+            }
+        });
+    }
+
     private void setupNamesFilter() {
         namesFilter.addValueChangeListener(e -> soulpatchFilterChanged());
         namesFilter.setPlaceholder("Filter SOULPatch names...");
@@ -91,7 +119,7 @@ public class SOULPatchesGridHeader extends Div
 
     private void arrangeComponents() {
         VerticalLayout filters =
-                new VerticalLayout(namesFilter, showOnlyCurUser, resetFilter);
+                new VerticalLayout(namesFilter, showOnlyCurUser, resetFilter, sort, downloadAll);
         VerticalLayout fullText =
                 new VerticalLayout(fullTextSearch, fullTextBtn);
         HorizontalLayout layout = new HorizontalLayout();
@@ -100,11 +128,36 @@ public class SOULPatchesGridHeader extends Div
         add(layout);
     }
 
+    /**
+     * @param resource writes the soulpatches matching the current filter
+     */
+    public void setDownloadAllResource(AbstractStreamResource resource) {
+        downloadAllResource = resource;
+        downloadAll.setVisible(true);
+        if (getUI().isPresent()) {
+            downloadAll.setHref(resource);
+        }
+    }
+
+    @Override
+    protected void onAttach(AttachEvent attachEvent) {
+        super.onAttach(attachEvent);
+        // stream resources are registered with the UI, so the link is set once attached
+        if (downloadAllResource != null) {
+            downloadAll.setHref(downloadAllResource);
+        }
+    }
+
     public Registration addSOULPatchesFilterListener(
             ComponentEventListener<SOULPatchesFilterEvent> listener) {
         return addListener(SOULPatchesFilterEvent.class, listener);
     }
 
+    public Registration addSortListener(
+            ComponentEventListener<SOULPatchesSortEvent> listener) {
+        return addListener(SOULPatchesSortEvent.class, listener);
+    }
+
     public Registration addFullTextSearchListener(
             ComponentEventListener<SOULPatchFullTextSearchEvent> listener) {
         return addListener(SOULPatchFullTextSearchEvent.class, listener);
@@ -0,0 +1,20 @@
+package io.horrorshow.soulhub.ui.events;
+
+import com.vaadin.flow.component.Component;
+import com.vaadin.flow.component.ComponentEvent;
+import io.horrorshow.soulhub.data.util.SOULPatchSort;
+import lombok.Getter;
+import lombok.ToString;
+
+@ToString
+public class SOULPatchesSortEvent extends ComponentEvent<Component> {
+    private static final long serialVersionUID = -3385215961270364312L;
+
+    @Getter
+    private final SOULPatchSort sort;
+
+    public SOULPatchesSortEvent(Component source, SOULPatchSort sort) {
+        super(source, false);
+        this.sort = sort;
+    }
+}
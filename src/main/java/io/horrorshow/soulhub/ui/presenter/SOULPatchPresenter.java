@@ -1,6 +1,7 @@
 package io.horrorshow.soulhub.ui.presenter;
 
 import com.vaadin.flow.spring.annotation.SpringComponent;
+import io.horrorshow.soulhub.service.SOULPatchArchiveCache;
 import io.horrorshow.soulhub.service.SOULPatchService;
 import io.horrorshow.soulhub.service.UserService;
 import io.horrorshow.soulhub.ui.events.SOULPatchDownloadEvent;
@@ -20,12 +21,15 @@ import java.util.Map;
 public class SOULPatchPresenter {
 
     private final SOULPatchService soulPatchService;
+    private final SOULPatchArchiveCache archiveCache;
     private final UserService userService;
     private SOULPatchView view;
 
     public SOULPatchPresenter(@Autowired SOULPatchService soulPatchService,
+                              @Autowired SOULPatchArchiveCache archiveCache,
                               @Autowired UserService userService) {
         this.soulPatchService = soulPatchService;
+        this.archiveCache = archiveCache;
         this.userService = userService;
     }
 
@@ -35,27 +39,24 @@ public class SOULPatchPresenter {
                 .getSpFileReadOnly()
                 .addSPFileDownloadListener(this::spFileDownloaded);
         view.getSoulPatchReadOnly()
-                .setSOULPatchZipInputStreamProvider(soulPatchService::getZipSOULPatchStreamProvider);
+                .setSOULPatchArchiveProvider(archiveCache::open);
         view.getSoulPatchReadOnly()
                 .addSOULPatchDownloadListener(this::soulPatchDownloaded);
     }
 
     private void spFileDownloaded(SPFileDownloadEvent event) {
-        var sp = soulPatchService.incrementNoDownloadsAndSave(event.getSpFile().getSoulPatch());
-        view.setValue(sp);
+        soulPatchService.spFileDownloaded(event.getSpFile(), userService.getCurrentAppUser().orElse(null));
+        view.setValue(event.getSpFile().getSoulPatch());
     }
 
     private void soulPatchDownloaded(SOULPatchDownloadEvent event) {
-        var sp = soulPatchService.incrementNoDownloadsAndSave(event.getSoulPatch());
-        view.setValue(sp);
+        soulPatchService.soulPatchDownloaded(event.getSoulPatch(), userService.getCurrentAppUser().orElse(null));
+        view.setValue(event.getSoulPatch());
     }
 
     public void onNavigation(String parameter, Map<String, List<String>> parameterMap) {
-        if (soulPatchService.isPossibleSOULPatchId(parameter)) {
-            var soulPatch = soulPatchService.findById(Long.valueOf(parameter));
-            view.setValue(soulPatch);
-        } else {
-            view.createErrorView("No SOULPatch with the given parameter");
-        }
+        soulPatchService.findByParameter(parameter).ifPresentOrElse(
+                view::setValue,
+                () -> view.createErrorView("No SOULPatch with the given parameter"));
     }
 }
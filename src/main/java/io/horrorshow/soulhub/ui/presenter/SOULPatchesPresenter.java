@@ -3,10 +3,13 @@ package io.horrorshow.soulhub.ui.presenter;
 import com.helger.commons.annotation.VisibleForTesting;
 import com.vaadin.flow.component.AbstractField;
 import com.vaadin.flow.component.grid.Grid;
+import com.vaadin.flow.server.StreamResource;
 import com.vaadin.flow.spring.annotation.SpringComponent;
 import io.horrorshow.soulhub.data.AppUser;
 import io.horrorshow.soulhub.data.SOULPatch;
 import io.horrorshow.soulhub.data.util.SOULPatchesFetchFilter;
+import io.horrorshow.soulhub.service.SOULPatchArchiveCache;
+import io.horrorshow.soulhub.service.SOULPatchBundleService;
 import io.horrorshow.soulhub.service.SOULPatchService;
 import io.horrorshow.soulhub.service.UserService;
 import io.horrorshow.soulhub.ui.UIConst;
@@ -20,9 +23,10 @@ import org.springframework.beans.factory.config.ConfigurableBeanFactory;
 import org.springframework.context.annotation.Scope;
 import org.springframework.data.domain.Page;
 
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -34,14 +38,22 @@ public class SOULPatchesPresenter {
     private final SOULPatchesGridDataProvider dataProvider;
     private final UserService userService;
     private final SOULPatchService soulPatchService;
+    private final SOULPatchArchiveCache archiveCache;
+    private final SOULPatchBundleService bundleService;
     private SOULPatchesView view;
+    // read by the download all resource outside of the session lock
+    private volatile SOULPatchesFetchFilter currentFilter = SOULPatchesFetchFilter.getEmptyFilter();
 
     public SOULPatchesPresenter(@Autowired SOULPatchesGridDataProvider dataProvider,
                                 @Autowired UserService userService,
-                                @Autowired SOULPatchService soulPatchService) {
+                                @Autowired SOULPatchService soulPatchService,
+                                @Autowired SOULPatchArchiveCache archiveCache,
+                                @Autowired SOULPatchBundleService bundleService) {
         this.dataProvider = dataProvider;
         this.userService = userService;
         this.soulPatchService = soulPatchService;
+        this.archiveCache = archiveCache;
+        this.bundleService = bundleService;
 
         dataProvider.setPageObserver(this::observePage);
     }
@@ -59,7 +71,9 @@ public class SOULPatchesPresenter {
         view.getGrid().addSOULPatchRatingsListener(this::onSOULPatchRating);
         view.getGrid().asSingleSelect().addValueChangeListener(this::onSOULPatchesGridSelection);
         view.getHeader().addFullTextSearchListener(this::onFullTextSearch);
+        view.getHeader().addSortListener(this::onSort);
         view.getHeader().addValueChangeListener(event -> onSOULPatchesHeaderValueChanged(event.getValue()));
+        view.getHeader().setDownloadAllResource(createDownloadAllResource());
 
         view.getSpFileReadOnlyDialog()
                 .getSpFileReadOnly()
@@ -68,13 +82,23 @@ public class SOULPatchesPresenter {
         view.getSoulPatchReadOnlyDialog().addValueChangeListener(event -> onSOULPatchDialogChange(event.getValue()));
         view.getSoulPatchReadOnlyDialog()
                 .getSoulPatchReadOnly()
-                .setSOULPatchZipInputStreamProvider(soulPatchService::getZipSOULPatchStreamProvider);
+                .setSOULPatchArchiveProvider(archiveCache::open);
 
         view.getSoulPatchReadOnlyDialog()
                 .getSoulPatchReadOnly()
                 .addSOULPatchDownloadListener(this::onSOULPatchDownload);
     }
 
+    private StreamResource createDownloadAllResource() {
+        var resource = new StreamResource("soulpatches.zip", (stream, session) -> {
+            bundleService.writeBundle(bundleService.findIds(currentFilter),
+                    userService.getCurrentAppUser().orElse(null), stream);
+            session.access(dataProvider::refreshAll);
+        });
+        resource.setContentType("application/zip");
+        return resource;
+    }
+
     @VisibleForTesting
     void onSOULPatchDialogChange(SOULPatch soulPatch) {
         view.getSoulPatchReadOnlyDialog()
@@ -84,13 +108,13 @@ public class SOULPatchesPresenter {
 
     @VisibleForTesting
     void onSOULPatchDownload(SOULPatchDownloadEvent event) {
-        soulPatchService.incrementNoDownloadsAndSave(event.getSoulPatch());
+        soulPatchService.soulPatchDownloaded(event.getSoulPatch(), userService.getCurrentAppUser().orElse(null));
         dataProvider.refreshItem(event.getSoulPatch());
     }
 
     @VisibleForTesting
     void onSPFileDownload(SPFileDownloadEvent event) {
-        soulPatchService.incrementNoDownloadsAndSave(event.getSpFile().getSoulPatch());
+        soulPatchService.spFileDownloaded(event.getSpFile(), userService.getCurrentAppUser().orElse(null));
         dataProvider.refreshItem(event.getSpFile().getSoulPatch());
     }
 
@@ -104,6 +128,7 @@ public class SOULPatchesPresenter {
                     filter.getUsersFilter().add(appUser));
         }
         filter.getUsersFilter().addAll(event.getAppUserFilter());
+        currentFilter = filter;
         dataProvider.setFilter(filter);
     }
 
@@ -119,19 +144,25 @@ public class SOULPatchesPresenter {
     void onFullTextSearch(SOULPatchFullTextSearchEvent event) {
         var filter = new SOULPatchesFetchFilter();
         filter.setFullTextSearch(event.getValue());
+        currentFilter = filter;
         dataProvider.setFilter(filter);
         log.debug("full text search event: {}", event.getValue());
     }
 
+    @VisibleForTesting
+    void onSort(SOULPatchesSortEvent event) {
+        log.debug("sort event: {}", event.getSort());
+        dataProvider.setSortOrders(event.getSort().getDirection(), new String[]{event.getSort().getProperty()});
+        // column sorting of the grid takes precedence over the default sort orders
+        view.getGrid().sort(Collections.emptyList());
+        dataProvider.refreshAll();
+    }
+
     @VisibleForTesting
     void onSOULPatchRating(SOULPatchRatingEvent event) {
         log.debug("soulpatch rating {}", event);
-        if (userService.getCurrentAppUser().isPresent()) {
-            soulPatchService.soulPatchRating(
-                    event.getSoulPatch(),
-                    event.getValue(),
-                    userService.getCurrentAppUser().get());
-        }
+        userService.getCurrentAppUser().ifPresent(appUser ->
+                soulPatchService.soulPatchRating(event.getSoulPatch(), event.getValue(), appUser));
 
         dataProvider.refreshItem(event.getSoulPatch());
     }
@@ -148,13 +179,12 @@ public class SOULPatchesPresenter {
         if (parameterMap.containsKey(UIConst.PARAM_SHOW_BY_USER)) {
             var filter = SOULPatchFilter.getEmptyFilter();
 
-            Set<AppUser> appUserFilter = parameterMap.get(UIConst.PARAM_SHOW_BY_USER)
+            List<Long> userIds = parameterMap.get(UIConst.PARAM_SHOW_BY_USER)
                     .stream()
                     .filter(s -> s.matches("\\d+"))
                     .map(Long::parseLong)
-                    .map(l -> userService.findById(l).orElse(null))
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toSet());
+                    .collect(Collectors.toList());
+            Set<AppUser> appUserFilter = new HashSet<>(userService.findAllById(userIds));
 
             log.debug(String.format("AppUsers to filter: %s",
                     String.join(", ",
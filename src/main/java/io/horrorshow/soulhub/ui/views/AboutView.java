@@ -5,7 +5,7 @@ import com.vaadin.flow.component.html.Span;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 import com.vaadin.flow.router.PageTitle;
 import com.vaadin.flow.router.Route;
-import io.horrorshow.soulhub.service.SOULPatchService;
+import io.horrorshow.soulhub.service.PlatformStatisticsService;
 import io.horrorshow.soulhub.ui.MainLayout;
 import io.horrorshow.soulhub.ui.UIConst;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -18,10 +18,10 @@ public class AboutView extends VerticalLayout {
 
     private static final long serialVersionUID = -2584215264372639999L;
 
-    private final SOULPatchService soulPatchService;
+    private final PlatformStatisticsService statisticsService;
 
-    public AboutView(@Autowired SOULPatchService soulPatchService) {
-        this.soulPatchService = soulPatchService;
+    public AboutView(@Autowired PlatformStatisticsService statisticsService) {
+        this.statisticsService = statisticsService;
         addClassName("about-view");
 
         createContent();
@@ -34,15 +34,15 @@ public class AboutView extends VerticalLayout {
 
         Span noSOULPatches = new Span(
                 format("%s SOUL Patches stored",
-                        soulPatchService.countSOULPatches()));
+                        statisticsService.getSOULPatchCount()));
 
         Span noSPFiles = new Span(
                 format("%s soul or soulpatch manifest files attached",
-                        soulPatchService.countSPFiles()));
+                        statisticsService.getSPFileCount()));
 
         Span totalDownloads = new Span(
                 format("%s soulpatch downloads",
-                        soulPatchService.countTotalDownloads()));
+                        statisticsService.getTotalDownloads()));
 
         add(title);
         add(noSOULPatches);
@@ -1,14 +1,22 @@
 package io.horrorshow.soulhub.ui.views;
 
+import com.vaadin.flow.component.grid.Grid;
 import com.vaadin.flow.component.html.H1;
+import com.vaadin.flow.component.html.H3;
 import com.vaadin.flow.component.html.Label;
+import com.vaadin.flow.component.html.Span;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 import com.vaadin.flow.router.PageTitle;
 import com.vaadin.flow.router.Route;
+import io.horrorshow.soulhub.service.PlatformStatisticsService;
+import io.horrorshow.soulhub.service.PlatformStatisticsService.DailyStatistics;
 import io.horrorshow.soulhub.ui.MainLayout;
 import io.horrorshow.soulhub.ui.UIConst;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.annotation.Secured;
 
+import static java.lang.String.format;
+
 @Route(value = UIConst.ROUTE_ADMIN, layout = MainLayout.class)
 @Secured(UIConst.ROLE_ADMIN)
 @PageTitle(UIConst.TITLE_ADMIN)
@@ -16,9 +24,25 @@ public class AdminView extends VerticalLayout {
 
     private static final long serialVersionUID = -4744767698452492047L;
 
-    public AdminView() {
+    private static final int STATISTICS_DAYS = 30;
+
+    public AdminView(@Autowired PlatformStatisticsService statisticsService) {
         H1 h1 = new H1("Admin View");
         Label label = new Label("this is a secured location");
         add(h1, label);
+
+        add(new H3("Statistics"));
+        add(new Span(format("%s soulpatches, %s files, %s downloads",
+                statisticsService.getSOULPatchCount(),
+                statisticsService.getSPFileCount(),
+                statisticsService.getTotalDownloads())));
+
+        Grid<DailyStatistics> daily = new Grid<>();
+        daily.addColumn(DailyStatistics::getDay).setHeader("Day");
+        daily.addColumn(DailyStatistics::getUploads).setHeader("Uploads");
+        daily.addColumn(DailyStatistics::getDownloads).setHeader("Downloads");
+        daily.addColumn(DailyStatistics::getRatings).setHeader("New ratings");
+        daily.setItems(statisticsService.getDailyStatistics(STATISTICS_DAYS));
+        add(daily);
     }
 }
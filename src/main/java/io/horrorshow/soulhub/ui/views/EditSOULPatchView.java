@@ -185,8 +185,9 @@ public class EditSOULPatchView extends VerticalLayout implements HasUrlParameter
 
     @Override
     public void setParameter(BeforeEvent event, @OptionalParameter String parameter) {
-        if (soulPatchService.isPossibleSOULPatchId(parameter)) {
-            SOULPatch soulPatch = soulPatchService.findById(Long.valueOf(parameter));
+        Optional<SOULPatch> requested = soulPatchService.findByParameter(parameter);
+        if (requested.isPresent()) {
+            SOULPatch soulPatch = requested.get();
             if (userDetailsService.isCurrentUserOwnerOf(soulPatch)) {
                 reloadSOULPatch(soulPatch);
             } else {
@@ -0,0 +1,68 @@
+package io.horrorshow.soulhub.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.horrorshow.soulhub.data.records.SOULPatchRecord;
+import io.horrorshow.soulhub.data.records.SPFileRecord;
+import io.horrorshow.soulhub.data.records.UserRecord;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BinaryMessageConvertersConfigTest {
+
+    private static final byte[] CONTENT = "(soul patch content)\n".repeat(50).getBytes(StandardCharsets.UTF_8);
+    private static final LocalDateTime NOW = LocalDateTime.of(2020, 12, 24, 18, 30);
+    private static final SOULPatchRecord RECORD = new SOULPatchRecord(1L, "name", "description",
+            Set.of(new SPFileRecord(2L, "SOUL", "file.soul", NOW, NOW, CONTENT)),
+            new UserRecord("user", "user@example.com"), NOW, NOW);
+
+    private final BinaryMessageConvertersConfig config = new BinaryMessageConvertersConfig();
+
+    // the builder as configured by spring boot
+    private static Jackson2ObjectMapperBuilder builder() {
+        return Jackson2ObjectMapperBuilder.json().featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    }
+
+    private static byte[] write(AbstractJackson2HttpMessageConverter converter, MediaType mediaType) throws IOException {
+        var message = new MockHttpOutputMessage();
+        converter.write(RECORD, mediaType, message);
+        return message.getBodyAsBytes();
+    }
+
+    private static void assertRawContent(AbstractJackson2HttpMessageConverter converter, byte[] body) throws IOException {
+        ObjectMapper mapper = converter.getObjectMapper();
+        JsonNode file = mapper.readTree(body).get("files").get(0);
+        assertThat(file.get("content").isBinary()).isTrue();
+        assertThat(file.get("content").binaryValue()).isEqualTo(CONTENT);
+        assertThat(file.get("createdAt").asText()).isEqualTo("2020-12-24T18:30:00");
+    }
+
+    @Test
+    void cbor_writes_file_content_as_byte_string() throws IOException {
+        var converter = config.cborHttpMessageConverter(builder());
+        var json = write(new MappingJackson2HttpMessageConverter(builder().build()), MediaType.APPLICATION_JSON);
+        var cbor = write(converter, MediaType.APPLICATION_CBOR);
+
+        assertRawContent(converter, cbor);
+        assertThat(cbor.length).isLessThan(json.length);
+    }
+
+    @Test
+    void smile_writes_file_content_as_byte_string() throws IOException {
+        var converter = config.smileHttpMessageConverter(builder());
+
+        assertRawContent(converter, write(converter, new MediaType("application", "x-jackson-smile")));
+    }
+}
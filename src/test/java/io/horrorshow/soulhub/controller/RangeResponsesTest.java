@@ -0,0 +1,82 @@
+package io.horrorshow.soulhub.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RangeResponsesTest {
+
+    private static final byte[] CONTENT = "0123456789".getBytes(StandardCharsets.UTF_8);
+    private static final String ETAG = "\"abc\"";
+    private static final long LAST_MODIFIED = 1_600_000_000_000L;
+
+    private final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/spfiles/1/content");
+    private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+    private boolean write() throws IOException {
+        return RangeResponses.write(new ServletWebRequest(request, response), CONTENT.length, ETAG, LAST_MODIFIED,
+                (position, count, target) -> target.write(ByteBuffer.wrap(CONTENT, (int) position, (int) count)));
+    }
+
+    @Test
+    void full_content_without_range() throws IOException {
+        assertThat(write()).isTrue();
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentAsString()).isEqualTo("0123456789");
+        assertThat(response.getHeader("ETag")).isEqualTo(ETAG);
+        assertThat(response.getHeader("Accept-Ranges")).isEqualTo("bytes");
+    }
+
+    @Test
+    void single_range() throws IOException {
+        request.addHeader("Range", "bytes=2-4");
+
+        assertThat(write()).isFalse();
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getHeader("Content-Range")).isEqualTo("bytes 2-4/10");
+        assertThat(response.getContentAsString()).isEqualTo("234");
+    }
+
+    @Test
+    void suffix_range() throws IOException {
+        request.addHeader("Range", "bytes=-3");
+
+        write();
+        assertThat(response.getContentAsString()).isEqualTo("789");
+    }
+
+    @Test
+    void unsatisfiable_range() throws IOException {
+        request.addHeader("Range", "bytes=20-");
+
+        write();
+        assertThat(response.getStatus()).isEqualTo(416);
+        assertThat(response.getHeader("Content-Range")).isEqualTo("bytes */10");
+    }
+
+    @Test
+    void stale_if_range_gets_full_content() throws IOException {
+        request.addHeader("Range", "bytes=2-4");
+        request.addHeader("If-Range", "\"other\"");
+
+        write();
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentAsString()).isEqualTo("0123456789");
+    }
+
+    @Test
+    void not_modified() throws IOException {
+        request.addHeader("If-None-Match", ETAG);
+
+        assertThat(write()).isFalse();
+        assertThat(response.getStatus()).isEqualTo(304);
+        assertThat(response.getContentAsByteArray()).isEmpty();
+    }
+}
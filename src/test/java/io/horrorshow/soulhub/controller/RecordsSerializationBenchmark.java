@@ -0,0 +1,90 @@
+package io.horrorshow.soulhub.controller;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import io.horrorshow.soulhub.data.records.SOULPatchRecord;
+import io.horrorshow.soulhub.data.records.SPFileRecord;
+import io.horrorshow.soulhub.data.records.UserRecord;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Payload size and serialization time of a page of soulpatch records as JSON, CBOR and Smile.
+ * Not a test, run the main method, e.g. from the IDE. Optional arguments are the number of
+ * records, files per record and bytes per file.
+ */
+public class RecordsSerializationBenchmark {
+
+    private static final int ITERATIONS = 2_000;
+
+    public static void main(String[] args) throws Exception {
+        int records = (args.length > 0) ? Integer.parseInt(args[0]) : 20;
+        int files = (args.length > 1) ? Integer.parseInt(args[1]) : 3;
+        int fileSize = (args.length > 2) ? Integer.parseInt(args[2]) : 4_096;
+
+        List<SOULPatchRecord> page = page(records, files, fileSize);
+        var mappers = Map.of(
+                "json", mapper(new JsonFactory()),
+                "cbor", mapper(new CBORFactory()),
+                "smile", mapper(new SmileFactory()));
+
+        System.out.printf("%d records, %d files of %d bytes each%n", records, files, fileSize);
+        System.out.printf("%-6s %10s %12s %12s%n", "format", "bytes", "write us/op", "read us/op");
+        for (var name : List.of("json", "cbor", "smile")) {
+            ObjectMapper mapper = mappers.get(name);
+            byte[] body = mapper.writeValueAsBytes(page);
+
+            for (int i = 0; i < ITERATIONS; i++) {
+                mapper.readTree(mapper.writeValueAsBytes(page));
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                mapper.writeValueAsBytes(page);
+            }
+            long write = (System.nanoTime() - start) / ITERATIONS;
+
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                mapper.readTree(body);
+            }
+            long read = (System.nanoTime() - start) / ITERATIONS;
+
+            System.out.printf("%-6s %10d %12.1f %12.1f%n", name, body.length, write / 1_000.0, read / 1_000.0);
+        }
+    }
+
+    private static ObjectMapper mapper(JsonFactory factory) {
+        return Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .factory(factory)
+                .build();
+    }
+
+    private static List<SOULPatchRecord> page(int records, int files, int fileSize) {
+        var now = LocalDateTime.now();
+        var line = "(define (patch-step state) (map (lambda (x) (* x 0.5)) state))\n";
+        var content = line.repeat(fileSize / line.length() + 1).substring(0, fileSize)
+                .getBytes(StandardCharsets.UTF_8);
+
+        var page = new ArrayList<SOULPatchRecord>();
+        for (long id = 1; id <= records; id++) {
+            var spFiles = new HashSet<SPFileRecord>();
+            for (long file = 1; file <= files; file++) {
+                spFiles.add(new SPFileRecord(id * 100 + file, "SOUL", "file" + file + ".soul", now, now, content));
+            }
+            page.add(new SOULPatchRecord(id, "soulpatch " + id, "description of soulpatch " + id, spFiles,
+                    new UserRecord("user" + id, "user" + id + "@example.com"), now, now));
+        }
+        return page;
+    }
+}
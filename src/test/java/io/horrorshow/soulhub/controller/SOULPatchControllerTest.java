@@ -0,0 +1,134 @@
+package io.horrorshow.soulhub.controller;
+
+import io.horrorshow.soulhub.data.records.SOULPatchRecord;
+import io.horrorshow.soulhub.data.records.SOULPatchRecordField;
+import io.horrorshow.soulhub.data.util.SOULPatchCursor;
+import io.horrorshow.soulhub.data.util.SOULPatchSort;
+import io.horrorshow.soulhub.data.util.SOULPatchesFetchFilter;
+import io.horrorshow.soulhub.exception.ResourceNotFound;
+import io.horrorshow.soulhub.security.SecurityConfiguration;
+import io.horrorshow.soulhub.service.SOULPatchChangeFeedService;
+import io.horrorshow.soulhub.service.SOULPatchService;
+import io.horrorshow.soulhub.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(controllers = SOULPatchController.class,
+        excludeAutoConfiguration = SecurityAutoConfiguration.class,
+        excludeFilters = @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = SecurityConfiguration.class))
+@AutoConfigureMockMvc(addFilters = false)
+class SOULPatchControllerTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @MockBean
+    private SOULPatchService service;
+    @MockBean
+    private UserService userService;
+    @MockBean
+    private SOULPatchChangeFeedService changeFeedService;
+
+    private static SOULPatchRecord record(long id) {
+        return new SOULPatchRecord(id, "soulpatch " + id, null, null, null, null, null);
+    }
+
+    // links are built from the query string, the tests with links pass parameters in the uri
+
+    @Test
+    void pages_link_their_neighbours_and_carry_the_total() throws Exception {
+        when(service.findAnyMatchingIds(any(SOULPatchesFetchFilter.class), any(Pageable.class)))
+                .thenAnswer(invocation -> new PageImpl<>(List.of(3L, 4L), invocation.getArgument(1), 5));
+        when(service.getSOULPatchRecords(List.of(3L, 4L), SOULPatchRecordField.METADATA))
+                .thenReturn(List.of(record(3), record(4)));
+
+        mvc.perform(get("/api/soulpatches?page=1&size=2&sort=top-rated"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(SOULPatchController.TOTAL_COUNT_HEADER, "5"))
+                .andExpect(header().string("Link", allOf(
+                        containsString("?size=2&sort=top-rated&page=0>; rel=\"first\""),
+                        containsString("?size=2&sort=top-rated&page=0>; rel=\"prev\""),
+                        containsString("?size=2&sort=top-rated&page=2>; rel=\"next\""),
+                        containsString("?size=2&sort=top-rated&page=2>; rel=\"last\""))))
+                .andExpect(jsonPath("$[*].id").value(contains(3, 4)));
+
+        var pageable = ArgumentCaptor.forClass(Pageable.class);
+        verify(service).findAnyMatchingIds(any(SOULPatchesFetchFilter.class), pageable.capture());
+        assertThat(pageable.getValue()).isEqualTo(PageRequest.of(1, 2, SOULPatchSort.TOP_RATED.toSort()));
+    }
+
+    @Test
+    void cursor_pages_link_the_next_cursor_only_if_there_are_more() throws Exception {
+        var positions = List.of(
+                SOULPatchCursor.at(SOULPatchSort.NAME, "a", 1L),
+                SOULPatchCursor.at(SOULPatchSort.NAME, "b", 2L),
+                SOULPatchCursor.at(SOULPatchSort.NAME, "c", 3L));
+        when(service.findAnyMatchingAfter(any(), eq(SOULPatchSort.NAME), isNull(), eq(3))).thenReturn(positions);
+        when(service.getSOULPatchRecords(eq(List.of(1L, 2L)), any())).thenReturn(List.of(record(1), record(2)));
+
+        mvc.perform(get("/api/soulpatches?cursor=&size=2"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(SOULPatchController.TOTAL_COUNT_HEADER))
+                .andExpect(header().string("Link", allOf(
+                        containsString("?size=2&cursor=" + positions.get(1).encode() + ">; rel=\"next\""),
+                        not(containsString("rel=\"last\"")))));
+
+        var after = positions.get(1);
+        when(service.findAnyMatchingAfter(any(), eq(SOULPatchSort.NAME), eq(after), eq(3)))
+                .thenReturn(positions.subList(2, 3));
+        when(service.getSOULPatchRecords(eq(List.of(3L)), any())).thenReturn(List.of(record(3)));
+
+        mvc.perform(get("/api/soulpatches?cursor={cursor}&size=2", after.encode()))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Link", not(containsString("rel=\"next\""))));
+    }
+
+    @Test
+    void invalid_paging_parameters_are_bad_requests() throws Exception {
+        mvc.perform(get("/api/soulpatches").param("size", "0"))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get("/api/soulpatches").param("size", "" + (SOULPatchController.MAX_PAGE_SIZE + 1)))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get("/api/soulpatches").param("page", "-1"))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get("/api/soulpatches").param("sort", "random"))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get("/api/soulpatches").param("cursor", "not a cursor"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(service);
+    }
+
+    @Test
+    void unknown_users_are_not_found() throws Exception {
+        when(userService.findAllByIdOrThrow(List.of(1L, 2L))).thenThrow(new ResourceNotFound("user id: 2"));
+
+        mvc.perform(get("/api/soulpatches").param("user", "1", "2"))
+                .andExpect(status().isNotFound());
+
+        verifyNoInteractions(service);
+    }
+}
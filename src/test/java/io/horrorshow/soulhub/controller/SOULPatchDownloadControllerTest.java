@@ -0,0 +1,83 @@
+package io.horrorshow.soulhub.controller;
+
+import io.horrorshow.soulhub.data.SPFile;
+import io.horrorshow.soulhub.security.SecurityConfiguration;
+import io.horrorshow.soulhub.service.SOULPatchArchiveCache;
+import io.horrorshow.soulhub.service.SOULPatchBundleService;
+import io.horrorshow.soulhub.service.SOULPatchService;
+import io.horrorshow.soulhub.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(controllers = SOULPatchDownloadController.class,
+        excludeAutoConfiguration = SecurityAutoConfiguration.class,
+        excludeFilters = @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = SecurityConfiguration.class))
+@AutoConfigureMockMvc(addFilters = false)
+class SOULPatchDownloadControllerTest {
+
+    private static final LocalDateTime UPDATED_AT = LocalDateTime.of(2020, 10, 1, 12, 0, 0, 123_456_000);
+
+    @Autowired
+    private MockMvc mvc;
+
+    @MockBean
+    private SOULPatchService service;
+    @MockBean
+    private SOULPatchArchiveCache archiveCache;
+    @MockBean
+    private SOULPatchBundleService bundleService;
+    @MockBean
+    private UserService userService;
+
+    @Test
+    void spfile_content_is_sent_with_its_version_tag() throws Exception {
+        var spFile = new SPFile();
+        spFile.setId(7L);
+        spFile.setName("patch.soul");
+        spFile.setFileContent("(soul)");
+        spFile.setUpdatedAt(UPDATED_AT);
+        when(service.findSpFileUpdatedAt(7L)).thenReturn(Optional.of(UPDATED_AT));
+        when(service.findSpFile(7L)).thenReturn(Optional.of(spFile));
+
+        mvc.perform(get("/api/spfiles/7/content"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", VersionTags.eTag(UPDATED_AT)))
+                .andExpect(content().string("(soul)"));
+
+        verify(service).spFileDownloaded(any(SPFile.class), isNull());
+    }
+
+    @Test
+    void unmodified_spfile_content_is_not_loaded() throws Exception {
+        when(service.findSpFileUpdatedAt(7L)).thenReturn(Optional.of(UPDATED_AT));
+
+        mvc.perform(get("/api/spfiles/7/content").header("If-None-Match", VersionTags.eTag(UPDATED_AT)))
+                .andExpect(status().isNotModified());
+
+        verify(service, never()).findSpFile(any());
+        verify(service, never()).spFileDownloaded(any(), any());
+    }
+
+    @Test
+    void unknown_spfiles_are_not_found() throws Exception {
+        when(service.findSpFileUpdatedAt(7L)).thenReturn(Optional.empty());
+
+        mvc.perform(get("/api/spfiles/7/content"))
+                .andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,34 @@
+package io.horrorshow.soulhub.controller;
+
+import io.horrorshow.soulhub.data.records.SOULPatchRecordField;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VersionTagsTest {
+
+    private static final LocalDateTime UPDATED_AT = LocalDateTime.of(2020, 12, 24, 18, 30, 5, 123_456_000);
+
+    @Test
+    void if_match_accepts_tags_of_any_representation() {
+        String full = VersionTags.eTag(UPDATED_AT);
+        String metadata = VersionTags.eTag(UPDATED_AT, SOULPatchRecordField.METADATA);
+
+        assertThat(metadata).isNotEqualTo(full);
+        assertThat(VersionTags.versions(full)).containsExactly(UPDATED_AT);
+        assertThat(VersionTags.versions("\"other\", " + metadata)).containsExactly(UPDATED_AT);
+    }
+
+    @Test
+    void weak_and_foreign_tags_never_match() {
+        assertThat(VersionTags.versions("W/" + VersionTags.eTag(UPDATED_AT))).isEmpty();
+        assertThat(VersionTags.versions("\"not-hex\"")).isEmpty();
+    }
+
+    @Test
+    void star_matches_any_version() {
+        assertThat(VersionTags.versions("*")).isNull();
+    }
+}
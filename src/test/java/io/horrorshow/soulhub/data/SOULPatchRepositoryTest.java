@@ -1,5 +1,9 @@
 package io.horrorshow.soulhub.data;
 
+import io.horrorshow.soulhub.data.records.RecordsConverter;
+import io.horrorshow.soulhub.data.records.SOULPatchRecord;
+import io.horrorshow.soulhub.data.records.SOULPatchRecordField;
+import io.horrorshow.soulhub.data.records.SPFileRecord;
 import io.horrorshow.soulhub.data.repository.AppUserRepository;
 import io.horrorshow.soulhub.data.repository.SOULPatchRepository;
 import io.horrorshow.soulhub.service.SOULPatchServiceTest;
@@ -13,12 +17,15 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static io.horrorshow.soulhub.data.SPFile.FileType.MANIFEST;
 import static io.horrorshow.soulhub.data.SPFile.FileType.SOUL;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -96,4 +103,54 @@ class SOULPatchRepositoryTest {
                 assertTrue(soulPatch.getUpdatedAt().isAfter(soulPatch.getCreatedAt()),
                         "updated after created at date"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void records_select_only_requested_fields() {
+        var ids = soulPatchRepository.findAll().stream()
+                .sorted(Comparator.comparing(SOULPatch::getName).reversed())
+                .map(SOULPatch::getId)
+                .collect(Collectors.toList());
+
+        var records = soulPatchRepository.findRecords(ids, SOULPatchRecordField.METADATA);
+
+        assertThat(records).extracting(SOULPatchRecord::getId).containsExactlyElementsOf(ids);
+        var withFiles = records.get(1);
+        assertThat(withFiles.getName()).isEqualTo("name1");
+        assertThat(withFiles.getCreatedBy().getUsername()).isEqualTo(user1.getUserName());
+        assertThat(withFiles.getFiles()).isNotEmpty().allSatisfy(file -> assertThat(file.getContent()).isNull());
+
+        var nameOnly = soulPatchRepository.findRecords(ids, SOULPatchRecordField.parse("name"));
+        assertThat(nameOnly.get(1).getName()).isEqualTo("name1");
+        assertThat(nameOnly.get(1).getFiles()).isNull();
+        assertThat(nameOnly.get(1).getCreatedBy()).isNull();
+    }
+
+    @Test
+    void records_with_file_content() {
+        var soulPatch = soulPatchRepository.findAll().stream()
+                .filter(sp -> sp.getName().equals("name1"))
+                .findFirst().orElseThrow();
+
+        var record = soulPatchRepository.findRecords(List.of(soulPatch.getId()), SOULPatchRecordField.parse("files.content"))
+                .get(0);
+
+        assertThat(record.getFiles())
+                .extracting(SPFileRecord::getContent)
+                .containsExactlyInAnyOrderElementsOf(soulPatch.getSpFiles().stream()
+                        .map(spFile -> RecordsConverter.contentBytes(spFile.getFileContent()))
+                        .collect(Collectors.toList()));
+    }
+
+    @Test
+    void ids_ordered_by_id_from_offset_or_after_id() {
+        var ids = soulPatchRepository.findAll().stream()
+                .map(SOULPatch::getId)
+                .sorted()
+                .collect(Collectors.toList());
+
+        assertThat(soulPatchRepository.findIdsOrderedById(null, 0, 10)).isEqualTo(ids);
+        assertThat(soulPatchRepository.findIdsOrderedById(null, 1, 1)).containsExactly(ids.get(1));
+        assertThat(soulPatchRepository.findIdsOrderedById(ids.get(0), 0, 10))
+                .isEqualTo(ids.subList(1, ids.size()));
+    }
+}
@@ -0,0 +1,80 @@
+package io.horrorshow.soulhub.data.datasource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class ReplicaLagMonitorTest {
+
+    private ReplicaRoutingDataSource routingDataSource;
+    private ReplicaLagMonitor monitor;
+
+    @BeforeEach
+    void init() {
+        var replica = new JdbcDataSource();
+        replica.setURL("jdbc:h2:mem:replica-lag;MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+        var jdbcTemplate = new JdbcTemplate(replica);
+        String standby = Standby.class.getName();
+        jdbcTemplate.execute("CREATE ALIAS IF NOT EXISTS pg_last_wal_receive_lsn FOR \"" + standby + ".receiveLsn\"");
+        jdbcTemplate.execute("CREATE ALIAS IF NOT EXISTS pg_last_wal_replay_lsn FOR \"" + standby + ".replayLsn\"");
+        jdbcTemplate.execute("CREATE ALIAS IF NOT EXISTS pg_last_xact_replay_timestamp FOR \"" + standby + ".replayTimestamp\"");
+
+        routingDataSource = new ReplicaRoutingDataSource(mock(DataSource.class), replica);
+        monitor = new ReplicaLagMonitor(replica, routingDataSource, ReplicaLagMonitor.DEFAULT_LAG_QUERY, 10000);
+    }
+
+    @Test
+    void replica_of_an_idle_primary_has_no_lag() {
+        // the last write on the primary was a minute ago, all of it is replayed
+        Standby.set("0/3000060", "0/3000060", 60000);
+
+        monitor.checkReplicaLag();
+
+        assertThat(monitor.getLagMillis()).isZero();
+        assertThat(routingDataSource.isReplicaAvailable()).isTrue();
+    }
+
+    @Test
+    void replica_behind_its_received_wal_lags_by_the_age_of_its_last_replay() {
+        Standby.set("0/3000060", "0/3000000", 60000);
+
+        monitor.checkReplicaLag();
+
+        assertThat(monitor.getLagMillis()).isBetween(60000L, 70000L);
+        assertThat(routingDataSource.isReplicaAvailable()).isFalse();
+    }
+
+    /**
+     * Stands in for the postgres standby functions
+     */
+    public static class Standby {
+        private static volatile String receiveLsn;
+        private static volatile String replayLsn;
+        private static volatile Timestamp replayTimestamp;
+
+        static void set(String receive, String replay, long replayedMillisAgo) {
+            receiveLsn = receive;
+            replayLsn = replay;
+            replayTimestamp = new Timestamp(System.currentTimeMillis() - replayedMillisAgo);
+        }
+
+        public static String receiveLsn() {
+            return receiveLsn;
+        }
+
+        public static String replayLsn() {
+            return replayLsn;
+        }
+
+        public static Timestamp replayTimestamp() {
+            return replayTimestamp;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package io.horrorshow.soulhub.data.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class ReplicaRoutingDataSourceTest {
+
+    @Mock
+    DataSource primary;
+    @Mock
+    DataSource replica;
+    @Mock
+    Connection primaryConnection;
+    @Mock
+    Connection replicaConnection;
+
+    ReplicaRoutingDataSource routingDataSource;
+
+    @BeforeEach
+    void init() throws SQLException {
+        MockitoAnnotations.initMocks(this);
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        when(replica.getConnection()).thenReturn(replicaConnection);
+
+        routingDataSource = new ReplicaRoutingDataSource(primary, replica);
+        routingDataSource.afterPropertiesSet();
+    }
+
+    @AfterEach
+    void cleanup() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    }
+
+    @Test
+    void read_write_transactions_use_primary() throws SQLException {
+        assertThat(routingDataSource.getConnection()).isSameAs(primaryConnection);
+        verify(replica, never()).getConnection();
+    }
+
+    @Test
+    void read_only_transactions_use_replica() throws SQLException {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertThat(routingDataSource.currentRoute()).isEqualTo(ReplicaRoutingDataSource.Route.REPLICA);
+        assertThat(routingDataSource.getConnection()).isSameAs(replicaConnection);
+    }
+
+    @Test
+    void read_only_transactions_fall_back_to_primary_if_replica_unavailable() throws SQLException {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        routingDataSource.setReplicaAvailable(false);
+
+        assertThat(routingDataSource.getConnection()).isSameAs(primaryConnection);
+
+        routingDataSource.setReplicaAvailable(true);
+
+        assertThat(routingDataSource.getConnection()).isSameAs(replicaConnection);
+    }
+}
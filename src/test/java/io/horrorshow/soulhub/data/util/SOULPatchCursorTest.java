@@ -0,0 +1,44 @@
+package io.horrorshow.soulhub.data.util;
+
+import io.horrorshow.soulhub.data.SOULPatch;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SOULPatchCursorTest {
+
+    private static SOULPatch soulPatch() {
+        var soulPatch = new SOULPatch();
+        soulPatch.setId(42L);
+        soulPatch.setName("name: with colons");
+        soulPatch.setCreatedAt(LocalDateTime.of(2020, 12, 24, 18, 30, 5));
+        return soulPatch;
+    }
+
+    @Test
+    void encoded_cursor_decodes_to_same_position() {
+        for (SOULPatchSort sort : new SOULPatchSort[]{SOULPatchSort.NAME, SOULPatchSort.NEWEST, SOULPatchSort.DOWNLOADS}) {
+            var cursor = SOULPatchCursor.after(soulPatch(), sort);
+
+            assertThat(SOULPatchCursor.decode(cursor.encode())).isEqualTo(cursor);
+        }
+    }
+
+    @Test
+    void null_sort_keys_as_sorted_by_database() {
+        var soulPatch = soulPatch();
+        soulPatch.setName(null);
+
+        assertThat(SOULPatchCursor.sortKey(soulPatch, SOULPatchSort.NAME)).isEqualTo("");
+        assertThat(SOULPatchCursor.sortKey(soulPatch, SOULPatchSort.DOWNLOADS)).isEqualTo(0L);
+    }
+
+    @Test
+    void malformed_cursor() {
+        assertThatThrownBy(() -> SOULPatchCursor.decode("not a cursor"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
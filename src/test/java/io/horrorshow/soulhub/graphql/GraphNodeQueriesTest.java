@@ -0,0 +1,109 @@
+package io.horrorshow.soulhub.graphql;
+
+import io.horrorshow.soulhub.data.AppUser;
+import io.horrorshow.soulhub.data.SOULPatch;
+import io.horrorshow.soulhub.data.SOULPatchRating;
+import io.horrorshow.soulhub.data.SPFile;
+import io.horrorshow.soulhub.data.repository.AppUserRepository;
+import io.horrorshow.soulhub.data.repository.SOULPatchRatingRepository;
+import io.horrorshow.soulhub.data.repository.SOULPatchRepository;
+import io.horrorshow.soulhub.data.util.SOULPatchSort;
+import io.horrorshow.soulhub.service.SOULPatchServiceTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@ExtendWith(SpringExtension.class)
+@DataJpaTest
+@EnableJpaAuditing
+@Import(GraphNodeQueries.class)
+class GraphNodeQueriesTest {
+
+    @Autowired
+    private GraphNodeQueries queries;
+    @Autowired
+    private SOULPatchRepository soulPatchRepository;
+    @Autowired
+    private AppUserRepository appUserRepository;
+    @Autowired
+    private SOULPatchRatingRepository ratingRepository;
+
+    private AppUser user;
+    private SOULPatch withFile;
+    private SOULPatch empty;
+
+    @BeforeEach
+    void init() {
+        user = appUserRepository.save(SOULPatchServiceTest.createAppUser());
+
+        withFile = new SOULPatch();
+        withFile.setName("with_file");
+        withFile.setAuthor(user);
+        var file = new SPFile();
+        file.setName("a.soul");
+        file.setFileType(SPFile.FileType.SOUL);
+        file.setFileContent("(patch)");
+        file.setSoulPatch(withFile);
+        withFile.getSpFiles().add(file);
+        withFile = soulPatchRepository.save(withFile);
+
+        empty = new SOULPatch();
+        empty.setName("empty");
+        empty.setAuthor(user);
+        empty = soulPatchRepository.save(empty);
+
+        var rating = new SOULPatchRating();
+        rating.setSoulPatch(withFile);
+        rating.setAppUser(user);
+        rating.setStars(4);
+        ratingRepository.save(rating);
+    }
+
+    @Test
+    void soulpatch_and_user_nodes() {
+        assertThat(queries.findSOULPatches(Set.of(withFile.getId(), empty.getId())))
+                .extracting(SOULPatchNode::getName, SOULPatchNode::getAuthorId)
+                .containsExactlyInAnyOrder(
+                        tuple("with_file", user.getId()),
+                        tuple("empty", user.getId()));
+        assertThat(queries.findUsers(Set.of(user.getId())))
+                .containsExactly(new UserNode(user.getId(), user.getUserName()));
+    }
+
+    @Test
+    void page_filtered_by_name_with_wildcards_taken_literally() {
+        assertThat(queries.findSOULPatchPage("WITH_", user.getId(), SOULPatchSort.NAME, 0, 10))
+                .extracting(SOULPatchNode::getId)
+                .containsExactly(withFile.getId());
+        assertThat(queries.findSOULPatchPage(null, null, SOULPatchSort.NAME, 0, 10))
+                .extracting(SOULPatchNode::getName)
+                .containsExactly("empty", "with_file");
+        assertThat(queries.countSOULPatches("%", null)).isZero();
+    }
+
+    @Test
+    void files_contents_and_ratings_by_soulpatch() {
+        var files = queries.findSPFilesBySOULPatchIds(List.of(withFile.getId(), empty.getId()));
+        assertThat(files).hasSize(1);
+        var file = files.get(0);
+        assertThat(file.getSoulPatchId()).isEqualTo(withFile.getId());
+        assertThat(file.getType()).isEqualTo("SOUL");
+        assertThat(queries.findSPFiles(Set.of(file.getId()))).containsExactly(file);
+        assertThat(queries.findSPFileContents(Set.of(file.getId()))).containsEntry(file.getId(), "(patch)");
+
+        assertThat(queries.findRatingsBySOULPatchIds(Set.of(withFile.getId(), empty.getId())))
+                .extracting(RatingNode::getSoulPatchId, RatingNode::getUserId, RatingNode::getStars)
+                .containsExactly(tuple(withFile.getId(), user.getId(), 4));
+    }
+}
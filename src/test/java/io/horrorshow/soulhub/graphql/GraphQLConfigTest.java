@@ -0,0 +1,147 @@
+package io.horrorshow.soulhub.graphql;
+
+import graphql.ExecutionInput;
+import graphql.ExecutionResult;
+import graphql.GraphQL;
+import io.horrorshow.soulhub.data.SPFile;
+import io.horrorshow.soulhub.data.util.SOULPatchSort;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class GraphQLConfigTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2020, 12, 24, 18, 30);
+
+    @Mock
+    private GraphNodeQueries queries;
+
+    private GraphQL graphQL;
+    private SOULHubDataLoaders dataLoaders;
+
+    @BeforeEach
+    void init() throws Exception {
+        graphQL = new GraphQLConfig().graphQL(new SOULHubDataFetchers(queries), 8, 5000);
+        dataLoaders = new SOULHubDataLoaders(queries, 500);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void authors_and_files_of_a_page_are_loaded_in_one_batch_each() {
+        when(queries.findSOULPatchPage(null, null, SOULPatchSort.NEWEST, 0, 3)).thenReturn(List.of(
+                soulPatch(1L, 10L), soulPatch(2L, 10L), soulPatch(3L, 11L)));
+        when(queries.findUsers(any())).thenReturn(List.of(new UserNode(10L, "alice"), new UserNode(11L, "bob")));
+        when(queries.findSPFilesBySOULPatchIds(any())).thenReturn(List.of(
+                new SPFileNode(100L, 1L, "a.soul", SPFile.FileType.SOUL, NOW, NOW),
+                new SPFileNode(101L, 1L, "manifest.json", SPFile.FileType.MANIFEST, NOW, NOW),
+                new SPFileNode(300L, 3L, "c.soul", SPFile.FileType.SOUL, NOW, NOW)));
+
+        var result = execute("{ soulPatches(size: 3) { content { name author { userName } files { name } } } }");
+
+        assertThat(result.getErrors()).isEmpty();
+        List<Map<String, Object>> content = (List<Map<String, Object>>)
+                ((Map<String, Object>) result.<Map<String, Object>>getData().get("soulPatches")).get("content");
+        assertThat(content).extracting(patch -> ((Map<String, Object>) patch.get("author")).get("userName"))
+                .containsExactly("alice", "alice", "bob");
+        assertThat(content).extracting(patch -> ((List<?>) patch.get("files")).size())
+                .containsExactly(2, 0, 1);
+
+        ArgumentCaptor<Collection<Long>> userIds = ArgumentCaptor.forClass(Collection.class);
+        verify(queries, times(1)).findUsers(userIds.capture());
+        assertThat(userIds.getValue()).containsExactlyInAnyOrder(10L, 11L);
+        verify(queries, times(1)).findSPFilesBySOULPatchIds(any());
+        verify(queries, never()).findSPFileContents(any());
+        verify(queries, never()).countSOULPatches(any(), any());
+    }
+
+    @Test
+    void soulpatches_of_the_page_are_not_loaded_again() {
+        when(queries.findSOULPatchPage(any(), any(), any(), anyInt(), anyInt())).thenReturn(List.of(soulPatch(1L, 10L)));
+        when(queries.findSPFilesBySOULPatchIds(any())).thenReturn(List.of(
+                new SPFileNode(100L, 1L, "a.soul", SPFile.FileType.SOUL, NOW, NOW)));
+
+        var result = execute("{ soulPatches { content { files { soulPatch { name } } } } }");
+
+        assertThat(result.getErrors()).isEmpty();
+        verify(queries, never()).findSOULPatches(any());
+    }
+
+    @Test
+    void one_file_with_content() {
+        when(queries.findSPFiles(any())).thenReturn(List.of(
+                new SPFileNode(100L, 1L, "a.soul", SPFile.FileType.SOUL, NOW, NOW)));
+        when(queries.findSPFileContents(any())).thenReturn(Map.of(100L, "(patch)"));
+
+        var result = execute("{ spFile(id: 100) { name type content } }");
+
+        assertThat(result.getErrors()).isEmpty();
+        assertThat(result.<Map<String, Object>>getData().get("spFile"))
+                .isEqualTo(Map.of("name", "a.soul", "type", "SOUL", "content", "(patch)"));
+        verifyNoMoreInteractions(ignoreStubs(queries));
+    }
+
+    @Test
+    void total_is_counted_only_when_selected() {
+        when(queries.countSOULPatches("soul", 10L)).thenReturn(42L);
+
+        var result = execute("{ soulPatches(name: \"soul\", authorId: 10) { totalElements } }");
+
+        assertThat(result.getErrors()).isEmpty();
+        assertThat(result.<Map<String, Object>>getData().get("soulPatches")).isEqualTo(Map.of("totalElements", 42));
+        verify(queries, never()).findSOULPatchPage(any(), any(), any(), anyInt(), anyInt());
+    }
+
+    @Test
+    void too_deep_queries_are_rejected() {
+        var result = execute("{ spFile(id: 1) { soulPatch { files { soulPatch { files { soulPatch " +
+                "{ files { soulPatch { name } } } } } } } } }");
+
+        assertThat(result.getErrors()).hasSize(1);
+        assertThat(result.getErrors().get(0).getMessage()).contains("depth");
+        verifyNoInteractions(queries);
+    }
+
+    @Test
+    void too_complex_queries_are_rejected() {
+        var result = execute("{ soulPatches(size: 100) { content { name files { name content } " +
+                "ratings { stars user { userName } } } } }");
+
+        assertThat(result.getErrors()).hasSize(1);
+        assertThat(result.getErrors().get(0).getMessage()).contains("complexity");
+        verifyNoInteractions(queries);
+    }
+
+    @Test
+    void page_size_is_limited() {
+        var result = execute("{ soulPatches(size: 1000) { content { id } } }");
+
+        assertThat(result.getErrors()).hasSize(1);
+        verify(queries, never()).findSOULPatchPage(any(), any(), any(), anyInt(), eq(1000));
+    }
+
+    private ExecutionResult execute(String query) {
+        return graphQL.execute(ExecutionInput.newExecutionInput()
+                .query(query)
+                .dataLoaderRegistry(dataLoaders.newRegistry())
+                .build());
+    }
+
+    private static SOULPatchNode soulPatch(Long id, Long authorId) {
+        return new SOULPatchNode(id, "soulpatch " + id, "", authorId, NOW, NOW, 0L, 0L, 0L);
+    }
+}
@@ -0,0 +1,67 @@
+package io.horrorshow.soulhub.instrumentation;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QueryStatsRegistryTest {
+
+    private static final String PAGE_SQL = "select soulpatch0_.id from soulpatches soulpatch0_ limit ?";
+    private static final String FILES_SQL = "select spfiles0_.soulpatch_id from spfiles spfiles0_ where spfiles0_.soulpatch_id=?";
+
+    SimpleMeterRegistry meterRegistry;
+    QueryStatsRegistry registry;
+
+    @BeforeEach
+    void init() {
+        meterRegistry = new SimpleMeterRegistry();
+        registry = new QueryStatsRegistry(meterRegistry, 5, 200);
+    }
+
+    @Test
+    void repeated_selects_are_reported_as_n_plus_one() {
+        var stats = new RequestQueryStats("UIDL /soulpatches");
+        execute(stats, PAGE_SQL, 1);
+        for (int i = 0; i < 10; i++) {
+            execute(stats, FILES_SQL, 1);
+            stats.entityLoaded("SPFile");
+        }
+
+        registry.record(stats.getLabel(), stats);
+
+        var action = registry.getActions().get(0);
+        assertThat(action.getAction()).isEqualTo("UIDL /soulpatches");
+        assertThat(action.getStatements()).isEqualTo(11);
+        assertThat(action.getEntityLoads()).isEqualTo(10);
+        assertThat(action.getNPlusOneSuspects()).containsOnlyKeys(FILES_SQL);
+        assertThat(meterRegistry.get("soulhub.db.request.nplusone")
+                .tag("action", "UIDL /soulpatches").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("soulhub.db.request.statements")
+                .tag("action", "UIDL /soulpatches").summary().totalAmount()).isEqualTo(11);
+    }
+
+    @Test
+    void slow_queries_are_kept_and_requests_without_queries_ignored() {
+        var stats = new RequestQueryStats("GET /api/soulpatches");
+        execute(stats, PAGE_SQL, 250);
+        registry.record(stats.getLabel(), stats);
+        registry.record("GET /about", new RequestQueryStats("GET /about"));
+
+        assertThat(registry.getActions()).hasSize(1);
+        assertThat(registry.getSlowQueries()).hasSize(1);
+        assertThat(registry.getSlowQueries().get(0).getMillis()).isEqualTo(250);
+    }
+
+    @Test
+    void ids_in_paths_are_normalized() {
+        assertThat(QueryStatsFilter.normalize("/api/soulpatches/42")).isEqualTo("/api/soulpatches/{id}");
+        assertThat(QueryStatsFilter.normalize("/soulpatch/7/files")).isEqualTo("/soulpatch/{id}/files");
+    }
+
+    private static void execute(RequestQueryStats stats, String sql, long millis) {
+        stats.statementPrepared(sql);
+        stats.statementExecuted(millis * 1_000_000);
+    }
+}
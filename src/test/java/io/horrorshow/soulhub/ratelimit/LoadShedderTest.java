@@ -0,0 +1,49 @@
+package io.horrorshow.soulhub.ratelimit;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LoadShedderTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final Timer acquire = Timer.builder(LoadShedder.ACQUIRE_TIMER).tag("pool", "HikariPool").register(registry);
+    private final LoadShedder loadShedder = new LoadShedder(List.of(), registry, 10, 2000);
+
+    @Test
+    void sheds_while_recent_acquires_are_slow() {
+        loadShedder.update();
+        acquire.record(Duration.ofMillis(5000));
+        acquire.record(Duration.ofMillis(100));
+
+        loadShedder.update();
+
+        assertThat(loadShedder.isOverloaded()).isTrue();
+    }
+
+    @Test
+    void stops_shedding_once_the_pool_has_recovered() {
+        loadShedder.update();
+        acquire.record(Duration.ofMillis(20000));
+        loadShedder.update();
+        assertThat(loadShedder.isOverloaded()).isTrue();
+
+        // the timer's max still holds the slow acquire
+        acquire.record(Duration.ofMillis(1));
+        acquire.record(Duration.ofMillis(2));
+        assertThat(acquire.max(TimeUnit.MILLISECONDS)).isEqualTo(20000);
+
+        loadShedder.update();
+        assertThat(loadShedder.isOverloaded()).isFalse();
+
+        // no acquires since the previous sample
+        loadShedder.update();
+        assertThat(loadShedder.isOverloaded()).isFalse();
+    }
+}
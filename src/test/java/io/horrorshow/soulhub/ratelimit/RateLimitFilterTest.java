@@ -0,0 +1,69 @@
+package io.horrorshow.soulhub.ratelimit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RateLimitFilterTest {
+
+    private final LoadShedder loadShedder = mock(LoadShedder.class);
+    private final RateLimitFilter filter = new RateLimitFilter(
+            new RateLimiter(Map.of(
+                    EndpointClass.REST, new RateLimiter.Limit(1, 2),
+                    EndpointClass.SOAP, new RateLimiter.Limit(1, 1))),
+            loadShedder, null, 5);
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private MockHttpServletResponse request(String user, String path) throws ServletException, IOException {
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken(user, "", "REST"));
+        var response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", path), response, new MockFilterChain());
+        return response;
+    }
+
+    @Test
+    void limits_per_principal_and_endpoint_class() throws Exception {
+        assertThat(request("user1", "/api/soulpatches").getStatus()).isEqualTo(200);
+        assertThat(request("user1", "/api/soulpatches").getStatus()).isEqualTo(200);
+
+        var rejected = request("user1", "/api/soulpatches");
+        assertThat(rejected.getStatus()).isEqualTo(429);
+        assertThat(rejected.getHeader("Retry-After")).isEqualTo("1");
+
+        assertThat(request("user2", "/api/soulpatches").getStatus()).isEqualTo(200);
+        assertThat(request("user1", "/ws/soulpatches").getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void ui_requests_are_not_limited() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            assertThat(request("user1", "/soulpatches").getStatus()).isEqualTo(200);
+        }
+    }
+
+    @Test
+    void api_requests_are_shed_on_overload() throws Exception {
+        when(loadShedder.isOverloaded()).thenReturn(true);
+
+        var rejected = request("user1", "/api/soulpatches");
+        assertThat(rejected.getStatus()).isEqualTo(429);
+        assertThat(rejected.getHeader("Retry-After")).isEqualTo("5");
+        assertThat(request("user1", "/soulpatches").getStatus()).isEqualTo(200);
+    }
+}
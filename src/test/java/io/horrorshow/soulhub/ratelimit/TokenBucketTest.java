@@ -0,0 +1,42 @@
+package io.horrorshow.soulhub.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void burst_then_refill_at_rate() {
+        long now = 1_000 * SECOND;
+        var bucket = new TokenBucket(2, 3, now);
+
+        assertThat(bucket.tryAcquire(now)).isZero();
+        assertThat(bucket.tryAcquire(now)).isZero();
+        assertThat(bucket.tryAcquire(now)).isZero();
+        assertThat(bucket.tryAcquire(now)).isEqualTo(SECOND / 2);
+
+        assertThat(bucket.tryAcquire(now + SECOND / 2)).isZero();
+        assertThat(bucket.tryAcquire(now + SECOND / 2)).isEqualTo(SECOND / 2);
+    }
+
+    @Test
+    void full_after_idle() {
+        long now = 1_000 * SECOND;
+        var bucket = new TokenBucket(2, 3, now);
+        bucket.tryAcquire(now);
+        bucket.tryAcquire(now);
+
+        assertThat(bucket.isFull(now)).isFalse();
+        assertThat(bucket.isFull(now + SECOND)).isTrue();
+        // idle time doesn't add tokens beyond the capacity
+        for (int i = 0; i < 3; i++) {
+            assertThat(bucket.tryAcquire(now + 10 * SECOND)).isZero();
+        }
+        assertThat(bucket.tryAcquire(now + 10 * SECOND)).isPositive();
+    }
+}
@@ -0,0 +1,118 @@
+package io.horrorshow.soulhub.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AsyncQueryExecutorTest {
+
+    @Mock
+    PlatformTransactionManager transactionManager;
+    @Mock
+    EntityManagerFactory entityManagerFactory;
+    @Mock
+    EntityManager entityManager;
+
+    AsyncQueryExecutor executor;
+
+    /** definition and thread of each transaction begun */
+    private final List<TransactionDefinition> definitions = new CopyOnWriteArrayList<>();
+    private final List<Thread> threads = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void init() {
+        executor = new AsyncQueryExecutor(transactionManager, entityManagerFactory, 2, 4);
+        lenient().when(transactionManager.getTransaction(any())).thenAnswer(invocation -> {
+            definitions.add(invocation.getArgument(0));
+            threads.add(Thread.currentThread());
+            return null;
+        });
+    }
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdown();
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+        if (TransactionSynchronizationManager.hasResource(entityManagerFactory)) {
+            TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+        }
+    }
+
+    @Test
+    void submitted_queries_run_on_a_worker_in_a_new_read_only_transaction() throws Exception {
+        var result = executor.submit(em -> Thread.currentThread()).get();
+
+        assertThat(result).isNotSameAs(Thread.currentThread());
+        assertThat(result.getName()).startsWith("soulhub-query-");
+        assertThat(threads).containsExactly(result);
+        assertThat(definitions).hasSize(1);
+        assertThat(definitions.get(0).isReadOnly()).isTrue();
+        assertThat(definitions.get(0).getPropagationBehavior()).isEqualTo(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void within_a_transaction_submitted_queries_join_it_without_another_connection() throws Exception {
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+
+        var result = executor.submit(em -> Thread.currentThread());
+
+        assertThat(result).isDone();
+        assertThat(result.get()).isSameAs(Thread.currentThread());
+        assertThat(threads).containsExactly(Thread.currentThread());
+        assertThat(definitions.get(0).getPropagationBehavior()).isEqualTo(TransactionDefinition.PROPAGATION_REQUIRED);
+    }
+
+    @Test
+    void with_an_open_in_view_entity_manager_submitted_queries_run_right_away() throws Exception {
+        TransactionSynchronizationManager.bindResource(entityManagerFactory, new EntityManagerHolder(entityManager));
+
+        var result = executor.submit(em -> Thread.currentThread());
+
+        assertThat(result).isDone();
+        assertThat(result.get()).isSameAs(Thread.currentThread());
+        assertThat(threads).containsExactly(Thread.currentThread());
+    }
+
+    @Test
+    void within_a_transaction_failures_complete_the_future() {
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+
+        var result = executor.submit(em -> {
+            throw new IllegalStateException("query failed");
+        });
+
+        var e = assertThrows(ExecutionException.class, result::get);
+        assertThat(e.getCause()).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void executed_queries_run_on_the_calling_thread_in_a_read_only_transaction() {
+        var result = executor.execute(em -> Thread.currentThread());
+
+        assertThat(result).isSameAs(Thread.currentThread());
+        assertThat(definitions).hasSize(1);
+        assertThat(definitions.get(0).isReadOnly()).isTrue();
+        assertThat(definitions.get(0).getPropagationBehavior()).isEqualTo(TransactionDefinition.PROPAGATION_REQUIRED);
+        verify(transactionManager).commit(any());
+    }
+}
@@ -0,0 +1,32 @@
+package io.horrorshow.soulhub.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CountCacheTest {
+
+    @Test
+    void fresh_counts_are_returned_until_invalidated() {
+        var cache = new CountCache(Duration.ofMinutes(1));
+        cache.put("users=|names=soul|fulltext=", 42);
+
+        assertThat(cache.getFresh("users=|names=soul|fulltext=")).contains(42L);
+        assertThat(cache.getFresh("users=|names=|fulltext=")).isEmpty();
+
+        cache.invalidateAll();
+
+        assertThat(cache.getFresh("users=|names=soul|fulltext=")).isEmpty();
+    }
+
+    @Test
+    void expired_counts_are_not_returned() throws InterruptedException {
+        var cache = new CountCache(Duration.ofMillis(1));
+        cache.put("key", 1);
+        Thread.sleep(5);
+
+        assertThat(cache.getFresh("key")).isEmpty();
+    }
+}
@@ -0,0 +1,66 @@
+package io.horrorshow.soulhub.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DownloadEventLogTest {
+
+    @Mock
+    JdbcTemplate jdbcTemplate;
+    @Mock
+    PlatformTransactionManager transactionManager;
+
+    private static DownloadEvent download(long soulPatchId) {
+        return new DownloadEvent(LocalDateTime.now(), soulPatchId, null, null);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_increments_download_counters_per_soulpatch() {
+        var eventLog = new DownloadEventLog(jdbcTemplate, transactionManager, false, 10, 10);
+        eventLog.record(download(1L));
+        eventLog.record(download(2L));
+        eventLog.record(download(1L));
+
+        eventLog.flush();
+
+        ArgumentCaptor<List<Object[]>> captor = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(contains("UPDATE soulpatches"), captor.capture());
+        assertThat(captor.getValue()).containsExactly(new Object[]{2L, 1L}, new Object[]{1L, 2L});
+        verify(jdbcTemplate, never()).batchUpdate(contains("download_events"), anyList());
+
+        eventLog.flush();
+        verifyNoMoreInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void full_buffer_drops_events() {
+        var eventLog = new DownloadEventLog(jdbcTemplate, transactionManager, true, 2, 10);
+
+        assertThat(eventLog.record(download(1L))).isTrue();
+        assertThat(eventLog.record(download(1L))).isTrue();
+        assertThat(eventLog.record(download(1L))).isFalse();
+    }
+
+    @Test
+    void monthly_partition_ddl() {
+        assertThat(DownloadEventLog.partitionDdl(LocalDate.of(2020, 12, 1)))
+                .isEqualTo("CREATE TABLE IF NOT EXISTS download_events_2020_12 PARTITION OF download_events " +
+                        "FOR VALUES FROM ('2020-12-01') TO ('2021-01-01')");
+    }
+}
@@ -0,0 +1,75 @@
+package io.horrorshow.soulhub.service;
+
+import io.horrorshow.soulhub.data.repository.SOULPatchRatingRepository;
+import io.horrorshow.soulhub.data.repository.SOULPatchRepository;
+import io.horrorshow.soulhub.data.repository.SPFileRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+
+import static io.horrorshow.soulhub.service.SOULPatchChangedEvent.Type.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PlatformStatisticsServiceTest {
+
+    @Mock
+    SOULPatchRepository soulPatchRepository;
+    @Mock
+    SPFileRepository spFileRepository;
+    @Mock
+    SOULPatchRatingRepository ratingRepository;
+
+    PlatformStatisticsService service;
+
+    @BeforeEach
+    void init() {
+        service = new PlatformStatisticsService(soulPatchRepository, spFileRepository, ratingRepository);
+    }
+
+    @Test
+    void refresh_loads_totals_and_series_from_db() {
+        when(soulPatchRepository.count()).thenReturn(3L);
+        when(spFileRepository.count()).thenReturn(7L);
+        when(soulPatchRepository.totalNoSOULPatchDownloads()).thenReturn(42L);
+        when(soulPatchRepository.countCreatedPerDaySince(any()))
+                .thenReturn(List.<Object[]>of(new Object[]{Date.valueOf(LocalDate.now()), 2L}));
+        when(ratingRepository.countCreatedPerDaySince(any())).thenReturn(Collections.emptyList());
+
+        service.refresh();
+
+        assertThat(service.getSOULPatchCount()).isEqualTo(3);
+        assertThat(service.getSPFileCount()).isEqualTo(7);
+        assertThat(service.getTotalDownloads()).isEqualTo(42);
+        assertThat(service.getDailyStatistics(1).get(0).getUploads()).isEqualTo(2);
+    }
+
+    @Test
+    void events_update_totals_and_todays_series() {
+        service.onSOULPatchChanged(SOULPatchChangedEvent.of(CREATED, 1L));
+        service.onSOULPatchChanged(SOULPatchChangedEvent.ofFile(FILE_CREATED, 1L, 2L));
+        service.onSOULPatchChanged(SOULPatchChangedEvent.of(DOWNLOADED, 1L));
+        service.onSOULPatchChanged(SOULPatchChangedEvent.of(DOWNLOADED, 1L));
+        service.onSOULPatchChanged(SOULPatchChangedEvent.rated(1L, 5L, 4, true));
+        service.onSOULPatchChanged(SOULPatchChangedEvent.rated(1L, 5L, 3, false));
+
+        assertThat(service.getSOULPatchCount()).isEqualTo(1);
+        assertThat(service.getSPFileCount()).isEqualTo(1);
+        assertThat(service.getTotalDownloads()).isEqualTo(2);
+
+        var today = service.getDailyStatistics(30).get(0);
+        assertThat(today.getDay()).isEqualTo(LocalDate.now());
+        assertThat(today.getUploads()).isEqualTo(1);
+        assertThat(today.getDownloads()).isEqualTo(2);
+        assertThat(today.getRatings()).isEqualTo(1);
+    }
+}
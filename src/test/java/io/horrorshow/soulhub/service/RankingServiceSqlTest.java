@@ -0,0 +1,100 @@
+package io.horrorshow.soulhub.service;
+
+import io.horrorshow.soulhub.data.SOULPatch;
+import io.horrorshow.soulhub.data.repository.AppUserRepository;
+import io.horrorshow.soulhub.data.repository.SOULPatchRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import static io.horrorshow.soulhub.service.RankingService.UPDATE_QUALITY_SCORE;
+import static io.horrorshow.soulhub.service.RankingService.UPDATE_RATING_AGGREGATES;
+import static io.horrorshow.soulhub.service.RankingService.UPDATE_TRENDING_SCORE;
+import static io.horrorshow.soulhub.service.RankingService.logAddExp;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+@ExtendWith(SpringExtension.class)
+@DataJpaTest
+@EnableJpaAuditing
+class RankingServiceSqlTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private SOULPatchRepository soulPatchRepository;
+    @Autowired
+    private AppUserRepository appUserRepository;
+
+    private RankingService rankingService;
+    private Long id;
+
+    @BeforeEach
+    void init() {
+        rankingService = new RankingService(jdbcTemplate);
+        var soulPatch = new SOULPatch();
+        soulPatch.setName("trending");
+        soulPatch.setAuthor(appUserRepository.save(SOULPatchServiceTest.createAppUser()));
+        id = soulPatchRepository.saveAndFlush(soulPatch).getId();
+    }
+
+    @Test
+    void increments_far_above_the_default_score_replace_it() {
+        // e^-(1000 - 0) is below the smallest double, postgres raises an underflow for it
+        addTrending(1000);
+
+        assertThat(trendingScore()).isCloseTo(1000, within(1e-9));
+    }
+
+    @Test
+    void increments_are_added_in_log_space() {
+        addTrending(800);
+        addTrending(800);
+        addTrending(1600);
+
+        assertThat(trendingScore()).isCloseTo(logAddExp(800 + Math.log(2), 1600), within(1e-9));
+
+        addTrending(1600 + Math.log(3));
+
+        assertThat(trendingScore()).isCloseTo(1600 + Math.log(4), within(1e-9));
+    }
+
+    @Test
+    void uploads_start_at_the_prior_quality_score() {
+        assertThat(qualityScore()).isZero();
+
+        rankingService.onSOULPatchChanged(SOULPatchChangedEvent.of(SOULPatchChangedEvent.Type.CREATED, id));
+
+        assertThat(qualityScore()).isCloseTo(2.5, within(1e-9));
+    }
+
+    @Test
+    void recompute_writes_only_drifted_rows() {
+        jdbcTemplate.update("UPDATE soulpatches SET rating_count = 3, rating_sum = 12 WHERE id = ?", id);
+
+        rankingService.recompute();
+
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT rating_count FROM soulpatches WHERE id = ?", Long.class, id)).isZero();
+        assertThat(qualityScore()).isCloseTo(2.5, within(1e-9));
+        assertThat(jdbcTemplate.update(UPDATE_RATING_AGGREGATES)).isZero();
+        assertThat(jdbcTemplate.update(UPDATE_QUALITY_SCORE, rankingService.qualityParameters())).isZero();
+    }
+
+    private void addTrending(double increment) {
+        jdbcTemplate.update(UPDATE_TRENDING_SCORE, increment, increment, id);
+    }
+
+    private double qualityScore() {
+        return jdbcTemplate.queryForObject("SELECT quality_score FROM soulpatches WHERE id = ?", Double.class, id);
+    }
+
+    private double trendingScore() {
+        return jdbcTemplate.queryForObject("SELECT trending_score FROM soulpatches WHERE id = ?", Double.class, id);
+    }
+}
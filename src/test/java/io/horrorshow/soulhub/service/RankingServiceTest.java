@@ -0,0 +1,64 @@
+package io.horrorshow.soulhub.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Instant;
+import java.util.List;
+
+import static io.horrorshow.soulhub.service.RankingService.*;
+import static io.horrorshow.soulhub.service.SOULPatchChangedEvent.Type.DOWNLOADED;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RankingServiceTest {
+
+    @Mock
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void a_new_download_outweighs_older_downloads_after_some_half_lives() {
+        var now = Instant.now();
+        var old = now.minus(TRENDING_HALF_LIFE.multipliedBy(4));
+
+        // 10 downloads four half lives ago vs. 1 download now
+        double oldPatch = Math.log(10 * DOWNLOAD_WEIGHT) + decayExponent(old);
+        double newPatch = Math.log(DOWNLOAD_WEIGHT) + decayExponent(now);
+
+        assertThat(newPatch).isGreaterThan(oldPatch);
+        // the same event one half life later counts double
+        assertThat(decayExponent(old.plus(TRENDING_HALF_LIFE)) - decayExponent(old))
+                .isCloseTo(Math.log(2), within(1e-9));
+    }
+
+    @Test
+    void log_add_exp_adds_weights_in_log_space() {
+        assertThat(logAddExp(Math.log(2), Math.log(3))).isCloseTo(Math.log(5), within(1e-9));
+        assertThat(logAddExp(1000, 1000)).isCloseTo(1000 + Math.log(2), within(1e-9));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_writes_one_trending_update_per_soulpatch() {
+        var service = new RankingService(jdbcTemplate);
+        service.onSOULPatchChanged(SOULPatchChangedEvent.of(DOWNLOADED, 1L));
+        service.onSOULPatchChanged(SOULPatchChangedEvent.of(DOWNLOADED, 1L));
+        service.onSOULPatchChanged(SOULPatchChangedEvent.of(DOWNLOADED, 2L));
+
+        service.flush();
+
+        ArgumentCaptor<List<Object[]>> captor = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), captor.capture());
+        assertThat(captor.getValue()).hasSize(2);
+
+        service.flush();
+        verifyNoMoreInteractions(jdbcTemplate);
+    }
+}
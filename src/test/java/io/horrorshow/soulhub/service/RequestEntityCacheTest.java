@@ -0,0 +1,89 @@
+package io.horrorshow.soulhub.service;
+
+import io.horrorshow.soulhub.data.AppUser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestEntityCacheTest {
+
+    private final RequestEntityCache cache = new RequestEntityCache();
+    private final List<Collection<Long>> queries = new ArrayList<>();
+
+    @AfterEach
+    void resetRequest() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void ids_are_loaded_once_per_request_with_one_query() {
+        startRequest();
+
+        assertThat(cache.findAll(AppUser.class, List.of(1L, 2L, 1L), this::findAllById, AppUser::getId))
+                .extracting(AppUser::getId).containsExactly(1L, 2L, 1L);
+        assertThat(cache.findAll(AppUser.class, List.of(2L, 3L), this::findAllById, AppUser::getId))
+                .extracting(AppUser::getId).containsExactly(2L, 3L);
+        assertThat(cache.find(AppUser.class, 3L, id -> Optional.empty())).isPresent();
+
+        assertThat(queries).containsExactly(List.of(1L, 2L), List.of(3L));
+    }
+
+    @Test
+    void missing_ids_are_remembered() {
+        startRequest();
+
+        assertThat(cache.findAll(AppUser.class, List.of(1L, 404L), this::findAllById, AppUser::getId))
+                .extracting(AppUser::getId).containsExactly(1L);
+        assertThat(cache.find(AppUser.class, 404L, id -> Optional.of(user(id)))).isEmpty();
+
+        assertThat(queries).hasSize(1);
+    }
+
+    @Test
+    void evicted_regions_are_loaded_again() {
+        startRequest();
+        cache.findAll(AppUser.class, List.of(1L), this::findAllById, AppUser::getId);
+
+        cache.evict(AppUser.class);
+        cache.findAll(AppUser.class, List.of(1L), this::findAllById, AppUser::getId);
+
+        assertThat(queries).hasSize(2);
+    }
+
+    @Test
+    void nothing_is_shared_between_requests_or_cached_outside_of_one() {
+        cache.findAll(AppUser.class, List.of(1L), this::findAllById, AppUser::getId);
+        cache.findAll(AppUser.class, List.of(1L), this::findAllById, AppUser::getId);
+        startRequest();
+        cache.findAll(AppUser.class, List.of(1L), this::findAllById, AppUser::getId);
+        startRequest();
+        cache.findAll(AppUser.class, List.of(1L), this::findAllById, AppUser::getId);
+
+        assertThat(queries).hasSize(4);
+    }
+
+    private static void startRequest() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+    }
+
+    private List<AppUser> findAllById(Collection<Long> ids) {
+        queries.add(List.copyOf(ids));
+        return ids.stream().filter(id -> id < 100).map(RequestEntityCacheTest::user).collect(Collectors.toList());
+    }
+
+    private static AppUser user(Long id) {
+        var user = new AppUser();
+        user.setId(id);
+        return user;
+    }
+}
@@ -0,0 +1,96 @@
+package io.horrorshow.soulhub.service;
+
+import io.horrorshow.soulhub.data.SOULPatch;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static io.horrorshow.soulhub.service.SOULPatchChangedEvent.Type.FILE_UPDATED;
+import static io.horrorshow.soulhub.service.SOULPatchServiceTest.createTestSoulPatch;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class SOULPatchArchiveCacheTest {
+
+    @TempDir
+    Path directory;
+
+    SOULPatchArchiveService archiveService = spy(new SOULPatchArchiveService(2, 10));
+
+    private static byte[] read(SOULPatchArchive archive) throws IOException {
+        var out = new ByteArrayOutputStream();
+        archive.transferTo(out);
+        return out.toByteArray();
+    }
+
+    @Test
+    void archive_is_built_once_per_revision() throws IOException {
+        var cache = new SOULPatchArchiveCache(archiveService, directory.toString(), 10);
+        var soulPatch = createTestSoulPatch(1L);
+
+        String eTag;
+        byte[] zip;
+        try (var archive = cache.open(soulPatch)) {
+            eTag = archive.getETag();
+            zip = read(archive);
+            assertThat(archive.getSize()).isEqualTo(zip.length);
+        }
+        try (var archive = cache.open(soulPatch)) {
+            assertThat(archive.getETag()).isEqualTo(eTag);
+            assertThat(read(archive)).isEqualTo(zip);
+        }
+        verify(archiveService, times(1)).writeZip(any(), any());
+
+        soulPatch.getSpFiles().iterator().next().setFileContent("changed");
+        try (var archive = cache.open(soulPatch)) {
+            assertThat(archive.getETag()).isNotEqualTo(eTag);
+        }
+        verify(archiveService, times(2)).writeZip(any(), any());
+    }
+
+    @Test
+    void changed_soulpatches_are_removed_from_disk() throws IOException {
+        var cache = new SOULPatchArchiveCache(archiveService, directory.toString(), 10);
+        var soulPatch = createTestSoulPatch(1L);
+        cache.open(soulPatch).close();
+        assertThat(Files.list(directory)).hasSize(1);
+
+        cache.onSOULPatchChanged(SOULPatchChangedEvent.ofFile(FILE_UPDATED, 1L, 2L));
+
+        assertThat(Files.list(directory)).isEmpty();
+    }
+
+    @Test
+    void least_recently_used_archives_are_evicted() throws IOException {
+        var cache = new SOULPatchArchiveCache(archiveService, directory.toString(), 0);
+        SOULPatch first = createTestSoulPatch(1L);
+        SOULPatch second = createTestSoulPatch(2L);
+
+        try (var archive = cache.open(first)) {
+            cache.open(second).close();
+            // evicted while open, still readable
+            assertThat(read(archive)).isNotEmpty();
+        }
+
+        assertThat(Files.list(directory)).hasSize(1);
+        assertThat(Files.exists(directory.resolve(SOULPatchArchiveCache.contentHash(second) + ".zip"))).isTrue();
+    }
+
+    @Test
+    void archives_on_disk_are_reused_after_restart() throws IOException {
+        var soulPatch = createTestSoulPatch(1L);
+        new SOULPatchArchiveCache(archiveService, directory.toString(), 10).open(soulPatch).close();
+        Files.createFile(directory.resolve("interrupted.tmp"));
+
+        var cache = new SOULPatchArchiveCache(archiveService, directory.toString(), 10);
+        cache.open(soulPatch).close();
+
+        verify(archiveService, times(1)).writeZip(any(), any());
+        assertThat(Files.list(directory)).hasSize(1);
+    }
+}
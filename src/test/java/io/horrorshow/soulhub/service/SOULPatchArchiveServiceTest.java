@@ -0,0 +1,133 @@
+package io.horrorshow.soulhub.service;
+
+import io.horrorshow.soulhub.data.SOULPatch;
+import io.horrorshow.soulhub.data.SPFile;
+import io.horrorshow.soulhub.exception.ServiceUnavailable;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static io.horrorshow.soulhub.service.SOULPatchServiceTest.createTestSoulPatch;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SOULPatchArchiveServiceTest {
+
+    SOULPatchArchiveService service = new SOULPatchArchiveService(2, 10);
+
+    @Test
+    void soulpatch_to_zip_file() throws IOException {
+        SOULPatch soulPatch = createTestSoulPatch(4711L);
+        byte[] zipped = service.zip(soulPatch);
+        List<String[]> unzipped = unzipSOULPatchZip(zipped);
+        assertThat(unzipped).hasSize(2);
+        evaluateUnzipResult(unzipped, soulPatch);
+
+        Set<SPFile> emptySet = new HashSet<>();
+        soulPatch.setSpFiles(emptySet);
+        zipped = service.zip(soulPatch);
+        unzipped = unzipSOULPatchZip(zipped);
+        assertThat(unzipped).isEmpty();
+    }
+
+    @Test
+    void file_content_is_utf8_encoded() throws IOException {
+        SOULPatch soulPatch = createTestSoulPatch(1L);
+        soulPatch.getSpFiles().forEach(spFile -> spFile.setFileContent("Grüße ♫ " + spFile.getId()));
+
+        evaluateUnzipResult(unzipSOULPatchZip(service.zip(soulPatch)), soulPatch);
+    }
+
+    @Test
+    void write_errors_are_reported() {
+        OutputStream broken = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("connection reset");
+            }
+        };
+
+        assertThrows(IOException.class, () -> service.writeZip(createTestSoulPatch(1L), broken));
+    }
+
+    @Test
+    void concurrent_archives_are_bounded() throws Exception {
+        var soulPatch = createTestSoulPatch(1L);
+        List<Thread> writers = new ArrayList<>();
+        var release = new Object();
+        for (int i = 0; i < 2; i++) {
+            var writer = new Thread(() -> {
+                try {
+                    service.writeZip(soulPatch, new OutputStream() {
+                        @Override
+                        public void write(int b) throws IOException {
+                            synchronized (release) {
+                                try {
+                                    release.wait();
+                                } catch (InterruptedException e) {
+                                    throw new IOException(e);
+                                }
+                            }
+                        }
+                    });
+                } catch (IOException ignored) {
+                }
+            });
+            writer.start();
+            writers.add(writer);
+        }
+        // both permits are held by the blocked writers
+        while (writers.stream().anyMatch(t -> t.getState() != Thread.State.WAITING)) {
+            Thread.sleep(5);
+        }
+
+        assertThrows(ServiceUnavailable.class, () -> service.zip(soulPatch));
+
+        writers.forEach(Thread::interrupt);
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        assertThat(service.zip(soulPatch)).isNotEmpty();
+    }
+
+    @Test
+    void append_number_to_filename_when_zipping_duplicate_filenames() {
+        Map<String, Integer> filenames = new HashMap<>();
+        assertThat(service.appendNoIfDuplicateFilename(filenames, "common")).isEqualTo("common");
+        assertThat(service.appendNoIfDuplicateFilename(filenames, "common")).isEqualTo("common_(1)");
+        assertThat(service.appendNoIfDuplicateFilename(filenames, "unique")).isEqualTo("unique");
+        assertThat(service.appendNoIfDuplicateFilename(filenames, "common")).isEqualTo("common_(2)");
+    }
+
+    private void evaluateUnzipResult(List<String[]> unzipped, SOULPatch soulPatch) {
+        unzipped.forEach(strings -> {
+            assertTrue(soulPatch.getSpFiles().stream()
+                    .map(SPFile::getFileContent)
+                    .anyMatch(s -> s.equals(strings[1])));
+            assertTrue(soulPatch.getSpFiles().stream()
+                    .map(SPFile::getName)
+                    .anyMatch(s -> s.equals(strings[0])));
+        });
+    }
+
+    private List<String[]> unzipSOULPatchZip(byte[] bytes) throws IOException {
+        List<String[]> result = new ArrayList<>();
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(bytes))) {
+            ZipEntry zipEntry = zis.getNextEntry();
+            while (zipEntry != null) {
+                result.add(new String[]{
+                        zipEntry.getName(),
+                        new String(zis.readAllBytes(), StandardCharsets.UTF_8)});
+                zipEntry = zis.getNextEntry();
+            }
+        }
+        return result;
+    }
+}
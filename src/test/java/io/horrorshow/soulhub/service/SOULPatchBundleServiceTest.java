@@ -0,0 +1,106 @@
+package io.horrorshow.soulhub.service;
+
+import io.horrorshow.soulhub.data.SOULPatch;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static io.horrorshow.soulhub.service.SOULPatchServiceTest.createTestSoulPatch;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SOULPatchBundleServiceTest {
+
+    @Mock
+    SOULPatchService soulPatchService;
+    @Mock
+    AsyncQueryExecutor asyncQueryExecutor;
+    @Mock
+    EntityManager entityManager;
+    @Mock
+    TypedQuery<SOULPatch> query;
+
+    SOULPatchBundleService service;
+
+    private final Map<Long, SOULPatch> soulPatches = new HashMap<>();
+    private List<Long> queriedIds;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void init() {
+        service = new SOULPatchBundleService(soulPatchService, new SOULPatchArchiveService(2, 10),
+                asyncQueryExecutor, 2, 5);
+        for (long id = 1; id <= 3; id++) {
+            soulPatches.put(id, createTestSoulPatch(id));
+        }
+        // two soulpatches with the same name end up in different folders
+        soulPatches.get(3L).setName(soulPatches.get(1L).getName());
+
+        lenient().when(asyncQueryExecutor.submit(any())).thenAnswer(invocation -> CompletableFuture.completedFuture(
+                ((Function<EntityManager, ?>) invocation.getArgument(0)).apply(entityManager)));
+        lenient().when(entityManager.createQuery(anyString(), eq(SOULPatch.class))).thenReturn(query);
+        lenient().when(query.setParameter(eq("ids"), any())).thenAnswer(invocation -> {
+            queriedIds = invocation.getArgument(1);
+            return query;
+        });
+        lenient().when(query.getResultStream()).thenAnswer(invocation -> queriedIds.stream()
+                .map(soulPatches::get).filter(Objects::nonNull));
+    }
+
+    @Test
+    void bundle_has_a_folder_per_soulpatch() throws IOException {
+        var out = new ByteArrayOutputStream();
+        service.writeBundle(List.of(3L, 1L, 99L, 2L, 1L), null, out);
+
+        assertThat(entryNames(out.toByteArray())).containsExactly(
+                "name_1/MANIFEST file 7", "name_1/SOUL file 6",
+                "name_1_(1)/MANIFEST file 3", "name_1_(1)/SOUL file 2",
+                "name_2/MANIFEST file 5", "name_2/SOUL file 4");
+        // batches of two distinct ids
+        verify(asyncQueryExecutor, times(2)).submit(any());
+        verify(soulPatchService).soulPatchesDownloaded(List.of(3L, 1L, 2L), null);
+    }
+
+    @Test
+    void bundle_size_is_limited() {
+        assertThrows(IllegalArgumentException.class, () -> service.writeBundle(
+                List.of(1L, 2L, 3L, 4L, 5L, 6L), null, new ByteArrayOutputStream()));
+        verifyNoInteractions(asyncQueryExecutor, soulPatchService);
+    }
+
+    @Test
+    void failed_batches_are_reported() {
+        doReturn(CompletableFuture.failedFuture(new IllegalStateException())).when(asyncQueryExecutor).submit(any());
+
+        assertThrows(IllegalStateException.class, () -> service.writeBundle(
+                List.of(1L), null, new ByteArrayOutputStream()));
+        verify(soulPatchService, never()).soulPatchesDownloaded(any(), any());
+    }
+
+    private static List<String> entryNames(byte[] zip) throws IOException {
+        List<String> names = new ArrayList<>();
+        try (var zis = new ZipInputStream(new ByteArrayInputStream(zip))) {
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                names.add(entry.getName());
+            }
+        }
+        return names;
+    }
+}
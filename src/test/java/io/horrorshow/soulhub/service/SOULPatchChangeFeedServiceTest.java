@@ -0,0 +1,142 @@
+package io.horrorshow.soulhub.service;
+
+import io.horrorshow.soulhub.data.AppUser;
+import io.horrorshow.soulhub.data.SOULPatch;
+import io.horrorshow.soulhub.data.SOULPatchTombstone;
+import io.horrorshow.soulhub.data.records.SOULPatchChangeRecord;
+import io.horrorshow.soulhub.data.records.SOULPatchRecordField;
+import io.horrorshow.soulhub.data.repository.AppUserRepository;
+import io.horrorshow.soulhub.data.repository.SOULPatchRepository;
+import io.horrorshow.soulhub.data.repository.SOULPatchTombstoneRepository;
+import io.horrorshow.soulhub.data.util.SOULPatchChangeCursor;
+import io.horrorshow.soulhub.exception.CursorExpired;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.horrorshow.soulhub.service.SOULPatchChangedEvent.Type.DELETED;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@DataJpaTest
+@EnableJpaAuditing
+class SOULPatchChangeFeedServiceTest {
+
+    @Autowired
+    private SOULPatchRepository soulPatchRepository;
+    @Autowired
+    private SOULPatchTombstoneRepository tombstoneRepository;
+    @Autowired
+    private AppUserRepository appUserRepository;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @SpyBean
+    private SOULPatchChangeFeedService listener;
+
+    private SOULPatchChangeFeedService changeFeed;
+    private final List<SOULPatch> soulPatches = new ArrayList<>();
+
+    @BeforeEach
+    void init() {
+        changeFeed = new SOULPatchChangeFeedService(soulPatchRepository, tombstoneRepository, 0, 30);
+        AppUser author = appUserRepository.save(SOULPatchServiceTest.createAppUser());
+        for (String name : List.of("first", "second", "third")) {
+            var soulPatch = new SOULPatch();
+            soulPatch.setName(name);
+            soulPatch.setAuthor(author);
+            soulPatches.add(soulPatchRepository.saveAndFlush(soulPatch));
+        }
+    }
+
+    @Test
+    void pages_through_all_changes_in_order() {
+        var first = changeFeed.findChangesAfter(SOULPatchChangeCursor.START, 2, SOULPatchRecordField.METADATA);
+
+        assertThat(first.isMore()).isTrue();
+        assertThat(first.getChanges())
+                .extracting(change -> change.getSoulPatch().getName())
+                .containsExactly("first", "second");
+
+        var rest = changeFeed.findChangesAfter(SOULPatchChangeCursor.decode(first.getCursor()), 2,
+                SOULPatchRecordField.METADATA);
+
+        assertThat(rest.isMore()).isFalse();
+        assertThat(rest.getChanges())
+                .extracting(change -> change.getSoulPatch().getName())
+                .containsExactly("third");
+    }
+
+    @Test
+    void deletes_are_tombstones() {
+        var synced = changeFeed.findChangesAfter(SOULPatchChangeCursor.START, 10, SOULPatchRecordField.METADATA);
+        var deleted = soulPatches.get(1);
+        soulPatchRepository.delete(deleted);
+        changeFeed.onSOULPatchChanged(SOULPatchChangedEvent.of(DELETED, deleted.getId()));
+
+        var changes = changeFeed.findChangesAfter(SOULPatchChangeCursor.decode(synced.getCursor()), 10,
+                SOULPatchRecordField.METADATA);
+
+        assertThat(changes.getChanges()).hasSize(1);
+        var change = changes.getChanges().get(0);
+        assertThat(change.getId()).isEqualTo(deleted.getId());
+        assertThat(change.getType()).isEqualTo(SOULPatchChangeRecord.TYPE_DELETE);
+        assertThat(change.getSoulPatch()).isNull();
+    }
+
+    @Test
+    void idle_cursors_move_up_to_the_settled_time() {
+        var synced = changeFeed.findChangesAfter(SOULPatchChangeCursor.START, 10, SOULPatchRecordField.METADATA);
+        var lastChange = SOULPatchChangeCursor.decode(synced.getCursor());
+        var before = LocalDateTime.now();
+
+        var idle = changeFeed.findChangesAfter(lastChange, 10, SOULPatchRecordField.METADATA);
+
+        assertThat(idle.getChanges()).isEmpty();
+        var cursor = SOULPatchChangeCursor.decode(idle.getCursor());
+        assertThat(cursor.getChangedAt()).isAfterOrEqualTo(before);
+        assertThat(cursor.getId()).isZero();
+
+        var later = soulPatches.get(0);
+        later.setDescription("changed after the idle page");
+        soulPatchRepository.saveAndFlush(later);
+
+        assertThat(changeFeed.findChangesAfter(cursor, 10, SOULPatchRecordField.METADATA).getChanges())
+                .extracting(SOULPatchChangeRecord::getId)
+                .containsExactly(later.getId());
+    }
+
+    @Test
+    void only_deletes_and_file_changes_are_handled() {
+        var soulPatchId = soulPatches.get(0).getId();
+        eventPublisher.publishEvent(SOULPatchChangedEvent.downloaded(soulPatchId, null, null));
+        eventPublisher.publishEvent(SOULPatchChangedEvent.rated(soulPatchId, null, 5, true));
+
+        verify(listener, never()).onSOULPatchChanged(any());
+
+        eventPublisher.publishEvent(SOULPatchChangedEvent.of(DELETED, soulPatchId));
+
+        verify(listener).onSOULPatchChanged(any());
+        assertThat(tombstoneRepository.findAll())
+                .extracting(SOULPatchTombstone::getSoulPatchId)
+                .containsExactly(soulPatchId);
+    }
+
+    @Test
+    void cursor_older_than_tombstone_retention() {
+        var cursor = SOULPatchChangeCursor.of(LocalDateTime.now().minusDays(31), 1L);
+
+        assertThatThrownBy(() -> changeFeed.findChangesAfter(cursor, 10, SOULPatchRecordField.METADATA))
+                .isInstanceOf(CursorExpired.class);
+    }
+}
@@ -0,0 +1,224 @@
+package io.horrorshow.soulhub.service;
+
+import io.horrorshow.soulhub.data.records.SOULPatchUpdateRecord;
+import io.horrorshow.soulhub.exception.ServiceUnavailable;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static io.horrorshow.soulhub.service.SOULPatchChangedEvent.Type.FILE_UPDATED;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SOULPatchEventBroadcasterTest {
+
+    private final SOULPatchEventBroadcaster broadcaster =
+            new SOULPatchEventBroadcaster(60000, 60000, 60000, 2, 10, 2);
+
+    private static SOULPatchEventBroadcaster.Update update(Long soulPatchId) {
+        return SOULPatchEventBroadcaster.Update.of(SOULPatchChangedEvent.of(FILE_UPDATED, soulPatchId));
+    }
+
+    @Test
+    void events_are_coalesced_per_soulpatch() {
+        broadcaster.onSOULPatchChanged(SOULPatchChangedEvent.downloaded(1L, null, null));
+        broadcaster.onSOULPatchChanged(SOULPatchChangedEvent.downloaded(1L, 10L, 7L));
+        broadcaster.onSOULPatchChanged(SOULPatchChangedEvent.rated(1L, 7L, 4, true));
+        broadcaster.onSOULPatchChanged(SOULPatchChangedEvent.ofFile(FILE_UPDATED, 2L, 20L));
+
+        List<SOULPatchUpdateRecord> updates = broadcaster.drainPending().stream()
+                .map(SOULPatchEventBroadcaster.Update::toRecord)
+                .sorted(Comparator.comparing(SOULPatchUpdateRecord::getId))
+                .collect(Collectors.toList());
+
+        assertThat(updates).containsExactly(
+                new SOULPatchUpdateRecord(1L, Set.of("DOWNLOADED", "RATED"), 2, 1),
+                new SOULPatchUpdateRecord(2L, Set.of("UPDATED"), 0, 0));
+        assertThat(broadcaster.drainPending()).isEmpty();
+    }
+
+    @Test
+    void full_subscriber_buffer_merges_known_and_drops_new_soulpatches() {
+        var subscriber = new SOULPatchEventBroadcaster.Subscriber(new SseEmitter(), Set.of(), 2);
+
+        assertThat(subscriber.offer(update(1L))).isTrue();
+        assertThat(subscriber.offer(update(2L))).isTrue();
+        assertThat(subscriber.offer(update(1L))).isTrue();
+        assertThat(subscriber.isOverflow()).isFalse();
+        assertThat(subscriber.offer(update(3L))).isFalse();
+        assertThat(subscriber.isOverflow()).isTrue();
+
+        subscriber.drain();
+        assertThat(subscriber.isOverflow()).isFalse();
+    }
+
+    @Test
+    void stalled_subscriber_neither_blocks_others_nor_misses_its_overflow() throws Exception {
+        var release = new CountDownLatch(1);
+        var stalled = new RecordingEmitter(release);
+        var other = new RecordingEmitter(null);
+        broadcaster.start();
+        try {
+            broadcaster.register(stalled, Set.of());
+            broadcaster.register(other, Set.of());
+
+            broadcaster.onSOULPatchChanged(SOULPatchChangedEvent.of(FILE_UPDATED, 1L));
+            broadcaster.publish();
+            assertThat(other.next()).contains("event:" + SOULPatchEventBroadcaster.EVENT_UPDATES);
+            assertThat(stalled.next()).contains("event:" + SOULPatchEventBroadcaster.EVENT_UPDATES);
+
+            // the stalled send is still in flight, its buffer (2 soulpatches) fills up meanwhile
+            for (long id = 2; id <= 4; id++) {
+                broadcaster.onSOULPatchChanged(SOULPatchChangedEvent.of(FILE_UPDATED, id));
+                assertThat(publishUntilSent(other)).contains("event:" + SOULPatchEventBroadcaster.EVENT_UPDATES);
+            }
+            assertThat(stalled.events).isEmpty();
+
+            release.countDown();
+            // the next window after the stalled send returned
+            String event = publishUntilSent(stalled);
+
+            assertThat(event).contains("event:" + SOULPatchEventBroadcaster.EVENT_OVERFLOW);
+            broadcaster.publish();
+            assertThat(stalled.events.poll(200, TimeUnit.MILLISECONDS)).isNull();
+        } finally {
+            release.countDown();
+            broadcaster.stop();
+        }
+    }
+
+    @Test
+    void concurrent_subscribers_get_at_most_max_subscribers_slots() throws Exception {
+        var start = new CountDownLatch(1);
+        var accepted = new AtomicInteger();
+        var executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> subscribes = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                subscribes.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        broadcaster.register(new SseEmitter(), Set.of());
+                        accepted.incrementAndGet();
+                    } catch (ServiceUnavailable e) {
+                        // over the limit
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> subscribe : subscribes) {
+                subscribe.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(accepted.get()).isEqualTo(10);
+        assertThrows(ServiceUnavailable.class, () -> broadcaster.register(new SseEmitter(), Set.of()));
+    }
+
+    @Test
+    void gone_subscribers_release_their_slot() throws Exception {
+        var gone = new SseEmitter() {
+            @Override
+            public void send(SseEventBuilder builder) throws IOException {
+                throw new IOException("broken pipe");
+            }
+        };
+        broadcaster.start();
+        try {
+            broadcaster.register(gone, Set.of());
+            for (int i = 1; i < 10; i++) {
+                broadcaster.register(new SseEmitter(), Set.of());
+            }
+            assertThrows(ServiceUnavailable.class, () -> broadcaster.register(new SseEmitter(), Set.of()));
+
+            broadcaster.onSOULPatchChanged(SOULPatchChangedEvent.of(FILE_UPDATED, 1L));
+            broadcaster.publish();
+            boolean registered = false;
+            for (int i = 0; i < 100 && !registered; i++) {
+                try {
+                    broadcaster.register(new SseEmitter(), Set.of());
+                    registered = true;
+                } catch (ServiceUnavailable e) {
+                    Thread.sleep(50);
+                }
+            }
+
+            assertThat(registered).isTrue();
+        } finally {
+            broadcaster.stop();
+        }
+    }
+
+    /**
+     * Publishes windows until the emitter got an event. The emitter records an event before
+     * its send has returned, until then the subscriber's send is still in flight.
+     */
+    private String publishUntilSent(RecordingEmitter emitter) throws InterruptedException {
+        String event = null;
+        for (int i = 0; i < 100 && event == null; i++) {
+            broadcaster.publish();
+            event = emitter.events.poll(50, TimeUnit.MILLISECONDS);
+        }
+        return event;
+    }
+
+    /**
+     * Records the sent events, blocks every send until the latch is released
+     */
+    private static class RecordingEmitter extends SseEmitter {
+        private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+        private final CountDownLatch latch;
+
+        RecordingEmitter(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            var event = builder.build().stream()
+                    .map(data -> data.getData().toString())
+                    .collect(Collectors.joining());
+            events.add(event);
+            try {
+                if (latch != null) {
+                    latch.await();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+        }
+
+        String next() throws InterruptedException {
+            var event = events.poll(5, TimeUnit.SECONDS);
+            assertThat(event).as("event sent").isNotNull();
+            return event;
+        }
+    }
+
+    @Test
+    void subscriber_only_buffers_watched_soulpatches() {
+        var subscriber = new SOULPatchEventBroadcaster.Subscriber(new SseEmitter(), Set.of(2L), 2);
+
+        subscriber.offer(update(1L));
+        subscriber.offer(update(2L));
+
+        assertThat(subscriber.drain()).extracting(SOULPatchUpdateRecord::getId).containsExactly(2L);
+    }
+}
@@ -0,0 +1,104 @@
+package io.horrorshow.soulhub.service;
+
+import io.horrorshow.soulhub.data.AppUser;
+import io.horrorshow.soulhub.data.SOULPatch;
+import io.horrorshow.soulhub.data.SOULPatch_;
+import io.horrorshow.soulhub.data.repository.AppUserRepository;
+import io.horrorshow.soulhub.data.repository.SOULPatchRatingRepository;
+import io.horrorshow.soulhub.data.repository.SOULPatchRepository;
+import io.horrorshow.soulhub.data.repository.SPFileRepository;
+import io.horrorshow.soulhub.data.util.SOULPatchSort;
+import io.horrorshow.soulhub.data.util.SOULPatchesFetchFilter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+@ExtendWith(SpringExtension.class)
+@DataJpaTest
+@EnableJpaAuditing
+class SOULPatchServiceQueryTest {
+
+    @Autowired
+    private SOULPatchRepository soulPatchRepository;
+    @Autowired
+    private SPFileRepository spFileRepository;
+    @Autowired
+    private SOULPatchRatingRepository ratingRepository;
+    @Autowired
+    private AppUserRepository appUserRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private AsyncQueryExecutor asyncQueryExecutor;
+    private SOULPatchService service;
+    private AppUser author;
+
+    @BeforeEach
+    void init() {
+        asyncQueryExecutor = new AsyncQueryExecutor(transactionManager, entityManagerFactory, 1, 1);
+        service = new SOULPatchService(soulPatchRepository, spFileRepository, ratingRepository,
+                entityManagerFactory, asyncQueryExecutor, mock(DownloadEventLog.class),
+                mock(ApplicationEventPublisher.class), new RequestEntityCache());
+        author = appUserRepository.save(SOULPatchServiceTest.createAppUser());
+    }
+
+    @AfterEach
+    void shutdown() {
+        asyncQueryExecutor.shutdown();
+    }
+
+    private Long save(String name, long downloads) {
+        var soulPatch = new SOULPatch();
+        soulPatch.setName(name);
+        soulPatch.setNoViews(downloads);
+        soulPatch.setAuthor(author);
+        return soulPatchRepository.saveAndFlush(soulPatch).getId();
+    }
+
+    @Test
+    void every_order_of_the_sort_is_applied() {
+        var c = save("c", 1);
+        var b = save("b", 1);
+        var a = save("a", 1);
+        var top = save("z", 2);
+
+        var sort = Sort.by(Sort.Direction.DESC, SOULPatch_.NO_VIEWS).and(Sort.by(SOULPatch_.NAME));
+        var page = service.findAnyMatchingIds(new SOULPatchesFetchFilter(), PageRequest.of(0, 10, sort));
+
+        assertThat(page.getContent()).containsExactly(top, a, b, c);
+    }
+
+    @Test
+    void pages_of_tied_keys_neither_repeat_nor_skip_soulpatches() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ids.add(save("tied", 7));
+        }
+
+        List<Long> paged = new ArrayList<>();
+        for (int page = 0; page < 3; page++) {
+            paged.addAll(service.findAnyMatchingIds(new SOULPatchesFetchFilter(),
+                    PageRequest.of(page, 2, SOULPatchSort.DOWNLOADS.toSort())).getContent());
+        }
+
+        assertThat(paged).containsExactlyElementsOf(ids);
+    }
+}
@@ -3,8 +3,16 @@ package io.horrorshow.soulhub.service;
 import io.horrorshow.soulhub.data.AppUser;
 import io.horrorshow.soulhub.data.SOULPatch;
 import io.horrorshow.soulhub.data.SPFile;
+import io.horrorshow.soulhub.data.records.SOULPatchOperation;
+import io.horrorshow.soulhub.data.records.SOULPatchOperationResult;
+import io.horrorshow.soulhub.data.records.SOULPatchRecord;
+import io.horrorshow.soulhub.data.records.SOULPatchRecordField;
+import io.horrorshow.soulhub.data.records.SPFileRecord;
+import io.horrorshow.soulhub.data.repository.SOULPatchRatingRepository;
 import io.horrorshow.soulhub.data.repository.SOULPatchRepository;
 import io.horrorshow.soulhub.data.repository.SPFileRepository;
+import io.horrorshow.soulhub.exception.BatchFailed;
+import io.horrorshow.soulhub.exception.PreconditionFailed;
 import io.horrorshow.soulhub.xml.SOULPatchXMLType;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
@@ -14,22 +22,21 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 
 import javax.persistence.EntityManagerFactory;
 import javax.validation.ValidationException;
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
+import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 
 import static io.horrorshow.soulhub.data.SPFile.FileType.MANIFEST;
 import static io.horrorshow.soulhub.data.SPFile.FileType.SOUL;
 import static java.lang.String.format;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
-import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.AdditionalAnswers.returnsFirstArg;
 import static org.mockito.Mockito.*;
 
@@ -41,7 +48,15 @@ public class SOULPatchServiceTest {
     @Mock
     SPFileRepository spFileRepository;
     @Mock
+    SOULPatchRatingRepository ratingRepository;
+    @Mock
     EntityManagerFactory entityManagerFactory;
+    @Mock
+    AsyncQueryExecutor asyncQueryExecutor;
+    @Mock
+    DownloadEventLog downloadEventLog;
+    @Mock
+    ApplicationEventPublisher eventPublisher;
 
     SOULPatchService service;
 
@@ -86,7 +101,8 @@ public class SOULPatchServiceTest {
     @BeforeEach
     void init() {
         MockitoAnnotations.initMocks(this);
-        service = new SOULPatchService(soulPatchRepository, spFileRepository, entityManagerFactory);
+        service = new SOULPatchService(soulPatchRepository, spFileRepository, ratingRepository, entityManagerFactory, asyncQueryExecutor, downloadEventLog, eventPublisher,
+                new RequestEntityCache());
     }
 
     @Test
@@ -113,18 +129,6 @@ public class SOULPatchServiceTest {
         assertThat(soulPatch.getAuthor()).isEqualTo(testUser);
     }
 
-    @Test
-    void incrementNoDownloadsAndSave() {
-        var soulPatch = new SOULPatch();
-        long counter = 1337L;
-        soulPatch.setNoViews(counter);
-
-        when(soulPatchRepository.saveAndFlush(any(SOULPatch.class))).then(returnsFirstArg());
-
-        var res = service.incrementNoDownloadsAndSave(soulPatch);
-        assertThat(res.getNoViews()).isEqualTo(counter + 1L);
-    }
-
     @Test
     void isPossibleSOULPatchId() {
         assertThat(service.isPossibleSOULPatchId(null)).isFalse();
@@ -140,6 +144,24 @@ public class SOULPatchServiceTest {
         assertThat(service.isPossibleSOULPatchId("-1")).isFalse();
     }
 
+    @Test
+    void findByParameter_reads_a_soulpatch_once_per_request() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        try {
+            assertThat(service.findByParameter(null)).isEmpty();
+            assertThat(service.findByParameter("a")).isEmpty();
+            assertThat(service.findByParameter("1.5")).isEmpty();
+
+            var soulPatch = createTestSoulPatch(7L);
+            when(soulPatchRepository.findById(7L)).thenReturn(Optional.of(soulPatch));
+            assertThat(service.findByParameter("7")).contains(soulPatch);
+            assertThat(service.findById(7L)).isSameAs(soulPatch);
+            verify(soulPatchRepository, times(1)).findById(7L);
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+    }
+
     @Test
     void isPossibleSPFileId() {
         assertThat(service.isPossibleSPFileId(null)).isFalse();
@@ -157,15 +179,19 @@ public class SOULPatchServiceTest {
     @Test
     void downloading_soulpatches_increments_download_counter() {
         var soulPatch = new SOULPatch();
+        soulPatch.setId(7L);
         soulPatch.setNoViews(0L);
+        var appUser = createAppUser();
 
-        var captor = ArgumentCaptor.forClass(SOULPatch.class);
-        service.soulPatchDownloaded(soulPatch);
-        verify(soulPatchRepository).saveAndFlush(captor.capture());
-
-        var savedResult = captor.getValue();
+        var captor = ArgumentCaptor.forClass(DownloadEvent.class);
+        service.soulPatchDownloaded(soulPatch, appUser);
+        verify(downloadEventLog).record(captor.capture());
+        verify(soulPatchRepository, never()).saveAndFlush(any());
 
-        assertThat(savedResult.getNoViews()).isEqualTo(1L);
+        assertThat(soulPatch.getNoViews()).isEqualTo(1L);
+        assertThat(captor.getValue().getSoulPatchId()).isEqualTo(7L);
+        assertThat(captor.getValue().getSpFileId()).isNull();
+        assertThat(captor.getValue().getAppUserId()).isEqualTo(appUser.getId());
     }
 
     @Test
@@ -174,41 +200,44 @@ public class SOULPatchServiceTest {
         var soulPatch = new SOULPatch();
         soulPatch.getSpFiles().add(spFile);
         spFile.setSoulPatch(soulPatch);
+        soulPatch.setId(7L);
+        spFile.setId(8L);
         soulPatch.setNoViews(0L);
 
-        var captor = ArgumentCaptor.forClass(SOULPatch.class);
+        var captor = ArgumentCaptor.forClass(DownloadEvent.class);
         service.spFileDownloaded(spFile);
-        verify(soulPatchRepository).saveAndFlush(captor.capture());
+        verify(downloadEventLog).record(captor.capture());
 
-        var savedResultSOULPatch = captor.getValue();
-
-        assertThat(savedResultSOULPatch.getNoViews()).isEqualTo(1L);
+        assertThat(soulPatch.getNoViews()).isEqualTo(1L);
+        assertThat(captor.getValue().getSoulPatchId()).isEqualTo(7L);
+        assertThat(captor.getValue().getSpFileId()).isEqualTo(8L);
+        assertThat(captor.getValue().getAppUserId()).isNull();
     }
 
     @Test
-    void create_soulpatchxml_for_all_soulpatches() {
-
-        List<SOULPatch> testSoulPatches = new ArrayList<>();
-        for (long id = 0L; id < 20L; id++) {
-            testSoulPatches.add(createTestSoulPatch(id));
-            testSoulPatches.add(createTestSoulPatch(Long.MAX_VALUE - id));
-        }
-        doReturn(testSoulPatches).when(soulPatchRepository).findAll();
-
-        List<SOULPatchXMLType> xmlSPs = service.findAllXML();
-        verify(soulPatchRepository).findAll();
-
-        Map<String, SOULPatchXMLType> xmlSPMap =
-                xmlSPs.stream().collect(
-                        Collectors.toMap(SOULPatchXMLType::getId, it -> it,
-                                (oldValue, newValue) -> oldValue,
-                                LinkedHashMap::new)
-                );
-        testSoulPatches.forEach(
-                soulPatch -> {
-                    SOULPatchXMLType xmlPatch = xmlSPMap.get(soulPatch.getId().toString());
-                    assertThat(service.isSPXmlMatchSPData(soulPatch, xmlPatch)).isTrue();
-                });
+    void soulpatchxml_page_without_file_contents() {
+        var soulFile = new SPFileRecord(2L, SOUL.name(), "file.soul", null, null, null);
+        var manifest = new SPFileRecord(1L, MANIFEST.name(), "patch.soulpatch", null, null, null);
+        when(soulPatchRepository.findIdsOrderedById(5L, 0, 2)).thenReturn(List.of(6L));
+        // file contents must not be selected
+        when(soulPatchRepository.findRecords(List.of(6L),
+                EnumSet.of(SOULPatchRecordField.NAME, SOULPatchRecordField.FILES)))
+                .thenReturn(List.of(new SOULPatchRecord(6L, "name", null, Set.of(soulFile, manifest),
+                        null, null, null)));
+
+        XMLPage xmlPage = service.findXMLPage(5L, 0, 2, XMLFileContent.NONE);
+        List<SOULPatchXMLType> page = xmlPage.getSoulPatches();
+
+        assertThat(xmlPage.getLastId()).isEqualTo(6L);
+        assertThat(xmlPage.isFull()).isFalse();
+
+        assertThat(page).hasSize(1);
+        assertThat(page.get(0).getId()).isEqualTo("6");
+        assertThat(page.get(0).getName()).isEqualTo("name");
+        assertThat(page.get(0).getSoulfile()).hasSize(1);
+        assertThat(page.get(0).getSoulfile().get(0).getFilename()).isEqualTo("file.soul");
+        assertThat(page.get(0).getSoulfile().get(0).getFilecontent()).isNull();
+        assertThat(page.get(0).getSoulpatchfile()).extracting("filename").containsExactly("patch.soulpatch");
     }
 
     @Test
@@ -230,80 +259,46 @@ public class SOULPatchServiceTest {
         assertThat(service.findAll("name 1$").size()).isEqualTo(2);
     }
 
-    @Test
-    void soulpatch_to_zip_file() throws IOException {
-        SOULPatch soulPatch = createTestSoulPatch(4711L);
-        byte[] zipped = service.zipSOULPatchFiles(soulPatch);
-        List<String[]> unzipped = unzipSOULPatchZip(zipped);
-        evaluateUnzipResult(unzipped, soulPatch);
-
-        Set<SPFile> emptySet = new HashSet<>();
-        soulPatch.setSpFiles(emptySet);
-        zipped = service.zipSOULPatchFiles(soulPatch);
-        unzipped = unzipSOULPatchZip(zipped);
-        evaluateUnzipResult(unzipped, soulPatch);
-    }
 
     @Test
-    void append_number_to_filename_when_zipping_duplicate_filenames() {
-        Map<String, Integer> filenames = new HashMap<>();
-        assertThat(service.appendNoIfDuplicateFilename(filenames, "common")).isEqualTo("common");
-        assertThat(service.appendNoIfDuplicateFilename(filenames, "common")).isEqualTo("common_(1)");
-        assertThat(service.appendNoIfDuplicateFilename(filenames, "unique")).isEqualTo("unique");
-        assertThat(service.appendNoIfDuplicateFilename(filenames, "common")).isEqualTo("common_(2)");
-    }
-
-    private void evaluateUnzipResult(List<String[]> unzipped, SOULPatch soulPatch) {
-        unzipped.forEach(strings -> {
-            assertTrue(soulPatch.getSpFiles().stream()
-                    .map(SPFile::getFileContent)
-                    .anyMatch(s -> s.equals(strings[1])));
-            assertTrue(soulPatch.getSpFiles().stream()
-                    .map(SPFile::getName)
-                    .anyMatch(s -> s.equals(strings[0])));
-        });
-    }
-
-    private List<String[]> unzipSOULPatchZip(byte[] bytes) throws IOException {
-        List<String[]> result = new ArrayList<>();
-        ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(bytes));
-        byte[] buffer = new byte[1024];
-        int len;
-        ZipEntry zipEntry = zis.getNextEntry();
-        while (zipEntry != null) {
-            String[] spFileStrings = new String[2];
-            spFileStrings[0] = zipEntry.getName();
-            StringBuilder sb = new StringBuilder();
-            while ((len = zis.read(buffer, 0, buffer.length)) != -1) {
-                sb.append(new String(buffer, 0, len));
-            }
-            spFileStrings[1] = sb.toString();
-            result.add(spFileStrings);
-            zipEntry = zis.getNextEntry();
-        }
-        zis.closeEntry();
-        zis.close();
-        return result;
+    void soulpatch_rating_upserts_rating_and_updates_aggregate_of_soulpatch() {
+        var sp = createTestSoulPatch(3L);
+        var appUser = createAppUser();
+        var aggregate = mock(SOULPatchRatingRepository.RatingAggregate.class);
+        when(aggregate.getRatingCount()).thenReturn(1L);
+        when(aggregate.getRatingSum()).thenReturn(5L);
+        when(aggregate.getInserted()).thenReturn(true);
+        when(ratingRepository.upsertRating(3L, appUser.getId(), 5)).thenReturn(aggregate);
+
+        service.soulPatchRating(sp, 5, appUser);
+
+        verify(soulPatchRepository, never()).saveAndFlush(any());
+        assertThat(sp.getRatingCount()).isEqualTo(1L);
+        assertThat(sp.getAverageRating()).isEqualTo(5.0d);
+
+        var captor = ArgumentCaptor.forClass(SOULPatchChangedEvent.class);
+        verify(eventPublisher).publishEvent(captor.capture());
+        assertThat(captor.getValue().getType()).isEqualTo(SOULPatchChangedEvent.Type.RATED);
     }
 
     @Test
-    void createRating_puts_app_user_and_stars_as_rating_into_soulpatch() {
-        var sp = new SOULPatch();
-        int rating = 5;
-        var appUser = new AppUser();
-        appUser.setId(4711L);
-        var captor = ArgumentCaptor.forClass(SOULPatch.class);
-
-        service.createRating(sp, rating, appUser);
-        verify(soulPatchRepository).saveAndFlush(captor.capture());
-
-        var resultSoulPatch = captor.getValue();
-        var ratingsWithCorrectUser = resultSoulPatch
-                .getRatings().stream()
-                .filter(r -> r.getAppUser().getId() == 4711L)
-                .collect(Collectors.toList());
-        assertThat(ratingsWithCorrectUser.size()).isEqualTo(1);
-        assertThat(ratingsWithCorrectUser.get(0).getStars()).isEqualTo(5);
+    void soulpatch_rerating_is_told_by_the_upsert_not_by_the_shown_count() {
+        var sp = createTestSoulPatch(3L);
+        // the instance shown in the UI missed another user's rating
+        sp.setRatingCount(1L);
+        var appUser = createAppUser();
+        var aggregate = mock(SOULPatchRatingRepository.RatingAggregate.class);
+        when(aggregate.getRatingCount()).thenReturn(2L);
+        when(aggregate.getRatingSum()).thenReturn(8L);
+        when(aggregate.getInserted()).thenReturn(false);
+        when(ratingRepository.upsertRating(3L, appUser.getId(), 4)).thenReturn(aggregate);
+
+        service.soulPatchRating(sp, 4, appUser);
+
+        assertThat(sp.getRatingCount()).isEqualTo(2L);
+        var captor = ArgumentCaptor.forClass(SOULPatchChangedEvent.class);
+        verify(eventPublisher).publishEvent(captor.capture());
+        assertThat(captor.getValue().getType()).isEqualTo(SOULPatchChangedEvent.Type.RERATED);
     }
 
     @Test
@@ -323,4 +318,67 @@ public class SOULPatchServiceTest {
         assertThrows(ValidationException.class,
                 () -> service.soulPatchRating(sp, 0, null));
     }
+
+    @Test
+    void batch_applies_all_operations_with_one_flush() {
+        var toUpdate = createTestSoulPatch(2L);
+        var toDelete = createTestSoulPatch(3L);
+        var update = new SOULPatch();
+        update.setName("updated");
+        var create = createTestSoulPatch(5L);
+        create.setId(null);
+        when(soulPatchRepository.findAllById(Set.of(2L, 3L))).thenReturn(List.of(toUpdate, toDelete));
+        when(soulPatchRepository.save(any(SOULPatch.class))).then(invocation -> {
+            SOULPatch sp = invocation.getArgument(0);
+            sp.setId(10L);
+            return sp;
+        });
+        when(spFileRepository.save(any(SPFile.class))).then(returnsFirstArg());
+
+        var results = service.applyBatch(List.of(
+                new SOULPatchOperation(SOULPatchOperation.Op.CREATE, null, create),
+                new SOULPatchOperation(SOULPatchOperation.Op.UPDATE, 2L, update),
+                new SOULPatchOperation(SOULPatchOperation.Op.DELETE, 3L, null)), createAppUser());
+
+        assertThat(results).extracting(SOULPatchOperationResult::getStatus).containsExactly(201, 200, 200);
+        assertThat(results).extracting(SOULPatchOperationResult::getId).containsExactly(10L, 2L, 3L);
+        assertThat(toUpdate.getName()).isEqualTo("updated");
+        verify(spFileRepository, times(2)).save(any(SPFile.class));
+        verify(soulPatchRepository).delete(toDelete);
+        verify(soulPatchRepository).flush();
+        verify(soulPatchRepository, never()).saveAndFlush(any());
+        verify(eventPublisher, times(3)).publishEvent(any(SOULPatchChangedEvent.class));
+    }
+
+    @Test
+    void batch_with_failed_operation_applies_nothing() {
+        var valid = createTestSoulPatch(5L);
+        when(soulPatchRepository.findAllById(Set.of(99L))).thenReturn(List.of());
+        when(soulPatchRepository.save(any(SOULPatch.class))).then(returnsFirstArg());
+        when(spFileRepository.save(any(SPFile.class))).then(returnsFirstArg());
+
+        var failed = assertThrows(BatchFailed.class, () -> service.applyBatch(List.of(
+                new SOULPatchOperation(SOULPatchOperation.Op.CREATE, null, valid),
+                new SOULPatchOperation(SOULPatchOperation.Op.DELETE, 99L, null),
+                new SOULPatchOperation(SOULPatchOperation.Op.UPDATE, null, valid)), createAppUser()));
+
+        assertThat(failed.getResults()).extracting(SOULPatchOperationResult::getStatus).containsExactly(424, 404, 400);
+        verify(soulPatchRepository, never()).flush();
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void update_with_outdated_version_fails() {
+        var sp = createTestSoulPatch(4L);
+        sp.setUpdatedAt(LocalDateTime.of(2020, 1, 1, 0, 0));
+        when(soulPatchRepository.findByIdForUpdate(4L)).thenReturn(Optional.of(sp));
+
+        assertThrows(PreconditionFailed.class, () ->
+                service.update(4L, createTestSoulPatch(5L), Set.of(LocalDateTime.of(2019, 1, 1, 0, 0))));
+        verify(soulPatchRepository, never()).saveAndFlush(any());
+
+        when(soulPatchRepository.saveAndFlush(sp)).thenReturn(sp);
+        service.update(4L, createTestSoulPatch(5L), Set.of(LocalDateTime.of(2020, 1, 1, 0, 0)));
+        assertThat(sp.getName()).isEqualTo("name 5");
+    }
 }
@@ -6,6 +6,7 @@ import io.horrorshow.soulhub.data.VerificationToken;
 import io.horrorshow.soulhub.data.repository.AppRoleRepository;
 import io.horrorshow.soulhub.data.repository.AppUserRepository;
 import io.horrorshow.soulhub.data.repository.VerificationTokenRepository;
+import io.horrorshow.soulhub.exception.ResourceNotFound;
 import io.horrorshow.soulhub.security.SecurityUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -50,7 +51,8 @@ public class UserServiceTest {
                         roleRepository,
                         userRepository,
                         verificationTokenRepository,
-                        mailSender);
+                        mailSender,
+                        new RequestEntityCache());
     }
 
     @Test
@@ -162,6 +164,18 @@ public class UserServiceTest {
         });
     }
 
+    @Test
+    void find_all_by_id_or_throw_names_the_first_unknown_user() {
+        AppUser user = new AppUser();
+        user.setId(1L);
+        Mockito.when(userRepository.findAllById(Mockito.anyCollection())).thenReturn(List.of(user));
+
+        assertThat(userDetailsService.findAllByIdOrThrow(List.of(1L, 1L))).containsExactly(user, user);
+        assertThatThrownBy(() -> userDetailsService.findAllByIdOrThrow(List.of(1L, 1L, 2L, 3L)))
+                .isInstanceOf(ResourceNotFound.class)
+                .hasMessage("user id: 2");
+    }
+
     private AppRole newRole() {
         AppRole userRole = new AppRole();
         userRole.setRoleName("USER");
@@ -0,0 +1,124 @@
+package io.horrorshow.soulhub.soap;
+
+import io.horrorshow.soulhub.service.SOULPatchService;
+import io.horrorshow.soulhub.service.XMLFileContent;
+import io.horrorshow.soulhub.service.XMLPage;
+import io.horrorshow.soulhub.xml.SOULPatchXMLType;
+import io.horrorshow.soulhub.xml.SoulhubRequest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ws.WebServiceMessage;
+import org.springframework.ws.context.MessageContext;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SOULPatchEndpointTest {
+
+    @Mock
+    private SOULPatchService soulPatchService;
+    @Mock
+    private SOULPatchXMLStreamer streamer;
+    @Mock
+    private MessageContext messageContext;
+
+    @InjectMocks
+    private SOULPatchEndpoint endpoint;
+
+    private static SOULPatchXMLType xml(long id) {
+        var soulPatch = new SOULPatchXMLType();
+        soulPatch.setId(String.valueOf(id));
+        return soulPatch;
+    }
+
+    @Test
+    void single_soulpatch_by_id() throws Exception {
+        var request = new SoulhubRequest();
+        request.setSoulpatchId("7");
+        when(soulPatchService.findXML(7L, XMLFileContent.INLINE)).thenReturn(Optional.of(xml(7)));
+
+        var response = endpoint.getSoulhubResponse(request, messageContext);
+
+        assertThat(response.getSoulpatch()).extracting(SOULPatchXMLType::getId).containsExactly("7");
+        assertThat(response.getNextCursor()).isNull();
+    }
+
+    @Test
+    void full_page_links_next_page_by_cursor() throws Exception {
+        var request = new SoulhubRequest();
+        request.setCursor("3");
+        request.setLimit(2);
+        request.setMetadataOnly(true);
+        when(soulPatchService.findXMLPage(3L, 0, 2, XMLFileContent.NONE))
+                .thenReturn(new XMLPage(List.of(xml(4), xml(8)), 8L, true));
+
+        var response = endpoint.getSoulhubResponse(request, messageContext);
+
+        assertThat(response.getSoulpatch()).hasSize(2);
+        assertThat(response.getNextCursor()).isEqualTo("8");
+    }
+
+    @Test
+    void page_with_deleted_soulpatches_still_links_next_page() throws Exception {
+        var request = new SoulhubRequest();
+        request.setCursor("3");
+        request.setLimit(2);
+        request.setMetadataOnly(true);
+        // 8 was deleted after the ids of the page were read
+        when(soulPatchService.findXMLPage(3L, 0, 2, XMLFileContent.NONE))
+                .thenReturn(new XMLPage(List.of(xml(4)), 8L, true));
+
+        var response = endpoint.getSoulhubResponse(request, messageContext);
+
+        assertThat(response.getSoulpatch()).extracting(SOULPatchXMLType::getId).containsExactly("4");
+        assertThat(response.getNextCursor()).isEqualTo("8");
+    }
+
+    @Test
+    void last_page_has_no_cursor() throws Exception {
+        var request = new SoulhubRequest();
+        request.setCursor("3");
+        request.setLimit(2);
+        when(soulPatchService.findXMLPage(3L, 0, 2, XMLFileContent.INLINE))
+                .thenReturn(new XMLPage(List.of(xml(4)), 4L, false));
+
+        var response = endpoint.getSoulhubResponse(request, messageContext);
+
+        assertThat(response.getSoulpatch()).hasSize(1);
+        assertThat(response.getNextCursor()).isNull();
+    }
+
+    @Test
+    void offset_and_cursor_are_exclusive() {
+        var request = new SoulhubRequest();
+        request.setCursor("3");
+        request.setOffset(10);
+
+        assertThrows(InvalidSoulhubRequest.class, () -> endpoint.getSoulhubResponse(request, messageContext));
+        verifyNoInteractions(soulPatchService);
+    }
+
+    @Test
+    void all_soulpatches_are_streamed() throws Exception {
+        var request = new SoulhubRequest();
+        request.setCursor("3");
+        request.setAll(true);
+        var responseMessage = mock(WebServiceMessage.class);
+        when(messageContext.getResponse()).thenReturn(responseMessage);
+
+        assertThat(endpoint.getSoulhubResponse(request, messageContext)).isNull();
+        verify(streamer).write(3L, XMLFileContent.INLINE, responseMessage);
+        verifyNoInteractions(soulPatchService);
+    }
+}
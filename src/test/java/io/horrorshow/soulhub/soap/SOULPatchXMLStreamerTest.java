@@ -0,0 +1,105 @@
+package io.horrorshow.soulhub.soap;
+
+import io.horrorshow.soulhub.service.SOULPatchService;
+import io.horrorshow.soulhub.service.XMLFileContent;
+import io.horrorshow.soulhub.service.XMLPage;
+import io.horrorshow.soulhub.xml.SOULFileXMLType;
+import io.horrorshow.soulhub.xml.SOULPatchXMLType;
+import io.horrorshow.soulhub.xml.SoulhubResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ws.soap.axiom.AxiomSoapMessage;
+import org.springframework.ws.soap.axiom.AxiomSoapMessageFactory;
+import org.springframework.ws.soap.saaj.SaajSoapMessage;
+import org.springframework.ws.soap.saaj.SaajSoapMessageFactory;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.soap.MessageFactory;
+import javax.xml.transform.dom.DOMSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SOULPatchXMLStreamerTest {
+
+    @Mock
+    private SOULPatchService soulPatchService;
+
+    private SOULPatchXMLStreamer streamer;
+
+    private static SOULPatchXMLType xml(long id) {
+        var file = new SOULFileXMLType();
+        file.setId(String.valueOf(id * 10));
+        file.setFilename("file.soul");
+        file.setFilecontent("content <" + id + ">");
+        var soulPatch = new SOULPatchXMLType();
+        soulPatch.setId(String.valueOf(id));
+        soulPatch.getSoulfile().add(file);
+        return soulPatch;
+    }
+
+    @BeforeEach
+    void init() throws Exception {
+        streamer = new SOULPatchXMLStreamer(soulPatchService, 2);
+    }
+
+    private void batches() {
+        when(soulPatchService.findXMLPage(null, 0, 2, XMLFileContent.INLINE))
+                .thenReturn(new XMLPage(List.of(xml(1), xml(2)), 2L, true));
+        when(soulPatchService.findXMLPage(2L, 0, 2, XMLFileContent.INLINE))
+                .thenReturn(new XMLPage(List.of(xml(5)), 5L, false));
+    }
+
+    @Test
+    void streams_all_batches_into_axiom_message() throws Exception {
+        batches();
+        AxiomSoapMessage message = new AxiomSoapMessageFactory().createWebServiceMessage();
+
+        streamer.write(null, XMLFileContent.INLINE, message);
+        var out = new ByteArrayOutputStream();
+        message.writeTo(out);
+
+        var documentBuilderFactory = DocumentBuilderFactory.newInstance();
+        documentBuilderFactory.setNamespaceAware(true);
+        var payload = documentBuilderFactory.newDocumentBuilder()
+                .parse(new ByteArrayInputStream(out.toByteArray()))
+                .getElementsByTagNameNS(SOULPatchEndpoint.NAMESPACE_URI, "soulhubResponse").item(0);
+        var response = (SoulhubResponse) WebServiceConfig.mtomMarshaller().unmarshal(new DOMSource(payload));
+        assertThat(response.getSoulpatch()).extracting(SOULPatchXMLType::getId).containsExactly("1", "2", "5");
+        assertThat(response.getSoulpatch().get(2).getSoulfile().get(0).getFilecontent()).isEqualTo("content <5>");
+    }
+
+    @Test
+    void writes_payload_tree_of_other_messages() throws Exception {
+        batches();
+        SaajSoapMessage message = new SaajSoapMessageFactory(MessageFactory.newInstance()).createWebServiceMessage();
+
+        streamer.write(null, XMLFileContent.INLINE, message);
+
+        var response = (SoulhubResponse) WebServiceConfig.mtomMarshaller().unmarshal(message.getPayloadSource());
+        assertThat(response.getSoulpatch()).extracting(SOULPatchXMLType::getId).containsExactly("1", "2", "5");
+        assertThat(response.getSoulpatch().get(2).getSoulfile().get(0).getFilecontent()).isEqualTo("content <5>");
+    }
+
+    @Test
+    void soulpatches_deleted_while_streaming_do_not_end_the_stream() throws Exception {
+        // 2 was deleted between reading the ids of the first batch and their records
+        when(soulPatchService.findXMLPage(null, 0, 2, XMLFileContent.INLINE))
+                .thenReturn(new XMLPage(List.of(xml(1)), 2L, true));
+        when(soulPatchService.findXMLPage(2L, 0, 2, XMLFileContent.INLINE))
+                .thenReturn(new XMLPage(List.of(xml(5)), 5L, false));
+        SaajSoapMessage message = new SaajSoapMessageFactory(MessageFactory.newInstance()).createWebServiceMessage();
+
+        streamer.write(null, XMLFileContent.INLINE, message);
+
+        var response = (SoulhubResponse) WebServiceConfig.mtomMarshaller().unmarshal(message.getPayloadSource());
+        assertThat(response.getSoulpatch()).extracting(SOULPatchXMLType::getId).containsExactly("1", "5");
+    }
+}
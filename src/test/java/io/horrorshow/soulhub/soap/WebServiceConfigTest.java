@@ -0,0 +1,58 @@
+package io.horrorshow.soulhub.soap;
+
+import io.horrorshow.soulhub.xml.SOULFileXMLType;
+import io.horrorshow.soulhub.xml.SOULPatchXMLType;
+import io.horrorshow.soulhub.xml.SoulhubResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.ws.mime.Attachment;
+import org.springframework.ws.server.endpoint.adapter.DefaultMethodEndpointAdapter;
+import org.springframework.ws.server.endpoint.adapter.method.MarshallingPayloadMethodProcessor;
+import org.springframework.ws.soap.saaj.SaajSoapMessage;
+import org.springframework.ws.soap.saaj.SaajSoapMessageFactory;
+import org.springframework.ws.support.MarshallingUtils;
+
+import javax.activation.DataHandler;
+import javax.mail.util.ByteArrayDataSource;
+import javax.xml.soap.MessageFactory;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WebServiceConfigTest {
+
+    private static final byte[] CONTENT = "(soul content)".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void file_data_is_sent_as_mtom_attachment() throws Exception {
+        var file = new SOULFileXMLType();
+        file.setId("2");
+        file.setFilename("file.soul");
+        file.setFiledata(new DataHandler(new ByteArrayDataSource(CONTENT, "application/octet-stream")));
+        var soulPatch = new SOULPatchXMLType();
+        soulPatch.setId("1");
+        soulPatch.getSoulfile().add(file);
+        var response = new SoulhubResponse();
+        response.getSoulpatch().add(soulPatch);
+
+        SaajSoapMessage message = new SaajSoapMessageFactory(MessageFactory.newInstance()).createWebServiceMessage();
+        MarshallingUtils.marshal(WebServiceConfig.mtomMarshaller(), response, message);
+
+        Attachment attachment = message.getAttachments().next();
+        assertThat(attachment.getInputStream().readAllBytes()).isEqualTo(CONTENT);
+        var out = new ByteArrayOutputStream();
+        message.writeTo(out);
+        assertThat(out.toString(StandardCharsets.UTF_8)).contains("xop:Include").doesNotContain("KHNvdWwgY29udGVudCk=");
+    }
+
+    @Test
+    void mtom_processor_comes_before_default_jaxb_processors() throws Exception {
+        var adapter = new DefaultMethodEndpointAdapter();
+        adapter.afterPropertiesSet();
+
+        WebServiceConfig.mtomMethodProcessorPostProcessor().postProcessAfterInitialization(adapter, "adapter");
+
+        assertThat(adapter.getMethodArgumentResolvers().get(0)).isInstanceOf(MarshallingPayloadMethodProcessor.class);
+        assertThat(adapter.getMethodReturnValueHandlers().get(0)).isInstanceOf(MarshallingPayloadMethodProcessor.class);
+    }
+}
@@ -0,0 +1,251 @@
+package io.horrorshow.soulhub.ui.components;
+
+import com.vaadin.flow.component.AbstractSinglePropertyField;
+import com.vaadin.flow.component.Component;
+import com.vaadin.flow.component.Tag;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.html.Paragraph;
+import com.vaadin.flow.component.html.Span;
+import com.vaadin.flow.component.icon.VaadinIcon;
+import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
+import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.data.renderer.ComponentRenderer;
+import com.vaadin.flow.internal.ConstantPool;
+import com.vaadin.flow.internal.JsonCodec;
+import com.vaadin.flow.server.VaadinSession;
+import elemental.json.impl.JsonUtil;
+import io.horrorshow.soulhub.data.AppUser;
+import io.horrorshow.soulhub.data.SOULPatch;
+import io.horrorshow.soulhub.data.SOULPatch_;
+import io.horrorshow.soulhub.data.SPFile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Server side cost of a page of the soulpatches grid: {@link SOULPatchesGrid} with its template
+ * renderers against the same grid with the description, files and rating columns rendered by
+ * ComponentRenderers, as they used to be. Both grids are attached to a UI and fetch the page
+ * through their data communicator, as for a client request.
+ * <ul>
+ *     <li>session bytes: serialized size of the grid with the items, the key mapper and the
+ *     renderers' state, and of the otherwise empty UI and session it is attached to</li>
+ *     <li>state nodes: nodes under the grid element, virtual children included</li>
+ *     <li>client bytes: JSON of the state changes and JavaScript calls of the first response</li>
+ *     <li>us/page: time to refetch the page, reset and flush of the data communicator</li>
+ * </ul>
+ * Not a test, run the main method, e.g. from the IDE. Optional arguments are the number of rows
+ * and files per soulpatch.
+ */
+public class SOULPatchesGridBenchmark {
+
+    private static final int ITERATIONS = 500;
+
+    public static void main(String[] args) throws Exception {
+        int rows = (args.length > 0) ? Integer.parseInt(args[0]) : SOULPatchesGrid.DEFAULT_PAGE_SIZE;
+        int files = (args.length > 1) ? Integer.parseInt(args[1]) : 3;
+
+        List<SOULPatch> page = page(rows, files);
+
+        System.out.printf("%d rows, %d files each%n", rows, files);
+        System.out.printf("%-10s %14s %14s %14s %12s%n",
+                "cells", "session bytes", "state nodes", "client bytes", "us/page");
+        measure("component", ComponentCellsGrid::new, page);
+        measure("template", SOULPatchesGrid::new, page);
+    }
+
+    private static void measure(String name, Supplier<SOULPatchesGrid> newGrid, List<SOULPatch> page)
+            throws IOException {
+        var ui = new UI();
+        ui.getInternals().setSession(new LockedSession());
+        var grid = newGrid.get();
+        ui.add(grid);
+        grid.setItems(page);
+        grid.getDataCommunicator().setRequestedRange(0, page.size());
+
+        long clientBytes = respond(ui);
+        long sessionBytes = serializedSize(grid);
+        var nodes = new AtomicLong();
+        grid.getElement().getNode().visitNodeTree(node -> nodes.incrementAndGet());
+        long micros = microsPerPage(() -> {
+            grid.getDataCommunicator().reset();
+            return respond(ui);
+        });
+
+        System.out.printf("%-10s %14d %14d %14d %12d%n", name, sessionBytes, nodes.get(), clientBytes, micros);
+    }
+
+    /**
+     * Runs what happens before a response is written and collects the changes for the client,
+     * like the UidlWriter does
+     *
+     * @return size of the collected changes as JSON
+     */
+    private static long respond(UI ui) {
+        var internals = ui.getInternals();
+        internals.getStateTree().runExecutionsBeforeClientResponse();
+
+        var constantPool = new ConstantPool();
+        var bytes = new AtomicLong();
+        internals.getStateTree().collectChanges(change -> bytes.addAndGet(jsonBytes(change.toJson(constantPool))));
+        bytes.addAndGet(jsonBytes(constantPool.dumpConstants()));
+        internals.dumpPendingJavaScriptInvocations().forEach(pending -> {
+            var invocation = pending.getInvocation();
+            bytes.addAndGet(invocation.getExpression().getBytes(StandardCharsets.UTF_8).length);
+            invocation.getParameters().forEach(parameter ->
+                    bytes.addAndGet(jsonBytes(JsonCodec.encodeWithTypeInfo(parameter))));
+        });
+        return bytes.get();
+    }
+
+    private static long jsonBytes(elemental.json.JsonValue json) {
+        return JsonUtil.stringify(json).getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static long microsPerPage(Supplier<?> render) {
+        for (int i = 0; i < ITERATIONS; i++) {
+            render.get();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            render.get();
+        }
+        return (System.nanoTime() - start) / ITERATIONS / 1_000;
+    }
+
+    private static long serializedSize(Object object) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        try (var out = new ObjectOutputStream(bytes)) {
+            out.writeObject(object);
+        }
+        return bytes.size();
+    }
+
+    private static List<SOULPatch> page(int rows, int files) {
+        var author = new AppUser();
+        author.setId(1L);
+        author.setUserName("author");
+
+        List<SOULPatch> page = new ArrayList<>();
+        for (long id = 1; id <= rows; id++) {
+            var sp = new SOULPatch();
+            sp.setId(id);
+            sp.setName("soulpatch " + id);
+            sp.setDescription("description of soulpatch " + id + "\nwith a second line");
+            sp.setAuthor(author);
+            sp.setRatingCount(id);
+            sp.setRatingSum(id * 3);
+            sp.setSpFiles(new HashSet<>());
+            for (long file = 1; file <= files; file++) {
+                var spFile = new SPFile();
+                spFile.setId(id * 100 + file);
+                spFile.setName("file" + file + ".soul");
+                spFile.setFileType(SPFile.FileType.SOUL);
+                spFile.setFileContent("(define (patch-step state) state)\n".repeat(100));
+                spFile.setSoulPatch(sp);
+                sp.getSpFiles().add(spFile);
+            }
+            page.add(sp);
+        }
+        return page;
+    }
+
+    /**
+     * The grid with the description, files and rating columns rendered by ComponentRenderers,
+     * as before the templates
+     */
+    private static class ComponentCellsGrid extends SOULPatchesGrid {
+
+        private static final long serialVersionUID = 1L;
+
+        ComponentCellsGrid() {
+            var keys = new ArrayList<String>();
+            getColumns().forEach(column -> keys.add(column.getKey()));
+
+            removeColumnByKey(SOULPatch_.DESCRIPTION);
+            addColumn(new ComponentRenderer<>(ComponentCellsGrid::description))
+                    .setHeader(COL_DESCRIPTION)
+                    .setKey(SOULPatch_.DESCRIPTION);
+            removeColumnByKey(SOULPatch_.SP_FILES);
+            addColumn(new ComponentRenderer<>(ComponentCellsGrid::files))
+                    .setHeader(COL_FILES)
+                    .setKey(SOULPatch_.SP_FILES);
+            removeColumnByKey(SOULPatch_.RATINGS);
+            addColumn(new ComponentRenderer<>(ComponentCellsGrid::rating))
+                    .setHeader(COL_RATINGS)
+                    .setKey(SOULPatch_.RATINGS);
+
+            setColumnOrder(keys.stream().map(this::getColumnByKey).toArray(Column[]::new));
+        }
+
+        private static Component description(SOULPatch sp) {
+            var description = new Paragraph();
+            description.setText(sp.getDescription());
+            description.addClassName("sp-grid-col-description");
+            description.setWidthFull();
+            return description;
+        }
+
+        private static Component files(SOULPatch sp) {
+            var filesLayout = new VerticalLayout();
+            sp.getSpFiles().forEach(spFile -> filesLayout.add(
+                    new Button(spFile.getName(), VaadinIcon.FILE_CODE.create(), event -> spFile.getId())));
+            return filesLayout;
+        }
+
+        private static Component rating(SOULPatch sp) {
+            var stars = new StarsRating();
+            stars.setValue((int) Math.round(sp.getAverageRating()));
+            stars.getElement().setProperty("numstars", SOULPatchesGrid.NUM_STARS);
+            stars.getElement().setProperty("manual", true);
+            stars.addValueChangeListener(event -> sp.getId());
+            return new HorizontalLayout(new Span(String.format("%.2f", sp.getAverageRating())), stars);
+        }
+    }
+
+    /**
+     * A session without a service, always locked by the benchmark thread
+     */
+    private static class LockedSession extends VaadinSession {
+
+        private static final long serialVersionUID = 1L;
+
+        LockedSession() {
+            super(null);
+        }
+
+        @Override
+        public boolean hasLock() {
+            return true;
+        }
+
+        @Override
+        public void checkHasLock() {
+        }
+
+        @Override
+        public void checkHasLock(String message) {
+        }
+    }
+
+    /**
+     * The removed rating field, without its npm package
+     */
+    @Tag("stars-rating")
+    private static class StarsRating extends AbstractSinglePropertyField<StarsRating, Integer> {
+
+        private static final long serialVersionUID = 1L;
+
+        StarsRating() {
+            super("rating", 0, false);
+        }
+    }
+}
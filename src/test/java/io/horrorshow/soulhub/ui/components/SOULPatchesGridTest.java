@@ -0,0 +1,132 @@
+package io.horrorshow.soulhub.ui.components;
+
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.dom.DomEvent;
+import com.vaadin.flow.internal.nodefeature.ElementListenerMap;
+import elemental.json.Json;
+import elemental.json.JsonObject;
+import io.horrorshow.soulhub.data.SOULPatch;
+import io.horrorshow.soulhub.data.SPFile;
+import io.horrorshow.soulhub.ui.events.SOULPatchRatingEvent;
+import io.horrorshow.soulhub.ui.events.SPFileSelectEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SOULPatchesGridTest {
+
+    private final SOULPatchesGrid grid = new SOULPatchesGrid();
+    // the current UI is only weakly referenced, the test holds it
+    private final UI ui = new UI();
+    private final List<SPFileSelectEvent> fileEvents = new ArrayList<>();
+    private final List<SOULPatchRatingEvent> ratingEvents = new ArrayList<>();
+
+    private SOULPatch soulPatch;
+    private SOULPatch other;
+    private String key;
+
+    private static SOULPatch soulPatch(long id) {
+        var sp = new SOULPatch();
+        sp.setId(id);
+        sp.setName("soulpatch " + id);
+        sp.setRatingCount(2L);
+        sp.setRatingSum(7L);
+        sp.setSpFiles(new HashSet<>());
+        var spFile = new SPFile();
+        spFile.setId(id * 100);
+        spFile.setName("file.soul");
+        spFile.setSoulPatch(sp);
+        sp.getSpFiles().add(spFile);
+        return sp;
+    }
+
+    @BeforeEach
+    void init() {
+        // the rating notification needs a UI
+        UI.setCurrent(ui);
+        soulPatch = soulPatch(1L);
+        other = soulPatch(2L);
+        grid.setItems(soulPatch, other);
+        key = grid.getDataCommunicator().getKeyMapper().key(soulPatch);
+        grid.addSPFileSelectListener(fileEvents::add);
+        grid.addSOULPatchRatingsListener(ratingEvents::add);
+    }
+
+    @AfterEach
+    void cleanup() {
+        UI.setCurrent(null);
+    }
+
+    /**
+     * Fires a click on the grid element the way the client reports it, with the filter passed
+     */
+    private void click(String soulPatchKey, String spFileId, String starIndex) {
+        JsonObject eventData = Json.createObject();
+        eventData.put(SOULPatchesGrid.CLICK_FILTER, true);
+        eventData.put(SOULPatchesGrid.SOULPATCH_KEY, (soulPatchKey != null) ? Json.create(soulPatchKey) : Json.createNull());
+        eventData.put(SOULPatchesGrid.SPFILE_ID, (spFileId != null) ? Json.create(spFileId) : Json.createNull());
+        eventData.put(SOULPatchesGrid.STAR_INDEX, (starIndex != null) ? Json.create(starIndex) : Json.createNull());
+        grid.getElement().getNode().getFeature(ElementListenerMap.class)
+                .fireEvent(new DomEvent(grid.getElement(), "click", eventData));
+    }
+
+    private static String fileId(SOULPatch sp) {
+        return String.valueOf(sp.getSpFiles().iterator().next().getId());
+    }
+
+    @Test
+    void file_click_of_a_known_row_selects_the_file() {
+        click(key, fileId(soulPatch), null);
+
+        assertThat(fileEvents).hasSize(1);
+        assertThat(fileEvents.get(0).getSpFile()).isSameAs(soulPatch.getSpFiles().iterator().next());
+        assertThat(ratingEvents).isEmpty();
+    }
+
+    @Test
+    void star_click_of_a_known_row_rates_the_soulpatch() {
+        click(key, null, "0");
+        click(key, null, "4");
+
+        assertThat(ratingEvents).extracting(SOULPatchRatingEvent::getValue).containsExactly(1, 5);
+        assertThat(ratingEvents).extracting(SOULPatchRatingEvent::getSoulPatch).containsOnly(soulPatch);
+        assertThat(ratingEvents).extracting(SOULPatchRatingEvent::getOldValue).containsOnly(4);
+        assertThat(fileEvents).isEmpty();
+    }
+
+    @Test
+    void forged_keys_are_ignored() {
+        click("forged", fileId(soulPatch), null);
+        click("forged", null, "2");
+        click(null, fileId(soulPatch), "2");
+
+        assertThat(fileEvents).isEmpty();
+        assertThat(ratingEvents).isEmpty();
+    }
+
+    @Test
+    void files_of_other_soulpatches_are_ignored() {
+        click(key, fileId(other), null);
+        click(key, "not a number", null);
+
+        assertThat(fileEvents).isEmpty();
+        assertThat(ratingEvents).isEmpty();
+    }
+
+    @Test
+    void out_of_range_star_indices_are_ignored() {
+        click(key, null, "-1");
+        click(key, null, String.valueOf(SOULPatchesGrid.NUM_STARS));
+        click(key, null, "1.5");
+        click(key, null, "");
+
+        assertThat(ratingEvents).isEmpty();
+        assertThat(fileEvents).isEmpty();
+    }
+}
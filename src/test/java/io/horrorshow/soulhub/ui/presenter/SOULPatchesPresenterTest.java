@@ -5,6 +5,8 @@ import io.horrorshow.soulhub.data.AppUser;
 import io.horrorshow.soulhub.data.SOULPatch;
 import io.horrorshow.soulhub.data.SPFile;
 import io.horrorshow.soulhub.data.util.SOULPatchesFetchFilter;
+import io.horrorshow.soulhub.service.SOULPatchArchiveCache;
+import io.horrorshow.soulhub.service.SOULPatchBundleService;
 import io.horrorshow.soulhub.service.SOULPatchService;
 import io.horrorshow.soulhub.service.UserService;
 import io.horrorshow.soulhub.ui.components.SOULPatchReadOnlyDialog;
@@ -35,6 +37,10 @@ class SOULPatchesPresenterTest {
     @Mock
     SOULPatchService soulPatchService;
     @Mock
+    SOULPatchArchiveCache archiveCache;
+    @Mock
+    SOULPatchBundleService bundleService;
+    @Mock
     SOULPatchesView mockView;
     @Mock
     SPFileReadOnlyDialog mockSpReadOnlyDialog;
@@ -51,7 +57,7 @@ class SOULPatchesPresenterTest {
     @BeforeEach
     void init() {
         MockitoAnnotations.initMocks(this);
-        presenter = new SOULPatchesPresenter(dataProvider, userService, soulPatchService);
+        presenter = new SOULPatchesPresenter(dataProvider, userService, soulPatchService, archiveCache, bundleService);
         view = new SOULPatchesView(presenter);
         presenter.init(view);
     }
@@ -75,7 +81,7 @@ class SOULPatchesPresenterTest {
         var map = Map.of("user", List.of("4711"));
         var userToReturn = new AppUser();
         userToReturn.setUserName("username from service");
-        when(userService.findById(4711L)).thenReturn(Optional.of(userToReturn));
+        when(userService.findAllById(List.of(4711L))).thenReturn(List.of(userToReturn));
 
         presenter.onNavigation(null, map);
     }
@@ -99,11 +105,12 @@ class SOULPatchesPresenterTest {
         bbb.setUserName("bbb");
         var ccc = new AppUser();
         ccc.setUserName("ccc");
-        when(userService.findById(1L)).thenReturn(Optional.of(aaa));
-        when(userService.findById(2L)).thenReturn(Optional.of(bbb));
-        when(userService.findById(3L)).thenReturn(Optional.of(ccc));
+        when(userService.findAllById(List.of(1L, 2L, 3L))).thenReturn(List.of(aaa, bbb, ccc));
 
         presenter.onNavigation(null, map);
+
+        verify(userService, times(1)).findAllById(any());
+        verify(userService, never()).findById(any());
     }
 
     @Test
@@ -168,7 +175,7 @@ class SOULPatchesPresenterTest {
 
         presenter.onSOULPatchDownload(event);
 
-        verify(soulPatchService).incrementNoDownloadsAndSave(soulPatch);
+        verify(soulPatchService).soulPatchDownloaded(soulPatch, null);
         verify(dataProvider).refreshItem(soulPatch);
     }
 
@@ -182,7 +189,7 @@ class SOULPatchesPresenterTest {
 
         presenter.onSPFileDownload(event);
 
-        verify(soulPatchService).incrementNoDownloadsAndSave(soulPatch);
+        verify(soulPatchService).spFileDownloaded(spFile, null);
         verify(dataProvider).refreshItem(soulPatch);
     }
 